@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.autoconfigure;
+
+import com.sunyard.cache.ResponseCache;
+import com.sunyard.client.ChannelCacheProperties;
+import com.sunyard.client.ChannelDrainer;
+import com.sunyard.client.ChannelPrewarmProperties;
+import com.sunyard.client.ChannelPrewarmer;
+import com.sunyard.client.GrpcChannelProperties;
+import com.sunyard.client.GrpcClientOptions;
+import com.sunyard.client.ManagedChannelManager;
+import com.sunyard.compression.CompressionRules;
+import com.sunyard.marshaller.LargeMessageMarshallers;
+import com.sunyard.pipeline.PipelineProperties;
+import com.sunyard.singleflight.SingleflightClientInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Grpc client channel configuration, binds the per client tuning profiles under grpc.client.&lt;name&gt;,
+ * collects the optional client features into one {@link GrpcClientOptions} for {@link ManagedChannelManager},
+ * pre-warms the configured channels, applies the channel cache eviction and shuts the channels down on stop.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties({ChannelPrewarmProperties.class, ChannelCacheProperties.class})
+public class GrpcClientChannelAutoConfiguration {
+
+    private static final String CLIENT_PREFIX = "grpc.client";
+
+    private final Map<String, GrpcChannelProperties> channels;
+
+    private final GrpcClientOptions options;
+
+    /**
+     * grpc.client下的条目作为channel配置, 与压缩、响应缓存、singleflight、pipeline、大报文一起组成客户端配置,
+     * 配置了address的channel启动时预热, 其他条目(如api.enabled)中没有channel属性, 使用默认配置.
+     *
+     * @param environment        the environment
+     * @param cacheProperties    the channel cache properties
+     * @param compressionRules   the compression rules
+     * @param responseCache      the response cache
+     * @param singleflight       the singleflight interceptor
+     * @param pipelineProperties the pipeline properties
+     * @param largeMessage       the large message marshallers
+     */
+    public GrpcClientChannelAutoConfiguration(final Environment environment,
+                                              final ChannelCacheProperties cacheProperties,
+                                              final ObjectProvider<CompressionRules> compressionRules,
+                                              final ObjectProvider<ResponseCache> responseCache,
+                                              final ObjectProvider<SingleflightClientInterceptor> singleflight,
+                                              final ObjectProvider<PipelineProperties> pipelineProperties,
+                                              final ObjectProvider<LargeMessageMarshallers> largeMessage) {
+        final Map<String, GrpcChannelProperties> bound = Binder.get(environment)
+                .bind(CLIENT_PREFIX, Bindable.mapOf(String.class, GrpcChannelProperties.class))
+                .orElse(Collections.emptyMap());
+        this.options = GrpcClientOptions.builder()
+                .channelProperties(bound)
+                .compressionRules(compressionRules.getIfAvailable())
+                .responseCache(responseCache.getIfAvailable())
+                .singleflight(singleflight.getIfAvailable())
+                .pipelineProperties(pipelineProperties.getIfAvailable())
+                .largeMessageMarshallers(largeMessage.getIfAvailable())
+                .build();
+        ManagedChannelManager.configure(options);
+        final Map<String, GrpcChannelProperties> configured = new LinkedHashMap<>();
+        bound.forEach((name, channel) -> {
+            if (StringUtils.hasText(channel.getAddress())) {
+                configured.put(name, channel);
+            }
+        });
+        this.channels = Collections.unmodifiableMap(configured);
+        ManagedChannelManager.configureCache(cacheProperties);
+    }
+
+    /**
+     * 创建channel使用的客户端配置.
+     *
+     * @return the client options
+     */
+    @Bean
+    public GrpcClientOptions grpcClientOptions() {
+        return options;
+    }
+
+    /**
+     * 启动时并行创建配置的channel.
+     *
+     * @param properties the prewarm properties
+     * @return the channel prewarmer
+     */
+    @Bean
+    @ConditionalOnProperty(value = "grpc.prewarm.enabled", matchIfMissing = true)
+    public ChannelPrewarmer grpcChannelPrewarmer(final ChannelPrewarmProperties properties) {
+        return new ChannelPrewarmer(this.channels, properties);
+    }
+
+    /**
+     * 容器关闭时优雅关闭所有channel.
+     *
+     * @param cacheProperties the channel cache properties
+     * @return the channel drainer
+     */
+    @Bean
+    public ChannelDrainer grpcChannelDrainer(final ChannelCacheProperties cacheProperties) {
+        return new ChannelDrainer(cacheProperties.getShutdownTimeout());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.autoconfigure;
+
+import com.sunyard.client.GrpcClientAutowireCandidateResolver;
+import com.sunyard.client.GrpcClientBeanPostProcessor;
+import com.sunyard.client.GrpcStubFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+
+/**
+ * {@link com.sunyard.client.GrpcClient} injection configuration.
+ */
+@Configuration(proxyBeanMethods = false)
+public class GrpcClientInjectionAutoConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GrpcClientInjectionAutoConfiguration.class);
+
+    /**
+     * Grpc stub factory, 所有注入点共用的stub缓存.
+     *
+     * @return the stub factory
+     */
+    @Bean
+    public static GrpcStubFactory grpcStubFactory() {
+        return new GrpcStubFactory();
+    }
+
+    /**
+     * 字段注入.
+     *
+     * @param stubFactory the stub factory
+     * @return the bean post processor
+     */
+    @Bean
+    public static GrpcClientBeanPostProcessor grpcClientBeanPostProcessor(final GrpcStubFactory stubFactory) {
+        return new GrpcClientBeanPostProcessor(stubFactory);
+    }
+
+    /**
+     * 构造器和方法参数注入,替换默认的AutowireCandidateResolver.
+     *
+     * @return the bean factory post processor
+     */
+    @Bean
+    public static BeanFactoryPostProcessor grpcClientAutowireCandidateResolverRegistrar() {
+        return beanFactory -> {
+            if (beanFactory instanceof DefaultListableBeanFactory) {
+                final DefaultListableBeanFactory factory = (DefaultListableBeanFactory) beanFactory;
+                if (factory.getAutowireCandidateResolver().getClass() == ContextAnnotationAutowireCandidateResolver.class) {
+                    factory.setAutowireCandidateResolver(new GrpcClientAutowireCandidateResolver(factory.getBean(GrpcStubFactory.class)));
+                    return;
+                }
+            }
+            LOG.warn("@GrpcClient constructor injection is not available, only field injection is supported");
+        };
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.autoconfigure;
+
+import com.sunyard.compression.CompressionProperties;
+import com.sunyard.compression.CompressionRules;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Grpc compression configuration.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(value = "grpc.compression.enabled", havingValue = "true")
+@EnableConfigurationProperties(CompressionProperties.class)
+public class GrpcCompressionAutoConfiguration {
+
+    /**
+     * 创建压缩规则, 由GrpcClientOptions带给channel按规则压缩请求, 同时用于grpc server.
+     *
+     * @param properties the compression properties
+     * @return the compression rules
+     * @throws IOException if the zstd dictionary can not be read
+     */
+    @Bean
+    public CompressionRules grpcCompressionRules(final CompressionProperties properties) throws IOException {
+        return new CompressionRules(properties);
+    }
+}
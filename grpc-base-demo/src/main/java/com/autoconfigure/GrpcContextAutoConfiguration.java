@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.autoconfigure;
+
+import com.sunyard.intercept.ContextPropagation;
+import com.sunyard.intercept.ContextPropagationProperties;
+import com.sunyard.intercept.ContextServerInterceptor;
+import com.sunyard.intercept.GrpcContextWebFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Grpc context propagation configuration.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(ContextPropagationProperties.class)
+public class GrpcContextAutoConfiguration {
+
+    /**
+     * 设置上下文请求头的写入方式与服务端还原的请求头.
+     *
+     * @param properties the context propagation properties
+     */
+    public GrpcContextAutoConfiguration(final ContextPropagationProperties properties) {
+        ContextPropagation.configure(properties);
+    }
+
+    /**
+     * 服务端还原上下文的拦截器,由GrpcServerRunner注册到grpc server.
+     *
+     * @return the context server interceptor
+     */
+    @Bean
+    public ContextServerInterceptor grpcContextServerInterceptor() {
+        return new ContextServerInterceptor();
+    }
+
+    /**
+     * WebFlux应用处理请求时绑定generalContext中的grpc上下文.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveWebConfiguration {
+
+        /**
+         * 请求处理期间发起的grpc调用携带上下文.
+         *
+         * @return the web filter
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        GrpcContextWebFilter grpcContextWebFilter() {
+            return new GrpcContextWebFilter();
+        }
+    }
+}
@@ -17,8 +17,22 @@
 
 package com.autoconfigure;
 
+import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
+import com.alibaba.cloud.nacos.NacosServiceManager;
+import com.alibaba.nacos.api.naming.NamingService;
 import com.sunyard.loadbalance.resolver.DiscoveryClientResolverProvider;
+import com.sunyard.loadbalance.resolver.DiscoveryResolverProperties;
+import com.sunyard.loadbalance.resolver.FileResolverProvider;
+import com.sunyard.loadbalance.resolver.StaticResolverProvider;
+import com.sunyard.loadbalance.resolver.watch.DiscoveryWatcher;
+import com.sunyard.loadbalance.resolver.watch.NacosDiscoveryWatcher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,11 +45,56 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration(proxyBeanMethods = false)
 //@ConditionalOnBean(DiscoveryClient.class)
+@AutoConfigureAfter(name = {"com.alibaba.cloud.nacos.NacosServiceAutoConfiguration",
+        "com.alibaba.cloud.nacos.discovery.NacosDiscoveryAutoConfiguration"})
+@EnableConfigurationProperties(DiscoveryResolverProperties.class)
 public class GrpcDiscoveryClientAutoConfiguration {
 
     @ConditionalOnMissingBean
     @Bean
-    DiscoveryClientResolverProvider grpcDiscoveryClientResolverFactory(final DiscoveryClient client) {
-        return new DiscoveryClientResolverProvider(client);
+    DiscoveryClientResolverProvider grpcDiscoveryClientResolverFactory(final DiscoveryClient client,
+                                                                        final ObjectProvider<DiscoveryWatcher> watcher,
+                                                                        final DiscoveryResolverProperties properties) {
+        return new DiscoveryClientResolverProvider(client, watcher.getIfUnique(), properties);
+    }
+
+    /**
+     * static:///host:port,host:port 形式的固定地址, 无需注册中心.
+     *
+     * @return the static resolver provider
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    StaticResolverProvider grpcStaticResolverProvider() {
+        return new StaticResolverProvider();
+    }
+
+    /**
+     * file:///path/to/endpoints 形式的地址文件, 文件变化时自动更新.
+     *
+     * @param properties the resolver properties
+     * @return the file resolver provider
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    FileResolverProvider grpcFileResolverProvider(final DiscoveryResolverProperties properties) {
+        return new FileResolverProvider(properties.getFileWatchInterval());
+    }
+
+    /**
+     * Nacos订阅推送服务实例变化, grpc.discovery.watch.enabled=false 时退回心跳触发的轮询.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(NamingService.class)
+    @ConditionalOnBean({NacosServiceManager.class, NacosDiscoveryProperties.class})
+    @ConditionalOnProperty(value = "grpc.discovery.watch.enabled", matchIfMissing = true)
+    static class NacosWatchConfiguration {
+
+        @ConditionalOnMissingBean
+        @Bean
+        DiscoveryWatcher grpcNacosDiscoveryWatcher(final NacosServiceManager nacosServiceManager,
+                                                   final NacosDiscoveryProperties discoveryProperties) {
+            return new NacosDiscoveryWatcher(nacosServiceManager, discoveryProperties);
+        }
     }
 }
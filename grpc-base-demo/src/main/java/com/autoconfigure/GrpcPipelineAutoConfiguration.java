@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.autoconfigure;
+
+import com.sunyard.pipeline.PipelineProperties;
+import com.sunyard.pipeline.PipelineServerDispatcher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Grpc unary pipelining configuration.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(value = "grpc.pipeline.enabled", havingValue = "true")
+@EnableConfigurationProperties(PipelineProperties.class)
+public class GrpcPipelineAutoConfiguration {
+
+    /**
+     * 服务端的pipeline分发器,由GrpcServerRunner注册到grpc server.
+     *
+     * @param properties the pipeline properties
+     * @return the pipeline server dispatcher
+     */
+    @Bean
+    public PipelineServerDispatcher grpcPipelineServerDispatcher(final PipelineProperties properties) {
+        return new PipelineServerDispatcher(properties);
+    }
+}
@@ -17,19 +17,37 @@
 
 package com.autoconfigure;
 
+import com.sunyard.compression.CompressionRules;
+import com.sunyard.intercept.ContextServerInterceptor;
+import com.sunyard.marshaller.LargeMessageMarshallers;
+import com.sunyard.pipeline.PipelineServerDispatcher;
 import com.sunyard.server.GrpcClientEventListener;
+import com.sunyard.server.GrpcServerAcceptorProperties;
 import com.sunyard.server.GrpcServerBuilder;
 import com.sunyard.server.GrpcServerRunner;
+import com.sunyard.server.GrpcServerShutdownProperties;
+import com.sunyard.server.metrics.ServerMetrics;
+import com.sunyard.server.warmup.GrpcServerWarmup;
+import com.sunyard.server.warmup.GrpcServerWarmupProperties;
+import com.sunyard.server.warmup.WarmupRequestProvider;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.cloud.client.serviceregistry.ServiceRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.stream.Collectors;
+
 /**
  * Grpc type client bean postprocessor.
  */
 @Configuration
 @ConditionalOnProperty(value = "grpc.server.runner.enabled", havingValue = "true")
+@EnableConfigurationProperties({GrpcServerShutdownProperties.class, GrpcServerWarmupProperties.class,
+        GrpcServerAcceptorProperties.class})
 public class GrpcServerConfiguration {
 
     /**
@@ -42,16 +60,70 @@ public class GrpcServerConfiguration {
         return new GrpcClientEventListener();
     }
 
+    /**
+     * Grpc server per method metrics, 默认开启, grpc.server.metrics.enabled=false关闭.
+     *
+     * @return the server metrics
+     */
+    @Bean
+    @ConditionalOnProperty(value = "grpc.server.metrics.enabled", matchIfMissing = true)
+    public ServerMetrics grpcServerMetrics() {
+        return new ServerMetrics();
+    }
+
     /**
      * Grpc Server.
      *
      * @param grpcServerBuilder       grpcServerBuilder
      * @param grpcClientEventListener grpcClientEventListener
+     * @param compressionRules        compressionRules
+     * @param pipelineDispatcher      pipelineDispatcher
+     * @param shutdownProperties      shutdownProperties
+     * @param acceptorProperties      acceptorProperties
+     * @param serverMetrics           serverMetrics
+     * @param contextInterceptor      contextInterceptor
+     * @param largeMessage            largeMessage
+     * @param serviceRegistry         serviceRegistry, 关闭时先注销实例
+     * @param registration            registration
      * @return the grpc server
      */
     @Bean
     public GrpcServerRunner grpcServer(@Autowired(required = false) final GrpcServerBuilder grpcServerBuilder,
-                                       final GrpcClientEventListener grpcClientEventListener) {
-        return new GrpcServerRunner(grpcServerBuilder, grpcClientEventListener);
+                                       final GrpcClientEventListener grpcClientEventListener,
+                                       final ObjectProvider<CompressionRules> compressionRules,
+                                       final ObjectProvider<PipelineServerDispatcher> pipelineDispatcher,
+                                       final GrpcServerShutdownProperties shutdownProperties,
+                                       final GrpcServerAcceptorProperties acceptorProperties,
+                                       final ObjectProvider<ServerMetrics> serverMetrics,
+                                       final ObjectProvider<ContextServerInterceptor> contextInterceptor,
+                                       final ObjectProvider<LargeMessageMarshallers> largeMessage,
+                                       final ObjectProvider<ServiceRegistry<Registration>> serviceRegistry,
+                                       final ObjectProvider<Registration> registration) {
+        final GrpcServerRunner grpcServerRunner = new GrpcServerRunner(grpcServerBuilder, grpcClientEventListener);
+        grpcServerRunner.setCompressionRules(compressionRules.getIfAvailable());
+        grpcServerRunner.setPipelineDispatcher(pipelineDispatcher.getIfAvailable());
+        grpcServerRunner.setShutdownProperties(shutdownProperties);
+        grpcServerRunner.setAcceptorProperties(acceptorProperties);
+        grpcServerRunner.setServerMetrics(serverMetrics.getIfAvailable());
+        grpcServerRunner.setContextInterceptor(contextInterceptor.getIfAvailable());
+        grpcServerRunner.setLargeMessageMarshallers(largeMessage.getIfAvailable());
+        grpcServerRunner.setServiceRegistration(serviceRegistry.getIfAvailable(), registration.getIfAvailable());
+        return grpcServerRunner;
+    }
+
+    /**
+     * Grpc server warm-up, 在实例注册之前重放样例请求.
+     *
+     * @param grpcServerRunner grpcServerRunner
+     * @param properties       properties
+     * @param providers        sample request providers
+     * @return the grpc server warm-up
+     */
+    @Bean
+    @ConditionalOnProperty(value = "grpc.server.warmup.enabled", havingValue = "true")
+    public GrpcServerWarmup grpcServerWarmup(final GrpcServerRunner grpcServerRunner,
+                                             final GrpcServerWarmupProperties properties,
+                                             final ObjectProvider<WarmupRequestProvider> providers) {
+        return new GrpcServerWarmup(grpcServerRunner, properties, providers.orderedStream().collect(Collectors.toList()));
     }
 }
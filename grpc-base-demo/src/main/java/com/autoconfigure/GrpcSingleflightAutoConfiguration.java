@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.autoconfigure;
+
+import com.sunyard.singleflight.SingleflightClientInterceptor;
+import com.sunyard.singleflight.SingleflightProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Grpc client singleflight configuration.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(value = "grpc.singleflight.enabled", havingValue = "true")
+@EnableConfigurationProperties(SingleflightProperties.class)
+public class GrpcSingleflightAutoConfiguration {
+
+    /**
+     * 创建singleflight拦截器, 由GrpcClientOptions带给channel合并相同的在途unary请求.
+     *
+     * @param properties the singleflight properties
+     * @return the singleflight client interceptor
+     */
+    @Bean
+    public SingleflightClientInterceptor grpcSingleflightClientInterceptor(final SingleflightProperties properties) {
+        return new SingleflightClientInterceptor(properties);
+    }
+}
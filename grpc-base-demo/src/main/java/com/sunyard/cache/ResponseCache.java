@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Grpc client response cache.
+ * 基于Caffeine(W-TinyLFU)按请求与响应的字节数加权限制内存,每个方法使用各自的TTL.
+ * 缓存的key包含调用的rpc上下文与配置的请求头, 响应只返回给上下文相同的调用.
+ * 命中时在CallOptions没有指定executor时使用grpc共享的channel executor回调listener, close时释放.
+ */
+public class ResponseCache implements AutoCloseable {
+
+    private static final long NOT_CACHEABLE = -1L;
+
+    /**
+     * 每个缓存项除请求和响应字节外的估算开销.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final ResponseCacheProperties properties;
+
+    private final Cache<CacheKey, CachedResponse> cache;
+
+    /**
+     * key为full method name, value为TTL纳秒数或NOT_CACHEABLE.
+     */
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+
+    private final Map<String, MethodStats> methodStats = new ConcurrentHashMap<>();
+
+    private final List<Metadata.Key<String>> metadataKeys = new ArrayList<>();
+
+    private volatile Executor callbackExecutor;
+
+    /**
+     * Instantiates a new Response cache.
+     *
+     * @param properties the properties
+     */
+    public ResponseCache(final ResponseCacheProperties properties) {
+        this.properties = properties;
+        for (String key : properties.getMetadataKeys()) {
+            this.metadataKeys.add(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER));
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumWeight())
+                .<CacheKey, CachedResponse>weigher((key, value) -> key.weight() + value.weight)
+                .expireAfter(new Expiry<CacheKey, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(final CacheKey key, final CachedResponse value, final long currentTime) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(final CacheKey key, final CachedResponse value, final long currentTime,
+                                                  final long currentDuration) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(final CacheKey key, final CachedResponse value, final long currentTime,
+                                                final long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the TTL of the method.
+     *
+     * @param method the method
+     * @return the ttl in nanos, negative if the method is not cacheable
+     */
+    public long ttlNanos(final MethodDescriptor<?, ?> method) {
+        return ttls.computeIfAbsent(method.getFullMethodName(), name -> resolveTtl(method));
+    }
+
+    private long resolveTtl(final MethodDescriptor<?, ?> method) {
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return NOT_CACHEABLE;
+        }
+        Duration ttl = properties.getMethods().get(method.getFullMethodName());
+        if (ttl == null) {
+            ttl = properties.getMethods().get(method.getServiceName());
+        }
+        if (ttl == null && method.isSafe()) {
+            ttl = properties.getSafeMethodTtl();
+        }
+        return ttl == null || ttl.isZero() || ttl.isNegative() ? NOT_CACHEABLE : ttl.toNanos();
+    }
+
+    /**
+     * Creates the cache key of a call.
+     *
+     * @param fullMethodName the full method name
+     * @param request        the serialized request
+     * @param headers        the request headers, nullable
+     * @param rpcContext     the rpc context of the call, nullable
+     * @return the cache key
+     */
+    public CacheKey key(final String fullMethodName, final ByteString request, final Metadata headers,
+                        final Map<String, String> rpcContext) {
+        final String[] values = new String[metadataKeys.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = headers == null ? null : headers.get(metadataKeys.get(i));
+        }
+        return new CacheKey(fullMethodName, request, values, rpcContext);
+    }
+
+    /**
+     * Gets cached response.
+     *
+     * @param key the key
+     * @param <P> response type
+     * @return the cached response, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public <P> P get(final CacheKey key) {
+        final CachedResponse cached = cache.getIfPresent(key);
+        final MethodStats stats = methodStats.computeIfAbsent(key.fullMethodName, name -> new MethodStats());
+        if (cached == null) {
+            stats.misses.increment();
+            return null;
+        }
+        stats.hits.increment();
+        return (P) cached.response;
+    }
+
+    /**
+     * Put a response.
+     *
+     * @param key      the key
+     * @param response the response
+     * @param ttlNanos the ttl in nanos
+     */
+    public void put(final CacheKey key, final Object response, final long ttlNanos) {
+        if (!(response instanceof MessageLite)) {
+            return;
+        }
+        cache.put(key, new CachedResponse(response, ((MessageLite) response).getSerializedSize(), ttlNanos));
+    }
+
+    /**
+     * Gets cache stats, including hits, misses and evictions.
+     *
+     * @return the cache stats
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Gets per method stats.
+     *
+     * @return method stats keyed by full method name
+     */
+    public Map<String, MethodStats> getMethodStats() {
+        return Collections.unmodifiableMap(methodStats);
+    }
+
+    /**
+     * Gets current weight of the cache.
+     *
+     * @return the total bytes of cached entries
+     */
+    public long weightedSize() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    /**
+     * Gets the executor used to deliver cached responses when the call options have no executor.
+     *
+     * @return the shared channel executor
+     */
+    public Executor getCallbackExecutor() {
+        Executor executor = callbackExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = callbackExecutor;
+                if (executor == null) {
+                    executor = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+                    callbackExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Release the shared channel executor.
+     */
+    @Override
+    public synchronized void close() {
+        if (callbackExecutor != null) {
+            SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR, callbackExecutor);
+            callbackExecutor = null;
+        }
+    }
+
+    /**
+     * Invalidate all cached responses.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Cache key, full method name + serialized request bytes + header values + rpc context.
+     */
+    public static final class CacheKey {
+
+        private final String fullMethodName;
+
+        private final ByteString request;
+
+        private final String[] metadataValues;
+
+        private final Map<String, String> rpcContext;
+
+        private final int hash;
+
+        /**
+         * Instantiates a new Cache key.
+         *
+         * @param fullMethodName full method name
+         * @param request        serialized request
+         * @param metadataValues values of the configured headers
+         * @param rpcContext     the rpc context, nullable
+         */
+        public CacheKey(final String fullMethodName, final ByteString request, final String[] metadataValues,
+                        final Map<String, String> rpcContext) {
+            this.fullMethodName = fullMethodName;
+            this.request = request;
+            this.metadataValues = metadataValues;
+            this.rpcContext = rpcContext == null ? Collections.emptyMap() : rpcContext;
+            this.hash = 31 * (31 * (31 * fullMethodName.hashCode() + request.hashCode()) + Arrays.hashCode(metadataValues))
+                    + this.rpcContext.hashCode();
+        }
+
+        int weight() {
+            int weight = request.size() + fullMethodName.length() + ENTRY_OVERHEAD;
+            for (String value : metadataValues) {
+                weight += value == null ? 0 : value.length();
+            }
+            for (Map.Entry<String, String> entry : rpcContext.entrySet()) {
+                weight += entry.getKey().length() + entry.getValue().length();
+            }
+            return weight;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return hash == that.hash && fullMethodName.equals(that.fullMethodName) && request.equals(that.request)
+                    && Arrays.equals(metadataValues, that.metadataValues) && rpcContext.equals(that.rpcContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Hit and miss counters of a method.
+     */
+    public static final class MethodStats {
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+    }
+
+    private static final class CachedResponse {
+
+        private final Object response;
+
+        private final int weight;
+
+        private final long ttlNanos;
+
+        CachedResponse(final Object response, final int weight, final long ttlNanos) {
+            this.response = response;
+            this.weight = weight;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
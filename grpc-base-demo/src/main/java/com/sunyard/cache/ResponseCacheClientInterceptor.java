@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.cache;
+
+import com.google.protobuf.MessageLite;
+import com.sunyard.intercept.ContextClientInterceptor;
+import com.sunyard.intercept.ContextPropagation;
+import com.sunyard.utils.SerializingExecutor;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Response cache client interceptor.
+ * 可缓存的unary方法在发送请求前以 方法名 + 请求序列化字节 + rpc上下文与配置的请求头 查找缓存,命中时直接返回缓存的响应而不发起rpc,
+ * 未命中时发起rpc并在调用成功后缓存响应.
+ * <p>
+ * 命中时listener的回调与真正的调用一样在executor上串行执行, 不在ClientCall的方法中重入listener,
+ * 响应消息等到调用方request后才投递.
+ */
+public class ResponseCacheClientInterceptor implements ClientInterceptor {
+
+    private final ResponseCache cache;
+
+    public ResponseCacheClientInterceptor(final ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+        final long ttlNanos = cache.ttlNanos(methodDescriptor);
+        if (ttlNanos < 0) {
+            return channel.newCall(methodDescriptor, callOptions);
+        }
+        return new CachingClientCall<>(methodDescriptor, callOptions, channel, ttlNanos);
+    }
+
+    /**
+     * 延迟到sendMessage拿到请求后才决定使用缓存还是发起真正的调用.
+     * cancel可能来自其他线程, 状态的变更与delegate的创建在同一把锁中完成.
+     */
+    private final class CachingClientCall<R, P> extends ClientCall<R, P> {
+
+        private final MethodDescriptor<R, P> method;
+
+        private final CallOptions callOptions;
+
+        private final Channel channel;
+
+        private final long ttlNanos;
+
+        private final Executor callbackExecutor;
+
+        private Listener<P> listener;
+
+        private Metadata headers;
+
+        private Map<String, String> rpcContext;
+
+        private int requested;
+
+        private Boolean messageCompression;
+
+        private volatile ClientCall<R, P> delegate;
+
+        private P cachedResponse;
+
+        private boolean halfClosed;
+
+        /**
+         * 已投递或已安排投递onClose.
+         */
+        private boolean closed;
+
+        CachingClientCall(final MethodDescriptor<R, P> method, final CallOptions callOptions, final Channel channel,
+                          final long ttlNanos) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.channel = channel;
+            this.ttlNanos = ttlNanos;
+            final Executor executor = callOptions.getExecutor();
+            this.callbackExecutor = new SerializingExecutor(executor == null ? cache.getCallbackExecutor() : executor);
+        }
+
+        @Override
+        public void start(final Listener<P> responseListener, final Metadata headers) {
+            synchronized (this) {
+                this.listener = responseListener;
+                this.headers = headers;
+                // 上下文由ContextClientInterceptor在内层写入请求头, 或已由调用方(如ReactorCalls)写入请求头
+                final Map<String, String> current = ContextClientInterceptor.RPC_CONTEXT_KEY.get();
+                this.rpcContext = current == null || current.isEmpty() ? ContextPropagation.read(headers) : current;
+            }
+        }
+
+        @Override
+        public void request(final int numMessages) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    requested += numMessages;
+                    deliverCachedResponse();
+                    return;
+                }
+            }
+            call.request(numMessages);
+        }
+
+        @Override
+        public void cancel(final String message, final Throwable cause) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    if (listener != null) {
+                        final Listener<P> responseListener = listener;
+                        final Status status = Status.CANCELLED.withDescription(message).withCause(cause);
+                        callbackExecutor.execute(() -> responseListener.onClose(status, new Metadata()));
+                    }
+                    return;
+                }
+            }
+            call.cancel(message, cause);
+        }
+
+        @Override
+        public void halfClose() {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    halfClosed = true;
+                    deliverCachedResponse();
+                    return;
+                }
+            }
+            call.halfClose();
+        }
+
+        @Override
+        public void sendMessage(final R message) {
+            ClientCall<R, P> call = delegate;
+            if (call == null) {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    if (delegate == null && message instanceof MessageLite) {
+                        final ResponseCache.CacheKey key = cache.key(method.getFullMethodName(),
+                                ((MessageLite) message).toByteString(), headers, rpcContext);
+                        cachedResponse = cache.get(key);
+                        if (cachedResponse != null) {
+                            return;
+                        }
+                        call = startDelegate(key);
+                    } else {
+                        call = startDelegate(null);
+                    }
+                }
+            }
+            call.sendMessage(message);
+        }
+
+        @Override
+        public boolean isReady() {
+            final ClientCall<R, P> call = delegate;
+            return call == null || call.isReady();
+        }
+
+        @Override
+        public void setMessageCompression(final boolean enabled) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    messageCompression = enabled;
+                    return;
+                }
+            }
+            call.setMessageCompression(enabled);
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            final ClientCall<R, P> call = delegate;
+            return call == null ? Attributes.EMPTY : call.getAttributes();
+        }
+
+        /**
+         * 持有锁时调用, delegate启动后才对其他线程可见, cancel不会早于start.
+         */
+        private ClientCall<R, P> startDelegate(final ResponseCache.CacheKey key) {
+            if (delegate != null) {
+                return delegate;
+            }
+            final ClientCall<R, P> call = channel.newCall(method, callOptions);
+            call.start(key == null ? listener : new CachingListener<>(listener, key, ttlNanos), headers);
+            if (messageCompression != null) {
+                call.setMessageCompression(messageCompression);
+            }
+            if (requested > 0) {
+                call.request(requested);
+            }
+            delegate = call;
+            return call;
+        }
+
+        /**
+         * 持有锁时调用, 请求已经half close并且调用方请求了消息时投递缓存的响应.
+         */
+        private void deliverCachedResponse() {
+            if (cachedResponse == null || !halfClosed || requested <= 0 || closed) {
+                return;
+            }
+            closed = true;
+            final Listener<P> responseListener = listener;
+            final P response = cachedResponse;
+            callbackExecutor.execute(() -> {
+                responseListener.onHeaders(new Metadata());
+                responseListener.onMessage(response);
+                responseListener.onClose(Status.OK, new Metadata());
+            });
+        }
+    }
+
+    /**
+     * 调用成功后缓存响应.
+     */
+    private final class CachingListener<P> extends ForwardingClientCallListener.SimpleForwardingClientCallListener<P> {
+
+        private final ResponseCache.CacheKey key;
+
+        private final long ttlNanos;
+
+        private P response;
+
+        CachingListener(final ClientCall.Listener<P> delegate, final ResponseCache.CacheKey key, final long ttlNanos) {
+            super(delegate);
+            this.key = key;
+            this.ttlNanos = ttlNanos;
+        }
+
+        @Override
+        public void onMessage(final P message) {
+            this.response = message;
+            super.onMessage(message);
+        }
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            if (status.isOk() && response != null) {
+                cache.put(key, response, ttlNanos);
+            }
+            super.onClose(status, trailers);
+        }
+    }
+}
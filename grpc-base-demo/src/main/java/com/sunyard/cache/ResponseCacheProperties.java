@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grpc client response cache properties.
+ * <pre>
+ * grpc:
+ *   cache:
+ *     enabled: true
+ *     maximum-weight: 67108864
+ *     safe-method-ttl: 30s
+ *     methods:
+ *       "[com.sunyard.hello.HelloService/hello]": 5m
+ *     metadata-keys:
+ *       - authorization
+ *       - tenant
+ * </pre>
+ * methods的key为service name或full method name,方法级配置优先.
+ * 缓存按 方法名 + 请求 + rpc上下文 + metadata-keys中的请求头 区分, 不同租户或用户的调用不会共用缓存的响应.
+ * proto中声明了 idempotency_level = NO_SIDE_EFFECTS 的方法使用safe-method-ttl.
+ */
+@ConfigurationProperties(prefix = "grpc.cache")
+public class ResponseCacheProperties {
+
+    /**
+     * Whether the response cache is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * Maximum total bytes of cached requests and responses.
+     */
+    private long maximumWeight = 64L * 1024 * 1024;
+
+    /**
+     * TTL of methods declared as NO_SIDE_EFFECTS in proto, zero disables it.
+     */
+    private Duration safeMethodTtl = Duration.ZERO;
+
+    /**
+     * Cacheable methods and their TTL, keyed by service name or full method name.
+     */
+    private Map<String, Duration> methods = new LinkedHashMap<>();
+
+    /**
+     * Header keys that are part of the identity of a call, e.g. authorization or tenant.
+     */
+    private List<String> metadataKeys = new ArrayList<>(Collections.singletonList("authorization"));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(final long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public Duration getSafeMethodTtl() {
+        return safeMethodTtl;
+    }
+
+    public void setSafeMethodTtl(final Duration safeMethodTtl) {
+        this.safeMethodTtl = safeMethodTtl;
+    }
+
+    public Map<String, Duration> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(final Map<String, Duration> methods) {
+        this.methods = methods;
+    }
+
+    public List<String> getMetadataKeys() {
+        return metadataKeys;
+    }
+
+    public void setMetadataKeys(final List<String> metadataKeys) {
+        this.metadataKeys = metadataKeys;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.client;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the channel cache of {@link ManagedChannelManager}.
+ */
+public class ChannelCacheMetrics {
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder idleEvictions = new LongAdder();
+
+    private final LongAdder capacityEvictions = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordIdleEviction() {
+        idleEvictions.increment();
+    }
+
+    void recordCapacityEviction() {
+        capacityEvictions.increment();
+    }
+
+    /**
+     * Gets the number of lookups served by a cached channel.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that created a channel.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of channels shut down after being idle for the idle timeout.
+     *
+     * @return the idle eviction count
+     */
+    public long getIdleEvictions() {
+        return idleEvictions.sum();
+    }
+
+    /**
+     * Gets the number of least recently used channels shut down beyond the maximum number of channels.
+     *
+     * @return the capacity eviction count
+     */
+    public long getCapacityEvictions() {
+        return capacityEvictions.sum();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Channel cache properties of {@link ManagedChannelManager}.
+ * <pre>
+ * grpc:
+ *   channel-cache:
+ *     idle-timeout: 30m
+ *     max-channels: 200
+ *     sweep-interval: 30s
+ *     shutdown-timeout: 10s
+ * </pre>
+ * 默认不淘汰channel, 调用大量低频服务的网关可以按空闲时间或数量淘汰, 被淘汰的channel在下次调用时重新创建.
+ */
+@ConfigurationProperties(prefix = "grpc.channel-cache")
+public class ChannelCacheProperties {
+
+    /**
+     * Time without lookups after which a channel is shut down, null disables idle eviction.
+     */
+    private Duration idleTimeout;
+
+    /**
+     * Maximum number of cached channels, the least recently used channels are shut down beyond it, 0 means no limit.
+     */
+    private int maxChannels;
+
+    /**
+     * Interval of the idle channel sweep.
+     */
+    private Duration sweepInterval = Duration.ofSeconds(30);
+
+    /**
+     * Maximum time the in-flight calls of the channels are waited for when the application stops.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(final Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxChannels() {
+        return maxChannels;
+    }
+
+    public void setMaxChannels(final int maxChannels) {
+        this.maxChannels = maxChannels;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(final Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(final Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+}
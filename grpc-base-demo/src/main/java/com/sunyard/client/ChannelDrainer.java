@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+
+/**
+ * Shuts down the client channels of {@link ManagedChannelManager} when the application stops.
+ * 在grpc server与web server关闭之后执行, 服务端处理中的请求仍可调用下游服务.
+ */
+public class ChannelDrainer implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelDrainer.class);
+
+    /**
+     * 晚于grpc server(Integer.MAX_VALUE)与web server(Integer.MAX_VALUE - 1)关闭.
+     */
+    private static final int PHASE = Integer.MAX_VALUE - 3;
+
+    private final Duration timeout;
+
+    private volatile boolean running;
+
+    /**
+     * Instantiates a new Channel drainer.
+     *
+     * @param timeout the maximum time to wait for the in-flight calls
+     */
+    public ChannelDrainer(final Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        final int size = ManagedChannelManager.size();
+        ManagedChannelManager.shutdownAll(timeout);
+        LOG.info("Shut down {} grpc channels", size);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Channel pre-warming properties.
+ * <pre>
+ * grpc:
+ *   prewarm:
+ *     enabled: true
+ *     wait-for-ready: true
+ *     timeout: 10s
+ *     parallelism: 8
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "grpc.prewarm")
+public class ChannelPrewarmProperties {
+
+    /**
+     * Whether the channels configured under grpc.client are created at startup.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Whether the startup waits until every pre-warmed channel is READY.
+     */
+    private boolean waitForReady;
+
+    /**
+     * Maximum time the startup waits for the channels.
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    /**
+     * Maximum number of channels created concurrently.
+     */
+    private int parallelism = 8;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isWaitForReady() {
+        return waitForReady;
+    }
+
+    public void setWaitForReady(final boolean waitForReady) {
+        this.waitForReady = waitForReady;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(final Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+}
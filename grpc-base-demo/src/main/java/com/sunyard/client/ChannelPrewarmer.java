@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import com.sunyard.loadbalance.LoadBalancerStrategy;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the configured client channels at startup.
+ * 在web server启动和服务注册之前并行创建channel, 可选等待channel变为READY, 首批请求不再承担名称解析与建连的延迟.
+ * 每个channel预热结束时的状态与耗时会被记录, 供metrics接口查询.
+ */
+public class ChannelPrewarmer implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelPrewarmer.class);
+
+    /**
+     * 早于web server启动(Integer.MAX_VALUE - 1).
+     */
+    private static final int PHASE = Integer.MAX_VALUE - 2;
+
+    private final Map<String, GrpcChannelProperties> channels;
+
+    private final ChannelPrewarmProperties properties;
+
+    private final Map<String, ConnectivityState> channelStates = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> channelMillis = new ConcurrentHashMap<>();
+
+    private volatile long durationMillis = -1L;
+
+    private volatile boolean timedOut;
+
+    private volatile boolean running;
+
+    /**
+     * Instantiates a new Channel prewarmer.
+     *
+     * @param channels   the channels keyed by client name
+     * @param properties the prewarm properties
+     */
+    public ChannelPrewarmer(final Map<String, GrpcChannelProperties> channels, final ChannelPrewarmProperties properties) {
+        this.channels = channels;
+        this.properties = properties;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (channels.isEmpty()) {
+            durationMillis = 0L;
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + properties.getTimeout().toNanos();
+        final AtomicInteger threadIndex = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(properties.getParallelism(), channels.size())), r -> {
+                    final Thread thread = new Thread(r, "grpc-channel-prewarm-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>(channels.size());
+            for (Map.Entry<String, GrpcChannelProperties> entry : channels.entrySet()) {
+                futures.add(CompletableFuture.runAsync(() -> warm(entry.getKey(), entry.getValue(), deadlineNanos),
+                        executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            LOG.info("Pre-warmed {} grpc channels in {} ms", channels.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (TimeoutException e) {
+            timedOut = true;
+            LOG.warn("Timed out pre-warming grpc channels after {}", properties.getTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warn("Failed to pre-warm grpc channels", e);
+        } finally {
+            durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            executor.shutdownNow();
+        }
+    }
+
+    private void warm(final String name, final GrpcChannelProperties channel, final long deadlineNanos) {
+        final long startNanos = System.nanoTime();
+        final String loadBalance = StringUtils.hasText(channel.getLoadBalance())
+                ? channel.getLoadBalance() : LoadBalancerStrategy.ROUND_ROBIN.getStrategy();
+        ManagedChannelManager.initGrpcClient(name, loadBalance);
+        final ManagedChannel managedChannel = ManagedChannelManager.getGrpcClient(name);
+        try {
+            if (!properties.isWaitForReady()) {
+                managedChannel.getState(true);
+                return;
+            }
+            if (awaitReady(managedChannel, deadlineNanos)) {
+                LOG.info("grpc channel {} is READY", name);
+            } else {
+                LOG.warn("grpc channel {} is not READY within {}, state: {}", name, properties.getTimeout(),
+                        managedChannel.getState(false));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channelMillis.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            channelStates.put(name, managedChannel.getState(false));
+        }
+    }
+
+    private static boolean awaitReady(final ManagedChannel channel, final long deadlineNanos)
+            throws InterruptedException {
+        ConnectivityState state = channel.getState(true);
+        while (state != ConnectivityState.READY) {
+            if (state == ConnectivityState.SHUTDOWN) {
+                return false;
+            }
+            final CountDownLatch changed = new CountDownLatch(1);
+            channel.notifyWhenStateChanged(state, changed::countDown);
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0 || !changed.await(remainingNanos, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+            state = channel.getState(true);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the state of each pre-warmed channel when its pre-warming finished.
+     *
+     * @return the states keyed by client name
+     */
+    public Map<String, ConnectivityState> getChannelStates() {
+        return Collections.unmodifiableMap(channelStates);
+    }
+
+    /**
+     * Gets the time spent pre-warming each channel.
+     *
+     * @return the milliseconds keyed by client name
+     */
+    public Map<String, Long> getChannelMillis() {
+        return Collections.unmodifiableMap(channelMillis);
+    }
+
+    /**
+     * Gets the time spent pre-warming all channels.
+     *
+     * @return the milliseconds, -1 if pre-warming has not finished
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Checks whether pre-warming stopped at the timeout.
+     *
+     * @return true if not all channels finished within the timeout
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Channel properties of a grpc client, bound from {@code grpc.client.<name>}.
+ * <pre>
+ * grpc:
+ *   client:
+ *     cloud-grpc-server:
+ *       address: 'discovery:///cloud-grpc-server'
+ *       load-balance: round_robin
+ *       keep-alive-time: 30s
+ *       keep-alive-timeout: 5s
+ *       idle-timeout: 10m
+ *       flow-control-window: 4MB
+ *       bdp-auto-tuning: true
+ *       max-inbound-message-size: 100MB
+ *       max-inbound-metadata-size: 8KB
+ *       executor: dedicated
+ *       executor-threads: 16
+ * </pre>
+ * name为{@link ManagedChannelManager}中channel的key, 配置了address的channel在启动时预热.
+ * 未配置的传输参数使用grpc的默认值, 大批量传输与低延迟查询的服务可以分别调整.
+ */
+public class GrpcChannelProperties {
+
+    /**
+     * Target of the channel, e.g. discovery:///service, static:///host:port or file:///path. Defaults to the
+     * discovery target of the client name.
+     */
+    private String address;
+
+    /**
+     * Load balancing strategy, see {@link com.sunyard.loadbalance.LoadBalancerStrategy}.
+     */
+    private String loadBalance;
+
+    /**
+     * Interval of keepalive pings, null disables keepalive.
+     */
+    private Duration keepAliveTime;
+
+    /**
+     * Time to wait for a keepalive ping ack before closing the connection.
+     */
+    private Duration keepAliveTimeout;
+
+    /**
+     * Whether keepalive pings are sent when there is no outstanding rpc.
+     */
+    private Boolean keepAliveWithoutCalls;
+
+    /**
+     * Time without rpcs after which the channel goes idle and closes its connections.
+     */
+    private Duration idleTimeout;
+
+    /**
+     * HTTP/2 flow control window of each stream and connection.
+     */
+    private DataSize flowControlWindow;
+
+    /**
+     * Whether the flow control window is auto-tuned from the bandwidth-delay product, flow-control-window is then
+     * only the initial window.
+     */
+    private boolean bdpAutoTuning = true;
+
+    /**
+     * Maximum size of a received message.
+     */
+    private DataSize maxInboundMessageSize = DataSize.ofMegabytes(100);
+
+    /**
+     * Maximum size of received headers and trailers.
+     */
+    private DataSize maxInboundMetadataSize;
+
+    /**
+     * Executor of the call listeners.
+     */
+    private ExecutorType executor = ExecutorType.SHARED;
+
+    /**
+     * Number of threads of the dedicated executor.
+     */
+    private int executorThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(final String address) {
+        this.address = address;
+    }
+
+    public String getLoadBalance() {
+        return loadBalance;
+    }
+
+    public void setLoadBalance(final String loadBalance) {
+        this.loadBalance = loadBalance;
+    }
+
+    public Duration getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    public void setKeepAliveTime(final Duration keepAliveTime) {
+        this.keepAliveTime = keepAliveTime;
+    }
+
+    public Duration getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(final Duration keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public Boolean getKeepAliveWithoutCalls() {
+        return keepAliveWithoutCalls;
+    }
+
+    public void setKeepAliveWithoutCalls(final Boolean keepAliveWithoutCalls) {
+        this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(final Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public DataSize getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    public void setFlowControlWindow(final DataSize flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    public boolean isBdpAutoTuning() {
+        return bdpAutoTuning;
+    }
+
+    public void setBdpAutoTuning(final boolean bdpAutoTuning) {
+        this.bdpAutoTuning = bdpAutoTuning;
+    }
+
+    public DataSize getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    public void setMaxInboundMessageSize(final DataSize maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public DataSize getMaxInboundMetadataSize() {
+        return maxInboundMetadataSize;
+    }
+
+    public void setMaxInboundMetadataSize(final DataSize maxInboundMetadataSize) {
+        this.maxInboundMetadataSize = maxInboundMetadataSize;
+    }
+
+    public ExecutorType getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(final ExecutorType executor) {
+        this.executor = executor;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(final int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    /**
+     * Executor of the call listeners.
+     */
+    public enum ExecutorType {
+
+        /**
+         * grpc的共享缓存线程池.
+         */
+        SHARED,
+
+        /**
+         * 在传输线程中直接执行, 仅适用于不阻塞的回调.
+         */
+        DIRECT,
+
+        /**
+         * channel独享的固定大小线程池, 与其他服务隔离.
+         */
+        DEDICATED
+    }
+}
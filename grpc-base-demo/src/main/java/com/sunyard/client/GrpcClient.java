@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Inject a grpc stub of the given service. 标注在字段或构造器参数上,支持的类型:
+ * <ul>
+ *     <li>生成代码中的stub, 如 HelloServiceBlockingStub、HelloServiceFutureStub、HelloServiceStub</li>
+ *     <li>{@link GrpcCompletableStub}, 基于future stub返回CompletableFuture</li>
+ *     <li>{@link com.sunyard.client.reactive.ReactorGrpcStub}</li>
+ *     <li>{@link io.grpc.Channel}</li>
+ * </ul>
+ * 相同服务、类型和默认CallOptions的stub只创建一次,每次调用时从{@link ManagedChannelManager}取当前的channel.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface GrpcClient {
+
+    /**
+     * Grpc server name.
+     *
+     * @return the server name
+     */
+    String value();
+
+    /**
+     * Load balance strategy used when the channel is created, see {@link com.sunyard.loadbalance.LoadBalancerStrategy}.
+     *
+     * @return the load balance strategy
+     */
+    String loadBalance() default "";
+
+    /**
+     * Default deadline of each call in milliseconds, 0 means no deadline.
+     *
+     * @return the deadline
+     */
+    long deadlineMillis() default 0L;
+
+    /**
+     * Default request compression, e.g. gzip, empty means no compression.
+     *
+     * @return the compressor name
+     */
+    String compression() default "";
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * Resolve constructor and method parameters annotated with {@link GrpcClient}.
+ */
+public class GrpcClientAutowireCandidateResolver extends ContextAnnotationAutowireCandidateResolver {
+
+    private final GrpcStubFactory stubFactory;
+
+    /**
+     * Instantiates a new Grpc client autowire candidate resolver.
+     *
+     * @param stubFactory the stub factory
+     */
+    public GrpcClientAutowireCandidateResolver(final GrpcStubFactory stubFactory) {
+        this.stubFactory = stubFactory;
+    }
+
+    @Override
+    public Object getSuggestedValue(final DependencyDescriptor descriptor) {
+        if (descriptor.getMethodParameter() != null) {
+            for (Annotation annotation : descriptor.getAnnotations()) {
+                if (annotation instanceof GrpcClient) {
+                    return stubFactory.getStub((GrpcClient) annotation, descriptor.getResolvableType());
+                }
+            }
+        }
+        return super.getSuggestedValue(descriptor);
+    }
+}
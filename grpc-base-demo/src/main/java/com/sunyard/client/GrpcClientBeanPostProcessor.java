@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.PropertyValues;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inject stubs into fields annotated with {@link GrpcClient}.
+ * 与AutowiredAnnotationBeanPostProcessor相同, 每个类的注入字段只查找一次并缓存, 之后创建的bean直接使用缓存.
+ */
+public class GrpcClientBeanPostProcessor implements InstantiationAwareBeanPostProcessor {
+
+    private final GrpcStubFactory stubFactory;
+
+    /**
+     * key为bean的类, value为标注了{@link GrpcClient}的字段, 没有时为空列表.
+     */
+    private final Map<Class<?>, List<Field>> injectionFieldsCache = new ConcurrentHashMap<>(256);
+
+    /**
+     * Instantiates a new Grpc client bean post processor.
+     *
+     * @param stubFactory the stub factory
+     */
+    public GrpcClientBeanPostProcessor(final GrpcStubFactory stubFactory) {
+        this.stubFactory = stubFactory;
+    }
+
+    @Override
+    public PropertyValues postProcessProperties(final PropertyValues pvs, final Object bean, final String beanName) throws BeansException {
+        for (Field field : injectionFields(bean.getClass())) {
+            inject(bean, beanName, field);
+        }
+        return pvs;
+    }
+
+    private List<Field> injectionFields(final Class<?> beanClass) {
+        final List<Field> cached = injectionFieldsCache.get(beanClass);
+        if (cached != null) {
+            return cached;
+        }
+        return injectionFieldsCache.computeIfAbsent(beanClass, type -> {
+            final List<Field> fields = new ArrayList<>();
+            ReflectionUtils.doWithFields(type, field -> {
+                ReflectionUtils.makeAccessible(field);
+                fields.add(field);
+            }, field -> !Modifier.isStatic(field.getModifiers()) && field.isAnnotationPresent(GrpcClient.class));
+            return fields.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(fields);
+        });
+    }
+
+    private void inject(final Object bean, final String beanName, final Field field) {
+        final GrpcClient annotation = field.getAnnotation(GrpcClient.class);
+        try {
+            final Object stub = stubFactory.getStub(annotation, ResolvableType.forField(field));
+            ReflectionUtils.setField(field, bean, stub);
+        } catch (IllegalStateException e) {
+            throw new BeanCreationException(beanName, "Failed to inject @GrpcClient field " + field.getName(), e);
+        }
+    }
+}
@@ -17,19 +17,38 @@
 
 package com.sunyard.client;
 
+import com.sunyard.cache.ResponseCache;
+import com.sunyard.cache.ResponseCacheClientInterceptor;
+import com.sunyard.compression.CompressionClientInterceptor;
+import com.sunyard.compression.CompressionRules;
+import com.sunyard.intercept.CallStartClientInterceptor;
 import com.sunyard.intercept.ContextClientInterceptor;
+import com.sunyard.intercept.LargeMessageClientInterceptor;
 import com.sunyard.loadbalance.LoadBalancerStrategy;
+import com.sunyard.marshaller.LargeMessageMarshallers;
 import com.sunyard.loadbalance.RandomLoadBalancerProvider;
 import com.sunyard.loadbalance.RoundRobinLoadBalancerProvider;
+import com.sunyard.pipeline.PipelineClientInterceptor;
+import com.sunyard.pipeline.PipelineProperties;
+import com.sunyard.singleflight.SingleflightClientInterceptor;
+import io.grpc.ConnectivityState;
 import io.grpc.LoadBalancerRegistry;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import io.netty.util.internal.StringUtil;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +59,9 @@ public final class GrpcClientBuilder {
 
     private static final String DISCOVERY_SCHEMA = "discovery:///";
 
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private static final long TERMINATION_CHECK_MILLIS = 100L;
 
     static {
         // 将自定义的负载策略注入到grpc的负载注册器中供后面grpc负载调用时查找对应的负载提供器
@@ -55,9 +77,12 @@ public final class GrpcClientBuilder {
     /**
      * Build the client channel.
      *
+     * @param contextPath grpc server name or the client name under grpc.client
+     * @param loadBalance {@link LoadBalancerStrategy#getStrategy()}
+     * @param options     client options
      * @return ManagedChannel
      */
-    public static ManagedChannel buildClientChannel(String contextPath, String loadBalance) {
+    public static ManagedChannel buildClientChannel(String contextPath, String loadBalance, final GrpcClientOptions options) {
 
         if (StringUtil.isNullOrEmpty(loadBalance)) {
             loadBalance = LoadBalancerStrategy.RANDOM.getStrategy();
@@ -70,25 +95,146 @@ public final class GrpcClientBuilder {
             }
         }
 
-        if (!contextPath.contains(DISCOVERY_SCHEMA)) {
-            contextPath = "discovery:///" + contextPath;
+        final String clientName = contextPath;
+        final GrpcChannelProperties profile = options.getChannelProperties(clientName);
+        if (!StringUtil.isNullOrEmpty(profile.getAddress())) {
+            contextPath = profile.getAddress();
+        }
+        // 没有指定scheme时使用注册中心, static:///与file:///等target直接使用
+        if (!contextPath.contains(SCHEME_SEPARATOR)) {
+            contextPath = DISCOVERY_SCHEMA + contextPath;
+        }
+        // build channel to server with server's address "discovery:///serverName"
+        final NettyChannelBuilder nettyBuilder = NettyChannelBuilder.forTarget(contextPath);
+        final ExecutorService dedicatedExecutor = applyProfile(nettyBuilder, clientName, profile);
+        ManagedChannelBuilder<?> builder = nettyBuilder;
+        final PipelineProperties pipeline = options.getPipelineProperties();
+        PipelineClientInterceptor pipelineInterceptor = null;
+        if (pipeline != null && !pipeline.getMethods().isEmpty()) {
+            // 最先注册,位于拦截器链的最内层,其他拦截器设置的请求头随帧发送
+            pipelineInterceptor = new PipelineClientInterceptor(pipeline);
+            builder.intercept(pipelineInterceptor);
+        }
+        // 紧邻最内层注册,记录调用进入channel的时间,picker的telemetry据此计算排队时间
+        builder.intercept(new CallStartClientInterceptor());
+        final LargeMessageMarshallers largeMessage = options.getLargeMessageMarshallers();
+        if (largeMessage != null && !largeMessage.isEmpty()) {
+            // 配置的大报文方法使用aliasing marshaller解析响应
+            builder.intercept(new LargeMessageClientInterceptor(largeMessage));
         }
-        ManagedChannelBuilder<?> builder = ManagedChannelBuilder
-                // build channel to server with server's address "discovery:///serverName"
-                .forTarget(contextPath)
+        builder
                 // 设置拦截器
                 .intercept(new ContextClientInterceptor())
                 // 设置默认的负载规则
                 .defaultLoadBalancingPolicy(loadBalance)
                 // 不会再去尝试升级http1
                 .usePlaintext()
-                // 消息传输大小限制
-                .maxInboundMessageSize(100 * 1024 * 1024)
                 // 关闭重试
                 .disableRetry();
+        final CompressionRules rules = options.getCompressionRules();
+        if (rules != null) {
+            // 按方法压缩请求,并注册gzip/zstd压缩与解压
+            builder.intercept(new CompressionClientInterceptor(rules))
+                    .compressorRegistry(rules.getCompressorRegistry())
+                    .decompressorRegistry(rules.getDecompressorRegistry());
+        }
+        final SingleflightClientInterceptor coalescing = options.getSingleflight();
+        if (coalescing != null) {
+            // 合并相同的在途请求,注册在缓存之前,缓存未命中的请求才会合并
+            builder.intercept(coalescing);
+        }
+        final ResponseCache cache = options.getResponseCache();
+        if (cache != null) {
+            // 最后注册的拦截器最先执行,缓存命中时不再经过其他拦截器
+            builder.intercept(new ResponseCacheClientInterceptor(cache));
+        }
         ManagedChannel channel = builder.build();
+        if (pipelineInterceptor != null) {
+            pipelineInterceptor.cancelOnShutdown(channel);
+        }
+        if (dedicatedExecutor != null) {
+            shutdownOnTermination(channel, dedicatedExecutor);
+        }
         channel.getState(true);
         return channel;
     }
 
+    /**
+     * 按grpc.client.&lt;name&gt;的配置设置传输参数.
+     *
+     * @return the dedicated executor of the channel, null if it uses a shared executor
+     */
+    private static ExecutorService applyProfile(final NettyChannelBuilder builder, final String clientName,
+                                                final GrpcChannelProperties profile) {
+        if (profile.getKeepAliveTime() != null) {
+            builder.keepAliveTime(profile.getKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (profile.getKeepAliveTimeout() != null) {
+            builder.keepAliveTimeout(profile.getKeepAliveTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (profile.getKeepAliveWithoutCalls() != null) {
+            builder.keepAliveWithoutCalls(profile.getKeepAliveWithoutCalls());
+        }
+        if (profile.getIdleTimeout() != null) {
+            builder.idleTimeout(profile.getIdleTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (profile.getFlowControlWindow() != null) {
+            final int window = Math.toIntExact(profile.getFlowControlWindow().toBytes());
+            // initialFlowControlWindow保留BDP自动调整, flowControlWindow固定窗口
+            if (profile.isBdpAutoTuning()) {
+                builder.initialFlowControlWindow(window);
+            } else {
+                builder.flowControlWindow(window);
+            }
+        }
+        if (profile.getMaxInboundMessageSize() != null) {
+            builder.maxInboundMessageSize(Math.toIntExact(profile.getMaxInboundMessageSize().toBytes()));
+        }
+        if (profile.getMaxInboundMetadataSize() != null) {
+            builder.maxInboundMetadataSize(Math.toIntExact(profile.getMaxInboundMetadataSize().toBytes()));
+        }
+        switch (profile.getExecutor()) {
+            case DIRECT:
+                builder.directExecutor();
+                return null;
+            case DEDICATED:
+                final AtomicInteger threadIndex = new AtomicInteger();
+                final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, profile.getExecutorThreads()),
+                        r -> {
+                            final Thread thread = new Thread(r, "grpc-client-" + clientName + "-"
+                                    + threadIndex.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                builder.executor(executor);
+                return executor;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * channel终止后关闭其独享的线程池.
+     * SHUTDOWN状态下在途调用的回调仍在该线程池中执行, 因此等到channel terminated后才关闭.
+     */
+    private static void shutdownOnTermination(final ManagedChannel channel, final ExecutorService executor) {
+        final ConnectivityState state = channel.getState(false);
+        if (state == ConnectivityState.SHUTDOWN) {
+            awaitTermination(channel, executor, SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE));
+            return;
+        }
+        channel.notifyWhenStateChanged(state, () -> shutdownOnTermination(channel, executor));
+    }
+
+    private static void awaitTermination(final ManagedChannel channel, final ExecutorService executor,
+                                         final ScheduledExecutorService timer) {
+        if (channel.isTerminated()) {
+            executor.shutdown();
+            SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timer);
+            return;
+        }
+        timer.schedule(() -> awaitTermination(channel, executor, timer), TERMINATION_CHECK_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
 }
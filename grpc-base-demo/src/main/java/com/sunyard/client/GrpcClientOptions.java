@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.client;
+
+import com.sunyard.cache.ResponseCache;
+import com.sunyard.compression.CompressionRules;
+import com.sunyard.marshaller.LargeMessageMarshallers;
+import com.sunyard.pipeline.PipelineProperties;
+import com.sunyard.singleflight.SingleflightClientInterceptor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Grpc client options.
+ * 创建channel时使用的全部客户端配置, 由自动配置统一创建后设置到{@link ManagedChannelManager}, 不可变.
+ * 配置变更后缓存中使用旧配置创建的channel在下次获取时重建.
+ */
+public final class GrpcClientOptions {
+
+    /**
+     * 没有任何可选功能的默认配置.
+     */
+    public static final GrpcClientOptions DEFAULT = builder().build();
+
+    private static final GrpcChannelProperties DEFAULT_PROFILE = new GrpcChannelProperties();
+
+    private final Map<String, GrpcChannelProperties> channelProperties;
+
+    private final CompressionRules compressionRules;
+
+    private final ResponseCache responseCache;
+
+    private final SingleflightClientInterceptor singleflight;
+
+    private final PipelineProperties pipelineProperties;
+
+    private final LargeMessageMarshallers largeMessageMarshallers;
+
+    private GrpcClientOptions(final Builder builder) {
+        this.channelProperties = Collections.unmodifiableMap(new LinkedHashMap<>(builder.channelProperties));
+        this.compressionRules = builder.compressionRules;
+        this.responseCache = builder.responseCache;
+        this.singleflight = builder.singleflight;
+        this.pipelineProperties = builder.pipelineProperties;
+        this.largeMessageMarshallers = builder.largeMessageMarshallers;
+    }
+
+    /**
+     * New builder.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the channel profile of the client, the default profile if none is configured.
+     *
+     * @param clientName the client name
+     * @return the channel properties
+     */
+    public GrpcChannelProperties getChannelProperties(final String clientName) {
+        return channelProperties.getOrDefault(clientName, DEFAULT_PROFILE);
+    }
+
+    /**
+     * Gets channel properties keyed by client name.
+     *
+     * @return the channel properties
+     */
+    public Map<String, GrpcChannelProperties> getChannelProperties() {
+        return channelProperties;
+    }
+
+    /**
+     * Gets compression rules.
+     *
+     * @return the compression rules, nullable
+     */
+    public CompressionRules getCompressionRules() {
+        return compressionRules;
+    }
+
+    /**
+     * Gets response cache.
+     *
+     * @return the response cache, nullable
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Gets singleflight interceptor.
+     *
+     * @return the singleflight interceptor, nullable
+     */
+    public SingleflightClientInterceptor getSingleflight() {
+        return singleflight;
+    }
+
+    /**
+     * Gets pipeline properties.
+     *
+     * @return the pipeline properties, nullable
+     */
+    public PipelineProperties getPipelineProperties() {
+        return pipelineProperties;
+    }
+
+    /**
+     * Gets large message marshallers.
+     *
+     * @return the large message marshallers, nullable
+     */
+    public LargeMessageMarshallers getLargeMessageMarshallers() {
+        return largeMessageMarshallers;
+    }
+
+    /**
+     * Grpc client options builder.
+     */
+    public static final class Builder {
+
+        private Map<String, GrpcChannelProperties> channelProperties = Collections.emptyMap();
+
+        private CompressionRules compressionRules;
+
+        private ResponseCache responseCache;
+
+        private SingleflightClientInterceptor singleflight;
+
+        private PipelineProperties pipelineProperties;
+
+        private LargeMessageMarshallers largeMessageMarshallers;
+
+        private Builder() {
+        }
+
+        /**
+         * grpc.client.&lt;name&gt;下的channel配置, key为client name.
+         *
+         * @param channelProperties channel properties
+         * @return this
+         */
+        public Builder channelProperties(final Map<String, GrpcChannelProperties> channelProperties) {
+            this.channelProperties = channelProperties;
+            return this;
+        }
+
+        /**
+         * 开启grpc.compression.enabled时的压缩规则.
+         *
+         * @param compressionRules compression rules, nullable
+         * @return this
+         */
+        public Builder compressionRules(final CompressionRules compressionRules) {
+            this.compressionRules = compressionRules;
+            return this;
+        }
+
+        /**
+         * 开启grpc.cache.enabled时的响应缓存.
+         *
+         * @param responseCache response cache, nullable
+         * @return this
+         */
+        public Builder responseCache(final ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * 开启grpc.singleflight.enabled时的拦截器, 所有channel共用.
+         *
+         * @param singleflight singleflight interceptor, nullable
+         * @return this
+         */
+        public Builder singleflight(final SingleflightClientInterceptor singleflight) {
+            this.singleflight = singleflight;
+            return this;
+        }
+
+        /**
+         * 开启grpc.pipeline.enabled时的pipeline配置.
+         *
+         * @param pipelineProperties pipeline properties, nullable
+         * @return this
+         */
+        public Builder pipelineProperties(final PipelineProperties pipelineProperties) {
+            this.pipelineProperties = pipelineProperties;
+            return this;
+        }
+
+        /**
+         * 开启grpc.large-message.enabled时配置方法的aliasing marshaller.
+         *
+         * @param largeMessageMarshallers large message marshallers, nullable
+         * @return this
+         */
+        public Builder largeMessageMarshallers(final LargeMessageMarshallers largeMessageMarshallers) {
+            this.largeMessageMarshallers = largeMessageMarshallers;
+            return this;
+        }
+
+        /**
+         * Build the options.
+         *
+         * @return the options
+         */
+        public GrpcClientOptions build() {
+            return new GrpcClientOptions(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.stub.AbstractFutureStub;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * CompletableFuture facade over a generated future stub.
+ * <pre>
+ * &#64;GrpcClient("grpc-server-demo")
+ * private GrpcCompletableStub&lt;HelloServiceGrpc.HelloServiceFutureStub&gt; helloStub;
+ *
+ * CompletableFuture&lt;HelloResponse&gt; response = helloStub.call(stub -&gt; stub.hello(request));
+ * </pre>
+ * 取消返回的CompletableFuture会取消grpc调用.
+ *
+ * @param <S> future stub type
+ */
+public final class GrpcCompletableStub<S extends AbstractFutureStub<S>> {
+
+    private final S stub;
+
+    /**
+     * Instantiates a new Grpc completable stub.
+     *
+     * @param stub the future stub
+     */
+    public GrpcCompletableStub(final S stub) {
+        this.stub = stub;
+    }
+
+    public S getStub() {
+        return stub;
+    }
+
+    /**
+     * Invoke a method of the future stub.
+     *
+     * @param call the call, e.g. {@code stub -> stub.hello(request)}
+     * @param <T>  response type
+     * @return the response future
+     */
+    public <T> CompletableFuture<T> call(final Function<? super S, ListenableFuture<T>> call) {
+        return toCompletableFuture(call.apply(stub));
+    }
+
+    /**
+     * Convert a ListenableFuture to a CompletableFuture, cancellation is propagated back.
+     *
+     * @param future the listenable future
+     * @param <T>    value type
+     * @return the completable future
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(final ListenableFuture<T> future) {
+        final CompletableFuture<T> result = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                future.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+}
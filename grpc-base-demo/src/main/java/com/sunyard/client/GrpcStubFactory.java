@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import com.sunyard.client.reactive.ReactorGrpcStub;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.AbstractFutureStub;
+import io.grpc.stub.AbstractStub;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Create and cache the stubs injected by {@link GrpcClient}.
+ */
+public class GrpcStubFactory {
+
+    /**
+     * key为 服务名|类型|deadline|compression.
+     */
+    private final Map<String, Object> stubs = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the stub for the annotation and the target type.
+     *
+     * @param annotation the annotation
+     * @param type       the field or parameter type
+     * @return the cached stub
+     */
+    public Object getStub(final GrpcClient annotation, final ResolvableType type) {
+        final String key = annotation.value() + "|" + type + "|" + annotation.deadlineMillis() + "|" + annotation.compression();
+        return stubs.computeIfAbsent(key, k -> createStub(annotation, type));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object createStub(final GrpcClient annotation, final ResolvableType type) {
+        if (StringUtils.hasText(annotation.loadBalance())) {
+            ManagedChannelManager.initGrpcClient(annotation.value(), annotation.loadBalance());
+        }
+        final Channel channel = ClientInterceptors.intercept(new ServiceChannel(annotation.value()),
+                new DefaultCallOptionsInterceptor(annotation.deadlineMillis(), annotation.compression()));
+        final Class<?> rawType = type.resolve(Object.class);
+        if (Channel.class == rawType) {
+            return channel;
+        }
+        if (ReactorGrpcStub.class == rawType) {
+            return ReactorGrpcStub.of(channel);
+        }
+        if (GrpcCompletableStub.class == rawType) {
+            final Class<?> stubType = type.getGeneric(0).resolve();
+            if (stubType == null || !AbstractFutureStub.class.isAssignableFrom(stubType)) {
+                throw new IllegalStateException("GrpcCompletableStub must declare a future stub type: " + type);
+            }
+            return new GrpcCompletableStub((AbstractFutureStub) newStub(stubType, channel));
+        }
+        if (AbstractStub.class.isAssignableFrom(rawType)) {
+            return newStub(rawType, channel);
+        }
+        throw new IllegalStateException("Unsupported @GrpcClient type: " + type);
+    }
+
+    /**
+     * 通过生成代码外层类的静态工厂方法创建stub, 如 HelloServiceGrpc.newBlockingStub(channel).
+     */
+    private static Object newStub(final Class<?> stubType, final Channel channel) {
+        final Class<?> grpcClass = stubType.getEnclosingClass();
+        if (grpcClass != null) {
+            for (Method method : grpcClass.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) && method.getReturnType() == stubType
+                        && method.getParameterCount() == 1 && method.getParameterTypes()[0] == Channel.class) {
+                    return ReflectionUtils.invokeMethod(method, null, channel);
+                }
+            }
+        }
+        throw new IllegalStateException("No static factory method found for stub " + stubType.getName());
+    }
+
+    /**
+     * 为没有指定deadline或压缩方式的调用设置默认值,deadline在每次调用时计算.
+     */
+    private static final class DefaultCallOptionsInterceptor implements ClientInterceptor {
+
+        private final long deadlineMillis;
+
+        private final String compression;
+
+        DefaultCallOptionsInterceptor(final long deadlineMillis, final String compression) {
+            this.deadlineMillis = deadlineMillis;
+            this.compression = StringUtils.hasText(compression) ? compression : null;
+        }
+
+        @Override
+        public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+            CallOptions options = callOptions;
+            if (deadlineMillis > 0 && options.getDeadline() == null) {
+                options = options.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS);
+            }
+            if (compression != null && options.getCompressor() == null) {
+                options = options.withCompression(compression);
+            }
+            return channel.newCall(methodDescriptor, options);
+        }
+    }
+}
@@ -3,35 +3,107 @@ package com.sunyard.client;
 import com.google.common.collect.Maps;
 import com.sunyard.loadbalance.LoadBalancerStrategy;
 import io.grpc.ManagedChannel;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author 微服务底座平台
  * @version 2.0.0
  * @title: ManagedChannelManager
  * @projectName: grpc-parent
- * @description: ManagedChannel管理
+ * @description: ManagedChannel管理, 可按空闲时间与数量(LRU)淘汰channel, 见{@link ChannelCacheProperties}
  * @date: 2023-07-20 14:53
  **/
 public class ManagedChannelManager {
+
+    /**
+     * 访问时间的更新粒度, 频繁调用的channel不必每次写入共享的访问时间.
+     */
+    private static final long TOUCH_GRANULARITY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     // key为ServiceName
-    private static final Map<String, ManagedChannel> CLIENT_CACHE = Maps.newConcurrentMap();
+    private static final Map<String, CachedChannel> CLIENT_CACHE = Maps.newConcurrentMap();
 
-    static {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            for (Map.Entry<String, ManagedChannel> entry : CLIENT_CACHE.entrySet()) {
-                ManagedChannel grpcClient = entry.getValue();
-                grpcClient.shutdown();
-            }
-            CLIENT_CACHE.clear();
-        }));
-    }
+    // channel创建时使用的负载策略, 被淘汰的channel重新创建时沿用
+    private static final Map<String, String> LOAD_BALANCES = Maps.newConcurrentMap();
+
+    private static final ChannelCacheMetrics METRICS = new ChannelCacheMetrics();
+
+    private static final Object EVICTION_LOCK = new Object();
+
+    private static volatile GrpcClientOptions options = GrpcClientOptions.DEFAULT;
+
+    private static volatile long idleTimeoutNanos;
+
+    private static volatile int maxChannels;
+
+    private static ScheduledExecutorService sweepTimer;
+
+    private static ScheduledFuture<?> sweepFuture;
 
     private ManagedChannelManager() {
     }
 
+    /**
+     * 设置创建channel使用的客户端配置. 已缓存的channel若使用其他配置创建, 在下次获取时按新配置重建,
+     * 配置生效前创建的channel不会遗漏配置.
+     *
+     * @param clientOptions client options
+     */
+    public static void configure(final GrpcClientOptions clientOptions) {
+        options = clientOptions;
+    }
+
+    /**
+     * 获取创建channel使用的客户端配置.
+     *
+     * @return client options
+     */
+    public static GrpcClientOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * 设置channel淘汰规则, 开启空闲淘汰时定时清理空闲的channel.
+     *
+     * @param properties channel cache properties
+     */
+    public static void configureCache(final ChannelCacheProperties properties) {
+        final long idleNanos = properties.getIdleTimeout() == null ? 0 : properties.getIdleTimeout().toNanos();
+        idleTimeoutNanos = idleNanos;
+        maxChannels = Math.max(0, properties.getMaxChannels());
+        synchronized (EVICTION_LOCK) {
+            if (sweepFuture != null) {
+                sweepFuture.cancel(false);
+                sweepFuture = null;
+            }
+            final ScheduledExecutorService previousTimer = sweepTimer;
+            sweepTimer = null;
+            if (idleNanos > 0) {
+                final long interval = Math.max(TimeUnit.SECONDS.toNanos(1), properties.getSweepInterval().toNanos());
+                sweepTimer = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+                sweepFuture = sweepTimer.scheduleWithFixedDelay(ManagedChannelManager::evictIdle, interval, interval,
+                        TimeUnit.NANOSECONDS);
+            }
+            // 先获取新的引用再释放旧的, 重新配置时共享的timer不会被销毁重建
+            if (previousTimer != null) {
+                SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, previousTimer);
+            }
+        }
+        evictOverCapacity();
+    }
+
     /**
      * 创建channel.
      *
@@ -39,7 +111,7 @@ public class ManagedChannelManager {
      * @param loadBalance {@link LoadBalancerStrategy#getStrategy()}
      */
     public static void initGrpcClient(final String contextPath, String loadBalance) {
-        CLIENT_CACHE.computeIfAbsent(contextPath, s -> GrpcClientBuilder.buildClientChannel(contextPath, loadBalance));
+        lookup(contextPath, loadBalance);
     }
 
     /**
@@ -49,12 +121,13 @@ public class ManagedChannelManager {
      * @return GrpcClient GrpcClient
      */
     public static ManagedChannel getGrpcClient(final String contextPath) {
-        ManagedChannel managedChannel = CLIENT_CACHE.get(contextPath);
-        // 获取时如果channel连接为空时,将创建客户端channel
-        if (managedChannel == null){
-            CLIENT_CACHE.computeIfAbsent(contextPath, s -> GrpcClientBuilder.buildClientChannel(contextPath, LoadBalancerStrategy.ROUND_ROBIN.getStrategy()));
+        final CachedChannel cached = CLIENT_CACHE.get(contextPath);
+        if (cached != null && cached.isCurrent() && cached.acquire()) {
+            METRICS.recordHit();
+            return cached.channel;
         }
-        return CLIENT_CACHE.get(contextPath);
+        // 获取时如果channel连接为空、已被关闭或已被淘汰时,将创建客户端channel
+        return lookup(contextPath, LOAD_BALANCES.getOrDefault(contextPath, LoadBalancerStrategy.ROUND_ROBIN.getStrategy()));
     }
 
     /**
@@ -63,10 +136,208 @@ public class ManagedChannelManager {
      * @param contextPath contextPath
      */
     public static void removeClient(final String contextPath) {
-        ManagedChannel grpcClient = CLIENT_CACHE.remove(contextPath);
+        CachedChannel cached = CLIENT_CACHE.remove(contextPath);
         // 关闭grpc连接ManagedChannel
-        if (Objects.nonNull(grpcClient)) {
-            grpcClient.shutdown();
+        if (Objects.nonNull(cached)) {
+            cached.channel.shutdown();
+        }
+    }
+
+    /**
+     * 关闭所有channel, 进行中的调用最多等待timeout, 超时后强制取消. 由{@link ChannelDrainer}在容器关闭时调用.
+     *
+     * @param timeout the maximum time to wait for the in-flight calls
+     */
+    public static void shutdownAll(final Duration timeout) {
+        final List<ManagedChannel> channels = new ArrayList<>(CLIENT_CACHE.size());
+        for (String contextPath : new ArrayList<>(CLIENT_CACHE.keySet())) {
+            final CachedChannel cached = CLIENT_CACHE.remove(contextPath);
+            if (cached != null) {
+                cached.channel.shutdown();
+                channels.add(cached.channel);
+            }
+        }
+        final long deadlineNanos = System.nanoTime() + timeout.toNanos();
+        try {
+            for (ManagedChannel channel : channels) {
+                final long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0 || !channel.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    channel.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            channels.forEach(ManagedChannel::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 获取channel缓存的统计.
+     *
+     * @return channel cache metrics
+     */
+    public static ChannelCacheMetrics getMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * 获取缓存的channel数量.
+     *
+     * @return the number of cached channels
+     */
+    public static int size() {
+        return CLIENT_CACHE.size();
+    }
+
+    private static ManagedChannel lookup(final String contextPath, final String loadBalance) {
+        while (true) {
+            CachedChannel cached = CLIENT_CACHE.get(contextPath);
+            if (cached != null && (cached.evicted || cached.channel.isShutdown())) {
+                // 被淘汰或被其他途径关闭的channel不再使用
+                CLIENT_CACHE.remove(contextPath, cached);
+            } else if (cached != null && cached.options != options && CLIENT_CACHE.remove(contextPath, cached)) {
+                // 使用旧配置创建的channel, 进行中的调用继续完成
+                cached.channel.shutdown();
+            }
+            final boolean[] created = new boolean[1];
+            cached = CLIENT_CACHE.computeIfAbsent(contextPath, s -> {
+                created[0] = true;
+                LOAD_BALANCES.put(contextPath, loadBalance);
+                final GrpcClientOptions clientOptions = options;
+                return new CachedChannel(GrpcClientBuilder.buildClientChannel(contextPath, loadBalance, clientOptions),
+                        clientOptions);
+            });
+            if (created[0]) {
+                METRICS.recordMiss();
+                if (maxChannels > 0 && CLIENT_CACHE.size() > maxChannels) {
+                    evictOverCapacity();
+                }
+                return cached.channel;
+            }
+            if (cached.acquire()) {
+                METRICS.recordHit();
+                return cached.channel;
+            }
+            // 获取前刚被淘汰, 重新创建
+        }
+    }
+
+    /**
+     * 关闭超过空闲时间未被获取的channel.
+     */
+    private static void evictIdle() {
+        final long idleNanos = idleTimeoutNanos;
+        if (idleNanos <= 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        for (Map.Entry<String, CachedChannel> entry : CLIENT_CACHE.entrySet()) {
+            final long lastAccess = entry.getValue().lastAccessNanos;
+            if (now - lastAccess > idleNanos && evict(entry.getKey(), entry.getValue(), lastAccess)) {
+                METRICS.recordIdleEviction();
+            }
+        }
+    }
+
+    /**
+     * 超过最大数量时关闭最久未被获取的channel, 只在创建channel时执行.
+     */
+    private static void evictOverCapacity() {
+        final int max = maxChannels;
+        if (max <= 0) {
+            return;
+        }
+        synchronized (EVICTION_LOCK) {
+            // 刚被获取的channel不淘汰, 都在使用中时暂时超出数量, 下次创建channel时再淘汰
+            final Set<CachedChannel> inUse = new HashSet<>();
+            while (CLIENT_CACHE.size() > max) {
+                Map.Entry<String, CachedChannel> eldest = null;
+                for (Map.Entry<String, CachedChannel> entry : CLIENT_CACHE.entrySet()) {
+                    if (!inUse.contains(entry.getValue()) && (eldest == null
+                            || entry.getValue().lastAccessNanos - eldest.getValue().lastAccessNanos < 0)) {
+                        eldest = entry;
+                    }
+                }
+                if (eldest == null) {
+                    return;
+                }
+                if (evict(eldest.getKey(), eldest.getValue(), eldest.getValue().lastAccessNanos)) {
+                    METRICS.recordCapacityEviction();
+                } else {
+                    inUse.add(eldest.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 标记为已淘汰后从缓存移除并优雅关闭channel, 进行中的调用继续完成.
+     * 标记与获取互斥, 已返回给调用方的channel不会在返回前被关闭.
+     */
+    private static boolean evict(final String contextPath, final CachedChannel cached, final long lastAccess) {
+        if (!cached.markEvicted(lastAccess)) {
+            return false;
+        }
+        CLIENT_CACHE.remove(contextPath, cached);
+        cached.channel.shutdown();
+        return true;
+    }
+
+    /**
+     * 缓存的channel, 创建时使用的配置及其最近一次被获取的时间.
+     * 访问时间按粒度写入, 粒度内未写入的获取由淘汰时的时间检查保护.
+     */
+    private static final class CachedChannel {
+
+        private final ManagedChannel channel;
+
+        private final GrpcClientOptions options;
+
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        private volatile boolean evicted;
+
+        private CachedChannel(final ManagedChannel channel, final GrpcClientOptions options) {
+            this.channel = channel;
+            this.options = options;
+        }
+
+        private boolean isCurrent() {
+            return options == ManagedChannelManager.options && !channel.isShutdown();
+        }
+
+        /**
+         * 标记channel正在使用.
+         *
+         * @return false if the channel has been evicted
+         */
+        private boolean acquire() {
+            final long now = System.nanoTime();
+            if (now - lastAccessNanos <= TOUCH_GRANULARITY_NANOS) {
+                // 不写入访问时间, 粒度内被访问过的channel不会被标记淘汰, 见markEvicted
+                return !evicted;
+            }
+            synchronized (this) {
+                if (evicted) {
+                    return false;
+                }
+                lastAccessNanos = now;
+                return true;
+            }
+        }
+
+        /**
+         * 访问时间仍为lastAccess且已超过访问粒度时标记为已淘汰.
+         *
+         * @return true if the channel is marked evicted by this call
+         */
+        private synchronized boolean markEvicted(final long lastAccess) {
+            if (evicted || lastAccessNanos != lastAccess
+                    || System.nanoTime() - lastAccess <= TOUCH_GRANULARITY_NANOS) {
+                return false;
+            }
+            evicted = true;
+            return true;
         }
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.MethodDescriptor;
+
+/**
+ * 每次调用时从ManagedChannelManager取当前的channel,channel被重建后缓存的stub仍然可用.
+ */
+final class ServiceChannel extends Channel {
+
+    private final String serviceName;
+
+    ServiceChannel(final String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public <R, P> ClientCall<R, P> newCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions) {
+        return ManagedChannelManager.getGrpcClient(serviceName).newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return ManagedChannelManager.getGrpcClient(serviceName).authority();
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client.reactive;
+
+import com.sunyard.intercept.ContextPropagation;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reactor based client calls.
+ * 对应grpc的ClientCalls,调用在订阅时发起,取消订阅时取消grpc调用.
+ * 流式响应按下游的request(n)向grpc请求消息,流式请求在call可写(isReady)时才向上游请求下一个元素.
+ * <p>
+ * 需要传递到服务端的上下文放在Reactor Context的{@link #RPC_CONTEXT_KEY}中,发起调用时写入请求头,
+ * 不依赖线程绑定的grpc Context.
+ */
+public final class ReactorCalls {
+
+    /**
+     * Reactor Context key, value is a {@code Map<String, String>} sent as request headers.
+     */
+    public static final String RPC_CONTEXT_KEY = ReactorCalls.class.getName() + ".rpcContext";
+
+    private ReactorCalls() {
+    }
+
+    /**
+     * Put the rpc context from the WebFlux exchange into the Reactor Context.
+     * <pre>
+     * stub.unary(HelloServiceGrpc.getHelloMethod(), request).contextWrite(ReactorCalls.rpcContext(exchange))
+     * </pre>
+     *
+     * @param exchange the exchange
+     * @return the context modifier
+     */
+    public static Function<Context, Context> rpcContext(final ServerWebExchange exchange) {
+        final Map<String, Map<String, String>> generalContext = exchange.getAttribute("generalContext");
+        final Map<String, String> rpcContext = generalContext == null ? null : generalContext.get("grpc");
+        return rpcContext(rpcContext);
+    }
+
+    /**
+     * Put the rpc context into the Reactor Context.
+     *
+     * @param rpcContext headers sent with each call, nullable
+     * @return the context modifier
+     */
+    public static Function<Context, Context> rpcContext(final Map<String, String> rpcContext) {
+        return context -> rpcContext == null || rpcContext.isEmpty() ? context : context.put(RPC_CONTEXT_KEY, rpcContext);
+    }
+
+    /**
+     * Unary call.
+     *
+     * @param channel     the channel
+     * @param method      the method
+     * @param callOptions the call options
+     * @param request     the request
+     * @param <R>         request type
+     * @param <P>         response type
+     * @return the response
+     */
+    public static <R, P> Mono<P> unary(final Channel channel, final MethodDescriptor<R, P> method, final CallOptions callOptions,
+                                       final R request) {
+        return Mono.create(sink -> {
+            final ClientCall<R, P> call = channel.newCall(method, callOptions);
+            sink.onCancel(() -> call.cancel("Cancelled by subscriber", null));
+            call.start(new UnaryListener<>(sink), headers(sink.contextView()));
+            call.request(2);
+            call.sendMessage(request);
+            call.halfClose();
+        });
+    }
+
+    /**
+     * Server streaming call.
+     *
+     * @param channel     the channel
+     * @param method      the method
+     * @param callOptions the call options
+     * @param request     the request
+     * @param <R>         request type
+     * @param <P>         response type
+     * @return the responses
+     */
+    public static <R, P> Flux<P> serverStreaming(final Channel channel, final MethodDescriptor<R, P> method,
+                                                 final CallOptions callOptions, final R request) {
+        return Flux.create(sink -> {
+            final CallHolder<R, P> holder = new CallHolder<>(channel.newCall(method, callOptions));
+            holder.start(new StreamingListener<>(sink, null), headers(sink.contextView()));
+            bindResponses(holder, sink);
+            holder.sendAndHalfClose(request);
+        });
+    }
+
+    /**
+     * Client streaming call.
+     *
+     * @param channel     the channel
+     * @param method      the method
+     * @param callOptions the call options
+     * @param requests    the requests
+     * @param <R>         request type
+     * @param <P>         response type
+     * @return the response
+     */
+    public static <R, P> Mono<P> clientStreaming(final Channel channel, final MethodDescriptor<R, P> method,
+                                                 final CallOptions callOptions, final Publisher<R> requests) {
+        return bidiStreaming(channel, method, callOptions, requests).singleOrEmpty();
+    }
+
+    /**
+     * Bidi streaming call.
+     *
+     * @param channel     the channel
+     * @param method      the method
+     * @param callOptions the call options
+     * @param requests    the requests
+     * @param <R>         request type
+     * @param <P>         response type
+     * @return the responses
+     */
+    public static <R, P> Flux<P> bidiStreaming(final Channel channel, final MethodDescriptor<R, P> method,
+                                               final CallOptions callOptions, final Publisher<R> requests) {
+        return Flux.create(sink -> {
+            final CallHolder<R, P> holder = new CallHolder<>(channel.newCall(method, callOptions));
+            final RequestSubscriber<R> requestSubscriber = new RequestSubscriber<>(holder);
+            holder.start(new StreamingListener<>(sink, requestSubscriber), headers(sink.contextView()));
+            bindResponses(holder, sink);
+            sink.onDispose(requestSubscriber::dispose);
+            requests.subscribe(requestSubscriber);
+        });
+    }
+
+    /**
+     * 必须在call启动后调用,onRequest会立即以已有的需求回调.
+     */
+    private static <P> void bindResponses(final CallHolder<?, P> holder, final FluxSink<P> sink) {
+        sink.onRequest(n -> holder.request(n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n));
+        sink.onCancel(() -> holder.cancel("Cancelled by subscriber", null));
+    }
+
+    private static Metadata headers(final ContextView context) {
+        final Metadata headers = new Metadata();
+        ContextPropagation.write(headers, context.getOrDefault(RPC_CONTEXT_KEY, Collections.emptyMap()));
+        return headers;
+    }
+
+    /**
+     * ClientCall不是线程安全的,下游request、上游发送和取消可能来自不同线程,统一加锁.
+     */
+    private static final class CallHolder<R, P> {
+
+        private final ClientCall<R, P> call;
+
+        CallHolder(final ClientCall<R, P> call) {
+            this.call = call;
+        }
+
+        synchronized void start(final ClientCall.Listener<P> listener, final Metadata headers) {
+            call.start(listener, headers);
+        }
+
+        synchronized void request(final int numMessages) {
+            call.request(numMessages);
+        }
+
+        synchronized void sendMessage(final R message) {
+            call.sendMessage(message);
+        }
+
+        synchronized void sendAndHalfClose(final R message) {
+            call.sendMessage(message);
+            call.halfClose();
+        }
+
+        synchronized void halfClose() {
+            call.halfClose();
+        }
+
+        synchronized void cancel(final String message, final Throwable cause) {
+            call.cancel(message, cause);
+        }
+
+        synchronized boolean isReady() {
+            return call.isReady();
+        }
+    }
+
+    private static final class UnaryListener<P> extends ClientCall.Listener<P> {
+
+        private final MonoSink<P> sink;
+
+        private P response;
+
+        UnaryListener(final MonoSink<P> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void onMessage(final P message) {
+            if (response != null) {
+                throw Status.INTERNAL.withDescription("More than one value received for unary call").asRuntimeException();
+            }
+            this.response = message;
+        }
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            if (!status.isOk()) {
+                sink.error(status.asRuntimeException(trailers));
+            } else if (response == null) {
+                sink.error(Status.INTERNAL.withDescription("No value received for unary call").asRuntimeException(trailers));
+            } else {
+                sink.success(response);
+            }
+        }
+    }
+
+    private static final class StreamingListener<P> extends ClientCall.Listener<P> {
+
+        private final FluxSink<P> sink;
+
+        private final RequestSubscriber<?> requestSubscriber;
+
+        StreamingListener(final FluxSink<P> sink, final RequestSubscriber<?> requestSubscriber) {
+            this.sink = sink;
+            this.requestSubscriber = requestSubscriber;
+        }
+
+        @Override
+        public void onMessage(final P message) {
+            sink.next(message);
+        }
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            if (status.isOk()) {
+                sink.complete();
+            } else {
+                sink.error(status.asRuntimeException(trailers));
+            }
+        }
+
+        @Override
+        public void onReady() {
+            if (requestSubscriber != null) {
+                requestSubscriber.onCallReady();
+            }
+        }
+    }
+
+    /**
+     * 订阅请求流,每次只向上游请求一个元素,call不可写时等待onReady.
+     */
+    private static final class RequestSubscriber<R> extends BaseSubscriber<R> {
+
+        private final CallHolder<R, ?> holder;
+
+        private boolean waiting;
+
+        RequestSubscriber(final CallHolder<R, ?> holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        protected void hookOnSubscribe(final Subscription subscription) {
+            requestIfReady();
+        }
+
+        @Override
+        protected void hookOnNext(final R value) {
+            holder.sendMessage(value);
+            requestIfReady();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            holder.halfClose();
+        }
+
+        @Override
+        protected void hookOnError(final Throwable throwable) {
+            holder.cancel("Request publisher failed", throwable);
+        }
+
+        void onCallReady() {
+            final boolean resume;
+            synchronized (this) {
+                resume = waiting;
+                waiting = false;
+            }
+            if (resume) {
+                request(1);
+            }
+        }
+
+        private void requestIfReady() {
+            if (holder.isReady()) {
+                request(1);
+                return;
+            }
+            synchronized (this) {
+                waiting = true;
+            }
+            // 等待期间call可能已经可写
+            if (holder.isReady()) {
+                onCallReady();
+            }
+        }
+    }
+}
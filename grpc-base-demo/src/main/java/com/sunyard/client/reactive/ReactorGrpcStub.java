@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.client.reactive;
+
+import com.sunyard.client.ManagedChannelManager;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.MethodDescriptor;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking Reactor stub over a channel from {@link ManagedChannelManager}.
+ * 不依赖代码生成,方法描述符使用生成代码中的 {@code XxxGrpc.getXxxMethod()}.
+ * <pre>
+ * ReactorGrpcStub stub = ReactorGrpcStub.forService("grpc-server-demo").withDeadlineAfter(3, TimeUnit.SECONDS);
+ * Mono&lt;HelloResponse&gt; response = stub.unary(HelloServiceGrpc.getHelloMethod(), request);
+ * </pre>
+ * 与grpc的stub一样是不可变的,with方法返回新的stub.
+ */
+public final class ReactorGrpcStub {
+
+    private final Channel channel;
+
+    private final CallOptions callOptions;
+
+    private ReactorGrpcStub(final Channel channel, final CallOptions callOptions) {
+        this.channel = channel;
+        this.callOptions = callOptions;
+    }
+
+    /**
+     * Create a stub over the given channel.
+     *
+     * @param channel the channel
+     * @return the stub
+     */
+    public static ReactorGrpcStub of(final Channel channel) {
+        return new ReactorGrpcStub(channel, CallOptions.DEFAULT);
+    }
+
+    /**
+     * Create a stub over the channel of the given service.
+     *
+     * @param serviceName grpc server name
+     * @return the stub
+     */
+    public static ReactorGrpcStub forService(final String serviceName) {
+        return of(ManagedChannelManager.getGrpcClient(serviceName));
+    }
+
+    /**
+     * Returns a new stub with the given call options.
+     *
+     * @param callOptions call options
+     * @return the stub
+     */
+    public ReactorGrpcStub withCallOptions(final CallOptions callOptions) {
+        return new ReactorGrpcStub(channel, callOptions);
+    }
+
+    /**
+     * Returns a new stub whose calls time out after the given duration.
+     *
+     * @param duration duration
+     * @param unit     unit
+     * @return the stub
+     */
+    public ReactorGrpcStub withDeadlineAfter(final long duration, final TimeUnit unit) {
+        return new ReactorGrpcStub(channel, callOptions.withDeadlineAfter(duration, unit));
+    }
+
+    /**
+     * Returns a new stub compressing requests with the given encoding.
+     *
+     * @param compressorName compressor name, e.g. gzip
+     * @return the stub
+     */
+    public ReactorGrpcStub withCompression(final String compressorName) {
+        return new ReactorGrpcStub(channel, callOptions.withCompression(compressorName));
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public CallOptions getCallOptions() {
+        return callOptions;
+    }
+
+    /**
+     * Unary call.
+     *
+     * @param method  the method
+     * @param request the request
+     * @param <R>     request type
+     * @param <P>     response type
+     * @return the response
+     */
+    public <R, P> Mono<P> unary(final MethodDescriptor<R, P> method, final R request) {
+        return ReactorCalls.unary(channel, method, callOptions, request);
+    }
+
+    /**
+     * Server streaming call.
+     *
+     * @param method  the method
+     * @param request the request
+     * @param <R>     request type
+     * @param <P>     response type
+     * @return the responses
+     */
+    public <R, P> Flux<P> serverStreaming(final MethodDescriptor<R, P> method, final R request) {
+        return ReactorCalls.serverStreaming(channel, method, callOptions, request);
+    }
+
+    /**
+     * Client streaming call.
+     *
+     * @param method   the method
+     * @param requests the requests
+     * @param <R>      request type
+     * @param <P>      response type
+     * @return the response
+     */
+    public <R, P> Mono<P> clientStreaming(final MethodDescriptor<R, P> method, final Publisher<R> requests) {
+        return ReactorCalls.clientStreaming(channel, method, callOptions, requests);
+    }
+
+    /**
+     * Bidi streaming call.
+     *
+     * @param method   the method
+     * @param requests the requests
+     * @param <R>      request type
+     * @param <P>      response type
+     * @return the responses
+     */
+    public <R, P> Flux<P> bidiStreaming(final MethodDescriptor<R, P> method, final Publisher<R> requests) {
+        return ReactorCalls.bidiStreaming(channel, method, callOptions, requests);
+    }
+}
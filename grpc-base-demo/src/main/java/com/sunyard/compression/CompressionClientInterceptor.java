@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.compression;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Compression client interceptor.
+ * 按方法配置请求的压缩算法,小于阈值的消息不压缩.
+ */
+public class CompressionClientInterceptor implements ClientInterceptor {
+
+    private final CompressionRules rules;
+
+    public CompressionClientInterceptor(final CompressionRules rules) {
+        this.rules = rules;
+    }
+
+    @Override
+    public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+        final CompressionRules.Rule rule = rules.lookup(methodDescriptor);
+        // 调用方已经在CallOptions中指定了压缩算法时以调用方为准
+        if (rule == null || callOptions.getCompressor() != null) {
+            return channel.newCall(methodDescriptor, callOptions);
+        }
+        return new ForwardingClientCall.SimpleForwardingClientCall<R, P>(
+                channel.newCall(methodDescriptor, callOptions.withCompression(rule.getEncoding()))) {
+            @Override
+            public void sendMessage(final R message) {
+                delegate().setMessageCompression(rule.shouldCompress(message));
+                super.sendMessage(message);
+            }
+        };
+    }
+}
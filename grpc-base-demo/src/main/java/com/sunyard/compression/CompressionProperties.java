@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.compression;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Grpc compression properties.
+ * <pre>
+ * grpc:
+ *   compression:
+ *     enabled: true
+ *     min-size: 1024
+ *     zstd-dictionary: classpath:zstd/hello.dict
+ *     rules:
+ *       "[com.sunyard.hello.HelloService]":
+ *         encoding: gzip
+ *       "[com.sunyard.hello.HelloService/hello]":
+ *         encoding: zstd-dict
+ *         min-size: 256
+ * </pre>
+ * rules的key为service name或full method name,方法级配置优先.
+ */
+@ConfigurationProperties(prefix = "grpc.compression")
+public class CompressionProperties {
+
+    /**
+     * Whether compression is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * Messages smaller than this size (bytes) are sent uncompressed unless the rule overrides it.
+     */
+    private int minSize = 1024;
+
+    /**
+     * Zstd compression level.
+     */
+    private int zstdLevel = 3;
+
+    /**
+     * Trained zstd dictionary, registered as the {@value ZstdCodec#ZSTD_DICT_ENCODING} encoding.
+     */
+    private Resource zstdDictionary;
+
+    /**
+     * Compression rules keyed by service name or full method name.
+     */
+    private Map<String, Rule> rules = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(final int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    public void setZstdLevel(final int zstdLevel) {
+        this.zstdLevel = zstdLevel;
+    }
+
+    public Resource getZstdDictionary() {
+        return zstdDictionary;
+    }
+
+    public void setZstdDictionary(final Resource zstdDictionary) {
+        this.zstdDictionary = zstdDictionary;
+    }
+
+    public Map<String, Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(final Map<String, Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compression rule of a service or method.
+     */
+    public static class Rule {
+
+        /**
+         * Message encoding, gzip/zstd/zstd-dict.
+         */
+        private String encoding;
+
+        /**
+         * Minimum message size to compress, falls back to the global min-size.
+         */
+        private Integer minSize;
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public void setEncoding(final String encoding) {
+            this.encoding = encoding;
+        }
+
+        public Integer getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(final Integer minSize) {
+            this.minSize = minSize;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.compression;
+
+import cn.hutool.core.util.StrUtil;
+import com.google.protobuf.MessageLite;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.MethodDescriptor;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compression rules.
+ * 按方法解析压缩配置(方法级优先于服务级)并缓存,同时持有注册了gzip/zstd的压缩与解压注册器,供客户端和服务端共用.
+ */
+public class CompressionRules {
+
+    private static final Rule NONE = new Rule(null, Integer.MAX_VALUE);
+
+    private final CompressionProperties properties;
+
+    private final CompressorRegistry compressorRegistry;
+
+    private final DecompressorRegistry decompressorRegistry;
+
+    /**
+     * key为full method name.
+     */
+    private final Map<String, Rule> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates new compression rules.
+     *
+     * @param properties the compression properties
+     * @throws IOException if the zstd dictionary can not be read
+     */
+    public CompressionRules(final CompressionProperties properties) throws IOException {
+        this.properties = properties;
+        this.compressorRegistry = CompressorRegistry.newEmptyInstance();
+        this.compressorRegistry.register(new Codec.Gzip());
+        DecompressorRegistry decompressors = DecompressorRegistry.getDefaultInstance();
+        final ZstdCodec zstd = new ZstdCodec(properties.getZstdLevel());
+        this.compressorRegistry.register(zstd);
+        decompressors = decompressors.with(zstd, true);
+        if (properties.getZstdDictionary() != null) {
+            final byte[] dictionary;
+            try (InputStream in = properties.getZstdDictionary().getInputStream()) {
+                dictionary = StreamUtils.copyToByteArray(in);
+            }
+            final ZstdCodec zstdDict = new ZstdCodec(ZstdCodec.ZSTD_DICT_ENCODING, properties.getZstdLevel(), dictionary);
+            this.compressorRegistry.register(zstdDict);
+            decompressors = decompressors.with(zstdDict, true);
+        }
+        this.decompressorRegistry = decompressors;
+    }
+
+    /**
+     * Lookup the compression rule of the method.
+     *
+     * @param method the method
+     * @return the rule, null if the method should not be compressed
+     */
+    public Rule lookup(final MethodDescriptor<?, ?> method) {
+        final Rule rule = cache.computeIfAbsent(method.getFullMethodName(), name -> resolve(method));
+        return rule == NONE ? null : rule;
+    }
+
+    private Rule resolve(final MethodDescriptor<?, ?> method) {
+        final Map<String, CompressionProperties.Rule> rules = properties.getRules();
+        CompressionProperties.Rule rule = rules.get(method.getFullMethodName());
+        if (rule == null) {
+            rule = rules.get(method.getServiceName());
+        }
+        if (rule == null || StrUtil.isBlank(rule.getEncoding()) || compressorRegistry.lookupCompressor(rule.getEncoding()) == null) {
+            return NONE;
+        }
+        return new Rule(rule.getEncoding(), rule.getMinSize() == null ? properties.getMinSize() : rule.getMinSize());
+    }
+
+    /**
+     * Gets compressor registry.
+     *
+     * @return the compressor registry
+     */
+    public CompressorRegistry getCompressorRegistry() {
+        return compressorRegistry;
+    }
+
+    /**
+     * Gets decompressor registry.
+     *
+     * @return the decompressor registry
+     */
+    public DecompressorRegistry getDecompressorRegistry() {
+        return decompressorRegistry;
+    }
+
+    /**
+     * Resolved compression rule.
+     */
+    public static final class Rule {
+
+        private final String encoding;
+
+        private final int minSize;
+
+        Rule(final String encoding, final int minSize) {
+            this.encoding = encoding;
+            this.minSize = minSize;
+        }
+
+        /**
+         * Gets encoding.
+         *
+         * @return the encoding
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * Whether the message is large enough to be compressed.
+         *
+         * @param message the message
+         * @return true if the message should be compressed
+         */
+        public boolean shouldCompress(final Object message) {
+            // protobuf消息的序列化大小会被缓存,不会额外序列化
+            return !(message instanceof MessageLite) || ((MessageLite) message).getSerializedSize() >= minSize;
+        }
+    }
+}
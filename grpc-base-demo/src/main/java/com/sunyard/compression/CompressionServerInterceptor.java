@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.compression;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Compression server interceptor.
+ * 按方法配置响应的压缩算法,客户端不支持该算法时grpc会自动退回为不压缩,小于阈值的消息不压缩.
+ */
+public class CompressionServerInterceptor implements ServerInterceptor {
+
+    private final CompressionRules rules;
+
+    public CompressionServerInterceptor(final CompressionRules rules) {
+        this.rules = rules;
+    }
+
+    @Override
+    public <R, P> ServerCall.Listener<R> interceptCall(final ServerCall<R, P> call, final Metadata headers,
+                                                       final ServerCallHandler<R, P> next) {
+        final CompressionRules.Rule rule = rules.lookup(call.getMethodDescriptor());
+        if (rule == null) {
+            return next.startCall(call, headers);
+        }
+        call.setCompression(rule.getEncoding());
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<R, P>(call) {
+            @Override
+            public void sendMessage(final P message) {
+                delegate().setMessageCompression(rule.shouldCompress(message));
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+}
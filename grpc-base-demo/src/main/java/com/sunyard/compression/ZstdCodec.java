@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.compression;
+
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import io.grpc.Codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Zstd codec.
+ * 可选使用训练好的字典,字典在构造时预处理一次,之后每个消息的压缩/解压直接复用.
+ * 使用字典时两端必须配置相同的字典文件.
+ */
+public class ZstdCodec implements Codec {
+
+    /**
+     * The zstd message encoding.
+     */
+    public static final String ZSTD_ENCODING = "zstd";
+
+    /**
+     * The zstd message encoding with a trained dictionary.
+     */
+    public static final String ZSTD_DICT_ENCODING = "zstd-dict";
+
+    private final String encoding;
+
+    private final int level;
+
+    private final ZstdDictCompress dictCompress;
+
+    private final ZstdDictDecompress dictDecompress;
+
+    /**
+     * Instantiates a zstd codec without dictionary.
+     *
+     * @param level the compression level
+     */
+    public ZstdCodec(final int level) {
+        this(ZSTD_ENCODING, level, null);
+    }
+
+    /**
+     * Instantiates a new Zstd codec.
+     *
+     * @param encoding   the message encoding
+     * @param level      the compression level
+     * @param dictionary the trained dictionary, nullable
+     */
+    public ZstdCodec(final String encoding, final int level, final byte[] dictionary) {
+        this.encoding = encoding;
+        this.level = level;
+        this.dictCompress = dictionary == null ? null : new ZstdDictCompress(dictionary, level);
+        this.dictDecompress = dictionary == null ? null : new ZstdDictDecompress(dictionary);
+    }
+
+    @Override
+    public String getMessageEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public OutputStream compress(final OutputStream os) throws IOException {
+        final ZstdOutputStreamNoFinalizer out = new ZstdOutputStreamNoFinalizer(os, RecyclingBufferPool.INSTANCE);
+        if (dictCompress != null) {
+            out.setDict(dictCompress);
+        } else {
+            out.setLevel(level);
+        }
+        return out;
+    }
+
+    @Override
+    public InputStream decompress(final InputStream is) throws IOException {
+        final ZstdInputStreamNoFinalizer in = new ZstdInputStreamNoFinalizer(is, RecyclingBufferPool.INSTANCE);
+        if (dictDecompress != null) {
+            in.setDict(dictDecompress);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,170 @@
+package com.sunyard.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sunyard.cache.ResponseCache;
+import com.sunyard.client.ChannelCacheMetrics;
+import com.sunyard.client.ChannelPrewarmer;
+import com.sunyard.client.ManagedChannelManager;
+import com.sunyard.loadbalance.metrics.ClientTelemetry;
+import com.sunyard.loadbalance.metrics.SubchannelMetrics;
+import com.sunyard.loadbalance.resolver.DiscoveryClientResolverProvider;
+import com.sunyard.loadbalance.resolver.ResolverUpdateMetrics;
+import com.sunyard.server.metrics.LatencyHistogram;
+import com.sunyard.singleflight.SingleflightClientInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 微服务底座平台
+ * @version 2.0.0
+ * @title: GrpcClientMetricsController
+ * @projectName: grpc-parent
+ * @description: grpc client按服务与后端地址统计的调用次数、错误、耗时、排队时间与字节数, 耗时单位为毫秒; 响应缓存的命中统计, 合并的请求数, 地址更新的发布与合并次数, channel预热结果, channel缓存的命中与淘汰次数
+ **/
+@RestController
+@RequestMapping("/grpc")
+@ConditionalOnProperty(value = "grpc.client.api.enabled", havingValue = "true")
+public class GrpcClientMetricsController {
+
+    private final ObjectProvider<ResponseCache> responseCache;
+
+    private final ObjectProvider<SingleflightClientInterceptor> singleflight;
+
+    private final ObjectProvider<DiscoveryClientResolverProvider> resolverProvider;
+
+    private final ObjectProvider<ChannelPrewarmer> prewarmer;
+
+    public GrpcClientMetricsController(final ObjectProvider<ResponseCache> responseCache,
+                                       final ObjectProvider<SingleflightClientInterceptor> singleflight,
+                                       final ObjectProvider<DiscoveryClientResolverProvider> resolverProvider,
+                                       final ObjectProvider<ChannelPrewarmer> prewarmer) {
+        this.responseCache = responseCache;
+        this.singleflight = singleflight;
+        this.resolverProvider = resolverProvider;
+        this.prewarmer = prewarmer;
+    }
+
+    @GetMapping("/metrics/client")
+    public List<Map<String, Object>> clientMetrics() {
+        final List<Map<String, Object>> result = new ArrayList<>();
+        for (SubchannelMetrics metrics : ClientTelemetry.getSubchannels()) {
+            final Map<String, Object> values = new LinkedHashMap<>();
+            values.put("service", metrics.getServiceName());
+            values.put("endpoint", metrics.getEndpoint());
+            values.put("calls", metrics.getCalls());
+            values.put("inFlight", metrics.getInFlightCalls());
+            values.put("errors", metrics.getErrors());
+            values.put("latency", latency(metrics.getLatency()));
+            values.put("queueWait", latency(metrics.getQueueWait()));
+            values.put("bytesSent", metrics.getBytesSent());
+            values.put("bytesReceived", metrics.getBytesReceived());
+            result.add(values);
+        }
+        return result;
+    }
+
+    @GetMapping("/metrics/cache")
+    public Map<String, Object> cacheMetrics() {
+        final ResponseCache cache = responseCache.getIfAvailable();
+        if (cache == null) {
+            return Collections.emptyMap();
+        }
+        final CacheStats stats = cache.stats();
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("hits", stats.hitCount());
+        values.put("misses", stats.missCount());
+        values.put("hitRate", stats.hitRate());
+        values.put("evictions", stats.evictionCount());
+        values.put("weightedSize", cache.weightedSize());
+        final Map<String, Object> methods = new LinkedHashMap<>();
+        cache.getMethodStats().forEach((method, methodStats) -> {
+            final Map<String, Object> counters = new LinkedHashMap<>();
+            counters.put("hits", methodStats.getHits());
+            counters.put("misses", methodStats.getMisses());
+            methods.put(method, counters);
+        });
+        values.put("methods", methods);
+        return values;
+    }
+
+    @GetMapping("/metrics/singleflight")
+    public Map<String, Object> singleflightMetrics() {
+        final SingleflightClientInterceptor interceptor = singleflight.getIfAvailable();
+        if (interceptor == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("flights", interceptor.getFlightCount());
+        values.put("coalesced", interceptor.getCoalescedCount());
+        return values;
+    }
+
+    @GetMapping("/metrics/resolver")
+    public Map<String, Object> resolverMetrics() {
+        final DiscoveryClientResolverProvider provider = resolverProvider.getIfAvailable();
+        if (provider == null) {
+            return Collections.emptyMap();
+        }
+        final ResolverUpdateMetrics metrics = provider.getUpdateMetrics();
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("publishedUpdates", metrics.getPublishedUpdates());
+        values.put("mergedUpdates", metrics.getMergedUpdates());
+        return values;
+    }
+
+    @GetMapping("/metrics/channels")
+    public Map<String, Object> channelMetrics() {
+        final ChannelCacheMetrics metrics = ManagedChannelManager.getMetrics();
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("channels", ManagedChannelManager.size());
+        values.put("hits", metrics.getHits());
+        values.put("misses", metrics.getMisses());
+        values.put("idleEvictions", metrics.getIdleEvictions());
+        values.put("capacityEvictions", metrics.getCapacityEvictions());
+        return values;
+    }
+
+    @GetMapping("/metrics/prewarm")
+    public Map<String, Object> prewarmMetrics() {
+        final ChannelPrewarmer channelPrewarmer = prewarmer.getIfAvailable();
+        if (channelPrewarmer == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("durationMillis", channelPrewarmer.getDurationMillis());
+        values.put("timedOut", channelPrewarmer.isTimedOut());
+        final Map<String, Object> channels = new LinkedHashMap<>();
+        channelPrewarmer.getChannelStates().forEach((name, state) -> {
+            final Map<String, Object> channel = new LinkedHashMap<>();
+            channel.put("state", state);
+            channel.put("millis", channelPrewarmer.getChannelMillis().get(name));
+            channels.put(name, channel);
+        });
+        values.put("channels", channels);
+        return values;
+    }
+
+    private static Map<String, Object> latency(final LatencyHistogram histogram) {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", histogram.getCount());
+        values.put("mean", histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1));
+        values.put("p50", toMillis(histogram.getValueAtPercentile(0.5)));
+        values.put("p99", toMillis(histogram.getValueAtPercentile(0.99)));
+        values.put("max", toMillis(histogram.getMax()));
+        return values;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,102 @@
+package com.sunyard.controller;
+
+import com.sunyard.server.GrpcClientEventListener;
+import com.sunyard.server.bulkhead.Bulkhead;
+import com.sunyard.server.metrics.LatencyHistogram;
+import com.sunyard.server.metrics.MethodMetrics;
+import com.sunyard.server.metrics.ServerMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 微服务底座平台
+ * @version 2.0.0
+ * @title: GrpcServerMetricsController
+ * @projectName: grpc-parent
+ * @description: grpc server按方法统计的调用次数、状态码、耗时分布与消息大小, 耗时单位为毫秒; bulkhead线程池的饱和度
+ **/
+@RestController
+@RequestMapping("/grpc")
+@ConditionalOnProperty(value = "grpc.server.metrics.api.enabled", havingValue = "true")
+public class GrpcServerMetricsController {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final ObjectProvider<ServerMetrics> serverMetrics;
+
+    private final ObjectProvider<GrpcClientEventListener> grpcClientEventListener;
+
+    public GrpcServerMetricsController(final ObjectProvider<ServerMetrics> serverMetrics,
+                                       final ObjectProvider<GrpcClientEventListener> grpcClientEventListener) {
+        this.serverMetrics = serverMetrics;
+        this.grpcClientEventListener = grpcClientEventListener;
+    }
+
+    @GetMapping("/metrics/server")
+    public Map<String, Object> serverMetrics() {
+        final ServerMetrics metrics = serverMetrics.getIfAvailable();
+        if (metrics == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (MethodMetrics method : metrics.getMethods().values()) {
+            final Map<String, Object> values = new LinkedHashMap<>();
+            values.put("calls", method.getStartedCalls());
+            values.put("inFlight", method.getInFlightCalls());
+            values.put("status", method.getStatusCounts());
+            values.put("latency", latency(method.getLatency()));
+            values.put("requestMessages", method.getRequestMessages());
+            values.put("requestBytes", method.getRequestBytes());
+            values.put("responseMessages", method.getResponseMessages());
+            values.put("responseBytes", method.getResponseBytes());
+            result.put(method.getFullMethodName(), values);
+        }
+        return result;
+    }
+
+    @GetMapping("/metrics/bulkhead")
+    public Map<String, Object> bulkheadMetrics() {
+        final GrpcClientEventListener listener = grpcClientEventListener.getIfAvailable();
+        if (listener == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (Bulkhead bulkhead : listener.getBulkheads().values()) {
+            final Map<String, Object> values = new LinkedHashMap<>();
+            values.put("capacity", bulkhead.getCapacity());
+            values.put("inFlight", bulkhead.getInFlight());
+            values.put("saturation", bulkhead.getSaturation());
+            values.put("activeThreads", bulkhead.getActiveThreads());
+            values.put("queued", bulkhead.getQueued());
+            values.put("rejected", bulkhead.getRejected());
+            values.put("overflowed", bulkhead.getOverflowed());
+            result.put(bulkhead.getName(), values);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> latency(final LatencyHistogram histogram) {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", histogram.getCount());
+        values.put("mean", histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            values.put(PERCENTILE_NAMES[i], toMillis(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        values.put("max", toMillis(histogram.getMax()));
+        return values;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
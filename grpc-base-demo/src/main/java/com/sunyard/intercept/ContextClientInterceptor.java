@@ -17,15 +17,22 @@
 
 package com.sunyard.intercept;
 
-import io.grpc.*;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import org.springframework.web.server.ServerWebExchange;
 
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Grpc context interceptor.
  * grpc客户端拦截器,从发送的请求头中获取到需要传递到grpc服务端
+ * 上下文为空时不包装调用, 请求头的写入方式见{@link ContextPropagation}, 服务端由{@link ContextServerInterceptor}还原.
  */
 public class ContextClientInterceptor implements ClientInterceptor {
 
@@ -33,22 +40,43 @@ public class ContextClientInterceptor implements ClientInterceptor {
 
     @Override
     public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+        final Map<String, String> rpcContext = RPC_CONTEXT_KEY.get();
+        if (rpcContext == null || rpcContext.isEmpty()) {
+            return channel.newCall(methodDescriptor, callOptions);
+        }
         return new ForwardingClientCall.SimpleForwardingClientCall<R, P>(channel.newCall(methodDescriptor, callOptions)) {
             @Override
             public void start(final Listener<P> responseListener, final Metadata headers) {
-                Optional.ofNullable(RPC_CONTEXT_KEY.get()).ifPresent(map -> map.forEach((k, v) -> {
-                    headers.put(Metadata.Key.of(k, Metadata.ASCII_STRING_MARSHALLER), v);
-                }));
-                // 将Context中的内容通过Metadata传递到请求头后将当前Context解除
-                Context.current().detach(Context.ROOT);
+                // 将Context中的内容通过Metadata传递到请求头
+                ContextPropagation.write(headers, rpcContext);
                 super.start(responseListener, headers);
             }
         };
     }
 
-    public static void grpcContextPopulate(final ServerWebExchange exchange){
+    /**
+     * 将请求中的grpc上下文绑定到当前线程, 调用完成后需使用返回值调用{@link #grpcContextRestore(Context)}.
+     *
+     * @param exchange the exchange
+     * @return the previous context
+     */
+    public static Context grpcContextPopulate(final ServerWebExchange exchange) {
         Map<String, Map<String, String>> rpcContext = exchange.getAttribute("generalContext");
-        Optional.ofNullable(rpcContext).map(context -> context.get("grpc")).ifPresent(
-                context -> Context.current().withValue(RPC_CONTEXT_KEY, context).attach());
+        final Map<String, String> context = rpcContext == null ? null : rpcContext.get("grpc");
+        if (context == null) {
+            return Context.current();
+        }
+        return Context.current().withValue(RPC_CONTEXT_KEY, context).attach();
+    }
+
+    /**
+     * 解除{@link #grpcContextPopulate(ServerWebExchange)}绑定的上下文.
+     *
+     * @param previous the context returned by grpcContextPopulate
+     */
+    public static void grpcContextRestore(final Context previous) {
+        if (Context.current() != previous) {
+            Context.current().detach(previous);
+        }
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.intercept;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import io.grpc.Metadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes the rpc context into the request headers and reads it back on the server.
+ * 请求头的Key按名称缓存, 打包模式下整个上下文编码为一个二进制请求头, 减少HPACK的编码开销.
+ */
+public final class ContextPropagation {
+
+    /**
+     * 打包后的上下文请求头.
+     */
+    public static final Metadata.Key<byte[]> PACKED_CONTEXT_KEY = Metadata.Key.of("x-rpc-context-bin",
+            Metadata.BINARY_BYTE_MARSHALLER);
+
+    /**
+     * 缓存的Key数量上限, 超过后不再缓存, 避免上下文使用动态的key时无限增长.
+     */
+    private static final int MAX_CACHED_KEYS = 1024;
+
+    private static final Map<String, Metadata.Key<String>> KEYS = new ConcurrentHashMap<>();
+
+    private static volatile boolean packed;
+
+    private static volatile List<Metadata.Key<String>> restoredKeys = Collections.emptyList();
+
+    private ContextPropagation() {
+    }
+
+    /**
+     * Set the propagation mode.
+     *
+     * @param properties context propagation properties
+     */
+    public static void configure(final ContextPropagationProperties properties) {
+        final List<Metadata.Key<String>> keys = new ArrayList<>(properties.getKeys().size());
+        for (String name : properties.getKeys()) {
+            keys.add(key(name));
+        }
+        restoredKeys = Collections.unmodifiableList(keys);
+        packed = properties.isPacked();
+    }
+
+    /**
+     * Writes the context into the headers.
+     * 请求头中已有的上下文不会重复写入: 调用方(如ReactorCalls)先写入的值优先, 之后的拦截器不再追加.
+     *
+     * @param headers the request headers
+     * @param context the rpc context, nullable
+     */
+    public static void write(final Metadata headers, final Map<String, String> context) {
+        if (context == null || context.isEmpty()) {
+            return;
+        }
+        if (packed) {
+            if (!headers.containsKey(PACKED_CONTEXT_KEY)) {
+                headers.put(PACKED_CONTEXT_KEY, encode(context));
+            }
+            return;
+        }
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            final Metadata.Key<String> key = key(entry.getKey());
+            if (!headers.containsKey(key)) {
+                headers.put(key, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the context from the headers.
+     *
+     * @param headers the request headers
+     * @return the rpc context, null when the headers carry none
+     */
+    public static Map<String, String> read(final Metadata headers) {
+        final byte[] packedContext = headers.get(PACKED_CONTEXT_KEY);
+        if (packedContext != null) {
+            return decode(packedContext);
+        }
+        Map<String, String> context = null;
+        for (Metadata.Key<String> key : restoredKeys) {
+            final String value = headers.get(key);
+            if (value != null) {
+                if (context == null) {
+                    context = new HashMap<>();
+                }
+                context.put(key.originalName(), value);
+            }
+        }
+        return context;
+    }
+
+    static Metadata.Key<String> key(final String name) {
+        final Metadata.Key<String> key = KEYS.get(name);
+        if (key != null) {
+            return key;
+        }
+        if (KEYS.size() >= MAX_CACHED_KEYS) {
+            return Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER);
+        }
+        return KEYS.computeIfAbsent(name, k -> Metadata.Key.of(k, Metadata.ASCII_STRING_MARSHALLER));
+    }
+
+    /**
+     * 编码为 条目数 + (key, value)*, 长度使用varint, 先计算大小只分配一次数组.
+     */
+    static byte[] encode(final Map<String, String> context) {
+        int size = CodedOutputStream.computeUInt32SizeNoTag(context.size());
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            size += CodedOutputStream.computeStringSizeNoTag(entry.getKey())
+                    + CodedOutputStream.computeStringSizeNoTag(entry.getValue());
+        }
+        final byte[] bytes = new byte[size];
+        final CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        try {
+            output.writeUInt32NoTag(context.size());
+            for (Map.Entry<String, String> entry : context.entrySet()) {
+                output.writeStringNoTag(entry.getKey());
+                output.writeStringNoTag(entry.getValue());
+            }
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode the rpc context", e);
+        }
+        return bytes;
+    }
+
+    static Map<String, String> decode(final byte[] bytes) {
+        final CodedInputStream input = CodedInputStream.newInstance(bytes);
+        try {
+            final int size = input.readUInt32();
+            final Map<String, String> context = new HashMap<>(Math.min(size, bytes.length) * 2);
+            for (int i = 0; i < size; i++) {
+                context.put(input.readStringRequireUtf8(), input.readStringRequireUtf8());
+            }
+            return context;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed " + PACKED_CONTEXT_KEY.name() + " header", e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.intercept;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grpc context propagation properties.
+ * <pre>
+ * grpc:
+ *   context:
+ *     packed: true
+ *     keys:
+ *       - tenant
+ *       - trace-id
+ * </pre>
+ * packed为true时客户端把整个上下文写入一个x-rpc-context-bin请求头, 否则每个条目一个请求头.
+ * 服务端总是还原x-rpc-context-bin, 未打包的上下文只还原keys中配置的请求头.
+ * <p>
+ * 上线顺序: 先将所有服务端升级到能还原x-rpc-context-bin的版本, 再在客户端开启packed.
+ * 旧版本的服务端不识别该请求头, 收到打包的上下文时上下文为空; 回退时先关闭客户端的packed, 再回退服务端.
+ */
+@ConfigurationProperties(prefix = "grpc.context")
+public class ContextPropagationProperties {
+
+    /**
+     * Whether the client sends the context as a single binary header, enable only after all servers are upgraded.
+     */
+    private boolean packed;
+
+    /**
+     * Headers the server restores into the context when the context is not packed.
+     */
+    private List<String> keys = new ArrayList<>();
+
+    public boolean isPacked() {
+        return packed;
+    }
+
+    public void setPacked(final boolean packed) {
+        this.packed = packed;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(final List<String> keys) {
+        this.keys = keys;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.intercept;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Grpc context server interceptor.
+ * 将{@link ContextClientInterceptor}写入的请求头还原到{@link ContextClientInterceptor#RPC_CONTEXT_KEY},
+ * 服务端再调用下游服务时上下文继续传递. 请求没有上下文时不包装调用.
+ */
+public class ContextServerInterceptor implements ServerInterceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContextServerInterceptor.class);
+
+    @Override
+    public <R, P> ServerCall.Listener<R> interceptCall(final ServerCall<R, P> call, final Metadata headers,
+                                                      final ServerCallHandler<R, P> next) {
+        final Map<String, String> rpcContext;
+        try {
+            rpcContext = ContextPropagation.read(headers);
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Ignoring the rpc context of {}", call.getMethodDescriptor().getFullMethodName(), e);
+            return next.startCall(call, headers);
+        }
+        if (rpcContext == null) {
+            return next.startCall(call, headers);
+        }
+        final Context context = Context.current().withValue(ContextClientInterceptor.RPC_CONTEXT_KEY, rpcContext);
+        return Contexts.interceptCall(context, call, headers, next);
+    }
+}
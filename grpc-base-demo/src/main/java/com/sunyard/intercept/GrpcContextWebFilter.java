@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.intercept;
+
+import com.sunyard.client.reactive.ReactorCalls;
+import io.grpc.Context;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Binds the rpc context of a WebFlux request for the grpc calls made while handling it.
+ * 写入Reactor Context, 供{@link ReactorCalls}发起的调用使用, 这些调用的请求头只由ReactorCalls写入;
+ * 同时在订阅处理链期间通过{@link ContextClientInterceptor#grpcContextPopulate(ServerWebExchange)}绑定grpc Context,
+ * 供同步发起的调用由{@link ContextClientInterceptor}写入请求头.
+ * <p>
+ * grpc Context绑定在线程上, 只覆盖订阅处理链的同步部分; 切换线程后(publishOn、subscribeOn、其他调用的回调中)发起的调用
+ * 看不到该绑定, 需使用ReactorCalls. 在其他filter设置generalContext之后执行.
+ */
+public class GrpcContextWebFilter implements WebFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        return Mono.<Void>fromDirect(actual -> {
+            final Context previous = ContextClientInterceptor.grpcContextPopulate(exchange);
+            try {
+                chain.filter(exchange).subscribe(actual);
+            } finally {
+                ContextClientInterceptor.grpcContextRestore(previous);
+            }
+        }).contextWrite(ReactorCalls.rpcContext(exchange));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.intercept;
+
+import com.sunyard.marshaller.LargeMessageMarshallers;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Large message client interceptor.
+ * 配置的方法使用的MethodDescriptor替换为aliasing marshaller,大报文响应只复制一次并且bytes字段不再二次复制.
+ */
+public class LargeMessageClientInterceptor implements ClientInterceptor {
+
+    private final LargeMessageMarshallers marshallers;
+
+    /**
+     * Instantiates a new Large message client interceptor.
+     *
+     * @param marshallers the large message marshallers
+     */
+    public LargeMessageClientInterceptor(final LargeMessageMarshallers marshallers) {
+        this.marshallers = marshallers;
+    }
+
+    @Override
+    public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+        return channel.newCall(marshallers.aliasing(methodDescriptor), callOptions);
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.sunyard.loadbalance;
 
+import com.sunyard.loadbalance.metrics.ClientTelemetry;
 import com.sunyard.loadbalance.picker.AbstractPicker;
 import com.sunyard.loadbalance.picker.AbstractReadyPicker;
 import com.sunyard.loadbalance.picker.EmptyPicker;
@@ -158,6 +159,7 @@ public abstract class AbstractLoadBalancer extends LoadBalancer {
 
     private void shutdownSubchannel(final Subchannel subchannel) {
         subchannel.shutdown();
+        ClientTelemetry.remove(getServiceName(), subchannel);
         SubChannels.setStateInfo(subchannel, ConnectivityStateInfo.forNonError(SHUTDOWN));
     }
 
@@ -191,7 +193,7 @@ public abstract class AbstractLoadBalancer extends LoadBalancer {
             // 针对subChannel状态为CONNECTING或TRANSIENT_FAILURE不使用负载策略
             updateBalancingState(isConnecting ? CONNECTING : TRANSIENT_FAILURE, new EmptyPicker(aggStatus));
         } else {
-            updateBalancingState(READY, newPicker(new ArrayList<>(subchannels.values())));
+            updateBalancingState(READY, newPicker(new ArrayList<>(subchannels.values()), getServiceName()));
         }
     }
 
@@ -212,8 +214,9 @@ public abstract class AbstractLoadBalancer extends LoadBalancer {
     /**
      * Create new picker.
      *
-     * @param list all subchannels
+     * @param list        all subchannels
+     * @param serviceName the service name, tags the telemetry of the subchannels
      * @return ReadyPicker
      */
-    protected abstract AbstractReadyPicker newPicker(List<Subchannel> list);
+    protected abstract AbstractReadyPicker newPicker(List<Subchannel> list, String serviceName);
 }
@@ -48,8 +48,8 @@ public class RandomLoadBalancerProvider extends LoadBalancerProvider {
     public LoadBalancer newLoadBalancer(final LoadBalancer.Helper helper) {
         return new AbstractLoadBalancer(helper) {
             @Override
-            protected AbstractReadyPicker newPicker(final List<Subchannel> list) {
-                return new RandomPicker(list);
+            protected AbstractReadyPicker newPicker(final List<Subchannel> list, final String serviceName) {
+                return new RandomPicker(list, serviceName);
             }
         };
     }
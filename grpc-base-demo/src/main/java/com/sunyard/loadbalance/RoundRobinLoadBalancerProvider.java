@@ -47,8 +47,8 @@ public class RoundRobinLoadBalancerProvider extends LoadBalancerProvider {
     public LoadBalancer newLoadBalancer(final LoadBalancer.Helper helper) {
         return new AbstractLoadBalancer(helper) {
             @Override
-            protected AbstractReadyPicker newPicker(final List<Subchannel> list) {
-                return new RoundRobinPicker(list);
+            protected AbstractReadyPicker newPicker(final List<Subchannel> list, final String serviceName) {
+                return new RoundRobinPicker(list, serviceName);
             }
         };
     }
@@ -17,6 +17,7 @@
 
 package com.sunyard.loadbalance;
 
+import io.grpc.ClientStreamTracer;
 import io.grpc.ConnectivityStateInfo;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.LoadBalancer;
@@ -38,13 +39,26 @@ public class SubChannelCopy {
 
     private final ConnectivityStateInfo state;
 
+    private final ClientStreamTracer.Factory tracerFactory;
+
     /**
      * Instantiates a new Sub channel copy.
      *
      * @param channel the channel
      */
     public SubChannelCopy(final LoadBalancer.Subchannel channel) {
+        this(channel, null);
+    }
+
+    /**
+     * Instantiates a new Sub channel copy.
+     *
+     * @param channel       the channel
+     * @param tracerFactory the stream tracer factory attached to the pick result, nullable
+     */
+    public SubChannelCopy(final LoadBalancer.Subchannel channel, final ClientStreamTracer.Factory tracerFactory) {
         this.channel = channel;
+        this.tracerFactory = tracerFactory;
         this.addressGroup = channel.getAddresses();
         this.weight = SubChannels.getWeight(channel);
         this.state = SubChannels.getStateInfo(channel);
@@ -96,6 +110,15 @@ public class SubChannelCopy {
         return state;
     }
 
+    /**
+     * Gets the stream tracer factory attached to the pick result.
+     *
+     * @return the tracer factory, null when the picker records no telemetry
+     */
+    public ClientStreamTracer.Factory getTracerFactory() {
+        return tracerFactory;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.loadbalance.metrics;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per service and endpoint client telemetry.
+ * picker为选中的subchannel附加{@link ClientStreamTracer.Factory}, 记录每个后端的耗时、错误、字节数与在picker中排队等待的时间,
+ * 计数使用LongAdder分段累加.
+ */
+public final class ClientTelemetry {
+
+    /**
+     * 调用进入channel的时间, 由{@link com.sunyard.intercept.CallStartClientInterceptor}设置.
+     */
+    public static final CallOptions.Key<Long> CALL_START_NANOS = CallOptions.Key.create("callStartNanos");
+
+    private static final String UNKNOWN_SERVICE = "unknown";
+
+    private static final Map<String, Entry> METRICS = new ConcurrentHashMap<>();
+
+    private ClientTelemetry() {
+    }
+
+    /**
+     * Creates the stream tracer factory attached to the pick results of a subchannel.
+     * 同一服务与后端地址的统计由使用它的subchannel共享, channel重建后新旧负载均衡器的subchannel记录到同一份统计.
+     *
+     * @param serviceName the service name, nullable
+     * @param subchannel  the subchannel
+     * @return the stream tracer factory
+     */
+    public static ClientStreamTracer.Factory tracerFactory(final String serviceName, final LoadBalancer.Subchannel subchannel) {
+        final String service = serviceName == null ? UNKNOWN_SERVICE : serviceName;
+        final String endpoint = endpoint(subchannel.getAddresses());
+        final Entry entry = METRICS.compute(key(service, endpoint), (key, current) -> {
+            final Entry result = current == null ? new Entry(new SubchannelMetrics(service, endpoint)) : current;
+            result.subchannels.add(subchannel);
+            return result;
+        });
+        return new TracerFactory(entry.metrics);
+    }
+
+    /**
+     * Releases the metrics held by a subchannel that was shut down.
+     * 统计在最后一个使用它的subchannel关闭后才移除.
+     *
+     * @param serviceName the service name, nullable
+     * @param subchannel  the subchannel
+     */
+    public static void remove(final String serviceName, final LoadBalancer.Subchannel subchannel) {
+        METRICS.computeIfPresent(key(serviceName == null ? UNKNOWN_SERVICE : serviceName, endpoint(subchannel.getAddresses())),
+                (key, entry) -> {
+                    entry.subchannels.remove(subchannel);
+                    return entry.subchannels.isEmpty() ? null : entry;
+                });
+    }
+
+    /**
+     * Gets the metrics of all endpoints.
+     *
+     * @return the metrics of every service and endpoint
+     */
+    public static Collection<SubchannelMetrics> getSubchannels() {
+        final List<SubchannelMetrics> subchannels = new ArrayList<>(METRICS.size());
+        for (Entry entry : METRICS.values()) {
+            subchannels.add(entry.metrics);
+        }
+        return Collections.unmodifiableCollection(subchannels);
+    }
+
+    private static String key(final String serviceName, final String endpoint) {
+        return serviceName + '|' + endpoint;
+    }
+
+    private static String endpoint(final EquivalentAddressGroup addressGroup) {
+        final SocketAddress address = addressGroup.getAddresses().get(0);
+        if (address instanceof InetSocketAddress) {
+            final InetSocketAddress inet = (InetSocketAddress) address;
+            return inet.getHostString() + ":" + inet.getPort();
+        }
+        return address.toString();
+    }
+
+    /**
+     * 一个服务与后端地址的统计及使用它的subchannel, 只在{@link ConcurrentHashMap#compute}中修改.
+     */
+    private static final class Entry {
+
+        private final SubchannelMetrics metrics;
+
+        private final Set<LoadBalancer.Subchannel> subchannels = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Entry(final SubchannelMetrics metrics) {
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * 一个subchannel的tracer工厂, 随picker创建, 每次调用创建一个tracer.
+     */
+    private static final class TracerFactory extends ClientStreamTracer.Factory {
+
+        private final SubchannelMetrics metrics;
+
+        TracerFactory(final SubchannelMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public ClientStreamTracer newClientStreamTracer(final ClientStreamTracer.StreamInfo info, final Metadata headers) {
+            return new Tracer(metrics, info.getCallOptions().getOption(CALL_START_NANOS));
+        }
+    }
+
+    /**
+     * 记录一次调用在subchannel上的stream.
+     */
+    private static final class Tracer extends ClientStreamTracer {
+
+        private final SubchannelMetrics metrics;
+
+        private final long startNanos = System.nanoTime();
+
+        Tracer(final SubchannelMetrics metrics, final Long callStartNanos) {
+            this.metrics = metrics;
+            metrics.recordStarted(callStartNanos == null ? -1L : startNanos - callStartNanos);
+        }
+
+        @Override
+        public void outboundWireSize(final long bytes) {
+            metrics.recordSent(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(final long bytes) {
+            metrics.recordReceived(bytes);
+        }
+
+        @Override
+        public void streamClosed(final Status status) {
+            metrics.recordClosed(status.isOk(), System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.loadbalance.metrics;
+
+import com.sunyard.server.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client side metrics of the calls sent to one endpoint of a service.
+ */
+public class SubchannelMetrics {
+
+    private final String serviceName;
+
+    private final String endpoint;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    private final LongAdder bytesSent = new LongAdder();
+
+    private final LongAdder bytesReceived = new LongAdder();
+
+    SubchannelMetrics(final String serviceName, final String endpoint) {
+        this.serviceName = serviceName;
+        this.endpoint = endpoint;
+    }
+
+    void recordStarted(final long queueWaitNanos) {
+        calls.increment();
+        inFlight.increment();
+        if (queueWaitNanos >= 0) {
+            queueWait.record(queueWaitNanos);
+        }
+    }
+
+    void recordClosed(final boolean ok, final long latencyNanos) {
+        inFlight.decrement();
+        if (!ok) {
+            errors.increment();
+        }
+        latency.record(latencyNanos);
+    }
+
+    void recordSent(final long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    void recordReceived(final long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getInFlightCalls() {
+        return inFlight.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Gets the latency from the stream creation on the subchannel until it is closed.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the time the calls waited for the picker before being assigned to this subchannel.
+     *
+     * @return the queue wait histogram
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+}
@@ -18,6 +18,7 @@
 package com.sunyard.loadbalance.picker;
 
 import com.sunyard.loadbalance.SubChannelCopy;
+import com.sunyard.loadbalance.metrics.ClientTelemetry;
 import io.grpc.ConnectivityState;
 import io.grpc.LoadBalancer;
 import io.grpc.Status;
@@ -43,6 +44,19 @@ public abstract class AbstractReadyPicker extends AbstractPicker implements Pick
         this.hasIdleNode = hasIdleNode();
     }
 
+    /**
+     * 选中的subchannel附加stream tracer, 按服务与后端地址记录调用统计.
+     *
+     * @param list        all subchannels
+     * @param serviceName the service name
+     */
+    AbstractReadyPicker(final List<LoadBalancer.Subchannel> list, final String serviceName) {
+        this.list = list.stream()
+                .map(r -> new SubChannelCopy(r, ClientTelemetry.tracerFactory(serviceName, r)))
+                .collect(Collectors.toList());
+        this.hasIdleNode = hasIdleNode();
+    }
+
     private boolean hasIdleNode() {
         return this.list.stream().anyMatch(r -> r.getState().getState() == ConnectivityState.IDLE
                 || r.getState().getState() == ConnectivityState.CONNECTING);
@@ -56,7 +70,11 @@ public abstract class AbstractReadyPicker extends AbstractPicker implements Pick
             return getErrorPickResult();
         }
         SubChannelCopy channel = pick(list);
-        return Objects.isNull(channel) ? getErrorPickResult() : LoadBalancer.PickResult.withSubchannel(channel.getChannel());
+        if (Objects.isNull(channel)) {
+            return getErrorPickResult();
+        }
+        return Objects.isNull(channel.getTracerFactory()) ? LoadBalancer.PickResult.withSubchannel(channel.getChannel())
+                : LoadBalancer.PickResult.withSubchannel(channel.getChannel(), channel.getTracerFactory());
     }
 
     /**
@@ -32,6 +32,10 @@ public class RandomPicker extends AbstractReadyPicker {
     public RandomPicker(final List<LoadBalancer.Subchannel> list) {
         super(list);
     }
+
+    public RandomPicker(final List<LoadBalancer.Subchannel> list, final String serviceName) {
+        super(list, serviceName);
+    }
     //每次客户端请求服务前会调用Pick方法拿到一个连接，用这个连接去请求
     @Override
     protected SubChannelCopy pick(final List<SubChannelCopy> list) {
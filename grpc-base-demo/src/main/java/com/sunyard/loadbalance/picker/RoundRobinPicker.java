@@ -41,6 +41,10 @@ public class RoundRobinPicker extends AbstractReadyPicker {
         super(list);
     }
 
+    public RoundRobinPicker(final List<LoadBalancer.Subchannel> list, final String serviceName) {
+        super(list, serviceName);
+    }
+
     @Override
     protected SubChannelCopy pick(final List<SubChannelCopy> list) {
         if (CollectionUtils.isEmpty(list)) {
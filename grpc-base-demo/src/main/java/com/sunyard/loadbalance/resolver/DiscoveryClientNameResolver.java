@@ -21,8 +21,12 @@ import cn.hutool.core.util.StrUtil;
 import com.google.common.collect.Lists;
 import com.sunyard.client.ManagedChannelManager;
 import com.sunyard.loadbalance.GrpcAttributeUtils;
+import com.sunyard.loadbalance.resolver.watch.DiscoveryWatcher;
 import io.grpc.*;
 import io.grpc.Attributes.Builder;
+import io.grpc.SynchronizationContext.ScheduledHandle;
+import io.grpc.internal.BackoffPolicy;
+import io.grpc.internal.ExponentialBackoffPolicy;
 import io.grpc.internal.SharedResourceHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,9 +37,12 @@ import org.springframework.util.CollectionUtils;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -47,6 +54,10 @@ import static java.util.Objects.requireNonNull;
 /**
  * The DiscoveryClientNameResolver resolves the service hosts and their associated gRPC port using the channel's name
  * and spring's cloud {@link DiscoveryClient}. The ports are extracted from the {@code gRPC_port} metadata.
+ * 配置了{@link DiscoveryWatcher}时由注册中心推送实例变化,轮询{@link DiscoveryClient}作为兜底.
+ * 配置了{@link EndpointSnapshotStore}时启动即使用上次保存的实例, 注册中心不可用时继续使用并按指数退避重试.
+ * 注册中心返回空实例列表时在宽限期内继续使用之前的地址并按指数退避重新解析, 宽限期后仍为空才关闭channel.
+ * 配置了最小更新间隔时, 滚动发布等场景下的连续变化会合并为一次地址更新, 但最多延迟max-delay.
  */
 public class DiscoveryClientNameResolver extends NameResolver {
 
@@ -58,7 +69,15 @@ public class DiscoveryClientNameResolver extends NameResolver {
 
     private final String name;
     private final DiscoveryClient client;
+    private final DiscoveryWatcher watcher;
+    private final EndpointSnapshotStore snapshotStore;
+    private final long emptyResultGraceNanos;
+    private final long updateMinIntervalNanos;
+    private final long updateMaxDelayNanos;
+    private final ResolverUpdateMetrics updateMetrics;
     private final SynchronizationContext syncContext;
+    private final ScheduledExecutorService scheduler;
+    private final BackoffPolicy.Provider backoffPolicyProvider = new ExponentialBackoffPolicy.Provider();
     private final Consumer<DiscoveryClientNameResolver> shutdownHook;
     private final SharedResourceHolder.Resource<Executor> executorResource;
     private final boolean usingExecutorResource;
@@ -71,6 +90,25 @@ public class DiscoveryClientNameResolver extends NameResolver {
     private Executor executor;
     private boolean resolving;
     private List<ServiceInstance> instanceList = Lists.newArrayList();
+    // instanceList中每个(host, port, instanceId, metadata)的实例数, 用于O(n)比较实例变化, 在解析线程中读取
+    private volatile Map<InstanceFingerprint, Integer> instanceFingerprints = Collections.emptyMap();
+    private DiscoveryWatcher.Subscription subscription;
+    // 解析过程中收到的最新推送,当前解析结束后再处理
+    private List<ServiceInstance> pendingPush;
+    private BackoffPolicy backoffPolicy;
+    private ScheduledHandle retryHandle;
+    // 等待合并发布的地址更新
+    private ResolutionResult pendingResult;
+    private long pendingSinceNanos;
+    private long lastPublishNanos;
+    private ScheduledHandle publishHandle;
+    // Following fields are accessed from the resolve tasks, which never run concurrently
+    // 是否已从注册中心得到过实例
+    private volatile boolean live;
+    // 是否正在使用快照中的实例
+    private volatile boolean servingSnapshot;
+    // 注册中心开始返回空实例列表的时间, 0表示最近一次结果不为空
+    private volatile long emptySinceNanos;
 
     /**
      * Creates a new DiscoveryClientNameResolver.
@@ -84,9 +122,57 @@ public class DiscoveryClientNameResolver extends NameResolver {
     public DiscoveryClientNameResolver(final String name, final DiscoveryClient client, final Args args,
                                        final SharedResourceHolder.Resource<Executor> executorResource,
                                        final Consumer<DiscoveryClientNameResolver> shutdownHook) {
+        this(name, client, null, args, executorResource, shutdownHook);
+    }
+
+    /**
+     * Creates a new DiscoveryClientNameResolver that receives instance changes pushed by the watcher.
+     *
+     * @param name             The name of the service to look up.
+     * @param client           The client used to look up the service addresses.
+     * @param watcher          The optional watcher that pushes instance changes.
+     * @param args             The name resolver args.
+     * @param executorResource The executor resource.
+     * @param shutdownHook     The optional cleaner used during {@link #shutdown()}
+     */
+    public DiscoveryClientNameResolver(final String name, final DiscoveryClient client, final DiscoveryWatcher watcher,
+                                       final Args args,
+                                       final SharedResourceHolder.Resource<Executor> executorResource,
+                                       final Consumer<DiscoveryClientNameResolver> shutdownHook) {
+        this(name, client, watcher, null, new DiscoveryResolverProperties(), new ResolverUpdateMetrics(), args,
+                executorResource, shutdownHook);
+    }
+
+    /**
+     * Creates a new DiscoveryClientNameResolver that receives instance changes pushed by the watcher and falls back
+     * to the last known good instances.
+     *
+     * @param name             The name of the service to look up.
+     * @param client           The client used to look up the service addresses.
+     * @param watcher          The optional watcher that pushes instance changes.
+     * @param snapshotStore    The optional store of the last known good instances.
+     * @param properties       The resolver properties.
+     * @param updateMetrics    The counters of published and merged address updates.
+     * @param args             The name resolver args.
+     * @param executorResource The executor resource.
+     * @param shutdownHook     The optional cleaner used during {@link #shutdown()}
+     */
+    public DiscoveryClientNameResolver(final String name, final DiscoveryClient client, final DiscoveryWatcher watcher,
+                                       final EndpointSnapshotStore snapshotStore,
+                                       final DiscoveryResolverProperties properties,
+                                       final ResolverUpdateMetrics updateMetrics, final Args args,
+                                       final SharedResourceHolder.Resource<Executor> executorResource,
+                                       final Consumer<DiscoveryClientNameResolver> shutdownHook) {
         this.name = name;
         this.client = client;
+        this.watcher = watcher;
+        this.snapshotStore = snapshotStore;
+        this.emptyResultGraceNanos = properties.getEmptyResultGracePeriod().toNanos();
+        this.updateMinIntervalNanos = properties.getUpdateMinInterval().toNanos();
+        this.updateMaxDelayNanos = properties.getUpdateMaxDelay().toNanos();
+        this.updateMetrics = updateMetrics;
         this.syncContext = requireNonNull(args.getSynchronizationContext(), "syncContext");
+        this.scheduler = scheduledExecutorService(args);
         this.shutdownHook = shutdownHook;
         this.executor = args.getOffloadExecutor();
         this.usingExecutorResource = this.executor == null;
@@ -94,6 +180,15 @@ public class DiscoveryClientNameResolver extends NameResolver {
         this.attributes = Attributes.newBuilder().set(GrpcAttributeUtils.APP_NAME, name).build();
     }
 
+    private static ScheduledExecutorService scheduledExecutorService(final Args args) {
+        try {
+            return args.getScheduledExecutorService();
+        } catch (final IllegalStateException e) {
+            // channel总会设置, 只有手动构造的Args可能没有, 此时不做重试
+            return null;
+        }
+    }
+
     /**
      * Gets the name of the service to get the instances of.
      *
@@ -124,9 +219,38 @@ public class DiscoveryClientNameResolver extends NameResolver {
             this.executor = SharedResourceHolder.get(this.executorResource);
         }
         this.listener = checkNotNull(listener, "listener");
+        watch();
         resolve();
     }
 
+    private void watch() {
+        if (this.watcher == null) {
+            return;
+        }
+        try {
+            this.subscription = this.watcher.watch(this.name, this::refreshFromExternal);
+        } catch (final RuntimeException e) {
+            log.warn("Failed to watch {}, falling back to polling", this.name, e);
+        }
+    }
+
+    /**
+     * Updates the listener with instances discovered elsewhere, e.g. pushed by the watcher or fetched by the
+     * provider. This method can safely be called from any thread.
+     *
+     * @param instances The current instances of the service.
+     */
+    public void refreshFromExternal(final List<ServiceInstance> instances) {
+        final List<ServiceInstance> pushed = instances == null ? Lists.newArrayList() : new ArrayList<>(instances);
+        this.syncContext.execute(() -> {
+            if (isActive()) {
+                log.debug("Received {} pushed servers for {}", pushed.size(), this.name);
+                this.pendingPush = pushed;
+                resolve();
+            }
+        });
+    }
+
     @Override
     public void refresh() {
         checkState(isActive(), "not started");
@@ -207,34 +331,38 @@ public class DiscoveryClientNameResolver extends NameResolver {
         builder.set(DiscoveryClientResolverProvider.WEIGHT, weight);
         // 服务状态关联attribute属性可选
         builder.set(DiscoveryClientResolverProvider.STATUS, "true");
+        if (StrUtil.isNotBlank(metadata.get("zone"))) {
+            builder.set(DiscoveryClientResolverProvider.ZONE, metadata.get("zone"));
+        }
         return builder.build();
     }
 
+    /**
+     * Gets the metadata of the service instance that is relevant for the load balancer, changes of it are pushed to
+     * the listener. Can be overwritten to ignore volatile entries.
+     *
+     * @param instance The instance to get the metadata from.
+     * @return The relevant metadata, never null.
+     */
+    protected Map<String, String> getRelevantMetadata(final ServiceInstance instance) {
+        final Map<String, String> metadata = instance.getMetadata();
+        return metadata == null ? Collections.emptyMap() : metadata;
+    }
+
     /**
      * Checks whether this instance should update its connections.
      *
      * @param newInstanceList The new instances that should be compared to the stored ones.
-     * @return True, if the given instance list contains different entries than the stored ones.
+     * @return True, if the given instance list contains different entries than the stored ones, including metadata
+     * only changes such as weight or status.
      */
     protected boolean needsToUpdateConnections(final List<ServiceInstance> newInstanceList) {
-        if (this.instanceList.size() != newInstanceList.size()) {
-            return true;
-        }
-        for (final ServiceInstance instance : this.instanceList) {
-            final int port = getGrpcPort(instance);
-            boolean isSame = false;
-            for (final ServiceInstance newInstance : newInstanceList) {
-                final int newPort = getGrpcPort(newInstance);
-                if (newInstance.getHost().equals(instance.getHost()) && port == newPort) {
-                    isSame = true;
-                    break;
-                }
-            }
-            if (!isSame) {
-                return true;
-            }
-        }
-        return false;
+        // 按指纹计数比较, 列表中重复的实例不会被当作变化
+        return !this.instanceFingerprints.equals(fingerprints(newInstanceList));
+    }
+
+    private Map<InstanceFingerprint, Integer> fingerprints(final List<ServiceInstance> instances) {
+        return InstanceFingerprint.count(instances, this::getGrpcPort, this::getRelevantMetadata);
     }
 
     private void resolve() {
@@ -243,21 +371,112 @@ public class DiscoveryClientNameResolver extends NameResolver {
             return;
         }
         this.resolving = true;
-        this.executor.execute(new Resolve(this.listener));
+        final List<ServiceInstance> pushed = this.pendingPush;
+        this.pendingPush = null;
+        // 立即解析, 不再需要等待中的重试
+        if (this.retryHandle != null) {
+            this.retryHandle.cancel();
+            this.retryHandle = null;
+        }
+        this.executor.execute(new Resolve(this.listener, pushed));
     }
 
     @Override
     public void shutdown() {
         this.listener = null;
+        if (this.subscription != null) {
+            this.subscription.cancel();
+            this.subscription = null;
+        }
+        this.pendingPush = null;
+        if (this.retryHandle != null) {
+            this.retryHandle.cancel();
+            this.retryHandle = null;
+        }
+        discardPendingResult();
         if (this.executor != null && this.usingExecutorResource) {
             this.executor = SharedResourceHolder.release(this.executorResource, this.executor);
         }
         this.instanceList = Lists.newArrayList();
+        this.instanceFingerprints = Collections.emptyMap();
         if (this.shutdownHook != null) {
             this.shutdownHook.accept(this);
         }
     }
 
+    /**
+     * Publishes the address update to the listener, or merges it with the following updates if the last one was
+     * published less than the minimum interval ago. Must be called from syncContext.
+     *
+     * @param result The resolution result.
+     */
+    private void publish(final ResolutionResult result) {
+        final long now = System.nanoTime();
+        if (this.scheduler == null || this.updateMinIntervalNanos <= 0
+                || (this.pendingResult == null && now - this.lastPublishNanos >= this.updateMinIntervalNanos)) {
+            publishNow(result, now);
+            return;
+        }
+        if (this.pendingResult != null) {
+            this.updateMetrics.recordMerged();
+        } else {
+            this.pendingSinceNanos = now;
+        }
+        this.pendingResult = result;
+        if (this.publishHandle != null) {
+            this.publishHandle.cancel();
+        }
+        // 静默min-interval后发布, 但从第一次变化起最多等待max-delay
+        final long deadline = Math.min(now + this.updateMinIntervalNanos,
+                this.pendingSinceNanos + this.updateMaxDelayNanos);
+        this.publishHandle = this.syncContext.schedule(() -> {
+            this.publishHandle = null;
+            final ResolutionResult pending = this.pendingResult;
+            this.pendingResult = null;
+            if (pending != null) {
+                publishNow(pending, System.nanoTime());
+            }
+        }, Math.max(0L, deadline - now), TimeUnit.NANOSECONDS, this.scheduler);
+    }
+
+    private void publishNow(final ResolutionResult result, final long now) {
+        if (!isActive()) {
+            return;
+        }
+        this.lastPublishNanos = now;
+        this.updateMetrics.recordPublished();
+        this.listener.onResult(result);
+        log.info("Done updating server list for {}", this.name);
+    }
+
+    private void discardPendingResult() {
+        this.pendingResult = null;
+        if (this.publishHandle != null) {
+            this.publishHandle.cancel();
+            this.publishHandle = null;
+        }
+    }
+
+    /**
+     * Schedules a resolve with exponential backoff, must be called from syncContext.
+     */
+    private void scheduleRetry() {
+        if (this.scheduler == null || (this.retryHandle != null && this.retryHandle.isPending())) {
+            return;
+        }
+        if (this.backoffPolicy == null) {
+            this.backoffPolicy = this.backoffPolicyProvider.get();
+        }
+        final long delayNanos = this.backoffPolicy.nextBackoffNanos();
+        log.debug("Scheduling re-resolution of {} in {} ms", this.name, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+        this.retryHandle = this.syncContext.schedule(() -> {
+            this.retryHandle = null;
+            if (isActive()) {
+                resolve();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS, this.scheduler);
+    }
+
     @Override
     public String toString() {
         return "DiscoveryClientNameResolver [name=" + this.name + ", discoveryClient=" + this.client + "]";
@@ -271,13 +490,24 @@ public class DiscoveryClientNameResolver extends NameResolver {
         // The listener is stored in an extra variable to avoid NPEs if the resolver is shutdown while resolving
         private final Listener2 savedListener;
 
+        // 注册中心推送的实例, null表示通过DiscoveryClient查询
+        private final List<ServiceInstance> pushed;
+
+        // 注册中心不可用且正在使用快照时需要重试
+        private boolean retry;
+
+        // 需要发布给listener的地址更新
+        private ResolutionResult update;
+
         /**
          * Creates a new Resolve that stores a snapshot of the relevant states of the resolver.
          *
          * @param listener The listener to send the results to.
+         * @param pushed   The instances pushed by the watcher or null to poll the discovery client.
          */
-        Resolve(final Listener2 listener) {
+        Resolve(final Listener2 listener, final List<ServiceInstance> pushed) {
             this.savedListener = requireNonNull(listener, "listener");
+            this.pushed = pushed;
         }
 
         @Override
@@ -286,15 +516,35 @@ public class DiscoveryClientNameResolver extends NameResolver {
             try {
                 resultContainer.set(resolveInternal());
             } catch (final Exception e) {
-                this.savedListener.onError(Status.UNAVAILABLE.withCause(e)
-                        .withDescription("Failed to update server list for " + getName()));
-                resultContainer.set(Lists.newArrayList());
+                if (DiscoveryClientNameResolver.this.servingSnapshot) {
+                    log.warn("Failed to update server list for {}, keep using the endpoint snapshot", getName(), e);
+                    this.retry = true;
+                } else {
+                    this.savedListener.onError(Status.UNAVAILABLE.withCause(e)
+                            .withDescription("Failed to update server list for " + getName()));
+                    resultContainer.set(Lists.newArrayList());
+                }
             } finally {
                 DiscoveryClientNameResolver.this.syncContext.execute(() -> {
                     DiscoveryClientNameResolver.this.resolving = false;
                     final List<ServiceInstance> result = resultContainer.get();
                     if (result != KEEP_PREVIOUS && isActive()) {
                         DiscoveryClientNameResolver.this.instanceList = result;
+                        DiscoveryClientNameResolver.this.instanceFingerprints = fingerprints(result);
+                        if (result.isEmpty()) {
+                            discardPendingResult();
+                        }
+                    }
+                    if (this.update != null && isActive()) {
+                        publish(this.update);
+                    }
+                    if (this.retry && isActive()) {
+                        scheduleRetry();
+                    } else if (DiscoveryClientNameResolver.this.live) {
+                        DiscoveryClientNameResolver.this.backoffPolicy = null;
+                    }
+                    if (DiscoveryClientNameResolver.this.pendingPush != null && isActive()) {
+                        resolve();
                     }
                 });
             }
@@ -307,18 +557,34 @@ public class DiscoveryClientNameResolver extends NameResolver {
          * should be used.
          */
         private List<ServiceInstance> resolveInternal() {
+            if (this.pushed == null) {
+                serveSnapshot();
+            }
             // Discover servers
-            final List<ServiceInstance> newInstanceList = discoverServers();
+            final List<ServiceInstance> newInstanceList = this.pushed != null ? this.pushed : discoverServers();
+            if (CollectionUtils.isEmpty(newInstanceList) && DiscoveryClientNameResolver.this.servingSnapshot) {
+                log.warn("No servers found for {}, keep using the endpoint snapshot", getName());
+                this.retry = true;
+                return KEEP_PREVIOUS;
+            }
+            if (CollectionUtils.isEmpty(newInstanceList) && keepPreviousServers()) {
+                this.retry = true;
+                return KEEP_PREVIOUS;
+            }
             if (CollectionUtils.isEmpty(newInstanceList)) {
                 log.error("No servers found for {}", getName());
+                DiscoveryClientNameResolver.this.emptySinceNanos = 0L;
                 this.savedListener.onError(Status.UNAVAILABLE.withDescription("No servers found for " + getName()));
                 removeClientChannel();
                 return Lists.newArrayList();
             } else {
                 log.debug("Got {} candidate servers for {}", newInstanceList.size(), getName());
             }
+            DiscoveryClientNameResolver.this.live = true;
+            DiscoveryClientNameResolver.this.servingSnapshot = false;
+            DiscoveryClientNameResolver.this.emptySinceNanos = 0L;
 
-            // Check for changes 验证注册中心上的服务地址 port  同一服务下的服务实例数量等信息是否变化
+            // Check for changes 验证注册中心上的服务地址 port 元数据(权重、状态) 同一服务下的服务实例数量等信息是否变化
             if (!needsToUpdateConnections(newInstanceList)) {
                 log.debug("Nothing has changed... skipping update for {}", getName());
                 return KEEP_PREVIOUS;
@@ -327,13 +593,71 @@ public class DiscoveryClientNameResolver extends NameResolver {
             // Set new servers
             // 给listener设置EquivalentAddressGroup列表 EquivalentAddressGroup就是后端服务的ip与端口
             log.debug("Ready to update server list for {}", getName());
-            this.savedListener.onResult(ResolutionResult.newBuilder()
+            this.update = ResolutionResult.newBuilder()
                     .setAddresses(toTargets(newInstanceList))
-                    .build());
-            log.info("Done updating server list for {}", getName());
+                    .setAttributes(DiscoveryClientNameResolver.this.attributes)
+                    .build();
+            if (DiscoveryClientNameResolver.this.snapshotStore != null) {
+                DiscoveryClientNameResolver.this.snapshotStore.save(getName(), newInstanceList);
+            }
             return newInstanceList;
         }
 
+        /**
+         * Stale-while-revalidate: checks whether the previous servers should still be used after an empty result.
+         *
+         * @return True, if the previous servers are kept and the resolution should be retried.
+         */
+        private boolean keepPreviousServers() {
+            if (DiscoveryClientNameResolver.this.emptyResultGraceNanos <= 0
+                    || DiscoveryClientNameResolver.this.instanceFingerprints.isEmpty()) {
+                return false;
+            }
+            final long now = System.nanoTime();
+            long emptySince = DiscoveryClientNameResolver.this.emptySinceNanos;
+            if (emptySince == 0L) {
+                // nanoTime可能为0, 用1代替
+                emptySince = now == 0L ? 1L : now;
+                DiscoveryClientNameResolver.this.emptySinceNanos = emptySince;
+            }
+            final long emptyNanos = now - emptySince;
+            if (emptyNanos < DiscoveryClientNameResolver.this.emptyResultGraceNanos) {
+                log.warn("No servers found for {}, keep using {} previous servers while revalidating", getName(),
+                        DiscoveryClientNameResolver.this.instanceFingerprints.size());
+                return true;
+            }
+            log.warn("No servers found for {} within {} ms", getName(), TimeUnit.NANOSECONDS.toMillis(emptyNanos));
+            return false;
+        }
+
+        /**
+         * Publishes the last known good instances before the registry answered for the first time.
+         */
+        private void serveSnapshot() {
+            if (DiscoveryClientNameResolver.this.snapshotStore == null || DiscoveryClientNameResolver.this.live
+                    || DiscoveryClientNameResolver.this.servingSnapshot) {
+                return;
+            }
+            final List<ServiceInstance> snapshot = DiscoveryClientNameResolver.this.snapshotStore.load(getName());
+            if (snapshot.isEmpty()) {
+                return;
+            }
+            log.info("Using endpoint snapshot with {} servers for {}", snapshot.size(), getName());
+            final ResolutionResult result = ResolutionResult.newBuilder()
+                    .setAddresses(toTargets(snapshot))
+                    .setAttributes(DiscoveryClientNameResolver.this.attributes)
+                    .build();
+            DiscoveryClientNameResolver.this.servingSnapshot = true;
+            // 与注册中心的结果一样记录实例指纹并经过publish发布, 注册中心返回相同的实例时不再重复更新
+            DiscoveryClientNameResolver.this.syncContext.execute(() -> {
+                if (isActive()) {
+                    DiscoveryClientNameResolver.this.instanceList = snapshot;
+                    DiscoveryClientNameResolver.this.instanceFingerprints = fingerprints(snapshot);
+                    publish(result);
+                }
+            });
+        }
+
         private List<EquivalentAddressGroup> toTargets(final List<ServiceInstance> newInstanceList) {
             final List<EquivalentAddressGroup> targets = Lists.newArrayList();
             for (final ServiceInstance instance : newInstanceList) {
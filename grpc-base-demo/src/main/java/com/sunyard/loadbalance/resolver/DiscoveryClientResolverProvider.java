@@ -17,10 +17,14 @@
 
 package com.sunyard.loadbalance.resolver;
 
+import com.sunyard.loadbalance.resolver.watch.DiscoveryWatcher;
 import io.grpc.Attributes.Key;
 import io.grpc.NameResolver;
 import io.grpc.NameResolverProvider;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
@@ -30,18 +34,32 @@ import org.springframework.context.event.EventListener;
 import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * A name resolver factory that will create a {@link DiscoveryClientNameResolver} based on the target uri.
+ * 注册中心心跳变化时由provider以有限并发查询各服务实例, 与上次的实例指纹逐一比较, 只通知实例确实变化的服务的resolver.
  *
  * @author Michael (yidongnan@gmail.com)
  */
 public class DiscoveryClientResolverProvider extends NameResolverProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(DiscoveryClientResolverProvider.class);
+
     /**
      * The constant containing the scheme that will be used by this factory.
      */
@@ -59,18 +77,64 @@ public class DiscoveryClientResolverProvider extends NameResolverProvider {
 
     public static final Key<String> STATUS = Key.create("status");
 
+    public static final Key<String> ZONE = Key.create("zone");
+
     private final Set<DiscoveryClientNameResolver> discoveryClientNameResolvers = ConcurrentHashMap.newKeySet();
     private final HeartbeatMonitor monitor = new HeartbeatMonitor();
 
     private final DiscoveryClient client;
 
+    private final DiscoveryWatcher watcher;
+
+    private final int refreshParallelism;
+
+    private final EndpointSnapshotStore snapshotStore;
+
+    private final DiscoveryResolverProperties properties;
+
+    private final ResolverUpdateMetrics updateMetrics = new ResolverUpdateMetrics();
+
+    // key为服务名, value为上次心跳刷新时各实例指纹的数量
+    private final Map<String, Map<InstanceFingerprint, Integer>> serviceInstances = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private volatile Executor refreshExecutor;
+
     /**
      * Creates a new discovery client based name resolver factory.
      *
      * @param client The client to use for the address discovery.
      */
     public DiscoveryClientResolverProvider(final DiscoveryClient client) {
+        this(client, null);
+    }
+
+    /**
+     * Creates a new discovery client based name resolver factory, the watcher pushes instance changes and the
+     * client is used as fallback.
+     *
+     * @param client  The client to use for the address discovery.
+     * @param watcher The optional watcher that pushes instance changes.
+     */
+    public DiscoveryClientResolverProvider(final DiscoveryClient client, @Nullable final DiscoveryWatcher watcher) {
+        this(client, watcher, new DiscoveryResolverProperties());
+    }
+
+    /**
+     * Creates a new discovery client based name resolver factory.
+     *
+     * @param client     The client to use for the address discovery.
+     * @param watcher    The optional watcher that pushes instance changes.
+     * @param properties The resolver properties.
+     */
+    public DiscoveryClientResolverProvider(final DiscoveryClient client, @Nullable final DiscoveryWatcher watcher,
+                                           final DiscoveryResolverProperties properties) {
         this.client = requireNonNull(client, "client");
+        this.watcher = watcher;
+        this.properties = properties;
+        this.refreshParallelism = Math.max(1, properties.getRefreshParallelism());
+        this.snapshotStore = properties.getSnapshot().isEnabled()
+                ? new EndpointSnapshotStore(Paths.get(properties.getSnapshot().getDirectory())) : null;
     }
 
     @Nullable
@@ -98,8 +162,18 @@ public class DiscoveryClientResolverProvider extends NameResolverProvider {
      * @return A newly created DiscoveryClientNameResolver.
      */
     protected DiscoveryClientNameResolver newNameResolver(final String serviceName, final NameResolver.Args args) {
-        return new DiscoveryClientNameResolver(serviceName, this.client, args,
-                GrpcUtil.SHARED_CHANNEL_EXECUTOR, this.discoveryClientNameResolvers::remove);
+        return new DiscoveryClientNameResolver(serviceName, this.client, this.watcher, this.snapshotStore,
+                this.properties, this.updateMetrics, args, GrpcUtil.SHARED_CHANNEL_EXECUTOR,
+                this.discoveryClientNameResolvers::remove);
+    }
+
+    /**
+     * Gets the counters of the address updates published by the resolvers of this provider.
+     *
+     * @return the update metrics
+     */
+    public ResolverUpdateMetrics getUpdateMetrics() {
+        return this.updateMetrics;
     }
 
     @Override
@@ -126,10 +200,104 @@ public class DiscoveryClientResolverProvider extends NameResolverProvider {
     @EventListener(HeartbeatEvent.class)
     public void heartbeat(final HeartbeatEvent event) {
         if (this.monitor.update(event.getValue())) {
-            for (final DiscoveryClientNameResolver discoveryClientNameResolver : this.discoveryClientNameResolvers) {
-                discoveryClientNameResolver.refreshFromExternal();
+            refresh();
+        }
+    }
+
+    /**
+     * Fetches the instances of every resolved service with bounded parallelism and notifies the resolvers of the
+     * services that changed. A refresh requested while one is running is merged into a single follow-up pass.
+     */
+    public void refresh() {
+        this.refreshPending.set(true);
+        if (!this.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        this.refreshPending.set(false);
+        final Map<String, List<DiscoveryClientNameResolver>> resolvers = new HashMap<>();
+        for (final DiscoveryClientNameResolver resolver : this.discoveryClientNameResolvers) {
+            resolvers.computeIfAbsent(resolver.getName(), k -> new ArrayList<>()).add(resolver);
+        }
+        this.serviceInstances.keySet().retainAll(resolvers.keySet());
+        if (resolvers.isEmpty()) {
+            finishRefresh();
+            return;
+        }
+        final Queue<String> serviceNames = new ConcurrentLinkedQueue<>(resolvers.keySet());
+        final int workers = Math.min(this.refreshParallelism, resolvers.size());
+        final AtomicInteger remaining = new AtomicInteger(workers);
+        final Executor executor = getRefreshExecutor();
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> {
+                try {
+                    String serviceName;
+                    while ((serviceName = serviceNames.poll()) != null) {
+                        refreshService(serviceName, resolvers.get(serviceName));
+                    }
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        finishRefresh();
+                    }
+                }
+            });
+        }
+    }
+
+    private void refreshService(final String serviceName, final List<DiscoveryClientNameResolver> resolvers) {
+        final List<ServiceInstance> instances;
+        try {
+            instances = this.client.getInstances(serviceName);
+        } catch (final RuntimeException e) {
+            log.warn("Failed to refresh instances of {}", serviceName, e);
+            // 交给resolver自己的轮询与错误处理
+            this.serviceInstances.remove(serviceName);
+            resolvers.forEach(DiscoveryClientNameResolver::refreshFromExternal);
+            return;
+        }
+        final Map<InstanceFingerprint, Integer> fingerprints = fingerprints(instances);
+        final Map<InstanceFingerprint, Integer> previous = this.serviceInstances.put(serviceName, fingerprints);
+        if (fingerprints.equals(previous)) {
+            log.debug("Instances of {} unchanged, skipping refresh", serviceName);
+            return;
+        }
+        for (final DiscoveryClientNameResolver resolver : resolvers) {
+            resolver.refreshFromExternal(instances);
+        }
+    }
+
+    private void finishRefresh() {
+        this.refreshing.set(false);
+        if (this.refreshPending.get()) {
+            refresh();
+        }
+    }
+
+    private Executor getRefreshExecutor() {
+        Executor executor = this.refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.refreshExecutor;
+                if (executor == null) {
+                    executor = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+                    this.refreshExecutor = executor;
+                }
             }
         }
+        return executor;
+    }
+
+    /**
+     * Counts the fingerprints of the instances, compared exactly so that no change is hidden by a hash collision.
+     *
+     * @param instances The instances of a service.
+     * @return The number of instances keyed by fingerprint.
+     */
+    static Map<InstanceFingerprint, Integer> fingerprints(final List<ServiceInstance> instances) {
+        if (instances == null) {
+            return Collections.emptyMap();
+        }
+        return InstanceFingerprint.count(instances, ServiceInstance::getPort,
+                instance -> instance.getMetadata() == null ? null : new HashMap<>(instance.getMetadata()));
     }
 
     /**
@@ -138,12 +306,22 @@ public class DiscoveryClientResolverProvider extends NameResolverProvider {
     @PreDestroy
     public void destroy() {
         this.discoveryClientNameResolvers.clear();
+        this.serviceInstances.clear();
+        if (this.snapshotStore != null) {
+            this.snapshotStore.close();
+        }
+        synchronized (this) {
+            if (this.refreshExecutor != null) {
+                this.refreshExecutor = SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR,
+                        this.refreshExecutor);
+            }
+        }
     }
 
     @Override
     public String toString() {
         return "DiscoveryClientResolverFactory [scheme=" + getDefaultScheme() +
-                ", discoveryClient=" + this.client + "]";
+                ", discoveryClient=" + this.client + ", watcher=" + this.watcher + "]";
     }
 
 }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Discovery name resolver properties.
+ * <pre>
+ * grpc:
+ *   discovery:
+ *     refresh-parallelism: 4
+ *     empty-result-grace-period: 30s
+ *     update-min-interval: 1s
+ *     update-max-delay: 5s
+ *     file-watch-interval: 5s
+ *     snapshot:
+ *       enabled: true
+ *       directory: /data/grpc/endpoints
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "grpc.discovery")
+public class DiscoveryResolverProperties {
+
+    /**
+     * Maximum number of concurrent registry queries when refreshing the resolvers on a registry heartbeat.
+     */
+    private int refreshParallelism = 4;
+
+    /**
+     * How long the previous servers are kept while the registry returns no instance, zero removes the channel on the
+     * first empty result.
+     */
+    private Duration emptyResultGracePeriod = Duration.ofSeconds(30);
+
+    /**
+     * Minimum interval between two address updates of a service, updates arriving within it are merged, zero
+     * publishes every update immediately.
+     */
+    private Duration updateMinInterval = Duration.ZERO;
+
+    /**
+     * Maximum delay of a merged address update.
+     */
+    private Duration updateMaxDelay = Duration.ofSeconds(5);
+
+    /**
+     * Interval of checking the endpoints files of {@code file:///} targets for changes.
+     */
+    private Duration fileWatchInterval = Duration.ofSeconds(5);
+
+    /**
+     * Last known good endpoint snapshot.
+     */
+    private Snapshot snapshot = new Snapshot();
+
+    public int getRefreshParallelism() {
+        return refreshParallelism;
+    }
+
+    public void setRefreshParallelism(final int refreshParallelism) {
+        this.refreshParallelism = refreshParallelism;
+    }
+
+    public Duration getEmptyResultGracePeriod() {
+        return emptyResultGracePeriod;
+    }
+
+    public void setEmptyResultGracePeriod(final Duration emptyResultGracePeriod) {
+        this.emptyResultGracePeriod = emptyResultGracePeriod;
+    }
+
+    public Duration getUpdateMinInterval() {
+        return updateMinInterval;
+    }
+
+    public void setUpdateMinInterval(final Duration updateMinInterval) {
+        this.updateMinInterval = updateMinInterval;
+    }
+
+    public Duration getUpdateMaxDelay() {
+        return updateMaxDelay;
+    }
+
+    public void setUpdateMaxDelay(final Duration updateMaxDelay) {
+        this.updateMaxDelay = updateMaxDelay;
+    }
+
+    public Duration getFileWatchInterval() {
+        return fileWatchInterval;
+    }
+
+    public void setFileWatchInterval(final Duration fileWatchInterval) {
+        this.fileWatchInterval = fileWatchInterval;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(final Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Endpoint snapshot properties.
+     */
+    public static class Snapshot {
+
+        /**
+         * Whether resolved instances are persisted and used on start and during registry outages.
+         */
+        private boolean enabled;
+
+        /**
+         * Directory of the snapshot files.
+         */
+        private String directory = System.getProperty("user.home") + "/.grpc/endpoints";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(final String directory) {
+            this.directory = directory;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last-known-good endpoint snapshot store.
+ * 每个服务的最近一次注册中心解析结果以紧凑的二进制格式保存在本地文件中, 启动时和注册中心不可用时使用.
+ * 写入在单独的线程中异步进行, 同一服务未写入的旧结果会被最新结果覆盖.
+ */
+public class EndpointSnapshotStore implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointSnapshotStore.class);
+
+    private static final int MAGIC = 0x47455031;
+
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+
+    private final Map<String, List<ServiceInstance>> pending = new ConcurrentHashMap<>();
+
+    private final ExecutorService writer;
+
+    /**
+     * Instantiates a new Endpoint snapshot store.
+     *
+     * @param directory the directory of the snapshot files
+     */
+    public EndpointSnapshotStore(final Path directory) {
+        this.directory = directory;
+        this.writer = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, "grpc-endpoint-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ((ThreadPoolExecutor) this.writer).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads the snapshot of a service.
+     *
+     * @param serviceName the service name
+     * @return the instances, empty if there is no readable snapshot
+     */
+    public List<ServiceInstance> load(final String serviceName) {
+        final List<ServiceInstance> unsaved = pending.get(serviceName);
+        if (unsaved != null) {
+            return unsaved;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file(serviceName)))) {
+            return read(serviceName, new DataInputStream(in));
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read endpoint snapshot of {}", serviceName, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Saves the snapshot of a service asynchronously.
+     *
+     * @param serviceName the service name
+     * @param instances   the instances
+     */
+    public void save(final String serviceName, final List<ServiceInstance> instances) {
+        if (pending.put(serviceName, new ArrayList<>(instances)) == null) {
+            flushLater(serviceName);
+        }
+    }
+
+    private void flushLater(final String serviceName) {
+        try {
+            writer.execute(() -> flush(serviceName));
+        } catch (RejectedExecutionException e) {
+            // 保留在pending中, 由close()写入
+            log.debug("Endpoint snapshot store closing, snapshot of {} is written on close", serviceName);
+        }
+    }
+
+    private void flush(final String serviceName) {
+        final List<ServiceInstance> instances = pending.get(serviceName);
+        if (instances == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            final Path target = file(serviceName);
+            final Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    write(instances, new DataOutputStream(out));
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write endpoint snapshot of {}", serviceName, e);
+        } finally {
+            // 写入期间有新结果时再写一次
+            if (!pending.remove(serviceName, instances)) {
+                flushLater(serviceName);
+            }
+        }
+    }
+
+    private Path file(final String serviceName) {
+        final StringBuilder name = new StringBuilder(serviceName.length() + SUFFIX.length());
+        for (int i = 0; i < serviceName.length(); i++) {
+            final char c = serviceName.charAt(i);
+            name.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+        }
+        return directory.resolve(name.append(SUFFIX).toString());
+    }
+
+    private static void write(final List<ServiceInstance> instances, final DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(instances.size());
+        for (ServiceInstance instance : instances) {
+            out.writeUTF(instance.getInstanceId() == null ? "" : instance.getInstanceId());
+            out.writeUTF(instance.getHost());
+            out.writeInt(instance.getPort());
+            out.writeBoolean(instance.isSecure());
+            final Map<String, String> metadata = instance.getMetadata() == null
+                    ? Collections.emptyMap() : instance.getMetadata();
+            out.writeInt(metadata.size());
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue() == null ? "" : entry.getValue());
+            }
+        }
+    }
+
+    private static List<ServiceInstance> read(final String serviceName, final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Unknown endpoint snapshot format");
+        }
+        final int size = in.readInt();
+        final List<ServiceInstance> instances = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final String instanceId = in.readUTF();
+            final String host = in.readUTF();
+            final int port = in.readInt();
+            final boolean secure = in.readBoolean();
+            final int metadataSize = in.readInt();
+            final Map<String, String> metadata = new HashMap<>(metadataSize * 4 / 3 + 1);
+            for (int j = 0; j < metadataSize; j++) {
+                metadata.put(in.readUTF(), in.readUTF());
+            }
+            instances.add(new DefaultServiceInstance(instanceId.isEmpty() ? null : instanceId, serviceName, host,
+                    port, secure, metadata));
+        }
+        return instances;
+    }
+
+    /**
+     * Writes the pending snapshots and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Timed out writing endpoint snapshots");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // 关闭期间保存的结果不再交给writer, 在当前线程写入
+        for (String serviceName : new ArrayList<>(pending.keySet())) {
+            flush(serviceName);
+        }
+    }
+}
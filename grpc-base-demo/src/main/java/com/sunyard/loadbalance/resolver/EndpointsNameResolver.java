@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import com.sunyard.loadbalance.resolver.watch.DiscoveryWatcher;
+import io.grpc.internal.GrpcUtil;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Name resolver of endpoints that are configured without a registry, e.g. {@code static:///} or {@code file:///}
+ * targets. 与{@link DiscoveryClientNameResolver}生成相同的地址和属性, 自定义负载均衡无需修改.
+ */
+public class EndpointsNameResolver extends DiscoveryClientNameResolver {
+
+    private final Supplier<List<ServiceInstance>> endpoints;
+
+    /**
+     * Creates a new EndpointsNameResolver.
+     *
+     * @param name      The name of the service.
+     * @param endpoints The supplier of the current endpoints.
+     * @param watcher   The optional watcher that pushes endpoint changes.
+     * @param args      The name resolver args.
+     */
+    public EndpointsNameResolver(final String name, final Supplier<List<ServiceInstance>> endpoints,
+                                 final DiscoveryWatcher watcher, final Args args) {
+        super(name, null, watcher, args, GrpcUtil.SHARED_CHANNEL_EXECUTOR, null);
+        this.endpoints = endpoints;
+    }
+
+    @Override
+    protected List<ServiceInstance> discoverServers() {
+        return this.endpoints.get();
+    }
+
+    @Override
+    protected void removeClientChannel() {
+        // 没有注册中心时endpoints为空是配置问题, 保留channel等待配置恢复
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointsNameResolver [name=" + getName() + "]";
+    }
+}
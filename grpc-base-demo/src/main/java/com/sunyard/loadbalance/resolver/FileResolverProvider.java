@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import com.sunyard.loadbalance.resolver.watch.FileDiscoveryWatcher;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * A name resolver factory for endpoints files, e.g. {@code file:///etc/grpc/order-service.endpoints}.
+ * 文件格式见{@link StaticEndpoints}, 服务名为不含扩展名的文件名, 文件变化时自动更新地址.
+ */
+public class FileResolverProvider extends NameResolverProvider {
+
+    /**
+     * The constant containing the scheme that will be used by this factory.
+     */
+    public static final String FILE_SCHEME = "file";
+
+    private final Duration watchInterval;
+
+    /**
+     * Creates a new file based name resolver factory.
+     *
+     * @param watchInterval The interval of checking the files for changes.
+     */
+    public FileResolverProvider(final Duration watchInterval) {
+        this.watchInterval = watchInterval;
+    }
+
+    @Nullable
+    @Override
+    public NameResolver newNameResolver(final URI targetUri, final NameResolver.Args args) {
+        if (!FILE_SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        final Path file = Paths.get(targetUri);
+        final String fileName = file.getFileName().toString();
+        final int dot = fileName.lastIndexOf('.');
+        final String serviceName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        final FileDiscoveryWatcher watcher = new FileDiscoveryWatcher(file, this.watchInterval);
+        return new EndpointsNameResolver(serviceName, () -> watcher.getInstances(serviceName), watcher, args);
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return FILE_SCHEME;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        // 低于DiscoveryClientResolverProvider, 不作为默认scheme
+        return 5;
+    }
+
+    @Override
+    public String toString() {
+        return "FileResolverProvider [scheme=" + getDefaultScheme() + ", watchInterval=" + this.watchInterval + "]";
+    }
+}
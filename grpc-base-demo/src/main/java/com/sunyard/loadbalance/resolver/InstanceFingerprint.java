@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * The identity of a service instance as seen by the load balancer.
+ * 实例列表按指纹计数比较, 与顺序无关, 重复的实例也计入.
+ */
+final class InstanceFingerprint {
+
+    private final String host;
+    private final int port;
+    private final String instanceId;
+    private final Map<String, String> metadata;
+    private final int hash;
+
+    InstanceFingerprint(final String host, final int port, final String instanceId,
+                        final Map<String, String> metadata) {
+        this.host = host;
+        this.port = port;
+        this.instanceId = instanceId;
+        this.metadata = metadata == null ? Collections.emptyMap() : metadata;
+        this.hash = Objects.hash(host, port, instanceId, this.metadata);
+    }
+
+    /**
+     * Counts the fingerprints of the instances.
+     *
+     * @param instances The instances.
+     * @param port      The port of an instance.
+     * @param metadata  The relevant metadata of an instance.
+     * @return The number of instances keyed by fingerprint.
+     */
+    static Map<InstanceFingerprint, Integer> count(final List<ServiceInstance> instances,
+                                                   final ToIntFunction<ServiceInstance> port,
+                                                   final Function<ServiceInstance, Map<String, String>> metadata) {
+        final Map<InstanceFingerprint, Integer> counts = new HashMap<>(instances.size() * 4 / 3 + 1);
+        for (final ServiceInstance instance : instances) {
+            counts.merge(new InstanceFingerprint(instance.getHost(), port.applyAsInt(instance),
+                    instance.getInstanceId(), metadata.apply(instance)), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final InstanceFingerprint that = (InstanceFingerprint) o;
+        return this.hash == that.hash && this.port == that.port && Objects.equals(this.host, that.host)
+                && Objects.equals(this.instanceId, that.instanceId) && this.metadata.equals(that.metadata);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+}
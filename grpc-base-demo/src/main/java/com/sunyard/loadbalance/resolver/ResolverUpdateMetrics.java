@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the address updates published by the discovery name resolvers.
+ */
+public class ResolverUpdateMetrics {
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder merged = new LongAdder();
+
+    void recordPublished() {
+        published.increment();
+    }
+
+    void recordMerged() {
+        merged.increment();
+    }
+
+    /**
+     * Gets the number of updates passed to the load balancers.
+     *
+     * @return the published update count
+     */
+    public long getPublishedUpdates() {
+        return published.sum();
+    }
+
+    /**
+     * Gets the number of updates that were replaced by a later update before being published.
+     *
+     * @return the merged update count
+     */
+    public long getMergedUpdates() {
+        return merged.sum();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser of statically configured endpoints.
+ * <pre>
+ * # 每行或逗号分隔一个实例, 实例后可跟空格或分号分隔的元数据
+ * 10.0.0.1:9090 weight=10 zone=a
+ * 10.0.0.2:9090;weight=5;zone=b
+ * [::1]:9090
+ * </pre>
+ * 元数据中的weight等与注册中心实例元数据的使用方式相同.
+ */
+public final class StaticEndpoints {
+
+    private StaticEndpoints() {
+    }
+
+    /**
+     * Parses the endpoints.
+     *
+     * @param serviceName the service name of the instances
+     * @param spec        the endpoints
+     * @return the instances in declaration order
+     * @throws IllegalArgumentException if an endpoint is malformed
+     */
+    public static List<ServiceInstance> parse(final String serviceName, final String spec) {
+        final List<ServiceInstance> instances = new ArrayList<>();
+        for (String line : spec.split("[,\\r\\n]")) {
+            final int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            final String[] tokens = line.trim().split("[\\s;]+");
+            if (tokens[0].isEmpty()) {
+                continue;
+            }
+            final Map<String, String> metadata = new LinkedHashMap<>();
+            for (int i = 1; i < tokens.length; i++) {
+                final int eq = tokens[i].indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("Malformed endpoint metadata '" + tokens[i] + "' in: " + line);
+                }
+                metadata.put(tokens[i].substring(0, eq), tokens[i].substring(eq + 1));
+            }
+            instances.add(toInstance(serviceName, tokens[0], metadata));
+        }
+        return instances;
+    }
+
+    private static ServiceInstance toInstance(final String serviceName, final String address,
+                                              final Map<String, String> metadata) {
+        final int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1
+                || (address.charAt(0) == '[' && address.charAt(colon - 1) != ']')) {
+            throw new IllegalArgumentException("Expected host:port but was: " + address);
+        }
+        String host = address.substring(0, colon);
+        if (host.charAt(0) == '[') {
+            host = host.substring(1, host.length() - 1);
+        }
+        final int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal port in: " + address, e);
+        }
+        return new DefaultServiceInstance(address, serviceName, host, port, false, metadata);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import org.springframework.cloud.client.ServiceInstance;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A name resolver factory for fixed endpoints, e.g. {@code static:///10.0.0.1:9090,10.0.0.2:9090} or
+ * {@code static://service-name/10.0.0.1:9090;weight=10,10.0.0.2:9090;weight=5}. 用于基准测试、CI等没有注册中心的环境.
+ * IPv6地址的方括号在URI路径中不合法, 需要使用{@link FileResolverProvider}.
+ */
+public class StaticResolverProvider extends NameResolverProvider {
+
+    /**
+     * The constant containing the scheme that will be used by this factory.
+     */
+    public static final String STATIC_SCHEME = "static";
+
+    @Nullable
+    @Override
+    public NameResolver newNameResolver(final URI targetUri, final NameResolver.Args args) {
+        if (!STATIC_SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        final String path = targetUri.getPath();
+        if (path == null || path.length() <= 1) {
+            throw new IllegalArgumentException("Incorrectly formatted target uri; "
+                    + "expected: '" + STATIC_SCHEME + "://[service-name]/<host:port>[,<host:port>...]'; "
+                    + "but was '" + targetUri + "'");
+        }
+        final String serviceName = targetUri.getAuthority() == null ? STATIC_SCHEME : targetUri.getAuthority();
+        final List<ServiceInstance> instances = Collections.unmodifiableList(
+                StaticEndpoints.parse(serviceName, path.substring(1)));
+        return new EndpointsNameResolver(serviceName, () -> instances, null, args);
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return STATIC_SCHEME;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        // 低于DiscoveryClientResolverProvider, 不作为默认scheme
+        return 5;
+    }
+
+    @Override
+    public String toString() {
+        return "StaticResolverProvider [scheme=" + getDefaultScheme() + "]";
+    }
+}
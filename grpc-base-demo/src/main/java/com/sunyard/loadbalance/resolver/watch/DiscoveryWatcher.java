@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver.watch;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Discovery watch SPI. 注册中心推送服务实例变化,{@link com.sunyard.loadbalance.resolver.DiscoveryClientNameResolver}
+ * 收到推送后直接更新地址,不再等待心跳触发的轮询;心跳轮询保留为兜底.
+ */
+public interface DiscoveryWatcher {
+
+    /**
+     * Watch the instances of a service. The listener receives the full instance list on every change,
+     * implementations should push the current instances right after subscribing if they are known.
+     *
+     * @param serviceName the service name
+     * @param listener    the listener
+     * @return the subscription
+     */
+    Subscription watch(String serviceName, Consumer<List<ServiceInstance>> listener);
+
+    /**
+     * Subscription of a watch.
+     */
+    interface Subscription {
+
+        /**
+         * Stop watching.
+         */
+        void cancel();
+    }
+}
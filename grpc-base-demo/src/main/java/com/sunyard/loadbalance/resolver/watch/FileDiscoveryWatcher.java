@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver.watch;
+
+import com.sunyard.loadbalance.resolver.StaticEndpoints;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * {@link DiscoveryWatcher} of an endpoints file in the {@link StaticEndpoints} format.
+ * 按固定间隔检查文件的修改时间和大小, 变化时重新读取并推送, 读取失败时保留上一次的实例.
+ */
+public class FileDiscoveryWatcher implements DiscoveryWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileDiscoveryWatcher.class);
+
+    private final Path file;
+
+    private final long intervalNanos;
+
+    private volatile List<ServiceInstance> instances = Collections.emptyList();
+
+    private Object version;
+
+    /**
+     * Instantiates a new File discovery watcher.
+     *
+     * @param file     the endpoints file
+     * @param interval the interval of checking the file for changes
+     */
+    public FileDiscoveryWatcher(final Path file, final Duration interval) {
+        this.file = file;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * Gets the instances read from the file, reading it if it changed.
+     *
+     * @param serviceName the service name of the instances
+     * @return the instances
+     */
+    public synchronized List<ServiceInstance> getInstances(final String serviceName) {
+        reload(serviceName);
+        return instances;
+    }
+
+    /**
+     * Reloads the file if it changed.
+     *
+     * @param serviceName the service name of the instances
+     * @return true if the instances changed
+     */
+    private synchronized boolean reload(final String serviceName) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final Object newVersion = attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+            if (Objects.equals(version, newVersion)) {
+                return false;
+            }
+            final List<ServiceInstance> newInstances = StaticEndpoints.parse(serviceName,
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            version = newVersion;
+            instances = Collections.unmodifiableList(newInstances);
+            LOG.info("Loaded {} endpoints of {} from {}", newInstances.size(), serviceName, file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to read endpoints of {} from {}", serviceName, file, e);
+            return false;
+        }
+    }
+
+    @Override
+    public Subscription watch(final String serviceName, final Consumer<List<ServiceInstance>> listener) {
+        reload(serviceName);
+        listener.accept(instances);
+        final ScheduledExecutorService timer = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+        final ScheduledFuture<?> future = timer.scheduleWithFixedDelay(() -> {
+            if (reload(serviceName)) {
+                listener.accept(instances);
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        return () -> {
+            if (cancelled.compareAndSet(false, true)) {
+                future.cancel(false);
+                SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timer);
+            }
+        };
+    }
+}
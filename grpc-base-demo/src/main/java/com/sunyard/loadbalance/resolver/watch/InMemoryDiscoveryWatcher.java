@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver.watch;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * In-memory {@link DiscoveryWatcher}, instances are set programmatically. 用于测试和没有注册中心的场景.
+ */
+public class InMemoryDiscoveryWatcher implements DiscoveryWatcher {
+
+    private final Map<String, List<ServiceInstance>> instances = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Consumer<List<ServiceInstance>>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public Subscription watch(final String serviceName, final Consumer<List<ServiceInstance>> listener) {
+        final Set<Consumer<List<ServiceInstance>>> serviceListeners = listeners.computeIfAbsent(serviceName, k -> new CopyOnWriteArraySet<>());
+        serviceListeners.add(listener);
+        final List<ServiceInstance> current = instances.get(serviceName);
+        if (current != null) {
+            listener.accept(current);
+        }
+        return () -> serviceListeners.remove(listener);
+    }
+
+    /**
+     * Replace the instances of a service and notify the watchers.
+     *
+     * @param serviceName      the service name
+     * @param serviceInstances the instances
+     */
+    public void setInstances(final String serviceName, final List<ServiceInstance> serviceInstances) {
+        final List<ServiceInstance> snapshot = Collections.unmodifiableList(new ArrayList<>(serviceInstances));
+        instances.put(serviceName, snapshot);
+        for (Consumer<List<ServiceInstance>> listener : listeners.getOrDefault(serviceName, Collections.emptySet())) {
+            listener.accept(snapshot);
+        }
+    }
+
+    /**
+     * Gets the instances of a service.
+     *
+     * @param serviceName the service name
+     * @return the instances, empty if unknown
+     */
+    public List<ServiceInstance> getInstances(final String serviceName) {
+        return instances.getOrDefault(serviceName, Collections.emptyList());
+    }
+}
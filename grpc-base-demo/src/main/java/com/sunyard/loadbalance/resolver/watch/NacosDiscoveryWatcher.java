@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver.watch;
+
+import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
+import com.alibaba.cloud.nacos.NacosServiceManager;
+import com.alibaba.cloud.nacos.discovery.NacosServiceDiscovery;
+import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Nacos subscription based {@link DiscoveryWatcher}.
+ * 与NacosDiscoveryClient一致,只保留健康且启用的实例.
+ */
+public class NacosDiscoveryWatcher implements DiscoveryWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NacosDiscoveryWatcher.class);
+
+    private final NacosServiceManager nacosServiceManager;
+
+    private final NacosDiscoveryProperties discoveryProperties;
+
+    /**
+     * Instantiates a new Nacos discovery watcher.
+     *
+     * @param nacosServiceManager the nacos service manager
+     * @param discoveryProperties the nacos discovery properties
+     */
+    public NacosDiscoveryWatcher(final NacosServiceManager nacosServiceManager, final NacosDiscoveryProperties discoveryProperties) {
+        this.nacosServiceManager = nacosServiceManager;
+        this.discoveryProperties = discoveryProperties;
+    }
+
+    @Override
+    public Subscription watch(final String serviceName, final Consumer<List<ServiceInstance>> listener) {
+        final NamingService namingService = nacosServiceManager.getNamingService();
+        final String group = discoveryProperties.getGroup();
+        final EventListener eventListener = event -> {
+            if (event instanceof NamingEvent) {
+                listener.accept(toServiceInstances(serviceName, ((NamingEvent) event).getInstances()));
+            }
+        };
+        try {
+            namingService.subscribe(serviceName, group, eventListener);
+        } catch (NacosException e) {
+            throw new IllegalStateException("Failed to subscribe " + serviceName + " from nacos", e);
+        }
+        return () -> {
+            try {
+                namingService.unsubscribe(serviceName, group, eventListener);
+            } catch (NacosException e) {
+                LOG.warn("Failed to unsubscribe {} from nacos", serviceName, e);
+            }
+        };
+    }
+
+    private static List<ServiceInstance> toServiceInstances(final String serviceName, final List<Instance> instances) {
+        final List<ServiceInstance> result = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (instance.isHealthy() && instance.isEnabled()) {
+                result.add(NacosServiceDiscovery.hostToServiceInstance(instance, serviceName));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.marshaller;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * AliasingProtoMarshaller.大报文的protobuf解析.
+ * <p>
+ * grpc默认的marshaller对超过4MB的报文使用流式CodedInputStream解析,每个bytes字段都会再复制一份到新的数组.
+ * 该marshaller对超过阈值的报文只从transport的buffer复制一次到一个专属数组,并开启aliasing解析,
+ * 解析得到的ByteString直接引用该数组而不再复制. 数组只被解析出的消息引用,不做线程级复用,
+ * 因此消息的生命周期即数组的生命周期,由GC回收.
+ * <p>
+ * 小于阈值的报文以及in-process transport的报文仍交给原marshaller处理.
+ *
+ * @param <T> message type
+ */
+public class AliasingProtoMarshaller<T extends MessageLite> implements MethodDescriptor.PrototypeMarshaller<T> {
+
+    private final MethodDescriptor.PrototypeMarshaller<T> delegate;
+
+    private final Parser<T> parser;
+
+    private final int threshold;
+
+    /**
+     * Instantiates a new Aliasing proto marshaller.
+     *
+     * @param delegate  the generated marshaller
+     * @param parser    the message parser
+     * @param threshold messages larger than or equal to the threshold are parsed with aliasing
+     */
+    public AliasingProtoMarshaller(final MethodDescriptor.PrototypeMarshaller<T> delegate, final Parser<T> parser,
+                                   final int threshold) {
+        this.delegate = delegate;
+        this.parser = parser;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return delegate.getMessagePrototype();
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+        return delegate.getMessageClass();
+    }
+
+    @Override
+    public InputStream stream(final T value) {
+        return delegate.stream(value);
+    }
+
+    @Override
+    public T parse(final InputStream stream) {
+        // Drainable为in-process transport的ProtoInputStream,原marshaller可直接返回消息对象
+        if (!(stream instanceof KnownLength) || stream instanceof Drainable) {
+            return delegate.parse(stream);
+        }
+        final byte[] buf;
+        try {
+            final int size = stream.available();
+            if (size < threshold) {
+                return delegate.parse(stream);
+            }
+            buf = readFully(stream, size);
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Failed to read protobuf message").withCause(e).asRuntimeException();
+        }
+        // 通过unsafeWrap创建的CodedInputStream视数组为不可变,开启aliasing后bytes字段直接引用该数组
+        final CodedInputStream cis = UnsafeByteOperations.unsafeWrap(buf).newCodedInput();
+        cis.enableAliasing(true);
+        cis.setSizeLimit(Integer.MAX_VALUE);
+        try {
+            final T message = parser.parseFrom(cis);
+            cis.checkLastTagWas(0);
+            return message;
+        } catch (InvalidProtocolBufferException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        }
+    }
+
+    private static byte[] readFully(final InputStream stream, final int size) throws IOException {
+        final byte[] buf = new byte[size];
+        int position = 0;
+        while (position < size) {
+            final int count = stream.read(buf, position, size - position);
+            if (count == -1) {
+                throw new IOException("size inaccurate: " + size + " != " + position);
+            }
+            position += count;
+        }
+        return buf;
+    }
+}
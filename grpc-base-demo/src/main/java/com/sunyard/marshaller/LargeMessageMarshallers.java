@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.marshaller;
+
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LargeMessageMarshallers.将配置的方法在grpc生成的MethodDescriptor中的protobuf marshaller替换为{@link AliasingProtoMarshaller},
+ * 其他方法保持原marshaller, 见{@link LargeMessageProperties}.
+ */
+public final class LargeMessageMarshallers {
+
+    /**
+     * The default threshold, 1MB.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+    /**
+     * service name或full method name.
+     */
+    private final Set<String> methods;
+
+    private final int threshold;
+
+    /**
+     * key为full method name,避免每次调用重新构建MethodDescriptor.
+     */
+    private final Map<String, MethodDescriptor<?, ?>> methodCache = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new Large message marshallers.
+     *
+     * @param properties the large message properties
+     */
+    public LargeMessageMarshallers(final LargeMessageProperties properties) {
+        this(properties.getMethods(), Math.toIntExact(properties.getThreshold().toBytes()));
+    }
+
+    /**
+     * Instantiates a new Large message marshallers.
+     *
+     * @param methods   service names or full method names
+     * @param threshold messages larger than or equal to the threshold are parsed with aliasing
+     */
+    public LargeMessageMarshallers(final List<String> methods, final int threshold) {
+        this.methods = Collections.unmodifiableSet(new HashSet<>(methods));
+        this.threshold = threshold;
+    }
+
+    /**
+     * Whether the method uses the aliasing marshaller.
+     *
+     * @param method the method
+     * @return true if the method or its service is configured
+     */
+    public boolean isAliasing(final MethodDescriptor<?, ?> method) {
+        return methods.contains(method.getFullMethodName()) || methods.contains(method.getServiceName());
+    }
+
+    /**
+     * Whether any method is configured.
+     *
+     * @return true if no method uses the aliasing marshaller
+     */
+    public boolean isEmpty() {
+        return methods.isEmpty();
+    }
+
+    /**
+     * Gets the cached aliasing method descriptor.
+     *
+     * @param method the generated method descriptor
+     * @param <R>    request type
+     * @param <P>    response type
+     * @return the method descriptor using aliasing marshallers, the given one if the method is not configured
+     */
+    @SuppressWarnings("unchecked")
+    public <R, P> MethodDescriptor<R, P> aliasing(final MethodDescriptor<R, P> method) {
+        if (!isAliasing(method)) {
+            return method;
+        }
+        final MethodDescriptor<?, ?> cached = methodCache.get(method.getFullMethodName());
+        if (cached != null && isSameSchema(cached, method)) {
+            return (MethodDescriptor<R, P>) cached;
+        }
+        final MethodDescriptor<R, P> aliasing = method.toBuilder()
+                .setRequestMarshaller(wrap(method.getRequestMarshaller()))
+                .setResponseMarshaller(wrap(method.getResponseMarshaller()))
+                .build();
+        methodCache.put(method.getFullMethodName(), aliasing);
+        return aliasing;
+    }
+
+    /**
+     * Rebuild the service definition with aliasing marshallers for the configured methods.
+     *
+     * @param serviceDefinition the service definition
+     * @return the new service definition, the given one if none of its methods is configured
+     */
+    public ServerServiceDefinition aliasing(final ServerServiceDefinition serviceDefinition) {
+        boolean configured = false;
+        for (ServerMethodDefinition<?, ?> method : serviceDefinition.getMethods()) {
+            configured |= isAliasing(method.getMethodDescriptor());
+        }
+        if (!configured) {
+            return serviceDefinition;
+        }
+        final ServiceDescriptor originDescriptor = serviceDefinition.getServiceDescriptor();
+        final List<ServerMethodDefinition<?, ?>> methodDefinitions = new ArrayList<>();
+        final ServiceDescriptor.Builder descriptorBuilder = ServiceDescriptor.newBuilder(originDescriptor.getName())
+                .setSchemaDescriptor(originDescriptor.getSchemaDescriptor());
+        for (ServerMethodDefinition<?, ?> method : serviceDefinition.getMethods()) {
+            final ServerMethodDefinition<?, ?> aliasingMethod = aliasing(method);
+            descriptorBuilder.addMethod(aliasingMethod.getMethodDescriptor());
+            methodDefinitions.add(aliasingMethod);
+        }
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+        for (ServerMethodDefinition<?, ?> method : methodDefinitions) {
+            builder.addMethod(method);
+        }
+        return builder.build();
+    }
+
+    private <R, P> ServerMethodDefinition<R, P> aliasing(final ServerMethodDefinition<R, P> method) {
+        return ServerMethodDefinition.create(aliasing(method.getMethodDescriptor()), method.getServerCallHandler());
+    }
+
+    private static boolean isSameSchema(final MethodDescriptor<?, ?> cached, final MethodDescriptor<?, ?> method) {
+        return cached.getSchemaDescriptor() == method.getSchemaDescriptor() && cached.getType() == method.getType();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> MethodDescriptor.Marshaller<T> wrap(final MethodDescriptor.Marshaller<T> marshaller) {
+        if (marshaller instanceof AliasingProtoMarshaller || !(marshaller instanceof MethodDescriptor.PrototypeMarshaller)) {
+            return marshaller;
+        }
+        final Object prototype = ((MethodDescriptor.PrototypeMarshaller<T>) marshaller).getMessagePrototype();
+        if (!(prototype instanceof MessageLite)) {
+            return marshaller;
+        }
+        return (MethodDescriptor.Marshaller<T>) newMarshaller((MethodDescriptor.PrototypeMarshaller<MessageLite>) marshaller,
+                (MessageLite) prototype);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends MessageLite> AliasingProtoMarshaller<T> newMarshaller(
+            final MethodDescriptor.PrototypeMarshaller<T> marshaller, final T prototype) {
+        return new AliasingProtoMarshaller<>(marshaller, (Parser<T>) prototype.getParserForType(), threshold);
+    }
+}
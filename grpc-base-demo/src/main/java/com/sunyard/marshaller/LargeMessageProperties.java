@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.marshaller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Large message properties.
+ * <pre>
+ * grpc:
+ *   large-message:
+ *     enabled: true
+ *     threshold: 1MB
+ *     methods:
+ *       - com.sunyard.hello.FileService
+ *       - com.sunyard.hello.HelloService/download
+ * </pre>
+ * methods为service name或full method name. 解析出的ByteString引用整个报文数组, 只保留一个小字段也会使整个报文无法回收,
+ * 因此只对确实传输大报文的方法开启.
+ */
+@ConfigurationProperties(prefix = "grpc.large-message")
+public class LargeMessageProperties {
+
+    /**
+     * Whether the aliasing marshaller is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * Messages larger than or equal to this size are parsed with aliasing.
+     */
+    private DataSize threshold = DataSize.ofMegabytes(1);
+
+    /**
+     * Service names or full method names using the aliasing marshaller.
+     */
+    private List<String> methods = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DataSize getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(final DataSize threshold) {
+        this.threshold = threshold;
+    }
+
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(final List<String> methods) {
+        this.methods = methods;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import io.grpc.stub.CallStreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batching writer of a pipeline stream.
+ * 帧数或字节数达到上限时立即发送,否则最多等待flushDelay后发送;流不可写(isReady为false)时暂存,onReady后再发送.
+ * 暂存的字节数不超过maxPendingBytes, 超过时拒绝带payload的帧.
+ */
+final class FrameBatcher implements Runnable {
+
+    private final CallStreamObserver<List<PipelineFrame>> observer;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final int maxBatchFrames;
+
+    private final int maxBatchBytes;
+
+    private final long flushDelayNanos;
+
+    private final long maxPendingBytes;
+
+    private List<PipelineFrame> pending = new ArrayList<>();
+
+    private long pendingBytes;
+
+    private ScheduledFuture<?> flushTask;
+
+    private boolean closed;
+
+    FrameBatcher(final CallStreamObserver<List<PipelineFrame>> observer, final ScheduledExecutorService scheduler,
+                 final PipelineProperties properties) {
+        this.observer = observer;
+        this.scheduler = scheduler;
+        this.maxBatchFrames = properties.getMaxBatchFrames();
+        this.maxBatchBytes = properties.getMaxBatchBytes();
+        this.flushDelayNanos = properties.getFlushDelay().toNanos();
+        this.maxPendingBytes = properties.getMaxPendingBytes();
+    }
+
+    /**
+     * Enqueue a frame.
+     *
+     * @param frame the frame
+     * @return false if the stream has been closed or the pending bytes would exceed maxPendingBytes
+     */
+    synchronized boolean enqueue(final PipelineFrame frame) {
+        if (closed) {
+            return false;
+        }
+        final int weight = frame.weight();
+        if (!frame.getPayload().isEmpty() && !pending.isEmpty() && pendingBytes + weight > maxPendingBytes) {
+            return false;
+        }
+        pending.add(frame);
+        pendingBytes += weight;
+        if (pending.size() >= maxBatchFrames || pendingBytes >= maxBatchBytes || flushDelayNanos <= 0) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = scheduler.schedule(this, flushDelayNanos, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Whether half of maxPendingBytes is waiting for the stream to become writable.
+     *
+     * @return true if the reader should stop accepting frames
+     */
+    synchronized boolean isSaturated() {
+        return pendingBytes >= maxPendingBytes / 2;
+    }
+
+    /**
+     * Whether the batcher has been closed.
+     *
+     * @return true if closed
+     */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Flush delay elapsed.
+     */
+    @Override
+    public synchronized void run() {
+        flushTask = null;
+        flush();
+    }
+
+    /**
+     * The stream became writable.
+     */
+    synchronized void onReady() {
+        flush();
+    }
+
+    /**
+     * Close the batcher, pending frames are dropped.
+     */
+    synchronized void close() {
+        closed = true;
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+    }
+
+    /**
+     * Send pending frames and complete the stream.
+     */
+    synchronized void finish() {
+        if (closed) {
+            return;
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        try {
+            if (!pending.isEmpty()) {
+                observer.onNext(pending);
+            }
+            observer.onCompleted();
+        } catch (RuntimeException e) {
+            // 流已被取消
+        }
+        close();
+    }
+
+    private void flush() {
+        if (closed || pending.isEmpty() || !observer.isReady()) {
+            return;
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        final List<PipelineFrame> batch = pending;
+        pending = new ArrayList<>(Math.min(batch.size(), maxBatchFrames));
+        pendingBytes = 0;
+        try {
+            observer.onNext(batch);
+        } catch (RuntimeException e) {
+            // 流已被取消
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.sunyard.utils.SerializingExecutor;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ConnectivityState;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pipeline client interceptor.
+ * 配置的unary方法不再为每次调用创建http2 stream,而是以帧的形式复用少量长连接的双向流,通过id对应请求和响应,
+ * 多个帧合并为一批发送. 每个channel使用一个实例.
+ * <p>
+ * 请求头和deadline随帧传递,取消和超时只在客户端生效(服务端的处理不会中断).
+ * 长连接的流在创建时选定subchannel,负载均衡的粒度为流而不是调用.
+ * 服务端未开启pipeline时回退为普通调用.
+ */
+public class PipelineClientInterceptor implements ClientInterceptor {
+
+    private static final long CLOSED = -1L;
+
+    private static final long FULL = -2L;
+
+    private final PipelineProperties properties;
+
+    private final Set<String> methods;
+
+    private final ScheduledExecutorService scheduler = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+
+    /**
+     * CallOptions没有指定executor时回调listener使用的executor.
+     */
+    private final Executor callbackPool = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    private final AtomicReferenceArray<PipelineStream> streams;
+
+    private final AtomicInteger nextStream = new AtomicInteger();
+
+    private volatile boolean unsupported;
+
+    private volatile boolean shutdown;
+
+    /**
+     * Instantiates a new Pipeline client interceptor.
+     *
+     * @param properties the pipeline properties
+     */
+    public PipelineClientInterceptor(final PipelineProperties properties) {
+        this.properties = properties;
+        this.methods = new HashSet<>(properties.getMethods());
+        this.streams = new AtomicReferenceArray<>(Math.max(1, properties.getStreams()));
+    }
+
+    @Override
+    public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+        if (unsupported || shutdown || methodDescriptor.getType() != MethodDescriptor.MethodType.UNARY
+                || !(methods.contains(methodDescriptor.getFullMethodName()) || methods.contains(methodDescriptor.getServiceName()))) {
+            return channel.newCall(methodDescriptor, callOptions);
+        }
+        return new PipelinedCall<>(methodDescriptor, callOptions, channel);
+    }
+
+    /**
+     * Cancel the pipeline streams once the channel is shut down, so that they do not keep the channel alive.
+     *
+     * @param channel the channel this interceptor is installed on
+     */
+    public void cancelOnShutdown(final ManagedChannel channel) {
+        final ConnectivityState state = channel.getState(false);
+        if (state == ConnectivityState.SHUTDOWN) {
+            shutdown();
+            return;
+        }
+        channel.notifyWhenStateChanged(state, () -> cancelOnShutdown(channel));
+    }
+
+    /**
+     * Cancel all pipeline streams and release the shared timer and executor.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (int i = 0; i < streams.length(); i++) {
+            final PipelineStream stream = streams.getAndSet(i, null);
+            if (stream != null) {
+                stream.cancel();
+            }
+        }
+        if (released.compareAndSet(false, true)) {
+            SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, scheduler);
+            SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR, callbackPool);
+        }
+    }
+
+    private PipelineStream stream(final Channel channel) {
+        final int index = (nextStream.getAndIncrement() & Integer.MAX_VALUE) % streams.length();
+        for (;;) {
+            final PipelineStream current = streams.get(index);
+            if (current != null && !current.closed) {
+                return current;
+            }
+            final PipelineStream created = new PipelineStream(channel);
+            if (streams.compareAndSet(index, current, created)) {
+                return created;
+            }
+            created.cancel();
+        }
+    }
+
+    /**
+     * 一条长连接的双向流.
+     */
+    private final class PipelineStream implements ClientResponseObserver<List<PipelineFrame>, List<PipelineFrame>> {
+
+        private final Map<Long, PipelinedCall<?, ?>> pending = new ConcurrentHashMap<>();
+
+        private final AtomicLong ids = new AtomicLong();
+
+        private ClientCallStreamObserver<List<PipelineFrame>> requestStream;
+
+        private FrameBatcher batcher;
+
+        private volatile boolean closed;
+
+        PipelineStream(final Channel channel) {
+            // 流的生命周期与发起调用的Context无关
+            final Context previous = Context.ROOT.attach();
+            try {
+                ClientCalls.asyncBidiStreamingCall(channel.newCall(PipelineProtocol.PIPELINE_METHOD, CallOptions.DEFAULT), this);
+            } finally {
+                Context.ROOT.detach(previous);
+            }
+        }
+
+        @Override
+        public void beforeStart(final ClientCallStreamObserver<List<PipelineFrame>> requestStream) {
+            this.requestStream = requestStream;
+            this.batcher = new FrameBatcher(requestStream, scheduler, properties);
+            requestStream.setOnReadyHandler(() -> batcher.onReady());
+        }
+
+        /**
+         * @return the frame id, {@link #CLOSED} or {@link #FULL}
+         */
+        long send(final PipelinedCall<?, ?> call, final String fullMethodName, final Metadata headers, final ByteString payload) {
+            final long id = ids.incrementAndGet();
+            pending.put(id, call);
+            if (closed || !batcher.enqueue(PipelineFrame.request(id, fullMethodName, headers, payload))) {
+                pending.remove(id);
+                return closed || batcher.isClosed() ? CLOSED : FULL;
+            }
+            return id;
+        }
+
+        void abandon(final long id) {
+            pending.remove(id);
+        }
+
+        void cancel() {
+            requestStream.cancel("Pipeline shutdown", null);
+        }
+
+        @Override
+        public void onNext(final List<PipelineFrame> frames) {
+            for (PipelineFrame frame : frames) {
+                final PipelinedCall<?, ?> call = pending.remove(frame.getId());
+                if (call != null) {
+                    call.complete(frame.getStatus(), frame.getPayload());
+                }
+            }
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            final Status status = Status.fromThrowable(t);
+            if (status.getCode() == Status.Code.UNIMPLEMENTED) {
+                // 服务端没有注册pipeline服务,之后的调用不再使用pipeline
+                unsupported = true;
+            }
+            fail(status);
+        }
+
+        @Override
+        public void onCompleted() {
+            fail(Status.UNAVAILABLE.withDescription("Pipeline stream completed by server"));
+        }
+
+        private void fail(final Status status) {
+            closed = true;
+            batcher.close();
+            for (Long id : pending.keySet()) {
+                final PipelinedCall<?, ?> call = pending.remove(id);
+                if (call != null) {
+                    if (unsupported) {
+                        call.fallback();
+                    } else {
+                        call.complete(status, ByteString.EMPTY);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 通过pipeline流发送的unary调用.
+     * 调用方线程、transport线程和定时器线程都会修改调用状态, 状态的读写都在{@code synchronized (this)}中进行;
+     * listener的回调通过{@link SerializingExecutor}在调用或channel的executor上执行, 不会在调用方的cancel中或定时器线程上直接执行.
+     */
+    private final class PipelinedCall<R, P> extends ClientCall<R, P> implements Context.CancellationListener {
+
+        private final MethodDescriptor<R, P> method;
+
+        private final CallOptions callOptions;
+
+        private final Channel channel;
+
+        private final SerializingExecutor callbackExecutor;
+
+        private boolean done;
+
+        private Listener<P> listener;
+
+        private Metadata headers;
+
+        private Context context;
+
+        private Deadline deadline;
+
+        private int requested;
+
+        private Boolean messageCompression;
+
+        private R request;
+
+        private boolean sent;
+
+        private boolean halfClosed;
+
+        private PipelineStream stream;
+
+        private long id = CLOSED;
+
+        private volatile ClientCall<R, P> delegate;
+
+        private ScheduledFuture<?> deadlineTimer;
+
+        PipelinedCall(final MethodDescriptor<R, P> method, final CallOptions callOptions, final Channel channel) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.channel = channel;
+            final Executor executor = callOptions.getExecutor();
+            this.callbackExecutor = new SerializingExecutor(executor == null ? callbackPool : executor);
+        }
+
+        @Override
+        public void start(final Listener<P> responseListener, final Metadata headers) {
+            final Context current = Context.current();
+            synchronized (this) {
+                this.listener = responseListener;
+                this.headers = headers;
+                this.context = current;
+                final Deadline callDeadline = callOptions.getDeadline();
+                final Deadline contextDeadline = current.getDeadline();
+                this.deadline = callDeadline == null ? contextDeadline
+                        : contextDeadline == null ? callDeadline : callDeadline.minimum(contextDeadline);
+                if (deadline != null) {
+                    deadlineTimer = deadline.runOnExpiration(() -> abort(Status.DEADLINE_EXCEEDED.withDescription("deadline exceeded on pipeline")),
+                            scheduler);
+                }
+            }
+            // Context已取消时监听器会立即执行, 放在锁外注册
+            current.addListener(this, MoreExecutors.directExecutor());
+        }
+
+        @Override
+        public void request(final int numMessages) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    requested += numMessages;
+                    return;
+                }
+            }
+            call.request(numMessages);
+        }
+
+        @Override
+        public void sendMessage(final R message) {
+            final ClientCall<R, P> call;
+            final Metadata callHeaders;
+            final Deadline callDeadline;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    if (done || sent) {
+                        return;
+                    }
+                    sent = true;
+                    this.request = message;
+                }
+                callHeaders = headers;
+                callDeadline = deadline;
+            }
+            if (call != null) {
+                call.sendMessage(message);
+                return;
+            }
+            // 序列化和入队在锁外进行, 入队后再在锁内记录帧id
+            final ByteString payload;
+            try {
+                payload = ByteString.readFrom(method.streamRequest(message));
+            } catch (IOException | RuntimeException e) {
+                abort(Status.INTERNAL.withDescription("Failed to serialize request").withCause(e));
+                return;
+            }
+            final Metadata frameHeaders = new Metadata();
+            frameHeaders.merge(callHeaders);
+            if (callDeadline != null) {
+                frameHeaders.put(GrpcUtil.TIMEOUT_KEY, Math.max(0L, callDeadline.timeRemaining(TimeUnit.NANOSECONDS)));
+            }
+            PipelineStream target = null;
+            long frameId = CLOSED;
+            // 选中的流恰好已关闭时换一条新建的流重试一次
+            for (int attempt = 0; attempt < 2 && frameId == CLOSED; attempt++) {
+                if (unsupported) {
+                    fallback();
+                    return;
+                }
+                target = stream(channel);
+                frameId = target.send(this, method.getFullMethodName(), frameHeaders, payload);
+            }
+            if (frameId == FULL) {
+                // 流上待发送的帧已达到maxPendingBytes, 改为普通调用
+                fallback();
+                return;
+            }
+            if (frameId < 0) {
+                abort(Status.UNAVAILABLE.withDescription("Pipeline stream closed"));
+                return;
+            }
+            synchronized (this) {
+                if (!done) {
+                    stream = target;
+                    id = frameId;
+                    return;
+                }
+            }
+            // 入队期间调用已被取消或超时
+            target.abandon(frameId);
+        }
+
+        @Override
+        public void halfClose() {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    halfClosed = true;
+                    return;
+                }
+            }
+            call.halfClose();
+        }
+
+        @Override
+        public void cancel(final String message, final Throwable cause) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+            }
+            if (call != null) {
+                call.cancel(message, cause);
+                return;
+            }
+            abort(Status.CANCELLED.withDescription(message).withCause(cause));
+        }
+
+        @Override
+        public boolean isReady() {
+            final ClientCall<R, P> call = delegate;
+            return call == null || call.isReady();
+        }
+
+        @Override
+        public void setMessageCompression(final boolean enabled) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    messageCompression = enabled;
+                    return;
+                }
+            }
+            call.setMessageCompression(enabled);
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            final ClientCall<R, P> call = delegate;
+            return call == null ? Attributes.EMPTY : call.getAttributes();
+        }
+
+        @Override
+        public void cancelled(final Context context) {
+            abort(Contexts.statusFromCancelled(context));
+        }
+
+        void complete(final Status status, final ByteString payload) {
+            final Listener<P> callListener;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                callListener = listener;
+            }
+            cleanup();
+            if (!status.isOk()) {
+                deliver(() -> callListener.onClose(status, new Metadata()));
+                return;
+            }
+            final P response;
+            try {
+                response = method.parseResponse(payload.newInput());
+            } catch (RuntimeException e) {
+                deliver(() -> callListener.onClose(Status.INTERNAL.withDescription("Failed to parse response").withCause(e), new Metadata()));
+                return;
+            }
+            deliver(() -> {
+                callListener.onHeaders(new Metadata());
+                callListener.onMessage(response);
+                callListener.onClose(Status.OK, new Metadata());
+            });
+        }
+
+        /**
+         * 服务端不支持pipeline或流已满,改为普通调用.
+         * 可能在transport线程上执行, 在调用方的Context中发起调用并带上调用方的deadline.
+         * 普通调用在锁内启动并补发之前记录的状态, 之后调用方的操作直接转给它.
+         */
+        void fallback() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                final Context previous = context.attach();
+                try {
+                    final ClientCall<R, P> call = channel.newCall(method, deadline == null ? callOptions : callOptions.withDeadline(deadline));
+                    call.start(listener, headers);
+                    if (messageCompression != null) {
+                        call.setMessageCompression(messageCompression);
+                    }
+                    if (requested > 0) {
+                        call.request(requested);
+                    }
+                    call.sendMessage(request);
+                    if (halfClosed) {
+                        call.halfClose();
+                    }
+                    delegate = call;
+                } finally {
+                    context.detach(previous);
+                }
+            }
+            cleanup();
+        }
+
+        private void abort(final Status status) {
+            final Listener<P> callListener;
+            final PipelineStream callStream;
+            final long frameId;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                callListener = listener;
+                callStream = stream;
+                frameId = id;
+            }
+            cleanup();
+            if (callStream != null && frameId >= 0) {
+                callStream.abandon(frameId);
+            }
+            deliver(() -> callListener.onClose(status, new Metadata()));
+        }
+
+        private void cleanup() {
+            final ScheduledFuture<?> future;
+            final Context callContext;
+            synchronized (this) {
+                future = deadlineTimer;
+                callContext = context;
+            }
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (callContext != null) {
+                callContext.removeListener(this);
+            }
+        }
+
+        private void deliver(final Runnable runnable) {
+            callbackExecutor.execute(runnable);
+        }
+    }
+}
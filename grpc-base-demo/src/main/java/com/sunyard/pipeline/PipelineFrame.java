@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import com.google.protobuf.ByteString;
+import io.grpc.InternalMetadata;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * A unary request or response carried on a pipeline stream.
+ * 请求帧包含方法名、请求头和请求字节,响应帧包含状态和响应字节,二者通过id对应.
+ */
+public final class PipelineFrame {
+
+    private static final byte[][] NO_HEADERS = new byte[0][];
+
+    private final long id;
+
+    private final String method;
+
+    private final byte[][] headers;
+
+    private final int code;
+
+    private final String description;
+
+    private final ByteString payload;
+
+    PipelineFrame(final long id, final String method, final byte[][] headers, final int code,
+                  final String description, final ByteString payload) {
+        this.id = id;
+        this.method = method;
+        this.headers = headers;
+        this.code = code;
+        this.description = description;
+        this.payload = payload;
+    }
+
+    /**
+     * Create a request frame.
+     *
+     * @param id             correlation id
+     * @param fullMethodName full method name
+     * @param headers        request headers, nullable
+     * @param payload        serialized request
+     * @return the request frame
+     */
+    public static PipelineFrame request(final long id, final String fullMethodName, final Metadata headers,
+                                        final ByteString payload) {
+        final byte[][] serialized = headers == null ? NO_HEADERS : InternalMetadata.serialize(headers);
+        return new PipelineFrame(id, fullMethodName, serialized, 0, "", payload);
+    }
+
+    /**
+     * Create a response frame.
+     *
+     * @param id      correlation id
+     * @param status  call status
+     * @param payload serialized response, empty if the call failed
+     * @return the response frame
+     */
+    public static PipelineFrame response(final long id, final Status status, final ByteString payload) {
+        final String description = status.getDescription();
+        return new PipelineFrame(id, "", NO_HEADERS, status.getCode().value(), description == null ? "" : description, payload);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    byte[][] getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Gets request headers.
+     *
+     * @return the headers
+     */
+    public Metadata getMetadata() {
+        return headers.length == 0 ? new Metadata() : InternalMetadata.newMetadata(headers);
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets response status.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        final Status status = Status.fromCodeValue(code);
+        return description.isEmpty() ? status : status.withDescription(description);
+    }
+
+    public ByteString getPayload() {
+        return payload;
+    }
+
+    /**
+     * Approximate size used for batching.
+     *
+     * @return the size in bytes
+     */
+    int weight() {
+        int size = payload.size() + method.length() + description.length();
+        for (byte[] header : headers) {
+            size += header.length;
+        }
+        return size;
+    }
+}
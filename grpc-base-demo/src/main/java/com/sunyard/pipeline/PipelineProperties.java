@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grpc unary pipelining properties.
+ * <pre>
+ * grpc:
+ *   pipeline:
+ *     enabled: true
+ *     streams: 4
+ *     max-batch-frames: 64
+ *     max-batch-bytes: 32768
+ *     flush-delay: 200us
+ *     max-in-flight: 1024
+ *     max-pending-bytes: 4194304
+ *     methods:
+ *       - com.sunyard.hello.HelloService/hello
+ * </pre>
+ * 开启后服务端注册pipeline分发服务,客户端将methods中的unary调用复用少量长连接的双向流发送.
+ */
+@ConfigurationProperties(prefix = "grpc.pipeline")
+public class PipelineProperties {
+
+    /**
+     * Whether unary pipelining is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * Service names or full method names sent over the pipeline streams by clients.
+     */
+    private List<String> methods = new ArrayList<>();
+
+    /**
+     * Number of long-lived bidi streams per channel.
+     */
+    private int streams = 4;
+
+    /**
+     * A batch is flushed once it holds this many frames.
+     */
+    private int maxBatchFrames = 64;
+
+    /**
+     * A batch is flushed once its payload reaches this many bytes.
+     */
+    private int maxBatchBytes = 32 * 1024;
+
+    /**
+     * Maximum time a frame waits for more frames before the batch is flushed.
+     */
+    private Duration flushDelay = Duration.ofNanos(200_000L);
+
+    /**
+     * Maximum calls dispatched but not yet answered on one server side stream, no more requests are read beyond it.
+     */
+    private int maxInFlight = 1024;
+
+    /**
+     * Maximum bytes of frames waiting for a stream to become writable.
+     */
+    private long maxPendingBytes = 4 * 1024 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(final List<String> methods) {
+        this.methods = methods;
+    }
+
+    public int getStreams() {
+        return streams;
+    }
+
+    public void setStreams(final int streams) {
+        this.streams = streams;
+    }
+
+    public int getMaxBatchFrames() {
+        return maxBatchFrames;
+    }
+
+    public void setMaxBatchFrames(final int maxBatchFrames) {
+        this.maxBatchFrames = maxBatchFrames;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(final int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public Duration getFlushDelay() {
+        return flushDelay;
+    }
+
+    public void setFlushDelay(final Duration flushDelay) {
+        this.flushDelay = flushDelay;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(final int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public long getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    public void setMaxPendingBytes(final long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pipeline stream protocol.
+ * 双向流的每条消息是一批帧,使用与protobuf兼容的编码:
+ * <pre>
+ * message Batch { repeated Frame frames = 1; }
+ * message Frame {
+ *   uint64 id = 1;
+ *   string method = 2;
+ *   bytes payload = 3;
+ *   int32 code = 4;
+ *   string description = 5;
+ *   repeated bytes headers = 6;
+ * }
+ * </pre>
+ */
+public final class PipelineProtocol {
+
+    public static final String SERVICE_NAME = "com.sunyard.pipeline.Pipeline";
+
+    public static final MethodDescriptor<List<PipelineFrame>, List<PipelineFrame>> PIPELINE_METHOD =
+            MethodDescriptor.<List<PipelineFrame>, List<PipelineFrame>>newBuilder()
+                    .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+                    .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "pipeline"))
+                    .setRequestMarshaller(BatchMarshaller.INSTANCE)
+                    .setResponseMarshaller(BatchMarshaller.INSTANCE)
+                    .build();
+
+    private static final int BATCH_FRAMES = 1;
+
+    private static final int FRAME_ID = 1;
+
+    private static final int FRAME_METHOD = 2;
+
+    private static final int FRAME_PAYLOAD = 3;
+
+    private static final int FRAME_CODE = 4;
+
+    private static final int FRAME_DESCRIPTION = 5;
+
+    private static final int FRAME_HEADERS = 6;
+
+    private PipelineProtocol() {
+    }
+
+    private static int frameSize(final PipelineFrame frame) {
+        int size = CodedOutputStream.computeUInt64Size(FRAME_ID, frame.getId());
+        if (!frame.getMethod().isEmpty()) {
+            size += CodedOutputStream.computeStringSize(FRAME_METHOD, frame.getMethod());
+        }
+        if (!frame.getPayload().isEmpty()) {
+            size += CodedOutputStream.computeBytesSize(FRAME_PAYLOAD, frame.getPayload());
+        }
+        if (frame.getCode() != 0) {
+            size += CodedOutputStream.computeInt32Size(FRAME_CODE, frame.getCode());
+        }
+        if (!frame.getDescription().isEmpty()) {
+            size += CodedOutputStream.computeStringSize(FRAME_DESCRIPTION, frame.getDescription());
+        }
+        for (byte[] header : frame.getHeaders()) {
+            size += CodedOutputStream.computeByteArraySize(FRAME_HEADERS, header);
+        }
+        return size;
+    }
+
+    private static void writeFrame(final CodedOutputStream output, final PipelineFrame frame, final int frameSize) throws IOException {
+        output.writeTag(BATCH_FRAMES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(frameSize);
+        output.writeUInt64(FRAME_ID, frame.getId());
+        if (!frame.getMethod().isEmpty()) {
+            output.writeString(FRAME_METHOD, frame.getMethod());
+        }
+        if (!frame.getPayload().isEmpty()) {
+            output.writeBytes(FRAME_PAYLOAD, frame.getPayload());
+        }
+        if (frame.getCode() != 0) {
+            output.writeInt32(FRAME_CODE, frame.getCode());
+        }
+        if (!frame.getDescription().isEmpty()) {
+            output.writeString(FRAME_DESCRIPTION, frame.getDescription());
+        }
+        for (byte[] header : frame.getHeaders()) {
+            output.writeByteArray(FRAME_HEADERS, header);
+        }
+    }
+
+    private static PipelineFrame readFrame(final CodedInputStream input) throws IOException {
+        long id = 0;
+        String method = "";
+        ByteString payload = ByteString.EMPTY;
+        int code = 0;
+        String description = "";
+        final List<byte[]> headers = new ArrayList<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case FRAME_ID:
+                    id = input.readUInt64();
+                    break;
+                case FRAME_METHOD:
+                    method = input.readStringRequireUtf8();
+                    break;
+                case FRAME_PAYLOAD:
+                    payload = input.readBytes();
+                    break;
+                case FRAME_CODE:
+                    code = input.readInt32();
+                    break;
+                case FRAME_DESCRIPTION:
+                    description = input.readStringRequireUtf8();
+                    break;
+                case FRAME_HEADERS:
+                    headers.add(input.readByteArray());
+                    break;
+                default:
+                    input.skipField(tag);
+                    break;
+            }
+        }
+        return new PipelineFrame(id, method, headers.toArray(new byte[0][]), code, description, payload);
+    }
+
+    /**
+     * 帧批量的marshaller.
+     */
+    private static final class BatchMarshaller implements MethodDescriptor.Marshaller<List<PipelineFrame>> {
+
+        private static final BatchMarshaller INSTANCE = new BatchMarshaller();
+
+        @Override
+        public InputStream stream(final List<PipelineFrame> frames) {
+            final int[] frameSizes = new int[frames.size()];
+            int size = 0;
+            for (int i = 0; i < frameSizes.length; i++) {
+                frameSizes[i] = frameSize(frames.get(i));
+                size += CodedOutputStream.computeTagSize(BATCH_FRAMES) + CodedOutputStream.computeUInt32SizeNoTag(frameSizes[i])
+                        + frameSizes[i];
+            }
+            final byte[] buf = new byte[size];
+            final CodedOutputStream output = CodedOutputStream.newInstance(buf);
+            try {
+                for (int i = 0; i < frameSizes.length; i++) {
+                    writeFrame(output, frames.get(i), frameSizes[i]);
+                }
+                output.checkNoSpaceLeft();
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to serialize pipeline batch").withCause(e).asRuntimeException();
+            }
+            return new BatchInputStream(buf);
+        }
+
+        @Override
+        public List<PipelineFrame> parse(final InputStream stream) {
+            final CodedInputStream input = CodedInputStream.newInstance(stream);
+            input.setSizeLimit(Integer.MAX_VALUE);
+            try {
+                List<PipelineFrame> frames = Collections.emptyList();
+                int tag;
+                while ((tag = input.readTag()) != 0) {
+                    if (WireFormat.getTagFieldNumber(tag) != BATCH_FRAMES) {
+                        input.skipField(tag);
+                        continue;
+                    }
+                    final int limit = input.pushLimit(input.readRawVarint32());
+                    if (frames.isEmpty()) {
+                        frames = new ArrayList<>();
+                    }
+                    frames.add(readFrame(input));
+                    input.popLimit(limit);
+                }
+                return frames;
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Invalid pipeline batch").withCause(e).asRuntimeException();
+            }
+        }
+    }
+
+    /**
+     * 已知长度的输入流,MessageFramer可直接按长度写出.
+     */
+    private static final class BatchInputStream extends ByteArrayInputStream implements KnownLength {
+
+        BatchInputStream(final byte[] buf) {
+            super(buf);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.sunyard.utils.SerializingExecutor;
+import io.grpc.Attributes;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pipeline server dispatcher.
+ * 注册pipeline双向流服务,将流上收到的每个请求帧分发给已注册服务的unary方法处理,响应帧合并为批次写回.
+ * 注册的服务定义需要已经包含ServerBuilder级别的拦截器(见GrpcServerRunner), stream tracer由
+ * {@link #addStreamTracerFactory(ServerStreamTracer.Factory)}添加, 每个分发的调用各自记录.
+ * <p>
+ * 每条流在途的调用数达到maxInFlight或待发送的响应达到maxPendingBytes时不再request新的请求批次,
+ * 由http2流控将压力反馈给客户端.
+ */
+public class PipelineServerDispatcher {
+
+    private final PipelineProperties properties;
+
+    private final ScheduledExecutorService scheduler = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+
+    private final Executor executor = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+
+    /**
+     * key为full method name.
+     */
+    private final Map<String, ServerMethodDefinition<?, ?>> methods = new ConcurrentHashMap<>();
+
+    private final List<ServerStreamTracer.Factory> streamTracerFactories = new ArrayList<>();
+
+    /**
+     * Instantiates a new Pipeline server dispatcher.
+     *
+     * @param properties the pipeline properties
+     */
+    public PipelineServerDispatcher(final PipelineProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Add a stream tracer factory, called for every dispatched call as the server does for http2 streams.
+     *
+     * @param factory the stream tracer factory
+     */
+    public void addStreamTracerFactory(final ServerStreamTracer.Factory factory) {
+        streamTracerFactories.add(factory);
+    }
+
+    /**
+     * Register the unary methods of a service.
+     *
+     * @param definition service definition intercepted by the server level interceptors
+     */
+    public void register(final ServerServiceDefinition definition) {
+        for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+            if (method.getMethodDescriptor().getType() == MethodDescriptor.MethodType.UNARY) {
+                methods.put(method.getMethodDescriptor().getFullMethodName(), method);
+            }
+        }
+    }
+
+    /**
+     * Build the pipeline service definition.
+     *
+     * @return the service definition
+     */
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(PipelineProtocol.SERVICE_NAME)
+                .addMethod(PipelineProtocol.PIPELINE_METHOD, ServerCalls.asyncBidiStreamingCall(this::open))
+                .build();
+    }
+
+    private StreamObserver<List<PipelineFrame>> open(final StreamObserver<List<PipelineFrame>> responseObserver) {
+        final ServerCallStreamObserver<List<PipelineFrame>> observer = (ServerCallStreamObserver<List<PipelineFrame>>) responseObserver;
+        final PipelineStream stream = new PipelineStream(observer, new FrameBatcher(observer, scheduler, properties));
+        // 由在途调用数与待发送字节决定何时读取下一批请求
+        observer.disableAutoInboundFlowControl();
+        observer.setOnReadyHandler(stream::onReady);
+        observer.setOnCancelHandler(stream.batcher::close);
+        stream.requestMore();
+        return stream;
+    }
+
+    /**
+     * 服务端的一条pipeline流.
+     */
+    private final class PipelineStream implements StreamObserver<List<PipelineFrame>> {
+
+        private final ServerCallStreamObserver<List<PipelineFrame>> observer;
+
+        private final FrameBatcher batcher;
+
+        private final int maxInFlight = Math.max(1, properties.getMaxInFlight());
+
+        /**
+         * 已收到但因在途调用数达到上限还未分发的请求帧, 最多为一个批次.
+         */
+        private final Deque<PipelineFrame> waiting = new ArrayDeque<>();
+
+        private int inFlight;
+
+        private boolean halfClosed;
+
+        /**
+         * 已request但还未收到的请求批次.
+         */
+        private boolean requested;
+
+        /**
+         * 流的Context,流取消时分发出去的调用一并取消.
+         */
+        private volatile Context streamContext;
+
+        PipelineStream(final ServerCallStreamObserver<List<PipelineFrame>> observer, final FrameBatcher batcher) {
+            this.observer = observer;
+            this.batcher = batcher;
+        }
+
+        /**
+         * 没有等待分发的帧, 且在途调用数与待发送字节都低于上限时读取下一批请求.
+         */
+        synchronized void requestMore() {
+            if (requested || halfClosed || !waiting.isEmpty() || inFlight >= maxInFlight || batcher.isSaturated()) {
+                return;
+            }
+            requested = true;
+            observer.request(1);
+        }
+
+        void onReady() {
+            batcher.onReady();
+            requestMore();
+        }
+
+        @Override
+        public void onNext(final List<PipelineFrame> frames) {
+            if (streamContext == null) {
+                streamContext = Context.current();
+            }
+            synchronized (this) {
+                requested = false;
+                waiting.addAll(frames);
+            }
+            dispatch();
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            batcher.close();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                halfClosed = true;
+            }
+            finishIfIdle();
+        }
+
+        void reply(final PipelineFrame frame) {
+            if (!batcher.enqueue(frame) && !batcher.isClosed()) {
+                // 待发送的响应超过maxPendingBytes, 该调用以RESOURCE_EXHAUSTED结束
+                batcher.enqueue(PipelineFrame.response(frame.getId(),
+                        Status.RESOURCE_EXHAUSTED.withDescription("Pipeline pending bytes exceeded"), ByteString.EMPTY));
+            }
+            synchronized (this) {
+                inFlight--;
+            }
+            dispatch();
+        }
+
+        /**
+         * 在途调用数低于上限时分发等待的帧.
+         */
+        private void dispatch() {
+            for (;;) {
+                final PipelineFrame frame;
+                synchronized (this) {
+                    if (waiting.isEmpty() || inFlight >= maxInFlight) {
+                        break;
+                    }
+                    frame = waiting.poll();
+                    inFlight++;
+                }
+                final ServerMethodDefinition<?, ?> method = methods.get(frame.getMethod());
+                if (method == null) {
+                    reply(PipelineFrame.response(frame.getId(),
+                            Status.UNIMPLEMENTED.withDescription("Method not found: " + frame.getMethod()), ByteString.EMPTY));
+                    return;
+                }
+                new DispatchedCall<>(method, frame, this, streamContext).dispatch();
+            }
+            requestMore();
+            finishIfIdle();
+        }
+
+        private void finishIfIdle() {
+            synchronized (this) {
+                if (!halfClosed || inFlight > 0 || !waiting.isEmpty()) {
+                    return;
+                }
+            }
+            batcher.finish();
+        }
+    }
+
+    /**
+     * 分发到unary方法的调用,响应写入pipeline流而不是http2 stream.
+     */
+    private final class DispatchedCall<ReqT, RespT> extends ServerCall<ReqT, RespT> implements Context.CancellationListener {
+
+        private final ServerMethodDefinition<ReqT, RespT> method;
+
+        private final PipelineFrame frame;
+
+        private final PipelineStream stream;
+
+        private final Context.CancellableContext context;
+
+        private final SerializingExecutor serializingExecutor = new SerializingExecutor(executor);
+
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private final Metadata headers;
+
+        private final ServerStreamTracer[] tracers;
+
+        private ServerCall.Listener<ReqT> listener;
+
+        private volatile ByteString response = ByteString.EMPTY;
+
+        private volatile boolean cancelled;
+
+        @SuppressWarnings("unchecked")
+        DispatchedCall(final ServerMethodDefinition<?, ?> method, final PipelineFrame frame, final PipelineStream stream,
+                       final Context streamContext) {
+            this.method = (ServerMethodDefinition<ReqT, RespT>) method;
+            this.frame = frame;
+            this.stream = stream;
+            this.headers = frame.getMetadata();
+            final Long timeoutNanos = headers.get(GrpcUtil.TIMEOUT_KEY);
+            headers.discardAll(GrpcUtil.TIMEOUT_KEY);
+            this.tracers = new ServerStreamTracer[streamTracerFactories.size()];
+            Context parent = streamContext;
+            for (int i = 0; i < tracers.length; i++) {
+                tracers[i] = streamTracerFactories.get(i).newServerStreamTracer(frame.getMethod(), headers);
+                parent = tracers[i].filterContext(parent);
+            }
+            this.context = timeoutNanos == null ? parent.withCancellation()
+                    : parent.withDeadlineAfter(timeoutNanos, TimeUnit.NANOSECONDS, scheduler);
+        }
+
+        void dispatch() {
+            context.addListener(this, MoreExecutors.directExecutor());
+            serializingExecutor.execute(() -> {
+                final Context previous = context.attach();
+                try {
+                    listener = method.getServerCallHandler().startCall(this, headers);
+                    final int size = frame.getPayload().size();
+                    for (ServerStreamTracer tracer : tracers) {
+                        tracer.inboundMessageRead(0, size, size);
+                    }
+                    listener.onMessage(method.getMethodDescriptor().parseRequest(frame.getPayload().newInput()));
+                    listener.onHalfClose();
+                } catch (RuntimeException e) {
+                    close(Status.fromThrowable(e), new Metadata());
+                } finally {
+                    context.detach(previous);
+                }
+            });
+        }
+
+        @Override
+        public void cancelled(final Context context) {
+            cancelled = true;
+            if (closed.compareAndSet(false, true)) {
+                final Status status = Contexts.statusFromCancelled(context);
+                for (ServerStreamTracer tracer : tracers) {
+                    tracer.streamClosed(status);
+                }
+                stream.reply(PipelineFrame.response(frame.getId(), status, ByteString.EMPTY));
+                serializingExecutor.execute(() -> {
+                    if (listener != null) {
+                        listener.onCancel();
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void request(final int numMessages) {
+            // 请求已随帧一次性送达
+        }
+
+        @Override
+        public void sendHeaders(final Metadata headers) {
+            // 响应头不随帧传递
+        }
+
+        @Override
+        public void sendMessage(final RespT message) {
+            try {
+                response = ByteString.readFrom(method.getMethodDescriptor().streamResponse(message));
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to serialize response").withCause(e).asRuntimeException();
+            }
+        }
+
+        @Override
+        public void close(final Status status, final Metadata trailers) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            context.removeListener(this);
+            context.cancel(null);
+            if (status.isOk()) {
+                final int size = response.size();
+                for (ServerStreamTracer tracer : tracers) {
+                    tracer.outboundMessageSent(0, size, size);
+                }
+            }
+            for (ServerStreamTracer tracer : tracers) {
+                tracer.streamClosed(status);
+            }
+            stream.reply(PipelineFrame.response(frame.getId(), status, status.isOk() ? response : ByteString.EMPTY));
+            serializingExecutor.execute(() -> {
+                if (listener != null) {
+                    listener.onComplete();
+                }
+            });
+        }
+
+        @Override
+        public boolean isReady() {
+            return !closed.get();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return Attributes.EMPTY;
+        }
+
+        @Override
+        public String getAuthority() {
+            return null;
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method.getMethodDescriptor();
+        }
+    }
+}
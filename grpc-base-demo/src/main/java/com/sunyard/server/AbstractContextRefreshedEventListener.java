@@ -55,7 +55,15 @@ public abstract class AbstractContextRefreshedEventListener<T, A extends Annotat
 
     @Override
     public void onApplicationEvent(@NonNull final ContextRefreshedEvent event) {
-        final ApplicationContext context = event.getApplicationContext();
+        register(event.getApplicationContext());
+    }
+
+    /**
+     * 处理容器中的bean, 只执行一次, 可在ContextRefreshedEvent之前调用.
+     *
+     * @param context the application context
+     */
+    public void register(final ApplicationContext context) {
         Map<String, T> beans = getBeans(context);
         if (CollectionUtil.isEmpty(beans)) {
             return;
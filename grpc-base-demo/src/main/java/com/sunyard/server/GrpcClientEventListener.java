@@ -18,10 +18,17 @@
 package com.sunyard.server;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sunyard.server.bulkhead.Bulkhead;
+import com.sunyard.utils.GrpcUtils;
 import io.grpc.BindableService;
+import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ReflectionUtils;
 
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +40,11 @@ public class GrpcClientEventListener extends AbstractContextRefreshedEventListen
 
     private final List<ServerServiceDefinition> serviceDefinitions = Lists.newArrayList();
 
+    /**
+     * key为service name(类上的注解)或full method name(方法上的注解).
+     */
+    private final Map<String, Bulkhead> bulkheads = Maps.newConcurrentMap();
+
     /**
      * Instantiates a new Shenyu client bean post processor.
      */
@@ -61,11 +73,61 @@ public class GrpcClientEventListener extends AbstractContextRefreshedEventListen
         ServerServiceDefinition serviceDefinition = bindableService.bindService();
         try {
             serviceDefinitions.add(serviceDefinition);
+            registerBulkheads(bindableService, serviceDefinition);
         } catch (Exception e) {
             LOG.error("export json generic service is fail", e);
         }
     }
 
+    /**
+     * 根据类或方法上的{@link GrpcServerImpl#poolSize()}为服务或方法创建独享的线程池.
+     */
+    private void registerBulkheads(final BindableService bindableService, final ServerServiceDefinition serviceDefinition) {
+        final Class<?> clazz = getCorrectedClass(bindableService);
+        final String serviceName = serviceDefinition.getServiceDescriptor().getName();
+        registerBulkhead(serviceName, AnnotatedElementUtils.findMergedAnnotation(clazz, getAnnotationType()));
+        final Method[] methods = ReflectionUtils.getUniqueDeclaredMethods(clazz);
+        for (ServerMethodDefinition<?, ?> methodDefinition : serviceDefinition.getMethods()) {
+            final String javaMethodName = toJavaMethodName(GrpcUtils.extractMethodName(methodDefinition.getMethodDescriptor()));
+            for (Method method : methods) {
+                if (method.getName().equals(javaMethodName)) {
+                    registerBulkhead(methodDefinition.getMethodDescriptor().getFullMethodName(),
+                            AnnotatedElementUtils.findMergedAnnotation(method, getAnnotationType()));
+                }
+            }
+        }
+    }
+
+    private void registerBulkhead(final String name, final GrpcServerImpl annotation) {
+        if (annotation == null || annotation.poolSize() <= 0) {
+            return;
+        }
+        bulkheads.computeIfAbsent(name, key -> new Bulkhead(key, annotation.poolSize(),
+                annotation.queueCapacity(), annotation.rejectPolicy()));
+        LOG.info("{} runs on its own bulkhead, poolSize:{}, queueCapacity:{}, rejectPolicy:{}",
+                name, annotation.poolSize(), annotation.queueCapacity(), annotation.rejectPolicy());
+    }
+
+    /**
+     * proto中的方法名转换为grpc生成的java方法名, 例如 say_hello/SayHello -> sayHello.
+     */
+    private static String toJavaMethodName(final String protoMethodName) {
+        final StringBuilder builder = new StringBuilder(protoMethodName.length());
+        boolean upperNext = false;
+        for (int i = 0; i < protoMethodName.length(); i++) {
+            final char c = protoMethodName.charAt(i);
+            if (c == '_') {
+                upperNext = builder.length() > 0;
+            } else if (builder.length() == 0) {
+                builder.append(Character.toLowerCase(c));
+            } else {
+                builder.append(upperNext ? Character.toUpperCase(c) : c);
+                upperNext = false;
+            }
+        }
+        return builder.toString();
+    }
+
     /**
      * get serviceDefinitions.
      *
@@ -74,4 +136,13 @@ public class GrpcClientEventListener extends AbstractContextRefreshedEventListen
     public List<ServerServiceDefinition> getServiceDefinitions() {
         return serviceDefinitions;
     }
+
+    /**
+     * get bulkheads.
+     *
+     * @return bulkheads keyed by service name or full method name
+     */
+    public Map<String, Bulkhead> getBulkheads() {
+        return bulkheads;
+    }
 }
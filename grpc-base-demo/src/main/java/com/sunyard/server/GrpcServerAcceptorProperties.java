@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Grpc server acceptor properties.
+ * <pre>
+ * grpc:
+ *   server:
+ *     acceptor:
+ *       count: 8
+ *       worker-threads: 8
+ * </pre>
+ * count大于1时启动多个server实例, 通过SO_REUSEPORT(epoll)监听同一端口, 由内核在各实例之间分配新连接,
+ * 每个实例有独立的accept线程与event loop. 仅支持linux, {@link GrpcServerBuilder}需返回grpc-netty-shaded的NettyServerBuilder.
+ */
+@ConfigurationProperties(prefix = "grpc.server.acceptor")
+public class GrpcServerAcceptorProperties {
+
+    /**
+     * Number of server instances listening on the same port.
+     */
+    private int count = 1;
+
+    /**
+     * Number of event loop threads of each server instance, 0 divides the processors between the instances.
+     */
+    private int workerThreads;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(final int count) {
+        this.count = count;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(final int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+}
@@ -28,4 +28,15 @@ public interface GrpcServerBuilder {
      * @return ServerBuilder
      */
     ServerBuilder<?> buildServerBuilder();
+
+    /**
+     * build the ServerBuilder of one acceptor when grpc.server.acceptor.count is greater than 1.
+     * 每次调用返回新的builder, 所有acceptor监听同一端口, 需为io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder.
+     *
+     * @param acceptor the acceptor index, from 0
+     * @return ServerBuilder
+     */
+    default ServerBuilder<?> buildServerBuilder(final int acceptor) {
+        return buildServerBuilder();
+    }
 }
@@ -17,6 +17,7 @@
 
 package com.sunyard.server;
 
+import com.sunyard.server.bulkhead.RejectPolicy;
 import org.springframework.core.annotation.AliasFor;
 
 import java.lang.annotation.ElementType;
@@ -46,4 +47,26 @@ public @interface GrpcServerImpl {
      */
     @AliasFor(attribute = "value")
     String path() default "";
+
+    /**
+     * Bulkhead pool size. 标注在类上时该服务独享线程池,标注在方法上时该方法独享线程池,
+     * 0表示使用grpc server共享的executor.
+     *
+     * @return the pool size
+     */
+    int poolSize() default 0;
+
+    /**
+     * Bulkhead queue capacity, 线程全部繁忙时最多排队等待的调用数.
+     *
+     * @return the queue capacity
+     */
+    int queueCapacity() default 256;
+
+    /**
+     * Reject policy when the bulkhead is saturated.
+     *
+     * @return the reject policy
+     */
+    RejectPolicy rejectPolicy() default RejectPolicy.ABORT;
 }
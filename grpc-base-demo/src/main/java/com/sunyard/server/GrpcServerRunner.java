@@ -17,21 +17,46 @@
 
 package com.sunyard.server;
 
+import com.sunyard.compression.CompressionRules;
+import com.sunyard.compression.CompressionServerInterceptor;
+import com.sunyard.intercept.ContextServerInterceptor;
+import com.sunyard.marshaller.LargeMessageMarshallers;
+import com.sunyard.pipeline.PipelineServerDispatcher;
+import com.sunyard.server.bulkhead.Bulkhead;
+import com.sunyard.server.bulkhead.BulkheadServerInterceptor;
+import com.sunyard.server.metrics.ServerMetrics;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
 import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.cloud.client.serviceregistry.ServiceRegistry;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.event.ContextRefreshedEvent;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Add grpc service and start grpc server.
+ * 容器关闭时按顺序优雅下线: 注销注册中心实例, 等待客户端感知, 停止接收新调用, 等待进行中的调用完成后关闭.
  */
-public class GrpcServerRunner implements ApplicationListener<ContextRefreshedEvent> {
+public class GrpcServerRunner implements ApplicationListener<ContextRefreshedEvent>, SmartLifecycle {
 
     private static final Logger LOG = LoggerFactory.getLogger(GrpcServerRunner.class);
 
@@ -39,39 +64,351 @@ public class GrpcServerRunner implements ApplicationListener<ContextRefreshedEve
     /**通过该监听获取所有GrpcClient注解修改的类通过获取的类信息转换为ServerServiceDefinition*/
     private final GrpcClientEventListener grpcClientEventListener;
 
+    private CompressionRules compressionRules;
+
+    private PipelineServerDispatcher pipelineDispatcher;
+
+    private GrpcServerShutdownProperties shutdownProperties = new GrpcServerShutdownProperties();
+
+    private ServiceRegistry<Registration> serviceRegistry;
+
+    private Registration registration;
+
+    private ServerMetrics serverMetrics;
+
+    private ContextServerInterceptor contextInterceptor;
+
+    private LargeMessageMarshallers largeMessageMarshallers;
+
+    private GrpcServerAcceptorProperties acceptorProperties = new GrpcServerAcceptorProperties();
+
+    private volatile List<Server> servers = Collections.emptyList();
+
+    private final List<EventLoopGroup> eventLoopGroups = new ArrayList<>();
+
     public GrpcServerRunner(final GrpcServerBuilder grpcServerBuilder,
                             final GrpcClientEventListener grpcClientEventListener) {
         this.grpcServerBuilder = grpcServerBuilder;
         this.grpcClientEventListener = grpcClientEventListener;
     }
     
+    /**
+     * Set compression rules.
+     *
+     * @param compressionRules compressionRules, nullable
+     */
+    public void setCompressionRules(final CompressionRules compressionRules) {
+        this.compressionRules = compressionRules;
+    }
+
+    /**
+     * Set pipeline dispatcher.
+     *
+     * @param pipelineDispatcher pipelineDispatcher, nullable
+     */
+    public void setPipelineDispatcher(final PipelineServerDispatcher pipelineDispatcher) {
+        this.pipelineDispatcher = pipelineDispatcher;
+    }
+
+    /**
+     * Set shutdown properties.
+     *
+     * @param shutdownProperties shutdownProperties
+     */
+    public void setShutdownProperties(final GrpcServerShutdownProperties shutdownProperties) {
+        this.shutdownProperties = shutdownProperties;
+    }
+
+    /**
+     * Set server metrics.
+     *
+     * @param serverMetrics serverMetrics, nullable
+     */
+    public void setServerMetrics(final ServerMetrics serverMetrics) {
+        this.serverMetrics = serverMetrics;
+    }
+
+    /**
+     * Set large message marshallers.
+     *
+     * @param largeMessageMarshallers largeMessageMarshallers, nullable
+     */
+    public void setLargeMessageMarshallers(final LargeMessageMarshallers largeMessageMarshallers) {
+        this.largeMessageMarshallers = largeMessageMarshallers;
+    }
+
+    /**
+     * Set context interceptor.
+     *
+     * @param contextInterceptor contextInterceptor, nullable
+     */
+    public void setContextInterceptor(final ContextServerInterceptor contextInterceptor) {
+        this.contextInterceptor = contextInterceptor;
+    }
+
+    /**
+     * Set acceptor properties.
+     *
+     * @param acceptorProperties acceptorProperties
+     */
+    public void setAcceptorProperties(final GrpcServerAcceptorProperties acceptorProperties) {
+        this.acceptorProperties = acceptorProperties;
+    }
+
+    /**
+     * Set the registration deregistered before the server is closed.
+     *
+     * @param serviceRegistry serviceRegistry, nullable
+     * @param registration    registration, nullable
+     */
+    public void setServiceRegistration(final ServiceRegistry<Registration> serviceRegistry,
+                                       final Registration registration) {
+        this.serviceRegistry = serviceRegistry;
+        this.registration = registration;
+    }
+
     @Override
     public void onApplicationEvent(final ContextRefreshedEvent event) {
-        startGrpcServer();
+        if (servers.isEmpty()) {
+            startGrpcServer();
+        }
+    }
+
+    @Override
+    public void start() {
+        // 在ContextRefreshedEvent中启动, 保证所有服务已注册
+    }
+
+    @Override
+    public boolean isRunning() {
+        for (Server server : servers) {
+            if (!server.isShutdown()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void stop() {
+        drain();
     }
+
+    @Override
+    public void stop(final Runnable callback) {
+        final Thread drainThread = new Thread(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        }, "grpc-server-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @Override
+    public int getPhase() {
+        // 与web server的优雅关闭同一阶段, 早于客户端channel关闭
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    /**
+     * 注销实例, 等待客户端摘除后关闭server, 超时未完成的调用被强制取消.
+     */
+    private void drain() {
+        if (!isRunning()) {
+            return;
+        }
+        final List<Server> current = servers;
+        LOG.info("draining grpc server");
+        deregister();
+        sleep(shutdownProperties.getDeregisterDelay().toMillis());
+        // shutdown后不再接收新调用, netty向客户端发送GOAWAY
+        current.forEach(Server::shutdown);
+        final long deadlineNanos = System.nanoTime() + shutdownProperties.getTimeout().toNanos();
+        try {
+            for (Server server : current) {
+                if (!server.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    LOG.warn("grpc server did not drain in {}, cancelling the remaining calls", shutdownProperties.getTimeout());
+                    server.shutdownNow();
+                    server.awaitTermination(1, TimeUnit.SECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            current.forEach(Server::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+        eventLoopGroups.forEach(EventLoopGroup::shutdownGracefully);
+        grpcClientEventListener.getBulkheads().values().forEach(Bulkhead::shutdown);
+        LOG.info("grpc server shut down");
+    }
+
+    private void deregister() {
+        if (serviceRegistry == null || registration == null) {
+            return;
+        }
+        try {
+            serviceRegistry.deregister(registration);
+            LOG.info("{} deregistered from the registry", registration.getServiceId());
+        } catch (RuntimeException e) {
+            LOG.warn("failed to deregister {}", registration.getServiceId(), e);
+        }
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * 提前收集服务并返回与grpc server相同的服务定义, 供启动前的预热使用.
+     *
+     * @param context the application context
+     * @return the service definitions as added to the server
+     */
+    public List<ServerServiceDefinition> prepareServiceDefinitions(final ApplicationContext context) {
+        grpcClientEventListener.register(context);
+        return decorate(grpcClientEventListener.getServiceDefinitions());
+    }
+
+    private List<ServerServiceDefinition> decorate(final List<ServerServiceDefinition> serviceDefinitions) {
+        // 配置了独享线程池的服务通过拦截器将调用切换到对应的bulkhead执行
+        BulkheadServerInterceptor bulkheadInterceptor = new BulkheadServerInterceptor(grpcClientEventListener.getBulkheads());
+        final List<ServerServiceDefinition> decorated = new ArrayList<>(serviceDefinitions.size());
+        for (ServerServiceDefinition definition : serviceDefinitions) {
+            // 配置的大报文方法使用aliasing marshaller解析请求
+            ServerServiceDefinition serviceDefinition = largeMessageMarshallers == null ? definition
+                    : largeMessageMarshallers.aliasing(definition);
+            if (bulkheadInterceptor.hasBulkhead(serviceDefinition)) {
+                serviceDefinition = ServerInterceptors.intercept(serviceDefinition, bulkheadInterceptor);
+            }
+            decorated.add(serviceDefinition);
+        }
+        return decorated;
+    }
+
     /**实现GrpcServerBuilder接口的grpc server方式启动该服务  */
     private void startGrpcServer() {
-        // 通过grpcServerBuilder获取到对应的服务端定义信息即绑定的端口
-        ServerBuilder<?> serverBuilder = grpcServerBuilder.buildServerBuilder();
-        // 获取所有服务端需要注册的方法信息
-        List<ServerServiceDefinition> serviceDefinitions = grpcClientEventListener.getServiceDefinitions();
-        for (ServerServiceDefinition serviceDefinition : serviceDefinitions) {
-            serverBuilder.addService(serviceDefinition);
-            LOG.info("{} has been add to grpc server", serviceDefinition.getServiceDescriptor().getName());
+        int acceptors = Math.max(1, acceptorProperties.getCount());
+        if (acceptors > 1 && !Epoll.isAvailable()) {
+            LOG.warn("SO_REUSEPORT requires epoll, starting a single grpc server: {}",
+                    String.valueOf(Epoll.unavailabilityCause()));
+            acceptors = 1;
+        }
+        final List<ServerServiceDefinition> serviceDefinitions = decorate(grpcClientEventListener.getServiceDefinitions());
+        if (serverMetrics != null) {
+            serverMetrics.register(serviceDefinitions);
         }
+        final List<ServerInterceptor> serverInterceptors = serverInterceptors();
+        if (pipelineDispatcher != null) {
+            registerPipeline(serviceDefinitions, serverInterceptors);
+        }
+        final List<Server> started = new ArrayList<>(acceptors);
         // 服务端启动
         try {
-            Server server = serverBuilder.build().start();
+            for (int i = 0; i < acceptors; i++) {
+                ServerBuilder<?> serverBuilder;
+                if (acceptors == 1) {
+                    // 通过grpcServerBuilder获取到对应的服务端定义信息即绑定的端口
+                    serverBuilder = grpcServerBuilder.buildServerBuilder();
+                } else {
+                    serverBuilder = reusePort(grpcServerBuilder.buildServerBuilder(i), i, acceptors);
+                }
+                started.add(configure(serverBuilder, serviceDefinitions, serverInterceptors, i == 0).build().start());
+            }
+            servers = Collections.unmodifiableList(started);
+            LOG.info("Grpc server started successfully{}", acceptors > 1 ? " with " + acceptors + " acceptors" : "");
+        } catch (IOException | RuntimeException e) {
+            started.forEach(Server::shutdownNow);
+            eventLoopGroups.forEach(EventLoopGroup::shutdownGracefully);
+            LOG.error("Grpc server failed to start", e);
+        }
+    }
 
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                LOG.info("shutting down grpc server");
-                server.shutdown();
-                LOG.info("grpc server shut down");
-            }));
+    /**
+     * acceptor使用独立的epoll event loop并开启SO_REUSEPORT.
+     */
+    private ServerBuilder<?> reusePort(final ServerBuilder<?> serverBuilder, final int acceptor, final int acceptors) {
+        if (!(serverBuilder instanceof NettyServerBuilder)) {
+            throw new IllegalStateException("grpc.server.acceptor.count requires GrpcServerBuilder to return "
+                    + NettyServerBuilder.class.getName() + ", got " + serverBuilder.getClass().getName());
+        }
+        final int workerThreads = acceptorProperties.getWorkerThreads() > 0 ? acceptorProperties.getWorkerThreads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / acceptors);
+        final EventLoopGroup boss = new EpollEventLoopGroup(1,
+                new DefaultThreadFactory("grpc-acceptor-" + acceptor + "-boss", true));
+        final EventLoopGroup worker = new EpollEventLoopGroup(workerThreads,
+                new DefaultThreadFactory("grpc-acceptor-" + acceptor + "-worker", true));
+        eventLoopGroups.add(boss);
+        eventLoopGroups.add(worker);
+        return ((NettyServerBuilder) serverBuilder)
+                .channelType(EpollServerSocketChannel.class)
+                .bossEventLoopGroup(boss)
+                .workerEventLoopGroup(worker)
+                .withOption(EpollChannelOption.SO_REUSEPORT, true);
+    }
 
-            LOG.info("Grpc server started successfully");
-        } catch (IOException e) {
-            LOG.error("Grpc server failed to start", e);
+    /**
+     * ServerBuilder级别的拦截器, 注册顺序与ServerBuilder.intercept相同, 最后一个最先执行.
+     */
+    private List<ServerInterceptor> serverInterceptors() {
+        final List<ServerInterceptor> interceptors = new ArrayList<>(2);
+        if (contextInterceptor != null) {
+            // 将客户端传递的请求头还原到RPC_CONTEXT_KEY
+            interceptors.add(contextInterceptor);
+        }
+        if (compressionRules != null) {
+            // 按方法压缩响应
+            interceptors.add(new CompressionServerInterceptor(compressionRules));
+        }
+        return interceptors;
+    }
+
+    /**
+     * pipeline分发的调用不经过ServerBuilder, 注册前套上与ServerBuilder相同的拦截器与stream tracer.
+     */
+    private void registerPipeline(final List<ServerServiceDefinition> serviceDefinitions,
+                                  final List<ServerInterceptor> serverInterceptors) {
+        if (serverMetrics != null) {
+            pipelineDispatcher.addStreamTracerFactory(serverMetrics);
+        }
+        for (ServerServiceDefinition serviceDefinition : serviceDefinitions) {
+            pipelineDispatcher.register(ServerInterceptors.intercept(serviceDefinition, serverInterceptors));
+        }
+    }
+
+    private ServerBuilder<?> configure(final ServerBuilder<?> serverBuilder,
+                                       final List<ServerServiceDefinition> serviceDefinitions,
+                                       final List<ServerInterceptor> serverInterceptors, final boolean first) {
+        if (serverMetrics != null) {
+            // 按方法统计调用次数、状态码、耗时与消息大小
+            serverBuilder.addStreamTracerFactory(serverMetrics);
+        }
+        for (ServerInterceptor interceptor : serverInterceptors) {
+            serverBuilder.intercept(interceptor);
+        }
+        if (compressionRules != null) {
+            // 注册gzip/zstd压缩与解压
+            serverBuilder.compressorRegistry(compressionRules.getCompressorRegistry())
+                    .decompressorRegistry(compressionRules.getDecompressorRegistry());
+        }
+        // 所有acceptor共用相同的服务定义
+        for (ServerServiceDefinition serviceDefinition : serviceDefinitions) {
+            serverBuilder.addService(serviceDefinition);
+            if (first) {
+                LOG.info("{} has been add to grpc server", serviceDefinition.getServiceDescriptor().getName());
+            }
+        }
+        if (pipelineDispatcher != null) {
+            // 通过pipeline双向流发送的unary调用由dispatcher分发到上面注册的方法
+            serverBuilder.addService(pipelineDispatcher.bindService());
         }
+        return serverBuilder;
     }
 }
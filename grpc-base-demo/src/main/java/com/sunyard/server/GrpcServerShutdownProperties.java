@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Grpc server graceful shutdown properties.
+ * <pre>
+ * grpc:
+ *   server:
+ *     shutdown:
+ *       deregister-delay: 5s
+ *       timeout: 20s
+ * </pre>
+ * 关闭顺序: 从注册中心注销, 等待deregister-delay让客户端感知, 停止接收新调用并发送GOAWAY,
+ * 等待进行中的调用最多timeout, 超时后强制关闭.
+ * deregister-delay与timeout之和应小于spring.lifecycle.timeout-per-shutdown-phase.
+ */
+@ConfigurationProperties(prefix = "grpc.server.shutdown")
+public class GrpcServerShutdownProperties {
+
+    /**
+     * Time between the deregistration and closing the server, lets the clients remove this instance first.
+     */
+    private Duration deregisterDelay = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time the in-flight calls are waited for before the server is closed forcibly.
+     */
+    private Duration timeout = Duration.ofSeconds(20);
+
+    public Duration getDeregisterDelay() {
+        return deregisterDelay;
+    }
+
+    public void setDeregisterDelay(final Duration deregisterDelay) {
+        this.deregisterDelay = deregisterDelay;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(final Duration timeout) {
+        this.timeout = timeout;
+    }
+}
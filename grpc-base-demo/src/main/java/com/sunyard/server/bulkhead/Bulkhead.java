@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.bulkhead;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bulkhead.服务或方法独享的线程池,避免某个慢服务占满grpc server共享的executor.
+ * <p>
+ * 每个调用的回调通过SerializingExecutor串行投递到线程池,因此线程池队列中每个调用最多只有一个任务,
+ * 同时在途调用数被限制为 poolSize + queueCapacity,队列长度也就不会超过queueCapacity.
+ */
+public class Bulkhead {
+
+    private final String name;
+
+    private final int poolSize;
+
+    private final int queueCapacity;
+
+    private final RejectPolicy rejectPolicy;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder overflowed = new LongAdder();
+
+    /**
+     * Instantiates a new Bulkhead.
+     *
+     * @param name          service name or full method name
+     * @param poolSize      pool size
+     * @param queueCapacity queue capacity
+     * @param rejectPolicy  reject policy
+     */
+    public Bulkhead(final String name, final int poolSize, final int queueCapacity, final RejectPolicy rejectPolicy) {
+        checkArgument(poolSize > 0, "poolSize must be positive");
+        checkArgument(queueCapacity >= 0, "queueCapacity must not be negative");
+        this.name = name;
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+        this.rejectPolicy = rejectPolicy;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("grpc-bulkhead-" + name + "-%d").build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Try to admit a new call.
+     *
+     * @return true if the call is admitted and must be released later
+     */
+    public boolean tryAcquire() {
+        final int capacity = poolSize + queueCapacity;
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release an admitted call.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    void markRejected() {
+        rejected.increment();
+    }
+
+    void markOverflowed() {
+        overflowed.increment();
+    }
+
+    /**
+     * Shutdown the pool.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Gets executor.
+     *
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets reject policy.
+     *
+     * @return the reject policy
+     */
+    public RejectPolicy getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    /**
+     * Gets capacity.
+     *
+     * @return pool size + queue capacity
+     */
+    public int getCapacity() {
+        return poolSize + queueCapacity;
+    }
+
+    /**
+     * Gets in flight calls.
+     *
+     * @return the in flight calls
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Gets active threads.
+     *
+     * @return the active threads
+     */
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Gets queued tasks.
+     *
+     * @return the queued tasks
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Gets saturation, in flight calls / capacity.
+     *
+     * @return the saturation between 0 and 1
+     */
+    public double getSaturation() {
+        return (double) inFlight.get() / getCapacity();
+    }
+
+    /**
+     * Gets rejected calls.
+     *
+     * @return the rejected calls
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets calls which ran on the shared executor because the bulkhead was saturated.
+     *
+     * @return the overflowed calls
+     */
+    public long getOverflowed() {
+        return overflowed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{name=" + name + ", inFlight=" + getInFlight() + ", capacity=" + getCapacity()
+                + ", activeThreads=" + getActiveThreads() + ", queued=" + getQueued()
+                + ", rejected=" + getRejected() + ", overflowed=" + getOverflowed() + "}";
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.bulkhead;
+
+import com.sunyard.utils.SerializingExecutor;
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulkhead server interceptor.
+ * 根据调用的方法查找对应的Bulkhead(方法级优先于服务级),将该调用的所有回调切换到Bulkhead线程池执行.
+ */
+public class BulkheadServerInterceptor implements ServerInterceptor {
+
+    /**
+     * key为full method name或service name.
+     */
+    private final Map<String, Bulkhead> bulkheads;
+
+    /**
+     * Instantiates a new Bulkhead server interceptor.
+     *
+     * @param bulkheads bulkheads keyed by full method name or service name
+     */
+    public BulkheadServerInterceptor(final Map<String, Bulkhead> bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    /**
+     * Whether any method of the service has a bulkhead.
+     *
+     * @param serviceDefinition serviceDefinition
+     * @return true if the service should be intercepted
+     */
+    public boolean hasBulkhead(final ServerServiceDefinition serviceDefinition) {
+        if (bulkheads.containsKey(serviceDefinition.getServiceDescriptor().getName())) {
+            return true;
+        }
+        for (ServerMethodDefinition<?, ?> method : serviceDefinition.getMethods()) {
+            if (bulkheads.containsKey(method.getMethodDescriptor().getFullMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public <R, P> ServerCall.Listener<R> interceptCall(final ServerCall<R, P> call, final Metadata headers,
+                                                       final ServerCallHandler<R, P> next) {
+        final Bulkhead bulkhead = lookup(call.getMethodDescriptor());
+        if (bulkhead == null) {
+            return next.startCall(call, headers);
+        }
+        if (!bulkhead.tryAcquire()) {
+            if (bulkhead.getRejectPolicy() == RejectPolicy.SHARED_EXECUTOR) {
+                bulkhead.markOverflowed();
+                return next.startCall(call, headers);
+            }
+            bulkhead.markRejected();
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Bulkhead " + bulkhead.getName() + " is saturated"),
+                    new Metadata());
+            return new ServerCall.Listener<R>() {
+            };
+        }
+        final ServerCall.Listener<R> delegate;
+        try {
+            delegate = next.startCall(call, headers);
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+        return new BulkheadListener<>(delegate, bulkhead, Context.current());
+    }
+
+    private Bulkhead lookup(final MethodDescriptor<?, ?> method) {
+        final Bulkhead bulkhead = bulkheads.get(method.getFullMethodName());
+        return bulkhead != null ? bulkhead : bulkheads.get(method.getServiceName());
+    }
+
+    /**
+     * 将回调按顺序投递到Bulkhead线程池,调用结束(onComplete/onCancel)后释放占用.
+     */
+    private static final class BulkheadListener<R> extends ServerCall.Listener<R> {
+
+        private final ServerCall.Listener<R> delegate;
+
+        private final Bulkhead bulkhead;
+
+        private final Context context;
+
+        private final Executor executor;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        BulkheadListener(final ServerCall.Listener<R> delegate, final Bulkhead bulkhead, final Context context) {
+            this.delegate = delegate;
+            this.bulkhead = bulkhead;
+            this.context = context;
+            this.executor = new SerializingExecutor(bulkhead.getExecutor());
+        }
+
+        @Override
+        public void onMessage(final R message) {
+            dispatch(() -> delegate.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            dispatch(delegate::onHalfClose);
+        }
+
+        @Override
+        public void onCancel() {
+            dispatch(() -> {
+                try {
+                    delegate.onCancel();
+                } finally {
+                    release();
+                }
+            });
+        }
+
+        @Override
+        public void onComplete() {
+            dispatch(() -> {
+                try {
+                    delegate.onComplete();
+                } finally {
+                    release();
+                }
+            });
+        }
+
+        @Override
+        public void onReady() {
+            dispatch(delegate::onReady);
+        }
+
+        private void dispatch(final Runnable runnable) {
+            executor.execute(context.wrap(runnable));
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+    }
+}
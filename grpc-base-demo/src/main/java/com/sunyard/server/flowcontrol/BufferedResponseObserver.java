@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.server.flowcontrol;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayDeque;
+import java.util.function.ToIntFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded response observer.包装服务端的responseObserver,只在isReady时写出响应,否则暂存,onReady后继续写出.
+ * <p>
+ * 暂存的字节数超过highWatermark时{@link #isReady()}返回false,生产者应暂停;
+ * 超过maxBufferedBytes时以RESOURCE_EXHAUSTED结束调用,避免慢消费者导致服务端内存无限增长.
+ * 必须在服务方法返回前创建,此时才能设置onReadyHandler和onCancelHandler.
+ *
+ * @param <T> response type
+ */
+public class BufferedResponseObserver<T> implements StreamObserver<T> {
+
+    public static final long DEFAULT_HIGH_WATERMARK = 256 * 1024L;
+
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 8 * 1024 * 1024L;
+
+    private final ServerCallStreamObserver<T> delegate;
+
+    private final long highWatermark;
+
+    private final long maxBufferedBytes;
+
+    private final ToIntFunction<? super T> weigher;
+
+    private final ArrayDeque<T> buffer = new ArrayDeque<>();
+
+    private final ArrayDeque<Integer> weights = new ArrayDeque<>();
+
+    private long bufferedBytes;
+
+    private boolean completed;
+
+    private boolean closed;
+
+    private volatile boolean cancelled;
+
+    private Runnable onDrainHandler;
+
+    /**
+     * Instantiates a new Buffered response observer with default limits.
+     *
+     * @param responseObserver the response observer passed to the service method
+     */
+    public BufferedResponseObserver(final StreamObserver<T> responseObserver) {
+        this(responseObserver, DEFAULT_HIGH_WATERMARK, DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * Instantiates a new Buffered response observer.
+     *
+     * @param responseObserver the response observer passed to the service method
+     * @param highWatermark    buffered bytes above which the observer is not ready
+     * @param maxBufferedBytes buffered bytes above which the call fails with RESOURCE_EXHAUSTED
+     */
+    public BufferedResponseObserver(final StreamObserver<T> responseObserver, final long highWatermark, final long maxBufferedBytes) {
+        this(responseObserver, highWatermark, maxBufferedBytes, BufferedResponseObserver::serializedSize);
+    }
+
+    /**
+     * Instantiates a new Buffered response observer.
+     *
+     * @param responseObserver the response observer passed to the service method
+     * @param highWatermark    buffered bytes above which the observer is not ready
+     * @param maxBufferedBytes buffered bytes above which the call fails with RESOURCE_EXHAUSTED
+     * @param weigher          size of a response in bytes
+     */
+    public BufferedResponseObserver(final StreamObserver<T> responseObserver, final long highWatermark, final long maxBufferedBytes,
+                                    final ToIntFunction<? super T> weigher) {
+        checkArgument(responseObserver instanceof ServerCallStreamObserver, "responseObserver must be a ServerCallStreamObserver");
+        checkArgument(highWatermark > 0 && highWatermark <= maxBufferedBytes, "highWatermark must be in (0, maxBufferedBytes]");
+        this.delegate = (ServerCallStreamObserver<T>) responseObserver;
+        this.highWatermark = highWatermark;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.weigher = weigher;
+        this.delegate.setOnReadyHandler(this::drain);
+        this.delegate.setOnCancelHandler(this::cancel);
+    }
+
+    @Override
+    public synchronized void onNext(final T value) {
+        if (cancelled || closed) {
+            return;
+        }
+        if (buffer.isEmpty() && delegate.isReady()) {
+            delegate.onNext(value);
+            return;
+        }
+        final int weight = weigher.applyAsInt(value);
+        if (bufferedBytes + weight > maxBufferedBytes) {
+            final Status status = Status.RESOURCE_EXHAUSTED
+                    .withDescription("Buffered responses exceed " + maxBufferedBytes + " bytes, consumer is too slow");
+            onError(status.asRuntimeException());
+            throw status.asRuntimeException();
+        }
+        buffer.add(value);
+        weights.add(weight);
+        bufferedBytes += weight;
+    }
+
+    @Override
+    public synchronized void onError(final Throwable t) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        clear();
+        if (!cancelled) {
+            delegate.onError(t);
+        }
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        if (closed) {
+            return;
+        }
+        completed = true;
+        if (buffer.isEmpty()) {
+            closed = true;
+            if (!cancelled) {
+                delegate.onCompleted();
+            }
+        }
+    }
+
+    /**
+     * Whether the producer may keep sending responses.
+     *
+     * @return false if buffered bytes exceed the high watermark or the call is closed
+     */
+    public synchronized boolean isReady() {
+        return !cancelled && !closed && bufferedBytes < highWatermark;
+    }
+
+    /**
+     * Whether the call has been cancelled by the client.
+     *
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets the buffered bytes.
+     *
+     * @return the buffered bytes
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * Set a handler run whenever the buffer drops below the high watermark after draining.
+     *
+     * @param onDrainHandler the handler
+     */
+    public synchronized void setOnDrainHandler(final Runnable onDrainHandler) {
+        this.onDrainHandler = onDrainHandler;
+    }
+
+    private void drain() {
+        final Runnable handler;
+        synchronized (this) {
+            while (!buffer.isEmpty() && !cancelled && delegate.isReady()) {
+                bufferedBytes -= weights.poll();
+                delegate.onNext(buffer.poll());
+            }
+            if (buffer.isEmpty() && completed && !closed) {
+                closed = true;
+                if (!cancelled) {
+                    delegate.onCompleted();
+                }
+                return;
+            }
+            handler = !closed && bufferedBytes < highWatermark ? onDrainHandler : null;
+        }
+        // 在锁外执行,避免与请求端的锁交叉
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    private synchronized void cancel() {
+        cancelled = true;
+        clear();
+    }
+
+    private void clear() {
+        buffer.clear();
+        weights.clear();
+        bufferedBytes = 0;
+    }
+
+    private static int serializedSize(final Object value) {
+        return value instanceof MessageLite ? ((MessageLite) value).getSerializedSize() : 0;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.server.flowcontrol;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Flow controlled request observer for client streaming and bidi streaming services.
+ * 关闭自动request,初始只请求inboundWindow个请求,每处理完一个请求再请求下一个;
+ * 响应暂存超过highWatermark时暂停请求,onReady写出暂存的响应后恢复.
+ * <pre>
+ * public StreamObserver&lt;HelloRequest&gt; helloEveryOne(final StreamObserver&lt;HelloResponse&gt; responseObserver) {
+ *     return new FlowControlledRequestObserver&lt;HelloRequest, HelloResponse&gt;(responseObserver) {
+ *         protected void onRequest(final HelloRequest request, final StreamObserver&lt;HelloResponse&gt; responses) {
+ *             responses.onNext(...);
+ *         }
+ *     };
+ * }
+ * </pre>
+ * 必须在服务方法返回前创建.
+ *
+ * @param <ReqT>  request type
+ * @param <RespT> response type
+ */
+public abstract class FlowControlledRequestObserver<ReqT, RespT> implements StreamObserver<ReqT> {
+
+    public static final int DEFAULT_INBOUND_WINDOW = 8;
+
+    private final ServerCallStreamObserver<RespT> call;
+
+    private final BufferedResponseObserver<RespT> responses;
+
+    private int pausedRequests;
+
+    /**
+     * Instantiates a new Flow controlled request observer with default limits.
+     *
+     * @param responseObserver the response observer passed to the service method
+     */
+    protected FlowControlledRequestObserver(final StreamObserver<RespT> responseObserver) {
+        this(responseObserver, DEFAULT_INBOUND_WINDOW, BufferedResponseObserver.DEFAULT_HIGH_WATERMARK,
+                BufferedResponseObserver.DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * Instantiates a new Flow controlled request observer.
+     *
+     * @param responseObserver the response observer passed to the service method
+     * @param inboundWindow    number of requests requested ahead of processing
+     * @param highWatermark    buffered response bytes above which no more requests are requested
+     * @param maxBufferedBytes buffered response bytes above which the call fails with RESOURCE_EXHAUSTED
+     */
+    protected FlowControlledRequestObserver(final StreamObserver<RespT> responseObserver, final int inboundWindow,
+                                            final long highWatermark, final long maxBufferedBytes) {
+        checkArgument(inboundWindow > 0, "inboundWindow must be positive");
+        this.responses = new BufferedResponseObserver<>(responseObserver, highWatermark, maxBufferedBytes);
+        this.call = (ServerCallStreamObserver<RespT>) responseObserver;
+        this.call.disableAutoRequest();
+        this.responses.setOnDrainHandler(this::resume);
+        this.call.request(inboundWindow);
+    }
+
+    /**
+     * Handle a request, responses should be sent through {@code responses}.
+     *
+     * @param request   the request
+     * @param responses the bounded response observer
+     */
+    protected abstract void onRequest(ReqT request, StreamObserver<RespT> responses);
+
+    /**
+     * The client finished sending requests, completes the call by default.
+     *
+     * @param responses the bounded response observer
+     */
+    protected void onRequestsCompleted(final StreamObserver<RespT> responses) {
+        responses.onCompleted();
+    }
+
+    /**
+     * The call failed or was cancelled by the client.
+     *
+     * @param t the error
+     */
+    protected void onFailure(final Throwable t) {
+    }
+
+    /**
+     * Gets the bounded response observer.
+     *
+     * @return the response observer
+     */
+    protected BufferedResponseObserver<RespT> getResponses() {
+        return responses;
+    }
+
+    @Override
+    public final void onNext(final ReqT request) {
+        onRequest(request, responses);
+        final boolean ready = responses.isReady();
+        if (ready) {
+            call.request(1);
+            return;
+        }
+        synchronized (this) {
+            // 响应积压,等onReady写出后再请求
+            pausedRequests++;
+        }
+        // 暂停前响应可能已经写出
+        if (responses.isReady()) {
+            resume();
+        }
+    }
+
+    @Override
+    public final void onError(final Throwable t) {
+        onFailure(t);
+    }
+
+    @Override
+    public final void onCompleted() {
+        onRequestsCompleted(responses);
+    }
+
+    private synchronized void resume() {
+        if (pausedRequests > 0) {
+            call.request(pausedRequests);
+            pausedRequests = 0;
+        }
+    }
+}
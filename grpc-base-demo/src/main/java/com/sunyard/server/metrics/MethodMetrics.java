@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.metrics;
+
+import io.grpc.Status;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one server method.
+ */
+public class MethodMetrics {
+
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    private final String fullMethodName;
+
+    private final LongAdder started = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder[] statusCounts = new LongAdder[CODES.length];
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder requestMessages = new LongAdder();
+
+    private final LongAdder requestBytes = new LongAdder();
+
+    private final LongAdder responseMessages = new LongAdder();
+
+    private final LongAdder responseBytes = new LongAdder();
+
+    MethodMetrics(final String fullMethodName) {
+        this.fullMethodName = fullMethodName;
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new LongAdder();
+        }
+    }
+
+    void recordStarted() {
+        started.increment();
+        inFlight.increment();
+    }
+
+    void recordClosed(final Status.Code code, final long latencyNanos) {
+        inFlight.decrement();
+        statusCounts[code.value()].increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordRequest(final long bytes) {
+        requestMessages.increment();
+        requestBytes.add(Math.max(0L, bytes));
+    }
+
+    void recordResponse(final long bytes) {
+        responseMessages.increment();
+        responseBytes.add(Math.max(0L, bytes));
+    }
+
+    public String getFullMethodName() {
+        return fullMethodName;
+    }
+
+    public long getStartedCalls() {
+        return started.sum();
+    }
+
+    public long getInFlightCalls() {
+        return inFlight.sum();
+    }
+
+    /**
+     * Gets the number of closed calls per status code, codes without calls are omitted.
+     *
+     * @return the call count keyed by status code
+     */
+    public Map<Status.Code, Long> getStatusCounts() {
+        final Map<Status.Code, Long> counts = new EnumMap<>(Status.Code.class);
+        for (Status.Code code : CODES) {
+            final long count = statusCounts[code.value()].sum();
+            if (count > 0) {
+                counts.put(code, count);
+            }
+        }
+        return counts;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRequestMessages() {
+        return requestMessages.sum();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    public long getResponseMessages() {
+        return responseMessages.sum();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.metrics;
+
+import io.grpc.Metadata;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per method metrics of the grpc server.
+ * 使用ServerStreamTracer而不是ServerInterceptor记录, 每次调用只创建一个tracer, 不需要包装ServerCall与Listener.
+ * 只统计启动时注册的方法, 未知方法名不会产生新的统计项.
+ */
+public class ServerMetrics extends ServerStreamTracer.Factory {
+
+    private static final ServerStreamTracer NOOP_TRACER = new ServerStreamTracer() {
+    };
+
+    private volatile Map<String, MethodMetrics> methods = Collections.emptyMap();
+
+    /**
+     * Registers the methods of the services, called before the server starts.
+     *
+     * @param serviceDefinitions the service definitions
+     */
+    public synchronized void register(final List<ServerServiceDefinition> serviceDefinitions) {
+        final Map<String, MethodMetrics> registered = new LinkedHashMap<>(methods);
+        for (ServerServiceDefinition definition : serviceDefinitions) {
+            for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+                final String name = method.getMethodDescriptor().getFullMethodName();
+                registered.computeIfAbsent(name, MethodMetrics::new);
+            }
+        }
+        methods = Collections.unmodifiableMap(registered);
+    }
+
+    /**
+     * Gets the metrics of the registered methods.
+     *
+     * @return the metrics keyed by full method name
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return methods;
+    }
+
+    @Override
+    public ServerStreamTracer newServerStreamTracer(final String fullMethodName, final Metadata headers) {
+        final MethodMetrics metrics = methods.get(fullMethodName);
+        return metrics == null ? NOOP_TRACER : new MetricsTracer(metrics);
+    }
+
+    /**
+     * 记录一次调用, 从收到请求头到流关闭.
+     */
+    private static final class MetricsTracer extends ServerStreamTracer {
+
+        private final MethodMetrics metrics;
+
+        private final long startNanos = System.nanoTime();
+
+        MetricsTracer(final MethodMetrics metrics) {
+            this.metrics = metrics;
+            metrics.recordStarted();
+        }
+
+        @Override
+        public void inboundMessageRead(final int seqNo, final long optionalWireSize, final long optionalUncompressedSize) {
+            metrics.recordRequest(optionalUncompressedSize >= 0 ? optionalUncompressedSize : optionalWireSize);
+        }
+
+        @Override
+        public void outboundMessageSent(final int seqNo, final long optionalWireSize, final long optionalUncompressedSize) {
+            metrics.recordResponse(optionalUncompressedSize >= 0 ? optionalUncompressedSize : optionalWireSize);
+        }
+
+        @Override
+        public void streamClosed(final Status status) {
+            metrics.recordClosed(status.getCode(), System.nanoTime() - startNanos);
+        }
+    }
+}
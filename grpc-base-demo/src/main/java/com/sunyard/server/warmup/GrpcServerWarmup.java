@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.warmup;
+
+import com.google.common.io.ByteStreams;
+import com.sunyard.server.GrpcServerRunner;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Warms up the grpc services before the instance is registered.
+ * 在web server启动与注册中心注册之前, 通过in-process channel按配置的次数重放样例请求,
+ * 请求以字节发送, 服务端的反序列化、拦截器、handler与响应序列化都被JIT编译后再接收生产流量.
+ */
+public class GrpcServerWarmup implements SmartLifecycle, ApplicationContextAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GrpcServerWarmup.class);
+
+    /**
+     * 早于web server启动(Integer.MAX_VALUE - 1), web server启动后才注册实例.
+     */
+    private static final int PHASE = Integer.MAX_VALUE - 2;
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new BytesMarshaller();
+
+    private final GrpcServerRunner grpcServerRunner;
+
+    private final GrpcServerWarmupProperties properties;
+
+    private final List<WarmupRequestProvider> providers;
+
+    private ApplicationContext applicationContext;
+
+    private volatile boolean running;
+
+    /**
+     * Instantiates a new Grpc server warmup.
+     *
+     * @param grpcServerRunner the grpc server runner providing the service definitions
+     * @param properties       the warm-up properties
+     * @param providers        the sample request providers
+     */
+    public GrpcServerWarmup(final GrpcServerRunner grpcServerRunner, final GrpcServerWarmupProperties properties,
+                            final List<WarmupRequestProvider> providers) {
+        this.grpcServerRunner = grpcServerRunner;
+        this.properties = properties;
+        this.providers = providers;
+    }
+
+    @Override
+    public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        final List<ServerServiceDefinition> definitions = grpcServerRunner.prepareServiceDefinitions(applicationContext);
+        final List<WarmupCall> calls = new ArrayList<>();
+        for (ServerServiceDefinition definition : definitions) {
+            for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+                for (byte[] sample : samples(method.getMethodDescriptor())) {
+                    calls.add(new WarmupCall(method.getMethodDescriptor().toBuilder(BYTES, BYTES).build(), sample));
+                }
+            }
+        }
+        if (calls.isEmpty()) {
+            LOG.info("No grpc warm-up requests, skipping the warm-up");
+            return;
+        }
+        try {
+            replay(definitions, calls);
+        } catch (IOException e) {
+            LOG.warn("Failed to warm up the grpc services", e);
+        }
+    }
+
+    private void replay(final List<ServerServiceDefinition> definitions, final List<WarmupCall> calls) throws IOException {
+        final String serverName = "grpc-warmup-" + System.identityHashCode(this);
+        final InProcessServerBuilder serverBuilder = InProcessServerBuilder.forName(serverName);
+        definitions.forEach(serverBuilder::addService);
+        final Server server = serverBuilder.build().start();
+        final ManagedChannel channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + properties.getTimeout().toNanos();
+        long completed = 0;
+        long failed = 0;
+        try {
+            for (int i = 0; i < properties.getIterations() && deadlineNanos - System.nanoTime() > 0; i++) {
+                for (WarmupCall call : calls) {
+                    final Status status = call.invoke(channel, deadlineNanos);
+                    if (status.isOk()) {
+                        completed++;
+                    } else {
+                        failed++;
+                    }
+                }
+            }
+            LOG.info("Warmed up {} grpc methods with {} calls ({} failed) in {} ms", calls.stream()
+                            .map(call -> call.method.getFullMethodName()).distinct().count(), completed + failed, failed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    /**
+     * 方法的样例请求: WarmupRequestProvider提供的请求, capture-directory下保存的请求, 都没有时可选使用空请求.
+     */
+    private List<byte[]> samples(final MethodDescriptor<?, ?> method) {
+        final List<byte[]> samples = new ArrayList<>();
+        for (WarmupRequestProvider provider : providers) {
+            final List<?> requests = provider.getRequests(method);
+            if (requests != null) {
+                requests.forEach(request -> samples.add(serialize(method, request)));
+            }
+        }
+        if (StringUtils.hasText(properties.getCaptureDirectory())) {
+            samples.addAll(captured(Paths.get(properties.getCaptureDirectory()).resolve(method.getFullMethodName())));
+        }
+        if (samples.isEmpty() && properties.isDefaultRequests()
+                && method.getRequestMarshaller() instanceof MethodDescriptor.PrototypeMarshaller) {
+            // protobuf的空消息序列化后为0字节
+            samples.add(new byte[0]);
+        }
+        return samples;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> byte[] serialize(final MethodDescriptor<R, ?> method, final Object request) {
+        try (InputStream stream = method.streamRequest((R) request)) {
+            return ByteStreams.toByteArray(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<byte[]> captured(final Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            final List<byte[]> samples = new ArrayList<>();
+            for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                samples.add(Files.readAllBytes(file));
+            }
+            return samples;
+        } catch (IOException e) {
+            LOG.warn("Failed to read the captured grpc requests in {}", directory, e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * 一个方法的一条样例请求.
+     */
+    private static final class WarmupCall {
+
+        private final MethodDescriptor<byte[], byte[]> method;
+
+        private final byte[] request;
+
+        WarmupCall(final MethodDescriptor<byte[], byte[]> method, final byte[] request) {
+            this.method = method;
+            this.request = request;
+        }
+
+        Status invoke(final ManagedChannel channel, final long deadlineNanos) throws InterruptedException {
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            final ClientCall<byte[], byte[]> call = channel.newCall(method,
+                    CallOptions.DEFAULT.withDeadlineAfter(Math.max(1L, remainingNanos), TimeUnit.NANOSECONDS));
+            final CompletableFuture<Status> closed = new CompletableFuture<>();
+            call.start(new ClientCall.Listener<byte[]>() {
+                @Override
+                public void onClose(final Status status, final Metadata trailers) {
+                    closed.complete(status);
+                }
+            }, new Metadata());
+            call.request(Integer.MAX_VALUE);
+            call.sendMessage(request);
+            call.halfClose();
+            try {
+                return closed.get(Math.max(1L, remainingNanos), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                call.cancel("warm-up timed out", null);
+                return Status.DEADLINE_EXCEEDED;
+            }
+        }
+    }
+
+    /**
+     * 请求与响应以字节传输, 序列化由服务端的marshaller完成.
+     */
+    private static final class BytesMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+        @Override
+        public InputStream stream(final byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(final InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
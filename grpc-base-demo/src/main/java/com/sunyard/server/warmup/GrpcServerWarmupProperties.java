@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Grpc server warm-up properties.
+ * <pre>
+ * grpc:
+ *   server:
+ *     warmup:
+ *       enabled: true
+ *       iterations: 2000
+ *       timeout: 30s
+ *       capture-directory: /data/grpc-warmup
+ *       default-requests: false
+ * </pre>
+ * capture-directory下按 &lt;full method name&gt;/&lt;任意文件名&gt; 存放序列化后的请求,
+ * 例如 com.sunyard.hello.HelloService/hello/1.bin.
+ */
+@ConfigurationProperties(prefix = "grpc.server.warmup")
+public class GrpcServerWarmupProperties {
+
+    /**
+     * Whether the services are warmed up through an in-process channel before the instance is registered.
+     */
+    private boolean enabled;
+
+    /**
+     * Number of times every sample request is replayed.
+     */
+    private int iterations = 1000;
+
+    /**
+     * Maximum duration of the warm-up.
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * Directory of the captured serialized requests.
+     */
+    private String captureDirectory;
+
+    /**
+     * Whether methods without samples are called with an empty request, only for methods without side effects.
+     */
+    private boolean defaultRequests;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(final int iterations) {
+        this.iterations = iterations;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(final Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public String getCaptureDirectory() {
+        return captureDirectory;
+    }
+
+    public void setCaptureDirectory(final String captureDirectory) {
+        this.captureDirectory = captureDirectory;
+    }
+
+    public boolean isDefaultRequests() {
+        return defaultRequests;
+    }
+
+    public void setDefaultRequests(final boolean defaultRequests) {
+        this.defaultRequests = defaultRequests;
+    }
+}
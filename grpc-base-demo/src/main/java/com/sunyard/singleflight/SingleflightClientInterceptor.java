@@ -0,0 +1,552 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.singleflight;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.sunyard.intercept.ContextClientInterceptor;
+import com.sunyard.intercept.ContextPropagation;
+import com.sunyard.utils.SerializingExecutor;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleflight client interceptor.
+ * 相同方法、相同请求字节、相同关键请求头的unary调用在途时,后来的调用挂到已有调用上等待结果,不再发送新的rpc.
+ * <p>
+ * 共享的rpc在独立的Context中执行,使用第一个调用方(leader)的deadline. 每个调用方单独处理自己的取消和deadline:
+ * 调用方取消或超时只影响自己,所有调用方都离开后才取消共享的rpc.
+ * deadline晚于共享rpc的调用方不会挂到该rpc上,而是单独发起调用.
+ * 传递到服务端的上下文({@link ContextClientInterceptor#RPC_CONTEXT_KEY})不同的调用不会合并.
+ */
+public class SingleflightClientInterceptor implements ClientInterceptor, AutoCloseable {
+
+    private final Set<String> methods;
+
+    private final List<Metadata.Key<String>> metadataKeys = new ArrayList<>();
+
+    private final Map<FlightKey, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timer = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+
+    /**
+     * CallOptions没有指定executor时回调listener使用的executor.
+     */
+    private final Executor callbackPool = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+
+    private final LongAdder flightCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * Instantiates a new Singleflight client interceptor.
+     *
+     * @param properties the singleflight properties
+     */
+    public SingleflightClientInterceptor(final SingleflightProperties properties) {
+        this.methods = new HashSet<>(properties.getMethods());
+        for (String key : properties.getMetadataKeys()) {
+            this.metadataKeys.add(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER));
+        }
+    }
+
+    @Override
+    public <R, P> ClientCall<R, P> interceptCall(final MethodDescriptor<R, P> methodDescriptor, final CallOptions callOptions, final Channel channel) {
+        if (methodDescriptor.getType() != MethodDescriptor.MethodType.UNARY
+                || !(methods.contains(methodDescriptor.getFullMethodName()) || methods.contains(methodDescriptor.getServiceName()))) {
+            return channel.newCall(methodDescriptor, callOptions);
+        }
+        return new CoalescingCall<>(methodDescriptor, callOptions, channel);
+    }
+
+    /**
+     * Gets the number of rpcs actually sent.
+     *
+     * @return the flight count
+     */
+    public long getFlightCount() {
+        return flightCount.sum();
+    }
+
+    /**
+     * Gets the number of calls attached to an in-flight rpc.
+     *
+     * @return the coalesced count
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Release the shared timer and executor.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timer);
+            SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR, callbackPool);
+        }
+    }
+
+    private String[] metadataValues(final Metadata headers) {
+        final String[] values = new String[metadataKeys.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = headers == null ? null : headers.get(metadataKeys.get(i));
+        }
+        return values;
+    }
+
+    private static Metadata copyOf(final Metadata metadata) {
+        final Metadata copy = new Metadata();
+        if (metadata != null) {
+            copy.merge(metadata);
+        }
+        return copy;
+    }
+
+    /**
+     * 每个调用方对应一个CoalescingCall,作为共享rpc的参与者或在无法合并时直接代理真实调用.
+     * cancel可能来自其他线程, 选择合并还是直接调用、创建delegate与取消在同一把锁中完成.
+     */
+    private final class CoalescingCall<R, P> extends ClientCall<R, P> implements Context.CancellationListener {
+
+        private final MethodDescriptor<R, P> method;
+
+        private final CallOptions callOptions;
+
+        private final Channel channel;
+
+        private final Executor callbackExecutor;
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private Listener<P> listener;
+
+        private Metadata headers;
+
+        private Context context;
+
+        private Map<String, String> rpcContext;
+
+        private Deadline deadline;
+
+        private int requested;
+
+        private Boolean messageCompression;
+
+        private volatile ClientCall<R, P> delegate;
+
+        private volatile Flight<P> flight;
+
+        private volatile ScheduledFuture<?> deadlineTimer;
+
+        CoalescingCall(final MethodDescriptor<R, P> method, final CallOptions callOptions, final Channel channel) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.channel = channel;
+            final Executor executor = callOptions.getExecutor();
+            this.callbackExecutor = new SerializingExecutor(executor == null ? callbackPool : executor);
+        }
+
+        @Override
+        public void start(final Listener<P> responseListener, final Metadata headers) {
+            synchronized (this) {
+                this.listener = responseListener;
+                this.headers = headers;
+                this.context = Context.current();
+                // 上下文由ContextClientInterceptor在内层写入请求头, 或已由调用方(如ReactorCalls)写入请求头
+                final Map<String, String> current = ContextClientInterceptor.RPC_CONTEXT_KEY.get(context);
+                this.rpcContext = current == null || current.isEmpty() ? ContextPropagation.read(headers) : current;
+                final Deadline callDeadline = callOptions.getDeadline();
+                final Deadline contextDeadline = context.getDeadline();
+                this.deadline = callDeadline == null ? contextDeadline
+                        : contextDeadline == null ? callDeadline : callDeadline.minimum(contextDeadline);
+            }
+        }
+
+        @Override
+        public void request(final int numMessages) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    requested += numMessages;
+                    return;
+                }
+            }
+            call.request(numMessages);
+        }
+
+        @Override
+        public void sendMessage(final R message) {
+            ClientCall<R, P> call = delegate;
+            if (call == null) {
+                synchronized (this) {
+                    call = delegate;
+                    if (call == null) {
+                        if (done.get() || flight != null) {
+                            return;
+                        }
+                        if (message instanceof MessageLite && coalesce((MessageLite) message, message)) {
+                            return;
+                        }
+                        call = startDelegate();
+                    }
+                }
+            }
+            call.sendMessage(message);
+        }
+
+        @Override
+        public void halfClose() {
+            final ClientCall<R, P> call = delegate;
+            if (call != null) {
+                call.halfClose();
+            }
+        }
+
+        @Override
+        public void cancel(final String message, final Throwable cause) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null && !done.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            if (call != null) {
+                call.cancel(message, cause);
+                return;
+            }
+            leave(Status.CANCELLED.withDescription(message).withCause(cause));
+        }
+
+        @Override
+        public boolean isReady() {
+            final ClientCall<R, P> call = delegate;
+            return call == null || call.isReady();
+        }
+
+        @Override
+        public void setMessageCompression(final boolean enabled) {
+            final ClientCall<R, P> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    messageCompression = enabled;
+                    return;
+                }
+            }
+            call.setMessageCompression(enabled);
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            final ClientCall<R, P> call = delegate;
+            return call == null ? Attributes.EMPTY : call.getAttributes();
+        }
+
+        @Override
+        public void cancelled(final Context context) {
+            abort(Contexts.statusFromCancelled(context));
+        }
+
+        /**
+         * 持有锁时调用, 挂到在途的flight或发起新的flight.
+         *
+         * @return false 无法合并, 需要单独发起调用
+         */
+        @SuppressWarnings("unchecked")
+        private boolean coalesce(final MessageLite request, final R message) {
+            final FlightKey key = new FlightKey(method.getFullMethodName(), request.toByteString(),
+                    metadataValues(headers), rpcContext);
+            for (;;) {
+                final Flight<P> existing = (Flight<P>) flights.get(key);
+                if (existing == null) {
+                    final Flight<P> created = new Flight<>(key, channel, deadline);
+                    if (flights.putIfAbsent(key, created) != null) {
+                        continue;
+                    }
+                    created.join(this);
+                    attach(created);
+                    flightCount.increment();
+                    created.start(method, callOptions, headers, message, messageCompression);
+                    return true;
+                }
+                if (!existing.covers(deadline)) {
+                    return false;
+                }
+                if (existing.join(this)) {
+                    attach(existing);
+                    coalescedCount.increment();
+                    return true;
+                }
+                // 已经结束的flight,移除后重试
+                flights.remove(key, existing);
+            }
+        }
+
+        private void attach(final Flight<P> joined) {
+            this.flight = joined;
+            if (deadline != null) {
+                deadlineTimer = deadline.runOnExpiration(
+                        () -> abort(Status.DEADLINE_EXCEEDED.withDescription("deadline exceeded while waiting for coalesced call")),
+                        timer);
+            }
+            context.addListener(this, MoreExecutors.directExecutor());
+        }
+
+        /**
+         * 调用方因Context取消或deadline离开,只影响自己.
+         */
+        private void abort(final Status status) {
+            if (done.compareAndSet(false, true)) {
+                leave(status);
+            }
+        }
+
+        private void leave(final Status status) {
+            cleanup();
+            final Flight<P> joined = flight;
+            if (joined != null) {
+                joined.leave(this);
+            }
+            final Listener<P> responseListener = listener;
+            if (responseListener != null) {
+                callbackExecutor.execute(() -> responseListener.onClose(status, new Metadata()));
+            }
+        }
+
+        /**
+         * 共享的rpc结束.
+         */
+        void complete(final Metadata responseHeaders, final P response, final Status status, final Metadata trailers) {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            cleanup();
+            callbackExecutor.execute(() -> {
+                if (responseHeaders != null) {
+                    listener.onHeaders(copyOf(responseHeaders));
+                }
+                if (response != null && status.isOk()) {
+                    listener.onMessage(response);
+                }
+                listener.onClose(status, copyOf(trailers));
+            });
+        }
+
+        private void cleanup() {
+            final ScheduledFuture<?> future = deadlineTimer;
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (context != null) {
+                context.removeListener(this);
+            }
+        }
+
+        /**
+         * 持有锁时调用, delegate启动后才对其他线程可见, cancel不会早于start.
+         */
+        private ClientCall<R, P> startDelegate() {
+            final ClientCall<R, P> call = channel.newCall(method, callOptions);
+            call.start(listener, headers);
+            if (messageCompression != null) {
+                call.setMessageCompression(messageCompression);
+            }
+            if (requested > 0) {
+                call.request(requested);
+            }
+            delegate = call;
+            return call;
+        }
+    }
+
+    /**
+     * 一次真实发送的rpc及挂在其上的调用方.
+     */
+    private final class Flight<P> extends ClientCall.Listener<P> {
+
+        private final FlightKey key;
+
+        private final Channel channel;
+
+        private final Deadline deadline;
+
+        private final List<CoalescingCall<?, P>> participants = new ArrayList<>();
+
+        private ClientCall<?, P> call;
+
+        private boolean closed;
+
+        private Metadata responseHeaders;
+
+        private P response;
+
+        Flight(final FlightKey key, final Channel channel, final Deadline deadline) {
+            this.key = key;
+            this.channel = channel;
+            this.deadline = deadline;
+        }
+
+        boolean covers(final Deadline other) {
+            return deadline == null || (other != null && other.compareTo(deadline) <= 0);
+        }
+
+        synchronized boolean join(final CoalescingCall<?, P> participant) {
+            if (closed) {
+                return false;
+            }
+            participants.add(participant);
+            return true;
+        }
+
+        synchronized void leave(final CoalescingCall<?, P> participant) {
+            if (closed || !participants.remove(participant) || !participants.isEmpty()) {
+                return;
+            }
+            closed = true;
+            flights.remove(key, this);
+            if (call != null) {
+                call.cancel("All coalesced callers left", null);
+            }
+        }
+
+        /**
+         * 在独立的Context中发起rpc,避免leader的Context取消影响其他调用方.
+         */
+        synchronized <R> void start(final MethodDescriptor<R, P> method, final CallOptions callOptions,
+                                    final Metadata headers, final R request, final Boolean messageCompression) {
+            if (closed) {
+                return;
+            }
+            final CallOptions options = callOptions.withDeadline(deadline).withExecutor(MoreExecutors.directExecutor());
+            final Context previous = Context.current().fork().attach();
+            try {
+                final ClientCall<R, P> newCall = channel.newCall(method, options);
+                this.call = newCall;
+                newCall.start(this, copyOf(headers));
+                if (messageCompression != null) {
+                    newCall.setMessageCompression(messageCompression);
+                }
+                newCall.request(2);
+                newCall.sendMessage(request);
+                newCall.halfClose();
+            } finally {
+                Context.current().detach(previous);
+            }
+        }
+
+        @Override
+        public void onHeaders(final Metadata headers) {
+            this.responseHeaders = headers;
+        }
+
+        @Override
+        public void onMessage(final P message) {
+            this.response = message;
+        }
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            final List<CoalescingCall<?, P>> waiting;
+            synchronized (this) {
+                closed = true;
+                waiting = new ArrayList<>(participants);
+                participants.clear();
+            }
+            flights.remove(key, this);
+            for (CoalescingCall<?, P> participant : waiting) {
+                participant.complete(responseHeaders, response, status, trailers);
+            }
+        }
+    }
+
+    /**
+     * 方法名 + 请求序列化字节 + 关键请求头 + 传递到服务端的上下文.
+     */
+    private static final class FlightKey {
+
+        private final String fullMethodName;
+
+        private final ByteString request;
+
+        private final String[] metadataValues;
+
+        private final Map<String, String> rpcContext;
+
+        private final int hash;
+
+        FlightKey(final String fullMethodName, final ByteString request, final String[] metadataValues,
+                  final Map<String, String> rpcContext) {
+            this.fullMethodName = fullMethodName;
+            this.request = request;
+            this.metadataValues = metadataValues;
+            this.rpcContext = rpcContext == null ? Collections.emptyMap() : rpcContext;
+            this.hash = 31 * (31 * (31 * fullMethodName.hashCode() + request.hashCode()) + Arrays.hashCode(metadataValues))
+                    + this.rpcContext.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FlightKey that = (FlightKey) o;
+            return hash == that.hash && fullMethodName.equals(that.fullMethodName) && request.equals(that.request)
+                    && Arrays.equals(metadataValues, that.metadataValues) && rpcContext.equals(that.rpcContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
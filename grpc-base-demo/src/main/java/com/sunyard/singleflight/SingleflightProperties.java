@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.singleflight;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grpc client singleflight properties.
+ * <pre>
+ * grpc:
+ *   singleflight:
+ *     enabled: true
+ *     methods:
+ *       - com.sunyard.hello.HelloService/hello
+ *     metadata-keys:
+ *       - authorization
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "grpc.singleflight")
+public class SingleflightProperties {
+
+    /**
+     * Whether singleflight coalescing is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * Service names or full method names to coalesce.
+     */
+    private List<String> methods = new ArrayList<>();
+
+    /**
+     * Header keys that are part of the identity of a call, e.g. authorization or tenant.
+     */
+    private List<String> metadataKeys = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(final List<String> methods) {
+        this.methods = methods;
+    }
+
+    public List<String> getMetadataKeys() {
+        return metadataKeys;
+    }
+
+    public void setMetadataKeys(final List<String> metadataKeys) {
+        this.metadataKeys = metadataKeys;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serializing executor.
+ * 按提交顺序在底层executor上串行执行任务, 同一时刻最多占用底层executor的一个线程, 底层队列中也最多只有一个任务.
+ */
+public final class SerializingExecutor implements Executor, Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerializingExecutor.class);
+
+    private final Executor executor;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * Instantiates a new Serializing executor.
+     *
+     * @param executor the underlying executor
+     */
+    public SerializingExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Run the task after all previously submitted tasks.
+     *
+     * @param task the task
+     * @throws RejectedExecutionException if the underlying executor rejects the drain, the task is discarded
+     */
+    @Override
+    public void execute(final Runnable task) {
+        tasks.add(task);
+        schedule(task);
+    }
+
+    private void schedule(final Runnable submitted) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this);
+        } catch (RuntimeException e) {
+            // 底层executor拒绝时丢弃本次提交的任务, 其他线程提交的任务留给下一次调度
+            if (submitted != null) {
+                tasks.remove(submitted);
+            }
+            running.set(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        Runnable task;
+        try {
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Exception while executing runnable {}", task, e);
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+        // 释放标记与最后一次poll之间可能有新提交的任务
+        if (!tasks.isEmpty()) {
+            schedule(null);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerServiceDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 测试使用的byte[]方法定义, 不依赖生成的stub.
+ */
+public final class TestMethods {
+
+    public static final String SERVICE_NAME = "test.Echo";
+
+    public static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(final byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(final InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private TestMethods() {
+    }
+
+    /**
+     * Unary method of {@link #SERVICE_NAME}.
+     *
+     * @param name method name
+     * @return the method descriptor
+     */
+    public static MethodDescriptor<byte[], byte[]> unary(final String name) {
+        return MethodDescriptor.<byte[], byte[]>newBuilder()
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, name))
+                .setRequestMarshaller(BYTES)
+                .setResponseMarshaller(BYTES)
+                .setSafe(true)
+                .setIdempotent(true)
+                .build();
+    }
+
+    /**
+     * Service with a single method.
+     *
+     * @param method  the method
+     * @param handler the handler
+     * @return the service definition
+     */
+    public static ServerServiceDefinition service(final MethodDescriptor<byte[], byte[]> method,
+                                                  final ServerCallHandler<byte[], byte[]> handler) {
+        return ServerServiceDefinition.builder(SERVICE_NAME).addMethod(method, handler).build();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.cache;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.StringValue;
+import com.sunyard.intercept.ContextClientInterceptor;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheClientInterceptorTest {
+
+    private static final MethodDescriptor<StringValue, StringValue> METHOD =
+            MethodDescriptor.<StringValue, StringValue>newBuilder()
+                    .setType(MethodDescriptor.MethodType.UNARY)
+                    .setFullMethodName(MethodDescriptor.generateFullMethodName("test.Cache", "Get"))
+                    .setRequestMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .setResponseMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .setSafe(true)
+                    .build();
+
+    private static final StringValue REQUEST = StringValue.of("key");
+
+    private final AtomicInteger serverCalls = new AtomicInteger();
+
+    private Server server;
+
+    private ManagedChannel managedChannel;
+
+    private ResponseCache cache;
+
+    private Channel channel;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor()
+                .addService(ServerServiceDefinition.builder("test.Cache")
+                        .addMethod(METHOD, ServerCalls.asyncUnaryCall((request, observer) -> {
+                            observer.onNext(StringValue.of(request.getValue() + "-" + serverCalls.incrementAndGet()));
+                            observer.onCompleted();
+                        }))
+                        .build())
+                .build()
+                .start();
+        managedChannel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        final ResponseCacheProperties properties = new ResponseCacheProperties();
+        properties.setSafeMethodTtl(Duration.ofMinutes(1));
+        cache = new ResponseCache(properties);
+        channel = ClientInterceptors.intercept(managedChannel, new ResponseCacheClientInterceptor(cache));
+    }
+
+    @AfterEach
+    void tearDown() {
+        managedChannel.shutdownNow();
+        server.shutdownNow();
+        cache.close();
+    }
+
+    @Test
+    void hitIsServedFromCache() {
+        final StringValue first = ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST);
+        final StringValue second = ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(serverCalls.get()).isEqualTo(1);
+        assertThat(cache.getMethodStats().get(METHOD.getFullMethodName()).getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void callsWithDifferentContextsDoNotShareEntries() throws Exception {
+        final StringValue tenantA = Context.current()
+                .withValue(ContextClientInterceptor.RPC_CONTEXT_KEY, Collections.singletonMap("tenant", "a"))
+                .call(() -> ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST));
+        final StringValue tenantB = Context.current()
+                .withValue(ContextClientInterceptor.RPC_CONTEXT_KEY, Collections.singletonMap("tenant", "b"))
+                .call(() -> ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST));
+        final StringValue noContext = ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST);
+
+        assertThat(tenantB).isNotEqualTo(tenantA);
+        assertThat(noContext).isNotEqualTo(tenantA).isNotEqualTo(tenantB);
+        assertThat(serverCalls.get()).isEqualTo(3);
+
+        final StringValue tenantAgain = Context.current()
+                .withValue(ContextClientInterceptor.RPC_CONTEXT_KEY, Collections.singletonMap("tenant", "a"))
+                .call(() -> ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST));
+        assertThat(tenantAgain).isEqualTo(tenantA);
+        assertThat(serverCalls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void callsWithDifferentAuthorizationDoNotShareEntries() {
+        final StringValue first = ClientCalls.blockingUnaryCall(withAuthorization("Bearer a"), METHOD,
+                CallOptions.DEFAULT, REQUEST);
+        final StringValue second = ClientCalls.blockingUnaryCall(withAuthorization("Bearer b"), METHOD,
+                CallOptions.DEFAULT, REQUEST);
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(serverCalls.get()).isEqualTo(2);
+    }
+
+    private Channel withAuthorization(final String authorization) {
+        final Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), authorization);
+        return ClientInterceptors.intercept(channel, MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+    @Test
+    void hitIsNotDeliveredInsideHalfClose() throws Exception {
+        ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST);
+        final AtomicBoolean inHalfClose = new AtomicBoolean();
+        final RecordingListener listener = new RecordingListener(inHalfClose);
+        final ClientCall<StringValue, StringValue> call = channel.newCall(METHOD, CallOptions.DEFAULT);
+        call.start(listener, new Metadata());
+        call.request(1);
+        call.sendMessage(REQUEST);
+        inHalfClose.set(true);
+        call.halfClose();
+        inHalfClose.set(false);
+
+        assertThat(listener.events.poll(5, TimeUnit.SECONDS)).isEqualTo("headers");
+        assertThat(listener.events.poll(5, TimeUnit.SECONDS)).isEqualTo("message");
+        assertThat(listener.events.poll(5, TimeUnit.SECONDS)).isEqualTo("close OK");
+        assertThat(listener.reentered).isFalse();
+    }
+
+    @Test
+    void hitWaitsForRequest() throws Exception {
+        ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, REQUEST);
+        final RecordingListener listener = new RecordingListener(new AtomicBoolean());
+        final ClientCall<StringValue, StringValue> call =
+                channel.newCall(METHOD, CallOptions.DEFAULT.withExecutor(MoreExecutors.directExecutor()));
+        call.start(listener, new Metadata());
+        call.sendMessage(REQUEST);
+        call.halfClose();
+        assertThat(listener.events).isEmpty();
+
+        call.request(1);
+        assertThat(listener.events).containsExactly("headers", "message", "close OK");
+    }
+
+    @Test
+    void cancelBeforeSendMessageClosesWithoutRpc() throws Exception {
+        final RecordingListener listener = new RecordingListener(new AtomicBoolean());
+        final ClientCall<StringValue, StringValue> call = channel.newCall(METHOD, CallOptions.DEFAULT);
+        call.start(listener, new Metadata());
+        call.request(1);
+        call.cancel("test", null);
+        call.sendMessage(REQUEST);
+        call.halfClose();
+
+        assertThat(listener.events.poll(5, TimeUnit.SECONDS)).isEqualTo("close CANCELLED");
+        assertThat(listener.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(serverCalls.get()).isZero();
+    }
+
+    private static final class RecordingListener extends ClientCall.Listener<StringValue> {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        private final AtomicBoolean inHalfClose;
+
+        private final Thread caller = Thread.currentThread();
+
+        private volatile boolean reentered;
+
+        /**
+         * @param inHalfClose 调用线程正在执行halfClose
+         */
+        RecordingListener(final AtomicBoolean inHalfClose) {
+            this.inHalfClose = inHalfClose;
+        }
+
+        @Override
+        public void onHeaders(final Metadata headers) {
+            record("headers");
+        }
+
+        @Override
+        public void onMessage(final StringValue message) {
+            record("message");
+        }
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            record("close " + status.getCode());
+        }
+
+        private void record(final String event) {
+            if (inHalfClose.get() && Thread.currentThread() == caller) {
+                reentered = true;
+            }
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.sunyard.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sunyard.TestMethods;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.AbstractBlockingStub;
+import io.grpc.stub.AbstractFutureStub;
+import io.grpc.stub.ClientCalls;
+
+/**
+ * 按生成代码的结构手写的stub, 供{@link GrpcStubFactory}通过外层类的静态工厂方法创建.
+ */
+public final class EchoGrpc {
+
+    public static final MethodDescriptor<byte[], byte[]> ECHO = TestMethods.unary("Echo");
+
+    /**
+     * 服务端不响应, 直到调用被取消.
+     */
+    public static final MethodDescriptor<byte[], byte[]> HANG = TestMethods.unary("Hang");
+
+    private EchoGrpc() {
+    }
+
+    public static EchoBlockingStub newBlockingStub(final Channel channel) {
+        return new EchoBlockingStub(channel, CallOptions.DEFAULT);
+    }
+
+    public static EchoFutureStub newFutureStub(final Channel channel) {
+        return new EchoFutureStub(channel, CallOptions.DEFAULT);
+    }
+
+    public static final class EchoBlockingStub extends AbstractBlockingStub<EchoBlockingStub> {
+
+        private EchoBlockingStub(final Channel channel, final CallOptions callOptions) {
+            super(channel, callOptions);
+        }
+
+        @Override
+        protected EchoBlockingStub build(final Channel channel, final CallOptions callOptions) {
+            return new EchoBlockingStub(channel, callOptions);
+        }
+
+        public byte[] echo(final byte[] request) {
+            return ClientCalls.blockingUnaryCall(getChannel(), ECHO, getCallOptions(), request);
+        }
+    }
+
+    public static final class EchoFutureStub extends AbstractFutureStub<EchoFutureStub> {
+
+        private EchoFutureStub(final Channel channel, final CallOptions callOptions) {
+            super(channel, callOptions);
+        }
+
+        @Override
+        protected EchoFutureStub build(final Channel channel, final CallOptions callOptions) {
+            return new EchoFutureStub(channel, callOptions);
+        }
+
+        public ListenableFuture<byte[]> echo(final byte[] request) {
+            return ClientCalls.futureUnaryCall(getChannel().newCall(ECHO, getCallOptions()), request);
+        }
+
+        public ListenableFuture<byte[]> hang(final byte[] request) {
+            return ClientCalls.futureUnaryCall(getChannel().newCall(HANG, getCallOptions()), request);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.sunyard.client;
+
+import com.autoconfigure.GrpcClientInjectionAutoConfiguration;
+import com.sunyard.TestMethods;
+import com.sunyard.client.reactive.ReactorGrpcStub;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrpcClientInjectionTest {
+
+    private static final String SERVICE = "grpc-client-injection-test";
+
+    private final CountDownLatch hangStarted = new CountDownLatch(1);
+
+    private final CountDownLatch hangCancelled = new CountDownLatch(1);
+
+    private Server server;
+
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(ServerServiceDefinition.builder(TestMethods.SERVICE_NAME)
+                        .addMethod(EchoGrpc.ECHO, ServerCalls.asyncUnaryCall((request, observer) -> {
+                            observer.onNext(request);
+                            observer.onCompleted();
+                        }))
+                        .addMethod(EchoGrpc.HANG, ServerCalls.asyncUnaryCall((request, observer) -> {
+                            ((ServerCallStreamObserver<byte[]>) observer).setOnCancelHandler(hangCancelled::countDown);
+                            hangStarted.countDown();
+                        }))
+                        .build())
+                .build()
+                .start();
+        final GrpcChannelProperties channel = new GrpcChannelProperties();
+        channel.setAddress("dns:///127.0.0.1:" + server.getPort());
+        ManagedChannelManager.configure(GrpcClientOptions.builder()
+                .channelProperties(Collections.singletonMap(SERVICE, channel)).build());
+        context = new AnnotationConfigApplicationContext(GrpcClientInjectionAutoConfiguration.class,
+                FieldClients.class, ConstructorClients.class);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        context.close();
+        ManagedChannelManager.shutdownAll(Duration.ZERO);
+        ManagedChannelManager.configure(GrpcClientOptions.DEFAULT);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void fieldsAreInjected() throws Exception {
+        final FieldClients clients = context.getBean(FieldClients.class);
+
+        assertCalls(clients.blocking, clients.completable, clients.reactor);
+    }
+
+    @Test
+    void constructorParametersAreInjected() throws Exception {
+        final ConstructorClients clients = context.getBean(ConstructorClients.class);
+
+        assertCalls(clients.blocking, clients.completable, clients.reactor);
+    }
+
+    @Test
+    void stubsAreSharedBetweenInjectionPoints() {
+        final FieldClients fields = context.getBean(FieldClients.class);
+        final ConstructorClients constructor = context.getBean(ConstructorClients.class);
+
+        assertThat(constructor.blocking).isSameAs(fields.blocking);
+        assertThat(constructor.completable).isSameAs(fields.completable);
+        assertThat(constructor.reactor).isSameAs(fields.reactor);
+    }
+
+    @Test
+    void cancellingTheFutureCancelsTheCall() throws Exception {
+        final FieldClients clients = context.getBean(FieldClients.class);
+
+        final CompletableFuture<byte[]> response = clients.completable.call(stub -> stub.hang(bytes("hang")));
+        assertThat(hangStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        response.cancel(true);
+
+        assertThat(hangCancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(response).isCancelled();
+    }
+
+    private static void assertCalls(final EchoGrpc.EchoBlockingStub blocking,
+                                    final GrpcCompletableStub<EchoGrpc.EchoFutureStub> completable,
+                                    final ReactorGrpcStub reactor) throws Exception {
+        assertThat(blocking.echo(bytes("blocking"))).isEqualTo(bytes("blocking"));
+        assertThat(completable.call(stub -> stub.echo(bytes("future"))).get(5, TimeUnit.SECONDS)).isEqualTo(bytes("future"));
+        assertThat(reactor.unary(EchoGrpc.ECHO, bytes("reactor")).block(Duration.ofSeconds(5))).isEqualTo(bytes("reactor"));
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static class FieldClients {
+
+        @GrpcClient(SERVICE)
+        private EchoGrpc.EchoBlockingStub blocking;
+
+        @GrpcClient(SERVICE)
+        private GrpcCompletableStub<EchoGrpc.EchoFutureStub> completable;
+
+        @GrpcClient(SERVICE)
+        private ReactorGrpcStub reactor;
+    }
+
+    static class ConstructorClients {
+
+        private final EchoGrpc.EchoBlockingStub blocking;
+
+        private final GrpcCompletableStub<EchoGrpc.EchoFutureStub> completable;
+
+        private final ReactorGrpcStub reactor;
+
+        ConstructorClients(@GrpcClient(SERVICE) final EchoGrpc.EchoBlockingStub blocking,
+                           @GrpcClient(SERVICE) final GrpcCompletableStub<EchoGrpc.EchoFutureStub> completable,
+                           @GrpcClient(SERVICE) final ReactorGrpcStub reactor) {
+            this.blocking = blocking;
+            this.completable = completable;
+            this.reactor = reactor;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.client;
+
+import io.grpc.ManagedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ManagedChannelManagerTest {
+
+    private static final String CLIENT = "channel-manager-test";
+
+    private static final String OTHER_CLIENT = "channel-manager-test-other";
+
+    @AfterEach
+    void tearDown() {
+        ManagedChannelManager.shutdownAll(Duration.ZERO);
+        ManagedChannelManager.configure(GrpcClientOptions.DEFAULT);
+        ManagedChannelManager.configureCache(new ChannelCacheProperties());
+    }
+
+    @Test
+    void channelIsCachedPerClient() {
+        ManagedChannelManager.configure(options("localhost:1"));
+        final ManagedChannel first = ManagedChannelManager.getGrpcClient(CLIENT);
+        assertThat(ManagedChannelManager.getGrpcClient(CLIENT)).isSameAs(first);
+        assertThat(first.authority()).isEqualTo("localhost:1");
+    }
+
+    @Test
+    void channelBuiltBeforeTheOptionsIsRebuilt() {
+        // 自动配置完成之前创建的channel使用的配置
+        ManagedChannelManager.configure(options("localhost:1"));
+        final ManagedChannel early = ManagedChannelManager.getGrpcClient(CLIENT);
+
+        ManagedChannelManager.configure(options("localhost:2"));
+        final ManagedChannel configured = ManagedChannelManager.getGrpcClient(CLIENT);
+        assertThat(configured).isNotSameAs(early);
+        assertThat(configured.authority()).isEqualTo("localhost:2");
+        assertThat(early.isShutdown()).isTrue();
+    }
+
+    @Test
+    void idleChannelIsEvictedAndRebuilt() throws Exception {
+        ManagedChannelManager.configure(options("localhost:1"));
+        final ChannelCacheProperties cache = new ChannelCacheProperties();
+        cache.setIdleTimeout(Duration.ofMillis(200));
+        cache.setSweepInterval(Duration.ofSeconds(1));
+        ManagedChannelManager.configureCache(cache);
+        final long idleEvictions = ManagedChannelManager.getMetrics().getIdleEvictions();
+
+        final ManagedChannel idle = ManagedChannelManager.getGrpcClient(CLIENT);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!idle.isShutdown() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(idle.isShutdown()).isTrue();
+        assertThat(ManagedChannelManager.getMetrics().getIdleEvictions()).isGreaterThan(idleEvictions);
+
+        final ManagedChannel rebuilt = ManagedChannelManager.getGrpcClient(CLIENT);
+        assertThat(rebuilt).isNotSameAs(idle);
+        assertThat(rebuilt.isShutdown()).isFalse();
+    }
+
+    @Test
+    void leastRecentlyUsedChannelIsEvictedOverCapacity() throws Exception {
+        ManagedChannelManager.configure(options("localhost:1"));
+        final ChannelCacheProperties cache = new ChannelCacheProperties();
+        cache.setMaxChannels(1);
+        ManagedChannelManager.configureCache(cache);
+        final long capacityEvictions = ManagedChannelManager.getMetrics().getCapacityEvictions();
+
+        final ManagedChannel first = ManagedChannelManager.getGrpcClient(CLIENT);
+        Thread.sleep(200);
+        final ManagedChannel second = ManagedChannelManager.getGrpcClient(OTHER_CLIENT);
+
+        assertThat(first.isShutdown()).isTrue();
+        assertThat(second.isShutdown()).isFalse();
+        assertThat(ManagedChannelManager.size()).isEqualTo(1);
+        assertThat(ManagedChannelManager.getMetrics().getCapacityEvictions()).isEqualTo(capacityEvictions + 1);
+        assertThat(ManagedChannelManager.getGrpcClient(CLIENT)).isNotSameAs(first);
+    }
+
+    private static GrpcClientOptions options(final String address) {
+        final GrpcChannelProperties channel = new GrpcChannelProperties();
+        channel.setAddress("dns:///" + address);
+        final Map<String, GrpcChannelProperties> channels = new HashMap<>();
+        channels.put(CLIENT, channel);
+        channels.put(OTHER_CLIENT, channel);
+        return GrpcClientOptions.builder().channelProperties(channels).build();
+    }
+}
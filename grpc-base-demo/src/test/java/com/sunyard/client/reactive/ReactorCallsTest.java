@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.sunyard.client.reactive;
+
+import com.sunyard.TestMethods;
+import com.sunyard.intercept.ContextPropagation;
+import com.sunyard.intercept.ContextPropagationProperties;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactorCallsTest {
+
+    private static final MethodDescriptor<byte[], byte[]> UNARY = TestMethods.unary("Unary");
+
+    private static final MethodDescriptor<byte[], byte[]> SERVER_STREAMING = method("ServerStreaming",
+            MethodDescriptor.MethodType.SERVER_STREAMING);
+
+    private static final MethodDescriptor<byte[], byte[]> CLIENT_STREAMING = method("ClientStreaming",
+            MethodDescriptor.MethodType.CLIENT_STREAMING);
+
+    private final List<Server> servers = new ArrayList<>();
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        final ContextPropagationProperties properties = new ContextPropagationProperties();
+        properties.setKeys(Collections.singletonList("tenant"));
+        ContextPropagation.configure(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        servers.forEach(Server::shutdownNow);
+        ContextPropagation.configure(new ContextPropagationProperties());
+    }
+
+    @Test
+    void slowSubscriberBoundsOutstandingMessages() throws Exception {
+        final AtomicLong requested = new AtomicLong();
+        final Channel channel = ClientInterceptors.intercept(start(SERVER_STREAMING, ServerCalls.asyncServerStreamingCall(
+                (request, observer) -> {
+                    for (int i = 0; i < 100; i++) {
+                        observer.onNext(new byte[]{(byte) i});
+                    }
+                    observer.onCompleted();
+                })), countRequests(requested));
+        final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        final BaseSubscriber<byte[]> subscriber = new BaseSubscriber<byte[]>() {
+            @Override
+            protected void hookOnSubscribe(final Subscription subscription) {
+                request(2);
+            }
+
+            @Override
+            protected void hookOnNext(final byte[] value) {
+                received.add(value);
+            }
+        };
+
+        ReactorCalls.serverStreaming(channel, SERVER_STREAMING, CallOptions.DEFAULT, new byte[0]).subscribe(subscriber);
+
+        assertThat(received.poll(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(received.poll(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(received.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(requested.get()).isEqualTo(2);
+
+        subscriber.request(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(received.poll(5, TimeUnit.SECONDS)).isNotNull();
+        }
+        assertThat(received.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(requested.get()).isEqualTo(5);
+        subscriber.dispose();
+    }
+
+    @Test
+    void disposeCancelsTheServerCall() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final Channel channel = start(SERVER_STREAMING, ServerCalls.asyncServerStreamingCall((request, observer) -> {
+            ((ServerCallStreamObserver<byte[]>) observer).setOnCancelHandler(cancelled::countDown);
+            observer.onNext(new byte[0]);
+            started.countDown();
+        }));
+
+        final Disposable disposable = ReactorCalls.serverStreaming(channel, SERVER_STREAMING, CallOptions.DEFAULT, new byte[0])
+                .subscribe();
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        disposable.dispose();
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void clientStreamingWaitsForOnReady() throws Exception {
+        final AtomicReference<ServerCall<byte[], byte[]>> serverCall = new AtomicReference<>();
+        final AtomicInteger serverReceived = new AtomicInteger();
+        final CountDownLatch callStarted = new CountDownLatch(1);
+        // 服务端不主动request, 客户端call在服务端request之前isReady为false
+        final Channel channel = start(CLIENT_STREAMING, (call, headers) -> {
+            serverCall.set(call);
+            callStarted.countDown();
+            return new ServerCall.Listener<byte[]>() {
+                @Override
+                public void onMessage(final byte[] message) {
+                    serverReceived.incrementAndGet();
+                }
+
+                @Override
+                public void onHalfClose() {
+                    call.sendHeaders(new Metadata());
+                    call.sendMessage(new byte[]{(byte) serverReceived.get()});
+                    call.close(Status.OK, new Metadata());
+                }
+            };
+        });
+        final AtomicLong upstreamRequested = new AtomicLong();
+        final Flux<byte[]> requests = Flux.range(0, 3).map(i -> new byte[]{i.byteValue()})
+                .doOnRequest(upstreamRequested::addAndGet);
+
+        final Mono<byte[]> response = ReactorCalls.clientStreaming(channel, CLIENT_STREAMING, CallOptions.DEFAULT, requests);
+        final AtomicReference<byte[]> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        response.subscribe(result::set, e -> done.countDown(), done::countDown);
+
+        assertThat(callStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+        assertThat(upstreamRequested.get()).isZero();
+
+        serverCall.get().request(1);
+        awaitValue(upstreamRequested, 1);
+        awaitValue(serverReceived, 1);
+        Thread.sleep(200);
+        assertThat(upstreamRequested.get()).isEqualTo(1);
+
+        serverCall.get().request(10);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(result.get()).containsExactly(3);
+    }
+
+    @Test
+    void reactorContextIsSentAsHeaders() {
+        final AtomicReference<Map<String, String>> received = new AtomicReference<>();
+        final String name = InProcessServerBuilder.generateName();
+        servers.add(startServer(name, ServerInterceptors.intercept(TestMethods.service(UNARY,
+                ServerCalls.asyncUnaryCall((request, observer) -> {
+                    observer.onNext(request);
+                    observer.onCompleted();
+                })), new ServerInterceptor() {
+                    @Override
+                    public <Q, S> ServerCall.Listener<Q> interceptCall(final ServerCall<Q, S> call, final Metadata headers,
+                                                                     final ServerCallHandler<Q, S> next) {
+                        received.set(ContextPropagation.read(headers));
+                        return next.startCall(call, headers);
+                    }
+                })));
+        final Channel channel = channel(name);
+
+        final byte[] response = ReactorCalls.unary(channel, UNARY, CallOptions.DEFAULT, new byte[]{1})
+                .contextWrite(ReactorCalls.rpcContext(Collections.singletonMap("tenant", "t1")))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(response).containsExactly(1);
+        assertThat(received.get()).isEqualTo(Collections.singletonMap("tenant", "t1"));
+    }
+
+    private Channel start(final MethodDescriptor<byte[], byte[]> method, final ServerCallHandler<byte[], byte[]> handler) {
+        final String name = InProcessServerBuilder.generateName();
+        servers.add(startServer(name, TestMethods.service(method, handler)));
+        return channel(name);
+    }
+
+    private static Server startServer(final String name, final ServerServiceDefinition service) {
+        try {
+            return InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Channel channel(final String name) {
+        final ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * 累计调用方通过ClientCall.request请求的消息数.
+     */
+    private static ClientInterceptor countRequests(final AtomicLong requested) {
+        return new ClientInterceptor() {
+            @Override
+            public <Q, S> ClientCall<Q, S> interceptCall(final MethodDescriptor<Q, S> method, final CallOptions callOptions,
+                                                         final Channel next) {
+                return new ForwardingClientCall.SimpleForwardingClientCall<Q, S>(next.newCall(method, callOptions)) {
+                    @Override
+                    public void request(final int numMessages) {
+                        requested.addAndGet(numMessages);
+                        super.request(numMessages);
+                    }
+                };
+            }
+        };
+    }
+
+    private static void awaitValue(final Number value, final long expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (value.longValue() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(value.longValue()).isEqualTo(expected);
+    }
+
+    private static MethodDescriptor<byte[], byte[]> method(final String name, final MethodDescriptor.MethodType type) {
+        return MethodDescriptor.<byte[], byte[]>newBuilder()
+                .setType(type)
+                .setFullMethodName(MethodDescriptor.generateFullMethodName(TestMethods.SERVICE_NAME, name))
+                .setRequestMarshaller(TestMethods.BYTES)
+                .setResponseMarshaller(TestMethods.BYTES)
+                .build();
+    }
+}
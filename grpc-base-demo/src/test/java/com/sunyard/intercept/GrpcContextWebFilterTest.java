@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.intercept;
+
+import com.sunyard.TestMethods;
+import com.sunyard.client.reactive.ReactorCalls;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrpcContextWebFilterTest {
+
+    private final GrpcContextWebFilter filter = new GrpcContextWebFilter();
+
+    @Test
+    void rpcContextIsBoundWhileTheChainRuns() {
+        final Map<String, String> rpcContext = Collections.singletonMap("tenant", "t1");
+        final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        exchange.getAttributes().put("generalContext", Collections.singletonMap("grpc", rpcContext));
+        final AtomicReference<Map<String, String>> bound = new AtomicReference<>();
+        final AtomicReference<Object> reactorContext = new AtomicReference<>();
+
+        filter.filter(exchange, e -> Mono.fromRunnable(() -> bound.set(ContextClientInterceptor.RPC_CONTEXT_KEY.get()))
+                .then(Mono.deferContextual(context -> {
+                    reactorContext.set(context.getOrDefault(ReactorCalls.RPC_CONTEXT_KEY, null));
+                    return Mono.<Void>empty();
+                }))).block();
+
+        assertThat(bound.get()).isEqualTo(rpcContext);
+        assertThat(reactorContext.get()).isEqualTo(rpcContext);
+        // 处理链订阅完成后恢复之前的grpc Context
+        assertThat(ContextClientInterceptor.RPC_CONTEXT_KEY.get()).isNull();
+        assertThat(Context.current()).isSameAs(Context.ROOT);
+    }
+
+    @Test
+    void requestWithoutContextIsPassedThrough() {
+        final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        final AtomicReference<Map<String, String>> bound = new AtomicReference<>(Collections.emptyMap());
+
+        filter.filter(exchange, e -> Mono.fromRunnable(() -> bound.set(ContextClientInterceptor.RPC_CONTEXT_KEY.get())))
+                .block();
+
+        assertThat(bound.get()).isNull();
+    }
+
+    @Test
+    void reactorCallInsideTheChainWritesThePackedContextOnce() throws Exception {
+        final ContextPropagationProperties properties = new ContextPropagationProperties();
+        properties.setPacked(true);
+        ContextPropagation.configure(properties);
+        final MethodDescriptor<byte[], byte[]> method = TestMethods.unary("Echo");
+        final AtomicReference<List<byte[]>> received = new AtomicReference<>();
+        final String name = InProcessServerBuilder.generateName();
+        final Server server = InProcessServerBuilder.forName(name).directExecutor()
+                .addService(ServerInterceptors.intercept(TestMethods.service(method, ServerCalls.asyncUnaryCall((request, observer) -> {
+                    observer.onNext(request);
+                    observer.onCompleted();
+                })), new ServerInterceptor() {
+                    @Override
+                    public <Q, S> ServerCall.Listener<Q> interceptCall(final ServerCall<Q, S> call, final Metadata headers,
+                                                                     final ServerCallHandler<Q, S> next) {
+                        final List<byte[]> values = new ArrayList<>();
+                        final Iterable<byte[]> all = headers.getAll(ContextPropagation.PACKED_CONTEXT_KEY);
+                        if (all != null) {
+                            all.forEach(values::add);
+                        }
+                        received.set(values);
+                        return next.startCall(call, headers);
+                    }
+                }))
+                .build()
+                .start();
+        final ManagedChannel managedChannel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        try {
+            final Channel channel = ClientInterceptors.intercept(managedChannel, new ContextClientInterceptor());
+            final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+            exchange.getAttributes().put("generalContext",
+                    Collections.singletonMap("grpc", Collections.singletonMap("tenant", "t1")));
+
+            filter.filter(exchange, e -> ReactorCalls.unary(channel, method, CallOptions.DEFAULT, new byte[0]).then())
+                    .block(Duration.ofSeconds(5));
+
+            assertThat(received.get()).hasSize(1);
+            assertThat(ContextPropagation.read(headersOf(received.get().get(0)))).containsEntry("tenant", "t1");
+        } finally {
+            managedChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdownNow();
+            ContextPropagation.configure(new ContextPropagationProperties());
+        }
+    }
+
+    private static Metadata headersOf(final byte[] packed) {
+        final Metadata headers = new Metadata();
+        headers.put(ContextPropagation.PACKED_CONTEXT_KEY, packed);
+        return headers;
+    }
+}
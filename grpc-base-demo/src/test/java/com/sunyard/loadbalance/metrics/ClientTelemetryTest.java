@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.sunyard.loadbalance.metrics;
+
+import com.sunyard.loadbalance.SubChannels;
+import com.sunyard.loadbalance.picker.RoundRobinPicker;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientTelemetryTest {
+
+    private static final EquivalentAddressGroup ADDRESS = new EquivalentAddressGroup(new InetSocketAddress("127.0.0.1", 9090));
+
+    @Test
+    void pickResultTracerRecordsIntoTheEndpointMetrics() {
+        final LoadBalancer.Subchannel subchannel = readySubchannel();
+        final RoundRobinPicker picker = new RoundRobinPicker(Collections.singletonList(subchannel), "telemetry.Record");
+
+        recordCall(picker, Status.OK);
+        recordCall(picker, Status.UNAVAILABLE);
+
+        final SubchannelMetrics metrics = metrics("telemetry.Record");
+        assertThat(metrics.getEndpoint()).isEqualTo("127.0.0.1:9090");
+        assertThat(metrics.getCalls()).isEqualTo(2);
+        assertThat(metrics.getErrors()).isEqualTo(1);
+        assertThat(metrics.getInFlightCalls()).isZero();
+
+        ClientTelemetry.remove("telemetry.Record", subchannel);
+        assertThat(endpoints("telemetry.Record")).isEmpty();
+    }
+
+    @Test
+    void shutdownOfAnOldSubchannelKeepsTheEntryOfARebuiltChannel() {
+        final LoadBalancer.Subchannel old = readySubchannel();
+        final RoundRobinPicker oldPicker = new RoundRobinPicker(Collections.singletonList(old), "telemetry.Rebuild");
+        recordCall(oldPicker, Status.OK);
+        // channel重建, 新的负载均衡器为同一后端创建了新的subchannel
+        final LoadBalancer.Subchannel rebuilt = readySubchannel();
+        final RoundRobinPicker picker = new RoundRobinPicker(Collections.singletonList(rebuilt), "telemetry.Rebuild");
+
+        ClientTelemetry.remove("telemetry.Rebuild", old);
+        recordCall(picker, Status.OK);
+
+        assertThat(endpoints("telemetry.Rebuild")).hasSize(1);
+        assertThat(metrics("telemetry.Rebuild").getCalls()).isEqualTo(2);
+
+        ClientTelemetry.remove("telemetry.Rebuild", rebuilt);
+        assertThat(endpoints("telemetry.Rebuild")).isEmpty();
+    }
+
+    private static void recordCall(final RoundRobinPicker picker, final Status status) {
+        final LoadBalancer.PickResult result = picker.pickSubchannel(null);
+        assertThat(result.getStreamTracerFactory()).isNotNull();
+        final ClientStreamTracer tracer = result.getStreamTracerFactory().newClientStreamTracer(
+                ClientStreamTracer.StreamInfo.newBuilder().setCallOptions(CallOptions.DEFAULT).build(), new Metadata());
+        tracer.outboundWireSize(10);
+        tracer.streamClosed(status);
+    }
+
+    private static SubchannelMetrics metrics(final String serviceName) {
+        final List<SubchannelMetrics> metrics = endpoints(serviceName);
+        assertThat(metrics).hasSize(1);
+        return metrics.get(0);
+    }
+
+    private static List<SubchannelMetrics> endpoints(final String serviceName) {
+        return ClientTelemetry.getSubchannels().stream()
+                .filter(metrics -> serviceName.equals(metrics.getServiceName()))
+                .collect(Collectors.toList());
+    }
+
+    private static LoadBalancer.Subchannel readySubchannel() {
+        final LoadBalancer.Subchannel subchannel = SubChannels.createSubChannel(new FakeHelper(), ADDRESS,
+                SubChannels.createAttributes(1, "true"));
+        SubChannels.setStateInfo(subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+        return subchannel;
+    }
+
+    private static final class FakeHelper extends LoadBalancer.Helper {
+
+        @Override
+        public LoadBalancer.Subchannel createSubchannel(final LoadBalancer.CreateSubchannelArgs args) {
+            return new FakeSubchannel(args);
+        }
+
+        @Override
+        public ManagedChannel createOobChannel(final EquivalentAddressGroup eag, final String authority) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateBalancingState(final ConnectivityState newState, final LoadBalancer.SubchannelPicker newPicker) {
+        }
+
+        @Override
+        public String getAuthority() {
+            return "test";
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public NameResolver.Factory getNameResolverFactory() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class FakeSubchannel extends LoadBalancer.Subchannel {
+
+        private final LoadBalancer.CreateSubchannelArgs args;
+
+        FakeSubchannel(final LoadBalancer.CreateSubchannelArgs args) {
+            this.args = args;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public void requestConnection() {
+        }
+
+        @Override
+        public List<EquivalentAddressGroup> getAllAddresses() {
+            return args.getAddresses();
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return args.getAttributes();
+        }
+    }
+}
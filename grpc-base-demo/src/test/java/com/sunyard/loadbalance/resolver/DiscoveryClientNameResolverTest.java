@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sunyard.loadbalance.resolver.watch.DiscoveryWatcher;
+import com.sunyard.loadbalance.resolver.watch.InMemoryDiscoveryWatcher;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.GrpcUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscoveryClientNameResolverTest {
+
+    private static final String SERVICE = "demo";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final SynchronizationContext syncContext = new SynchronizationContext((thread, e) -> {
+        throw new AssertionError(e);
+    });
+
+    private final RecordingListener listener = new RecordingListener();
+
+    private final StubDiscoveryClient client = new StubDiscoveryClient();
+
+    private final ResolverUpdateMetrics metrics = new ResolverUpdateMetrics();
+
+    private DiscoveryClientNameResolver resolver;
+
+    @AfterEach
+    void tearDown() {
+        if (resolver != null) {
+            syncContext.execute(resolver::shutdown);
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void duplicateInstancesAreNotReportedAsChange() throws Exception {
+        client.instances = Arrays.asList(instance("a", 9001), instance("a", 9001), instance("b", 9002));
+        resolver = newResolver(null, new DiscoveryResolverProperties());
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(3);
+
+        resolver.refreshFromExternal();
+        assertThat(listener.results.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        client.instances = Arrays.asList(instance("a", 9001), instance("b", 9002));
+        resolver.refreshFromExternal();
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+    }
+
+    @Test
+    void metadataChangeIsReported() throws Exception {
+        client.instances = Collections.singletonList(instance("a", 9001));
+        resolver = newResolver(null, new DiscoveryResolverProperties());
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+        client.instances = Collections.singletonList(instance("a", 9001, Collections.singletonMap("weight", "5")));
+        resolver.refreshFromExternal();
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses().get(0)
+                .getAttributes().get(DiscoveryClientResolverProvider.WEIGHT)).isEqualTo(5);
+    }
+
+    @Test
+    void snapshotIsPublishedOnceAndMatchedAgainstRegistry(@TempDir final Path directory) throws Exception {
+        final List<ServiceInstance> instances = Arrays.asList(instance("a", 9001), instance("b", 9002));
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            store.save(SERVICE, instances);
+            client.instances = instances;
+            resolver = newResolver(store, new DiscoveryResolverProperties());
+            resolver.start(listener);
+
+            assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+            // 注册中心返回与快照相同的实例, 不再发布
+            assertThat(listener.results.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        }
+    }
+
+    @Test
+    void snapshotIsKeptWhileRegistryFails(@TempDir final Path directory) throws Exception {
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            store.save(SERVICE, Collections.singletonList(instance("a", 9001)));
+            client.failure = new IllegalStateException("registry down");
+            resolver = newResolver(store, new DiscoveryResolverProperties());
+            resolver.start(listener);
+
+            assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(1);
+            assertThat(listener.errors).isEmpty();
+
+            client.failure = null;
+            client.instances = Arrays.asList(instance("a", 9001), instance("b", 9002));
+            resolver.refreshFromExternal();
+            assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+        }
+    }
+
+    @Test
+    void emptyResultKeepsPreviousServersAndRetries() throws Exception {
+        final DiscoveryResolverProperties properties = new DiscoveryResolverProperties();
+        properties.setEmptyResultGracePeriod(Duration.ofSeconds(30));
+        client.instances = Collections.singletonList(instance("a", 9001));
+        resolver = newResolver(null, properties);
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+        client.instances = Collections.emptyList();
+        resolver.refreshFromExternal();
+        assertThat(listener.results.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(listener.errors).isEmpty();
+
+        // 不再主动刷新, 由退避重试拿到恢复后的实例
+        client.instances = Arrays.asList(instance("a", 9001), instance("b", 9002));
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+        assertThat(listener.errors).isEmpty();
+    }
+
+    @Test
+    void emptyResultIsReportedAfterGracePeriod() throws Exception {
+        final DiscoveryResolverProperties properties = new DiscoveryResolverProperties();
+        properties.setEmptyResultGracePeriod(Duration.ofMillis(200));
+        client.instances = Collections.singletonList(instance("a", 9001));
+        resolver = newResolver(null, properties);
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+        client.instances = Collections.emptyList();
+        resolver.refreshFromExternal();
+        assertThat(listener.errors).isEmpty();
+
+        Thread.sleep(300);
+        resolver.refreshFromExternal();
+        assertThat(listener.errors.poll(5, TimeUnit.SECONDS).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+    }
+
+    @Test
+    void updatesWithinMinIntervalAreMerged() throws Exception {
+        final DiscoveryResolverProperties properties = new DiscoveryResolverProperties();
+        properties.setUpdateMinInterval(Duration.ofMillis(300));
+        properties.setUpdateMaxDelay(Duration.ofSeconds(5));
+        client.instances = Collections.singletonList(instance("a", 9001));
+        resolver = newResolver(null, properties);
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(1);
+
+        resolver.refreshFromExternal(Arrays.asList(instance("a", 9001), instance("b", 9002)));
+        resolver.refreshFromExternal(Arrays.asList(instance("a", 9001), instance("c", 9003)));
+        resolver.refreshFromExternal(Arrays.asList(instance("a", 9001), instance("b", 9002), instance("c", 9003)));
+
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(3);
+        assertThat(listener.results.poll(400, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(metrics.getPublishedUpdates()).isEqualTo(2);
+        assertThat(metrics.getMergedUpdates()).isEqualTo(2);
+    }
+
+    @Test
+    void mergedUpdateIsPublishedWithinMaxDelay() throws Exception {
+        final DiscoveryResolverProperties properties = new DiscoveryResolverProperties();
+        properties.setUpdateMinInterval(Duration.ofMinutes(1));
+        properties.setUpdateMaxDelay(Duration.ofMillis(200));
+        client.instances = Collections.singletonList(instance("a", 9001));
+        resolver = newResolver(null, properties);
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+        resolver.refreshFromExternal(Arrays.asList(instance("a", 9001), instance("b", 9002)));
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+        assertThat(metrics.getPublishedUpdates()).isEqualTo(2);
+    }
+
+    @Test
+    void watcherPushesAreResolvedWithoutPolling() throws Exception {
+        final InMemoryDiscoveryWatcher watcher = new InMemoryDiscoveryWatcher();
+        watcher.setInstances(SERVICE, Collections.singletonList(instance("a", 9001)));
+        client.instances = Collections.singletonList(instance("a", 9001));
+        resolver = newResolver(watcher, null, new DiscoveryResolverProperties());
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(1);
+        final int polls = client.calls;
+
+        watcher.setInstances(SERVICE, Arrays.asList(instance("a", 9001), instance("b", 9002)));
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+        assertThat(client.calls).isEqualTo(polls);
+
+        syncContext.execute(resolver::shutdown);
+        resolver = null;
+        watcher.setInstances(SERVICE, Collections.singletonList(instance("c", 9003)));
+        assertThat(listener.results.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    DiscoveryClientNameResolver newResolver(final EndpointSnapshotStore snapshotStore,
+                                            final DiscoveryResolverProperties properties) {
+        return newResolver(null, snapshotStore, properties);
+    }
+
+    DiscoveryClientNameResolver newResolver(final DiscoveryWatcher watcher, final EndpointSnapshotStore snapshotStore,
+                                            final DiscoveryResolverProperties properties) {
+        return new DiscoveryClientNameResolver(SERVICE, client, watcher, snapshotStore, properties,
+                metrics, args(), GrpcUtil.SHARED_CHANNEL_EXECUTOR, null) {
+            @Override
+            protected void removeClientChannel() {
+                // 测试中没有channel
+            }
+        };
+    }
+
+    private NameResolver.Args args() {
+        return NameResolver.Args.newBuilder()
+                .setDefaultPort(443)
+                .setProxyDetector(GrpcUtil.NOOP_PROXY_DETECTOR)
+                .setSynchronizationContext(syncContext)
+                .setServiceConfigParser(new NameResolver.ServiceConfigParser() {
+                    @Override
+                    public NameResolver.ConfigOrError parseServiceConfig(final Map<String, ?> rawServiceConfig) {
+                        return NameResolver.ConfigOrError.fromConfig(rawServiceConfig);
+                    }
+                })
+                .setScheduledExecutorService(scheduler)
+                // 解析在调用线程上执行
+                .setOffloadExecutor(MoreExecutors.directExecutor())
+                .build();
+    }
+
+    static ServiceInstance instance(final String host, final int port) {
+        return instance(host, port, Collections.emptyMap());
+    }
+
+    static ServiceInstance instance(final String host, final int port, final Map<String, String> metadata) {
+        return new DefaultServiceInstance(host + ":" + port, SERVICE, host, port, false, metadata);
+    }
+
+    static final class RecordingListener extends NameResolver.Listener2 {
+
+        final BlockingQueue<NameResolver.ResolutionResult> results = new LinkedBlockingQueue<>();
+
+        final BlockingQueue<Status> errors = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onResult(final NameResolver.ResolutionResult resolutionResult) {
+            results.add(resolutionResult);
+        }
+
+        @Override
+        public void onError(final Status error) {
+            errors.add(error);
+        }
+    }
+
+    static final class StubDiscoveryClient implements DiscoveryClient {
+
+        volatile List<ServiceInstance> instances = new ArrayList<>();
+
+        volatile RuntimeException failure;
+
+        volatile int calls;
+
+        @Override
+        public String description() {
+            return "stub";
+        }
+
+        @Override
+        public List<ServiceInstance> getInstances(final String serviceId) {
+            calls++;
+            if (failure != null) {
+                throw failure;
+            }
+            return instances;
+        }
+
+        @Override
+        public List<String> getServices() {
+            return Collections.singletonList(SERVICE);
+        }
+    }
+}
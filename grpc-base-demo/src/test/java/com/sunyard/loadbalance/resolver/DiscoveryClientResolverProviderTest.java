@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.NameResolver;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.GrpcUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.sunyard.loadbalance.resolver.DiscoveryClientNameResolverTest.instance;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscoveryClientResolverProviderTest {
+
+    private final SynchronizationContext syncContext = new SynchronizationContext((thread, e) -> {
+        throw new AssertionError(e);
+    });
+
+    private final DiscoveryClientNameResolverTest.StubDiscoveryClient client =
+            new DiscoveryClientNameResolverTest.StubDiscoveryClient();
+
+    private final DiscoveryClientNameResolverTest.RecordingListener listener =
+            new DiscoveryClientNameResolverTest.RecordingListener();
+
+    private final DiscoveryClientResolverProvider provider = new DiscoveryClientResolverProvider(client);
+
+    private NameResolver resolver;
+
+    @AfterEach
+    void tearDown() {
+        if (resolver != null) {
+            syncContext.execute(resolver::shutdown);
+        }
+        provider.destroy();
+    }
+
+    @Test
+    void refreshNotifiesOnlyChangedServices() throws Exception {
+        client.instances = Arrays.asList(instance("a", 9001), instance("b", 9002));
+        resolver = provider.newNameResolver(URI.create("discovery:///demo"), args());
+        resolver.start(listener);
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+        // 第一次refresh记录实例, 与resolver已有的实例相同, 不发布更新
+        provider.refresh();
+        assertThat(listener.results.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        final int calls = client.calls;
+        provider.refresh();
+        awaitCalls(calls + 1);
+        assertThat(listener.results.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        client.instances = Arrays.asList(instance("b", 9002), instance("a", 9001, Collections.singletonMap("weight", "3")));
+        provider.refresh();
+        assertThat(listener.results.poll(5, TimeUnit.SECONDS).getAddresses()).hasSize(2);
+    }
+
+    @Test
+    void fingerprintsAreOrderIndependentAndExact() {
+        final Map<InstanceFingerprint, Integer> first = DiscoveryClientResolverProvider.fingerprints(
+                Arrays.asList(instance("a", 9001), instance("b", 9002)));
+        final Map<InstanceFingerprint, Integer> reordered = DiscoveryClientResolverProvider.fingerprints(
+                Arrays.asList(instance("b", 9002), instance("a", 9001)));
+        final Map<InstanceFingerprint, Integer> swapped = DiscoveryClientResolverProvider.fingerprints(
+                Arrays.asList(instance("a", 9002), instance("b", 9001)));
+        final Map<InstanceFingerprint, Integer> duplicated = DiscoveryClientResolverProvider.fingerprints(
+                Arrays.asList(instance("a", 9001), instance("a", 9001), instance("b", 9002)));
+
+        assertThat(reordered).isEqualTo(first);
+        assertThat(swapped).isNotEqualTo(first);
+        assertThat(duplicated).isNotEqualTo(first);
+    }
+
+    private void awaitCalls(final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.calls < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(client.calls).isGreaterThanOrEqualTo(expected);
+    }
+
+    private NameResolver.Args args() {
+        return NameResolver.Args.newBuilder()
+                .setDefaultPort(443)
+                .setProxyDetector(GrpcUtil.NOOP_PROXY_DETECTOR)
+                .setSynchronizationContext(syncContext)
+                .setServiceConfigParser(new NameResolver.ServiceConfigParser() {
+                    @Override
+                    public NameResolver.ConfigOrError parseServiceConfig(final Map<String, ?> rawServiceConfig) {
+                        return NameResolver.ConfigOrError.fromConfig(rawServiceConfig);
+                    }
+                })
+                .setOffloadExecutor(MoreExecutors.directExecutor())
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointSnapshotStoreTest {
+
+    @Test
+    void savedInstancesAreLoadedAfterRestart(@TempDir final Path directory) {
+        final List<ServiceInstance> instances = Arrays.asList(
+                new DefaultServiceInstance("a-1", "demo/v1", "10.0.0.1", 9001, false, Collections.singletonMap("weight", "3")),
+                new DefaultServiceInstance(null, "demo/v1", "10.0.0.2", 9002, true, Collections.emptyMap()));
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            store.save("demo/v1", instances);
+        }
+
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            final List<ServiceInstance> loaded = store.load("demo/v1");
+            assertThat(loaded).hasSize(2);
+            assertThat(loaded.get(0).getInstanceId()).isEqualTo("a-1");
+            assertThat(loaded.get(0).getHost()).isEqualTo("10.0.0.1");
+            assertThat(loaded.get(0).getPort()).isEqualTo(9001);
+            assertThat(loaded.get(0).getMetadata()).containsEntry("weight", "3");
+            assertThat(loaded.get(1).getInstanceId()).isNull();
+            assertThat(loaded.get(1).isSecure()).isTrue();
+            assertThat(store.load("other")).isEmpty();
+        }
+    }
+
+    @Test
+    void latestSaveWins(@TempDir final Path directory) {
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            for (int i = 0; i < 100; i++) {
+                store.save("demo", Collections.singletonList(
+                        new DefaultServiceInstance("i", "demo", "10.0.0.1", 9000 + i, false, Collections.emptyMap())));
+            }
+        }
+
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            assertThat(store.load("demo")).extracting(ServiceInstance::getPort).containsExactly(9099);
+        }
+    }
+
+    @Test
+    void unreadableSnapshotIsIgnored(@TempDir final Path directory) throws Exception {
+        Files.write(directory.resolve("demo.snapshot"), "garbage".getBytes(StandardCharsets.UTF_8));
+
+        try (EndpointSnapshotStore store = new EndpointSnapshotStore(directory)) {
+            assertThat(store.load("demo")).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.NameResolver;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.GrpcUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StaticResolverProviderTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final SynchronizationContext syncContext = new SynchronizationContext((thread, e) -> {
+        throw new AssertionError(e);
+    });
+
+    private NameResolver resolver;
+
+    @AfterEach
+    void tearDown() {
+        if (resolver != null) {
+            syncContext.execute(resolver::shutdown);
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void endpointsAreParsedWithMetadata() {
+        final List<ServiceInstance> instances = StaticEndpoints.parse("demo",
+                "10.0.0.1:9000 weight=3;zone=z1 # primary\n\n[::1]:9001,localhost:9002");
+
+        assertThat(instances).extracting(ServiceInstance::getHost).containsExactly("10.0.0.1", "::1", "localhost");
+        assertThat(instances).extracting(ServiceInstance::getPort).containsExactly(9000, 9001, 9002);
+        assertThat(instances.get(0).getMetadata()).containsEntry("weight", "3").containsEntry("zone", "z1");
+        assertThat(instances.get(1).getMetadata()).isEmpty();
+    }
+
+    @Test
+    void malformedEndpointsAreRejected() {
+        assertThatThrownBy(() -> StaticEndpoints.parse("demo", "localhost"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StaticEndpoints.parse("demo", "localhost:port"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StaticEndpoints.parse("demo", "localhost:9000 weight"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void staticTargetIsResolvedWithoutRegistry() throws Exception {
+        resolver = new StaticResolverProvider().newNameResolver(URI.create("static://demo/127.0.0.1:9000,127.0.0.1:9001"),
+                args());
+        final DiscoveryClientNameResolverTest.RecordingListener listener =
+                new DiscoveryClientNameResolverTest.RecordingListener();
+        resolver.start(listener);
+
+        final NameResolver.ResolutionResult result = listener.results.poll(5, TimeUnit.SECONDS);
+        assertThat(result.getAddresses()).extracting(group -> ((InetSocketAddress) group.getAddresses().get(0)).getPort())
+                .containsExactly(9000, 9001);
+        assertThat(resolver.getServiceAuthority()).isEqualTo("demo");
+        assertThat(new StaticResolverProvider().newNameResolver(URI.create("dns:///localhost:9000"), args())).isNull();
+    }
+
+    private NameResolver.Args args() {
+        return NameResolver.Args.newBuilder()
+                .setDefaultPort(443)
+                .setProxyDetector(GrpcUtil.NOOP_PROXY_DETECTOR)
+                .setSynchronizationContext(syncContext)
+                .setServiceConfigParser(new NameResolver.ServiceConfigParser() {
+                    @Override
+                    public NameResolver.ConfigOrError parseServiceConfig(final Map<String, ?> rawServiceConfig) {
+                        return NameResolver.ConfigOrError.fromConfig(rawServiceConfig);
+                    }
+                })
+                .setScheduledExecutorService(scheduler)
+                .setOffloadExecutor(MoreExecutors.directExecutor())
+                .build();
+    }
+}
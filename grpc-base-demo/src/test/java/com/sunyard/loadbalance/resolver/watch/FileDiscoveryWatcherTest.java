@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.loadbalance.resolver.watch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileDiscoveryWatcherTest {
+
+    @Test
+    void changesArePushedUntilCancelled(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve("demo.endpoints");
+        write(file, "127.0.0.1:9000 weight=2");
+        final FileDiscoveryWatcher watcher = new FileDiscoveryWatcher(file, Duration.ofMillis(50));
+        final BlockingQueue<List<ServiceInstance>> pushes = new LinkedBlockingQueue<>();
+
+        final DiscoveryWatcher.Subscription subscription = watcher.watch("demo", pushes::add);
+        final List<ServiceInstance> initial = pushes.poll(5, TimeUnit.SECONDS);
+        assertThat(initial).hasSize(1);
+        assertThat(initial.get(0).getMetadata()).containsEntry("weight", "2");
+
+        write(file, "127.0.0.1:9000 weight=2\n127.0.0.1:9001 zone=z2");
+        assertThat(pushes.poll(5, TimeUnit.SECONDS)).extracting(ServiceInstance::getPort).containsExactly(9000, 9001);
+        assertThat(watcher.getInstances("demo")).hasSize(2);
+
+        subscription.cancel();
+        pushes.clear();
+        write(file, "127.0.0.1:9002");
+        assertThat(pushes.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void unreadableFileKeepsTheLastEndpoints(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve("demo.endpoints");
+        write(file, "127.0.0.1:9000");
+        final FileDiscoveryWatcher watcher = new FileDiscoveryWatcher(file, Duration.ofSeconds(5));
+        assertThat(watcher.getInstances("demo")).hasSize(1);
+
+        write(file, "127.0.0.1:9000,malformed");
+        assertThat(watcher.getInstances("demo")).extracting(ServiceInstance::getPort).containsExactly(9000);
+    }
+
+    private static void write(final Path file, final String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
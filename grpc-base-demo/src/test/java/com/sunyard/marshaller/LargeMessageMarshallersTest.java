@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.marshaller;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LargeMessageMarshallersTest {
+
+    private static final MethodDescriptor<BytesValue, BytesValue> DOWNLOAD = method("Download");
+
+    private static final MethodDescriptor<BytesValue, BytesValue> HELLO = method("Hello");
+
+    @Test
+    void onlyConfiguredMethodsUseTheAliasingMarshaller() {
+        final LargeMessageMarshallers marshallers = new LargeMessageMarshallers(
+                Collections.singletonList(DOWNLOAD.getFullMethodName()), 1024);
+
+        assertThat(marshallers.aliasing(HELLO)).isSameAs(HELLO);
+        final MethodDescriptor<BytesValue, BytesValue> aliasing = marshallers.aliasing(DOWNLOAD);
+        assertThat(aliasing.getResponseMarshaller()).isInstanceOf(AliasingProtoMarshaller.class);
+        assertThat(marshallers.aliasing(DOWNLOAD)).isSameAs(aliasing);
+    }
+
+    @Test
+    void serviceNameEnablesAllMethodsOfTheService() {
+        final LargeMessageMarshallers marshallers = new LargeMessageMarshallers(
+                Collections.singletonList("test.Files"), 1024);
+
+        assertThat(marshallers.isAliasing(HELLO)).isTrue();
+        assertThat(marshallers.isAliasing(DOWNLOAD)).isTrue();
+        assertThat(new LargeMessageMarshallers(Collections.emptyList(), 1024).isEmpty()).isTrue();
+    }
+
+    @Test
+    void parsesMessagesOnBothSidesOfTheThreshold() {
+        final MethodDescriptor<BytesValue, BytesValue> aliasing = new LargeMessageMarshallers(
+                Collections.singletonList(DOWNLOAD.getFullMethodName()), 1024).aliasing(DOWNLOAD);
+        for (int size : new int[]{16, 1024, 64 * 1024}) {
+            final byte[] payload = new byte[size];
+            new Random(size).nextBytes(payload);
+            final byte[] serialized = BytesValue.of(ByteString.copyFrom(payload)).toByteArray();
+
+            final BytesValue parsed = aliasing.parseResponse(new KnownLengthStream(serialized));
+            assertThat(Arrays.equals(parsed.getValue().toByteArray(), payload)).isTrue();
+        }
+    }
+
+    private static MethodDescriptor<BytesValue, BytesValue> method(final String name) {
+        return MethodDescriptor.<BytesValue, BytesValue>newBuilder()
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName(MethodDescriptor.generateFullMethodName("test.Files", name))
+                .setRequestMarshaller(ProtoUtils.marshaller(BytesValue.getDefaultInstance()))
+                .setResponseMarshaller(ProtoUtils.marshaller(BytesValue.getDefaultInstance()))
+                .build();
+    }
+
+    /**
+     * transport读取报文时使用的流, 长度已知且不是in-process的Drainable.
+     */
+    private static final class KnownLengthStream extends ByteArrayInputStream implements KnownLength {
+
+        KnownLengthStream(final byte[] buf) {
+            super(buf);
+        }
+    }
+}
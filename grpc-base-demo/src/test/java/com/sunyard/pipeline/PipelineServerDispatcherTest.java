@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.pipeline;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sunyard.TestMethods;
+import com.sunyard.intercept.ContextClientInterceptor;
+import com.sunyard.intercept.ContextPropagation;
+import com.sunyard.intercept.ContextPropagationProperties;
+import com.sunyard.intercept.ContextServerInterceptor;
+import com.sunyard.server.metrics.MethodMetrics;
+import com.sunyard.server.metrics.ServerMetrics;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineServerDispatcherTest {
+
+    private static final MethodDescriptor<byte[], byte[]> METHOD = TestMethods.unary("Echo");
+
+    private final AtomicInteger intercepted = new AtomicInteger();
+
+    private final Semaphore entered = new Semaphore(0);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private volatile boolean blocking;
+
+    private final List<Server> servers = new ArrayList<>();
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+
+    private PipelineClientInterceptor pipelineInterceptor;
+
+    @BeforeEach
+    void setUp() {
+        final ContextPropagationProperties properties = new ContextPropagationProperties();
+        properties.setKeys(Collections.singletonList("tenant"));
+        ContextPropagation.configure(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (pipelineInterceptor != null) {
+            pipelineInterceptor.shutdown();
+        }
+        channels.forEach(ManagedChannel::shutdownNow);
+        servers.forEach(Server::shutdownNow);
+        ContextPropagation.configure(new ContextPropagationProperties());
+    }
+
+    @Test
+    void pipelinedCallsRunThroughServerInterceptorsAndTracers() throws Exception {
+        final ServerMetrics metrics = new ServerMetrics();
+        final Channel channel = pipelinedChannel(pipelineProperties(), metrics);
+        final List<ListenableFuture<byte[]>> responses = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            responses.add(call(channel, "t" + i, CallOptions.DEFAULT));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            assertThat(new String(responses.get(i).get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8)).isEqualTo("t" + i);
+        }
+        assertThat(intercepted.get()).isEqualTo(50);
+        final MethodMetrics methodMetrics = metrics.getMethods().get(METHOD.getFullMethodName());
+        assertThat(methodMetrics.getStartedCalls()).isEqualTo(50);
+        assertThat(methodMetrics.getStatusCounts().get(Status.Code.OK)).isEqualTo(50);
+        assertThat(methodMetrics.getResponseMessages()).isEqualTo(50);
+    }
+
+    @Test
+    void inFlightLimitStopsReadingRequests() throws Exception {
+        blocking = true;
+        final PipelineProperties properties = pipelineProperties();
+        properties.setMaxBatchFrames(1);
+        properties.setMaxInFlight(2);
+        final Channel channel = pipelinedChannel(properties, null);
+        final List<ListenableFuture<byte[]>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(call(channel, "t" + i, CallOptions.DEFAULT));
+        }
+
+        assertThat(entered.tryAcquire(2, 5, TimeUnit.SECONDS)).isTrue();
+        assertThat(entered.tryAcquire(200, TimeUnit.MILLISECONDS)).isFalse();
+        release.countDown();
+        for (ListenableFuture<byte[]> response : responses) {
+            assertThat(response.get(5, TimeUnit.SECONDS)).isNotNull();
+        }
+        assertThat(intercepted.get()).isEqualTo(10);
+    }
+
+    @Test
+    void fallbackKeepsCallerContextAndDeadline() throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        // 服务端没有注册pipeline服务
+        servers.add(InProcessServerBuilder.forName(name)
+                .intercept(new ContextServerInterceptor())
+                .addService(service())
+                .build()
+                .start());
+        final Channel channel = clientChannel(name, pipelineProperties());
+
+        final ListenableFuture<byte[]> response = call(channel, "a", CallOptions.DEFAULT.withDeadlineAfter(5, TimeUnit.SECONDS));
+
+        assertThat(new String(response.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8)).isEqualTo("a+deadline");
+        assertThat(intercepted.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelAndDeadlineCloseOnCallbackExecutor() throws Exception {
+        blocking = true;
+        final Channel channel = pipelinedChannel(pipelineProperties(), null);
+
+        final CloseListener cancelled = new CloseListener();
+        final ClientCall<byte[], byte[]> call = channel.newCall(METHOD, CallOptions.DEFAULT);
+        call.start(cancelled, new Metadata());
+        call.request(1);
+        call.sendMessage(new byte[0]);
+        call.halfClose();
+        assertThat(entered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        call.cancel("test", null);
+        assertThat(cancelled.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelled.status.getCode()).isEqualTo(Status.Code.CANCELLED);
+        assertThat(cancelled.thread).isNotSameAs(Thread.currentThread());
+
+        final CloseListener expired = new CloseListener();
+        final ClientCall<byte[], byte[]> deadlineCall = channel.newCall(METHOD,
+                CallOptions.DEFAULT.withDeadlineAfter(100, TimeUnit.MILLISECONDS));
+        deadlineCall.start(expired, new Metadata());
+        deadlineCall.request(1);
+        deadlineCall.sendMessage(new byte[0]);
+        deadlineCall.halfClose();
+        assertThat(expired.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(expired.status.getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+        assertThat(expired.thread.getName()).doesNotContain("grpc-timer");
+    }
+
+    private static PipelineProperties pipelineProperties() {
+        final PipelineProperties properties = new PipelineProperties();
+        properties.setMethods(Collections.singletonList(METHOD.getFullMethodName()));
+        properties.setStreams(1);
+        properties.setFlushDelay(Duration.ofMillis(1));
+        return properties;
+    }
+
+    private Channel pipelinedChannel(final PipelineProperties properties, final ServerMetrics metrics) throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        final PipelineServerDispatcher dispatcher = new PipelineServerDispatcher(properties);
+        final ServerServiceDefinition service = service();
+        if (metrics != null) {
+            metrics.register(Collections.singletonList(service));
+            dispatcher.addStreamTracerFactory(metrics);
+        }
+        // 与GrpcServerRunner相同, 分发表使用套上ServerBuilder级别拦截器的服务定义
+        dispatcher.register(ServerInterceptors.intercept(service, new ContextServerInterceptor()));
+        servers.add(InProcessServerBuilder.forName(name)
+                .intercept(new ContextServerInterceptor())
+                .addService(service)
+                .addService(dispatcher.bindService())
+                .build()
+                .start());
+        return clientChannel(name, properties);
+    }
+
+    private Channel clientChannel(final String name, final PipelineProperties properties) {
+        final ManagedChannel channel = InProcessChannelBuilder.forName(name).build();
+        channels.add(channel);
+        pipelineInterceptor = new PipelineClientInterceptor(properties);
+        return ClientInterceptors.intercept(channel, pipelineInterceptor, new ContextClientInterceptor());
+    }
+
+    /**
+     * 响应为调用方上下文中的tenant, 服务端拿到deadline时追加"+deadline".
+     */
+    private ServerServiceDefinition service() {
+        final ServerServiceDefinition service = TestMethods.service(METHOD, ServerCalls.asyncUnaryCall((request, observer) -> {
+            if (blocking) {
+                entered.release();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final Map<String, String> rpcContext = ContextClientInterceptor.RPC_CONTEXT_KEY.get();
+            final String tenant = rpcContext == null ? "" : rpcContext.get("tenant");
+            final boolean deadline = Context.current().getDeadline() != null;
+            observer.onNext((tenant + (deadline ? "+deadline" : "")).getBytes(StandardCharsets.UTF_8));
+            observer.onCompleted();
+        }));
+        return ServerInterceptors.intercept(service, new ServerInterceptor() {
+            @Override
+            public <Q, S> ServerCall.Listener<Q> interceptCall(final ServerCall<Q, S> call, final Metadata headers,
+                                                             final ServerCallHandler<Q, S> next) {
+                intercepted.incrementAndGet();
+                return next.startCall(call, headers);
+            }
+        });
+    }
+
+    private static ListenableFuture<byte[]> call(final Channel channel, final String tenant, final CallOptions callOptions) {
+        final Context context = Context.current().withValue(ContextClientInterceptor.RPC_CONTEXT_KEY,
+                Collections.singletonMap("tenant", tenant));
+        final Context previous = context.attach();
+        try {
+            return ClientCalls.futureUnaryCall(channel.newCall(METHOD, callOptions), new byte[0]);
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    private static final class CloseListener extends ClientCall.Listener<byte[]> {
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private volatile Status status;
+
+        private volatile Thread thread;
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            this.status = status;
+            this.thread = Thread.currentThread();
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.server.bulkhead;
+
+import com.sunyard.TestMethods;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadServerInterceptorTest {
+
+    private static final MethodDescriptor<byte[], byte[]> METHOD = TestMethods.unary("Block");
+
+    /**
+     * 非空请求在服务端阻塞到release.
+     */
+    private static final byte[] BLOCK = {1};
+
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    private Bulkhead bulkhead;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        channel.shutdownNow();
+        server.shutdownNow();
+        bulkhead.shutdown();
+        clients.shutdownNow();
+    }
+
+    @Test
+    void abortRejectsCallsBeyondCapacity() throws Exception {
+        start(RejectPolicy.ABORT);
+        final Future<byte[]> first = clients.submit(() -> call(BLOCK));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> call(new byte[0])).isInstanceOfSatisfying(StatusRuntimeException.class,
+                e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED));
+        assertThat(bulkhead.getRejected()).isEqualTo(1);
+        assertThat(bulkhead.getSaturation()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(new String(first.get(5, TimeUnit.SECONDS))).startsWith("grpc-bulkhead-");
+        waitUntilReleased();
+        assertThat(bulkhead.getInFlight()).isZero();
+    }
+
+    @Test
+    void sharedExecutorRunsSaturatedCallsOutsideThePool() throws Exception {
+        start(RejectPolicy.SHARED_EXECUTOR);
+        final Future<byte[]> first = clients.submit(() -> call(BLOCK));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 第二个调用不经过bulkhead, 在server的共享executor上执行
+        assertThat(new String(call(new byte[0]))).startsWith("grpc-shared-");
+        assertThat(bulkhead.getOverflowed()).isEqualTo(1);
+        release.countDown();
+        assertThat(new String(first.get(5, TimeUnit.SECONDS))).startsWith("grpc-bulkhead-");
+    }
+
+    private void start(final RejectPolicy policy) throws Exception {
+        bulkhead = new Bulkhead(TestMethods.SERVICE_NAME, 1, 0, policy);
+        final BulkheadServerInterceptor interceptor = new BulkheadServerInterceptor(
+                Collections.singletonMap(TestMethods.SERVICE_NAME, bulkhead));
+        final String name = InProcessServerBuilder.generateName();
+        final ExecutorService shared = Executors.newCachedThreadPool(r -> new Thread(r, "grpc-shared-" + r.hashCode()));
+        server = InProcessServerBuilder.forName(name)
+                .executor(shared)
+                .addService(ServerInterceptors.intercept(TestMethods.service(METHOD,
+                        ServerCalls.asyncUnaryCall((request, observer) -> {
+                            if (request.length > 0) {
+                                entered.countDown();
+                                try {
+                                    release.await(5, TimeUnit.SECONDS);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                            observer.onNext(Thread.currentThread().getName().getBytes());
+                            observer.onCompleted();
+                        })), interceptor))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+    }
+
+    private byte[] call(final byte[] request) {
+        return ClientCalls.blockingUnaryCall(channel, METHOD, CallOptions.DEFAULT, request);
+    }
+
+    private void waitUntilReleased() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkhead.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.sunyard.server.flowcontrol;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import com.sunyard.TestMethods;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 客户端不读取响应时, 服务端在isReady为false期间停止产生响应, onReady后继续.
+ * in-process transport上客户端request的消息数用完后服务端的call即不可写.
+ */
+class FlowControlTest {
+
+    private static final MethodDescriptor<byte[], byte[]> SERVER_STREAMING = method("ServerStreaming",
+            MethodDescriptor.MethodType.SERVER_STREAMING);
+
+    /**
+     * FlowControlledRequestObserver按protobuf序列化大小计算暂存的响应字节数.
+     */
+    private static final MethodDescriptor<byte[], BytesValue> BIDI_STREAMING = MethodDescriptor.<byte[], BytesValue>newBuilder()
+            .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName(TestMethods.SERVICE_NAME, "BidiStreaming"))
+            .setRequestMarshaller(TestMethods.BYTES)
+            .setResponseMarshaller(ProtoUtils.marshaller(BytesValue.getDefaultInstance()))
+            .build();
+
+    private static final int RESPONSE_SIZE = 100;
+
+    private static final int TOTAL = 50;
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null) {
+            channel.shutdownNow();
+        }
+        if (server != null) {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    void producerPausesWhileNotReadyAndResumesOnReady() throws Exception {
+        final AtomicInteger produced = new AtomicInteger();
+        final AtomicReference<BufferedResponseObserver<byte[]>> observer = new AtomicReference<>();
+        start(ServerServiceDefinition.builder(TestMethods.SERVICE_NAME)
+                .addMethod(SERVER_STREAMING, ServerCalls.asyncServerStreamingCall((request, responseObserver) -> {
+                    final BufferedResponseObserver<byte[]> responses = new BufferedResponseObserver<>(responseObserver,
+                            4L * RESPONSE_SIZE, 100L * RESPONSE_SIZE, value -> value.length);
+                    observer.set(responses);
+                    final Runnable produce = new Runnable() {
+                        @Override
+                        public synchronized void run() {
+                            while (responses.isReady() && produced.get() < TOTAL) {
+                                responses.onNext(new byte[RESPONSE_SIZE]);
+                                produced.incrementAndGet();
+                            }
+                            if (produced.get() == TOTAL) {
+                                responses.onCompleted();
+                            }
+                        }
+                    };
+                    responses.setOnDrainHandler(produce);
+                    produce.run();
+                }))
+                .build());
+        final RecordingListener<byte[]> listener = new RecordingListener<>();
+        final ClientCall<byte[], byte[]> call = channel.newCall(SERVER_STREAMING, CallOptions.DEFAULT);
+        call.start(listener, new Metadata());
+        call.request(2);
+        call.sendMessage(new byte[0]);
+        call.halfClose();
+
+        // 2个直接写出, 之后暂存到highWatermark(4个)
+        awaitStable(produced, 6);
+        assertThat(observer.get().isReady()).isFalse();
+        assertThat(observer.get().getBufferedBytes()).isEqualTo(4L * RESPONSE_SIZE);
+        assertThat(listener.received.get()).isEqualTo(2);
+
+        call.request(TOTAL);
+        assertThat(listener.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.status.isOk()).isTrue();
+        assertThat(produced.get()).isEqualTo(TOTAL);
+        assertThat(listener.received.get()).isEqualTo(TOTAL);
+    }
+
+    @Test
+    void requestsPauseWhileResponsesAreBuffered() throws Exception {
+        final AtomicInteger processed = new AtomicInteger();
+        start(ServerServiceDefinition.builder(TestMethods.SERVICE_NAME)
+                .addMethod(BIDI_STREAMING, ServerCalls.asyncBidiStreamingCall(responseObserver ->
+                        new FlowControlledRequestObserver<byte[], BytesValue>(responseObserver, 2,
+                                3L * RESPONSE_SIZE, 100L * RESPONSE_SIZE) {
+                            @Override
+                            protected void onRequest(final byte[] request, final StreamObserver<BytesValue> responses) {
+                                processed.incrementAndGet();
+                                responses.onNext(BytesValue.of(ByteString.copyFrom(new byte[RESPONSE_SIZE])));
+                            }
+                        }))
+                .build());
+        final RecordingListener<BytesValue> listener = new RecordingListener<>();
+        final ClientCall<byte[], BytesValue> call = channel.newCall(BIDI_STREAMING, CallOptions.DEFAULT);
+        call.start(listener, new Metadata());
+        for (int i = 0; i < TOTAL; i++) {
+            call.sendMessage(new byte[0]);
+        }
+        call.halfClose();
+
+        // 初始窗口2, 前两个请求处理后各补请求1个, 第三个请求后暂存超过highWatermark不再请求
+        awaitStable(processed, 4);
+        assertThat(listener.received.get()).isZero();
+
+        call.request(TOTAL);
+        assertThat(listener.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.status.isOk()).isTrue();
+        assertThat(processed.get()).isEqualTo(TOTAL);
+        assertThat(listener.received.get()).isEqualTo(TOTAL);
+    }
+
+    private void start(final ServerServiceDefinition service) throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).addService(service).build().start();
+        channel = InProcessChannelBuilder.forName(name).executor(MoreExecutors.directExecutor()).build();
+    }
+
+    /**
+     * 等待计数达到expected, 并在之后的200ms内不再增长.
+     */
+    private static void awaitStable(final AtomicInteger count, final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        assertThat(count.get()).isEqualTo(expected);
+    }
+
+    private static MethodDescriptor<byte[], byte[]> method(final String name, final MethodDescriptor.MethodType type) {
+        return MethodDescriptor.<byte[], byte[]>newBuilder()
+                .setType(type)
+                .setFullMethodName(MethodDescriptor.generateFullMethodName(TestMethods.SERVICE_NAME, name))
+                .setRequestMarshaller(TestMethods.BYTES)
+                .setResponseMarshaller(TestMethods.BYTES)
+                .build();
+    }
+
+    private static final class RecordingListener<T> extends ClientCall.Listener<T> {
+
+        private final AtomicInteger received = new AtomicInteger();
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private volatile Status status;
+
+        @Override
+        public void onMessage(final T message) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void onClose(final Status status, final Metadata trailers) {
+            this.status = status;
+            closed.countDown();
+        }
+    }
+}
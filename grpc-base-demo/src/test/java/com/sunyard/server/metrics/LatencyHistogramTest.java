@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMean()).isZero();
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getValueAtPercentile(0.99)).isZero();
+    }
+
+    @Test
+    void bucketsCoverValuesWithBoundedError() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            final int bucket = LatencyHistogram.bucket(value);
+            assertThat(bucket).isBetween(previous, previous + 1);
+            final long upper = LatencyHistogram.upperBound(bucket);
+            assertThat(upper).isGreaterThanOrEqualTo(value);
+            assertThat(upper - value).isLessThanOrEqualTo(value / 8);
+            previous = bucket;
+        }
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void percentilesAreWithinBucketError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMean()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(500_500));
+        assertThat(histogram.getMax()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertThat((double) histogram.getValueAtPercentile(0.5))
+                .isCloseTo(TimeUnit.MILLISECONDS.toNanos(500), within(TimeUnit.MILLISECONDS.toNanos(500) / 8.0));
+        assertThat((double) histogram.getValueAtPercentile(0.99))
+                .isCloseTo(TimeUnit.MILLISECONDS.toNanos(990), within(TimeUnit.MILLISECONDS.toNanos(990) / 8.0));
+        // 百分位不超过最大值
+        assertThat(histogram.getValueAtPercentile(1.0)).isEqualTo(histogram.getMax());
+    }
+
+    @Test
+    void negativeLatencyIsRecordedAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertThat(histogram.getCount()).isEqualTo(1);
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getValueAtPercentile(0.5)).isZero();
+    }
+
+    @Test
+    void concurrentRecordsAreNotLost() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 4;
+        final int records = 10_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 1; i <= records; i++) {
+                        histogram.record(i);
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(histogram.getCount()).isEqualTo(threads * records);
+        assertThat(histogram.getMax()).isEqualTo(records);
+        assertThat(histogram.getValueAtPercentile(1.0)).isEqualTo(records);
+    }
+}
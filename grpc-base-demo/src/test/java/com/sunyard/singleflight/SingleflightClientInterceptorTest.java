@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.singleflight;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.StringValue;
+import com.sunyard.intercept.ContextClientInterceptor;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleflightClientInterceptorTest {
+
+    private static final MethodDescriptor<StringValue, StringValue> METHOD =
+            MethodDescriptor.<StringValue, StringValue>newBuilder()
+                    .setType(MethodDescriptor.MethodType.UNARY)
+                    .setFullMethodName(MethodDescriptor.generateFullMethodName("test.Flight", "Get"))
+                    .setRequestMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .setResponseMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .build();
+
+    private static final StringValue REQUEST = StringValue.of("key");
+
+    private static final Metadata.Key<String> TENANT_HEADER = Metadata.Key.of("tenant", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Context.Key<String> TENANT = Context.key("tenant");
+
+    private final AtomicInteger serverCalls = new AtomicInteger();
+
+    private final Semaphore entered = new Semaphore(0);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Server server;
+
+    private ManagedChannel managedChannel;
+
+    private SingleflightClientInterceptor singleflight;
+
+    private Channel channel;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final ServerServiceDefinition service = ServerServiceDefinition.builder("test.Flight")
+                .addMethod(METHOD, ServerCalls.asyncUnaryCall((request, observer) -> {
+                    serverCalls.incrementAndGet();
+                    entered.release();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    observer.onNext(StringValue.of(request.getValue() + "-" + TENANT.get()));
+                    observer.onCompleted();
+                }))
+                .build();
+        final ServerInterceptor tenant = new ServerInterceptor() {
+            @Override
+            public <Q, S> io.grpc.ServerCall.Listener<Q> interceptCall(final io.grpc.ServerCall<Q, S> call,
+                                                                       final Metadata headers,
+                                                                       final io.grpc.ServerCallHandler<Q, S> next) {
+                return Contexts.interceptCall(Context.current().withValue(TENANT, headers.get(TENANT_HEADER)),
+                        call, headers, next);
+            }
+        };
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(ServerInterceptors.intercept(service, tenant))
+                .build()
+                .start();
+        managedChannel = InProcessChannelBuilder.forName(name).build();
+        final SingleflightProperties properties = new SingleflightProperties();
+        properties.setMethods(Collections.singletonList(METHOD.getFullMethodName()));
+        singleflight = new SingleflightClientInterceptor(properties);
+        // 与GrpcClientBuilder相同的顺序, singleflight位于ContextClientInterceptor外层
+        channel = ClientInterceptors.intercept(managedChannel, new ContextClientInterceptor(), singleflight);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        managedChannel.shutdownNow();
+        server.shutdownNow();
+        singleflight.close();
+    }
+
+    @Test
+    void callsWithSameContextAreCoalesced() throws Exception {
+        final ListenableFuture<StringValue> first = call("a");
+        assertThat(entered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        final ListenableFuture<StringValue> second = call("a");
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("key-a");
+        assertThat(second.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("key-a");
+        assertThat(serverCalls.get()).isEqualTo(1);
+        assertThat(singleflight.getCoalescedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void callsWithDifferentContextsAreNotCoalesced() throws Exception {
+        final ListenableFuture<StringValue> first = call("a");
+        assertThat(entered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        final ListenableFuture<StringValue> second = call("b");
+        assertThat(entered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("key-a");
+        assertThat(second.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("key-b");
+        assertThat(serverCalls.get()).isEqualTo(2);
+        assertThat(singleflight.getCoalescedCount()).isZero();
+    }
+
+    @Test
+    void cancelledFollowerDoesNotCancelLeader() throws Exception {
+        final ListenableFuture<StringValue> leader = call("a");
+        assertThat(entered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        final ListenableFuture<StringValue> follower = call("a");
+        follower.cancel(true);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("key-a");
+        assertThat(follower.isCancelled()).isTrue();
+        assertThat(serverCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelBeforeSendMessageStartsNoRpc() throws Exception {
+        final BlockingQueue<Status> closed = new LinkedBlockingQueue<>();
+        final ClientCall<StringValue, StringValue> call = channel.newCall(METHOD, CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<StringValue>() {
+            @Override
+            public void onClose(final Status status, final Metadata trailers) {
+                closed.add(status);
+            }
+        }, new Metadata());
+        call.request(1);
+        call.cancel("test", null);
+        call.sendMessage(REQUEST);
+        call.halfClose();
+
+        assertThat(closed.poll(5, TimeUnit.SECONDS).getCode()).isEqualTo(Status.Code.CANCELLED);
+        assertThat(closed.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(serverCalls.get()).isZero();
+        assertThat(singleflight.getFlightCount()).isZero();
+    }
+
+    private ListenableFuture<StringValue> call(final String tenant) {
+        final Context context = Context.current().withValue(ContextClientInterceptor.RPC_CONTEXT_KEY,
+                Collections.singletonMap("tenant", tenant));
+        final Context previous = context.attach();
+        try {
+            return ClientCalls.futureUnaryCall(channel.newCall(METHOD, CallOptions.DEFAULT), REQUEST);
+        } finally {
+            context.detach(previous);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.benchmark;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新建连接的吞吐: 每次操作新建一个channel, 完成一次unary调用并等待channel终止, 比较单个与多个SO_REUSEPORT acceptor.
+ * acceptor的创建方式与GrpcServerRunner相同, 每个acceptor使用独立的epoll boss与worker event loop,
+ * 单个acceptor同样使用epoll, 两组参数只在acceptor数量上不同.
+ * 需要epoll, 不可用时setup失败.
+ * <pre>
+ * java -jar grpc-benchmark/target/benchmarks.jar AcceptorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class AcceptorBenchmark {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(final byte[] value) {
+            return new KnownLengthStream(value);
+        }
+
+        @Override
+        public byte[] parse(final InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final MethodDescriptor<byte[], byte[]> ECHO = MethodDescriptor.<byte[], byte[]>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName("benchmark.Echo", "Echo"))
+            .setRequestMarshaller(BYTES)
+            .setResponseMarshaller(BYTES)
+            .build();
+
+    @Param({"1", "4"})
+    private int acceptors;
+
+    private final List<Server> servers = new ArrayList<>();
+
+    private final List<EventLoopGroup> eventLoopGroups = new ArrayList<>();
+
+    private int port;
+
+    private byte[] request;
+
+    @Setup
+    public void setup() throws IOException {
+        final ServerServiceDefinition service = ServerServiceDefinition.builder("benchmark.Echo")
+                .addMethod(ECHO, ServerCalls.asyncUnaryCall((req, observer) -> {
+                    observer.onNext(req);
+                    observer.onCompleted();
+                }))
+                .build();
+        if (!Epoll.isAvailable()) {
+            // NIO与epoll的结果不可比, 不回退为NIO
+            throw new IllegalStateException("AcceptorBenchmark requires epoll", Epoll.unavailabilityCause());
+        }
+        final int workerThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / acceptors);
+        for (int i = 0; i < acceptors; i++) {
+            final EventLoopGroup boss = new EpollEventLoopGroup(1,
+                    new DefaultThreadFactory("benchmark-acceptor-" + i + "-boss", true));
+            final EventLoopGroup worker = new EpollEventLoopGroup(workerThreads,
+                    new DefaultThreadFactory("benchmark-acceptor-" + i + "-worker", true));
+            eventLoopGroups.add(boss);
+            eventLoopGroups.add(worker);
+            // 第一个acceptor绑定随机端口, 其余复用该端口
+            servers.add(NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1",
+                            servers.isEmpty() ? 0 : servers.get(0).getPort()))
+                    .channelType(EpollServerSocketChannel.class)
+                    .bossEventLoopGroup(boss)
+                    .workerEventLoopGroup(worker)
+                    .withOption(EpollChannelOption.SO_REUSEPORT, true)
+                    .addService(service)
+                    .build()
+                    .start());
+        }
+        port = servers.get(0).getPort();
+        request = new byte[128];
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for (Server server : servers) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        eventLoopGroups.forEach(EventLoopGroup::shutdownGracefully);
+    }
+
+    @Benchmark
+    public byte[] connectAndCall() throws InterruptedException {
+        final ManagedChannel channel = NettyChannelBuilder.forAddress("127.0.0.1", port).usePlaintext().build();
+        try {
+            return ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT, request);
+        } finally {
+            // 等待连接关闭, 避免未关闭的连接在迭代间累积
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
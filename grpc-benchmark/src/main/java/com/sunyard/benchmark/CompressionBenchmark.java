@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.benchmark;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.google.common.io.ByteStreams;
+import com.sunyard.compression.ZstdCodec;
+import io.grpc.Codec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息压缩: 不压缩、gzip、zstd与使用训练字典的zstd, 每次操作为一次压缩加一次解压.
+ * 压缩后的大小作为辅助计数器compressedBytes与耗时一起输出.
+ * <pre>
+ * java -jar grpc-benchmark/target/benchmarks.jar CompressionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"identity", "gzip", "zstd", "zstd-dict"})
+    private String encoding;
+
+    @Param({"512", "16384", "262144"})
+    private int size;
+
+    private Codec codec;
+
+    private byte[] message;
+
+    private byte[] compressed;
+
+    @Setup
+    public void setup() throws IOException {
+        message = records(new Random(size), size);
+        switch (encoding) {
+            case "gzip":
+                codec = new Codec.Gzip();
+                break;
+            case "zstd":
+                codec = new ZstdCodec(3);
+                break;
+            case "zstd-dict":
+                final ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 16 * 1024);
+                final Random random = new Random(-1);
+                for (int i = 0; i < 2000; i++) {
+                    trainer.addSample(records(random, 512));
+                }
+                codec = new ZstdCodec(ZstdCodec.ZSTD_DICT_ENCODING, 3, trainer.trainSamples());
+                break;
+            default:
+                codec = Codec.Identity.NONE;
+        }
+        compressed = compress();
+    }
+
+    @Benchmark
+    public byte[] roundTrip(final Sizes sizes) throws IOException {
+        compressed = compress();
+        sizes.compressedBytes = compressed.length;
+        try (InputStream in = codec.decompress(new ByteArrayInputStream(compressed))) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    /**
+     * 压缩后的字节数, 每次操作覆盖而不是累加, 输出的值即一条消息压缩后的大小.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+
+        public long compressedBytes;
+    }
+
+    private byte[] compress() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(message.length);
+        try (OutputStream compressing = codec.compress(out)) {
+            compressing.write(message);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 业务报文中常见的重复字段名与少量变化的取值.
+     */
+    private static byte[] records(final Random random, final int size) {
+        final StringBuilder builder = new StringBuilder(size + 128);
+        while (builder.length() < size) {
+            builder.append("{\"orderId\":").append(random.nextInt(1_000_000))
+                    .append(",\"customer\":\"C").append(random.nextInt(10_000))
+                    .append("\",\"status\":\"").append(random.nextBoolean() ? "PAID" : "PENDING")
+                    .append("\",\"amount\":").append(random.nextInt(100_000) / 100.0)
+                    .append(",\"currency\":\"CNY\"}");
+        }
+        builder.setLength(size);
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
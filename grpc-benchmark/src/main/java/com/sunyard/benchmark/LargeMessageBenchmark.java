@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sunyard.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import com.sunyard.marshaller.LargeMessageMarshallers;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大报文解析: grpc默认的protobuf marshaller与{@link com.sunyard.marshaller.AliasingProtoMarshaller}.
+ * 使用-prof gc对比每次解析分配的字节数. 报文最大100MB, fork的JVM使用2g堆.
+ * <pre>
+ * java -jar grpc-benchmark/target/benchmarks.jar LargeMessageBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LargeMessageBenchmark {
+
+    @Param({"65536", "1048576", "8388608", "33554432", "104857600"})
+    private int size;
+
+    private byte[] serialized;
+
+    private MethodDescriptor<BytesValue, BytesValue> generated;
+
+    private MethodDescriptor<BytesValue, BytesValue> aliasing;
+
+    @Setup
+    public void setup() {
+        final byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        serialized = BytesValue.of(ByteString.copyFrom(payload)).toByteArray();
+        generated = MethodDescriptor.<BytesValue, BytesValue>newBuilder()
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName(MethodDescriptor.generateFullMethodName("bench.Files", "Download"))
+                .setRequestMarshaller(ProtoUtils.marshaller(BytesValue.getDefaultInstance()))
+                .setResponseMarshaller(ProtoUtils.marshaller(BytesValue.getDefaultInstance()))
+                .build();
+        aliasing = new LargeMessageMarshallers(Collections.singletonList(generated.getFullMethodName()),
+                LargeMessageMarshallers.DEFAULT_THRESHOLD).aliasing(generated);
+    }
+
+    @Benchmark
+    public BytesValue generatedMarshaller() {
+        return generated.parseResponse(new KnownLengthStream(serialized));
+    }
+
+    @Benchmark
+    public BytesValue aliasingMarshaller() {
+        return aliasing.parseResponse(new KnownLengthStream(serialized));
+    }
+}
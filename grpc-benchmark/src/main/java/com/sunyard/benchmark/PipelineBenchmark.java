@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.sunyard.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sunyard.pipeline.PipelineClientInterceptor;
+import com.sunyard.pipeline.PipelineProperties;
+import com.sunyard.pipeline.PipelineServerDispatcher;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小报文unary调用: 每次调用一个http2 stream与复用pipeline双向流, 每次操作并发发出calls个调用并等待全部返回.
+ * 服务端与客户端使用本机的netty传输.
+ * <pre>
+ * java -jar grpc-benchmark/target/benchmarks.jar PipelineBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(final byte[] value) {
+            return new KnownLengthStream(value);
+        }
+
+        @Override
+        public byte[] parse(final InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final MethodDescriptor<byte[], byte[]> ECHO = MethodDescriptor.<byte[], byte[]>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName("benchmark.Echo", "Echo"))
+            .setRequestMarshaller(BYTES)
+            .setResponseMarshaller(BYTES)
+            .build();
+
+    @Param({"unary", "pipeline"})
+    private String transport;
+
+    @Param({"1", "64"})
+    private int calls;
+
+    private Server server;
+
+    private ManagedChannel managedChannel;
+
+    private PipelineClientInterceptor pipelineInterceptor;
+
+    private Channel channel;
+
+    private byte[] request;
+
+    @Setup
+    public void setup() throws IOException {
+        final PipelineProperties properties = new PipelineProperties();
+        properties.setMethods(Collections.singletonList(ECHO.getFullMethodName()));
+        properties.setStreams(1);
+        final ServerServiceDefinition service = ServerServiceDefinition.builder("benchmark.Echo")
+                .addMethod(ECHO, ServerCalls.asyncUnaryCall((req, observer) -> {
+                    observer.onNext(req);
+                    observer.onCompleted();
+                }))
+                .build();
+        final PipelineServerDispatcher dispatcher = new PipelineServerDispatcher(properties);
+        dispatcher.register(service);
+        server = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(service)
+                .addService(dispatcher.bindService())
+                .build()
+                .start();
+        managedChannel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext().build();
+        if ("pipeline".equals(transport)) {
+            pipelineInterceptor = new PipelineClientInterceptor(properties);
+            channel = ClientInterceptors.intercept(managedChannel, pipelineInterceptor);
+        } else {
+            channel = managedChannel;
+        }
+        request = new byte[128];
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (pipelineInterceptor != null) {
+            pipelineInterceptor.shutdown();
+        }
+        managedChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public List<byte[]> echo() throws Exception {
+        final List<ListenableFuture<byte[]>> responses = new ArrayList<>(calls);
+        for (int i = 0; i < calls; i++) {
+            responses.add(ClientCalls.futureUnaryCall(channel.newCall(ECHO, CallOptions.DEFAULT), request));
+        }
+        return Futures.allAsList(responses).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -17,12 +17,18 @@
 
 package com.sunyard.hello;
 
+import com.sunyard.client.GrpcClient;
+import com.sunyard.client.GrpcCompletableStub;
 import com.sunyard.client.ManagedChannelManager;
+import com.sunyard.client.reactive.ReactorGrpcStub;
 import com.sunyard.loadbalance.LoadBalancerStrategy;
 import io.grpc.Channel;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * GrpcTestController.
@@ -31,6 +37,12 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/test/grpc")
 public class GrpcTestController {
 
+    /**stub可以理解为远程服务在本地的代理,注入时创建一次*/
+    @GrpcClient(value = "grpc-server-demo", deadlineMillis = 3000)
+    private HelloServiceGrpc.HelloServiceBlockingStub helloStub;
+
+    @GrpcClient(value = "grpc-server-demo", deadlineMillis = 3000)
+    private GrpcCompletableStub<HelloServiceGrpc.HelloServiceFutureStub> helloFutureStub;
 
     /**
      * test grpc.
@@ -40,13 +52,36 @@ public class GrpcTestController {
      */
     @GetMapping("/hello")
     public String hello() {
-        /**stub可以理解为远程服务在本地的代理*/
-        HelloServiceGrpc.HelloServiceBlockingStub stub = HelloServiceGrpc.newBlockingStub(ManagedChannelManager.getGrpcClient("grpc-server-demo"));
         HelloRequest request = HelloRequest.newBuilder().setData("hello").build();
-        HelloResponse response = stub.hello(request);
+        HelloResponse response = helloStub.hello(request);
         return response.getData();
     }
 
+    /**
+     * test grpc future.
+     *
+     * @return hello world
+     */
+    @GetMapping("/hello-future")
+    public CompletableFuture<String> helloFuture() {
+        HelloRequest request = HelloRequest.newBuilder().setData("hello").build();
+        return helloFutureStub.call(stub -> stub.hello(request)).thenApply(HelloResponse::getData);
+    }
+
+    /**
+     * test reactive grpc.
+     * 非阻塞调用,不占用请求线程等待响应
+     *
+     * @return hello world
+     */
+    @GetMapping("/hello-reactive")
+    public Mono<String> helloReactive() {
+        HelloRequest request = HelloRequest.newBuilder().setData("hello").build();
+        return ReactorGrpcStub.forService("grpc-server-demo")
+                .unary(HelloServiceGrpc.getHelloMethod(), request)
+                .map(HelloResponse::getData);
+    }
+
     /**
      * channel层是对数据传输的抽象，核心的实现类是 ManagedChannel，表示逻辑上的一个channel，
      * 底层持有一个物理的transport（TCP通道,参见NettyClientTransport）
@@ -17,6 +17,7 @@
 
 package com.sunyard.hello;
 
+import com.sunyard.server.flowcontrol.FlowControlledRequestObserver;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,27 +37,28 @@ public class HelloServiceImpl extends HelloServiceGrpc.HelloServiceImplBase {
 
     @Override
     public StreamObserver<HelloRequest> helloEveryOne(final StreamObserver<HelloResponse> responseObserver) {
-        return new StreamObserver<HelloRequest>() {
+        // 按客户端的消费速度请求和写出,慢客户端不会导致服务端无限暂存响应
+        return new FlowControlledRequestObserver<HelloRequest, HelloResponse>(responseObserver) {
             @Override
-            public void onNext(final HelloRequest request) {
+            protected void onRequest(final HelloRequest request, final StreamObserver<HelloResponse> responses) {
                 HelloResponse responseData = HelloResponse.newBuilder()
                         .setData("hello: " + request.getData())
                         .build();
-                responseObserver.onNext(responseData);
+                responses.onNext(responseData);
             }
 
             @Override
-            public void onError(final Throwable t) {
+            protected void onFailure(final Throwable t) {
                 LOG.error(t.getMessage());
             }
 
             @Override
-            public void onCompleted() {
+            protected void onRequestsCompleted(final StreamObserver<HelloResponse> responses) {
                 HelloResponse responseData = HelloResponse.newBuilder()
                         .setData("hello onCompleted")
                         .build();
-                responseObserver.onNext(responseData);
-                responseObserver.onCompleted();
+                responses.onNext(responseData);
+                responses.onCompleted();
             }
         };
     }